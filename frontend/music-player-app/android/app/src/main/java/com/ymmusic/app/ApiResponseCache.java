@@ -0,0 +1,488 @@
+package com.ymmusic.app;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 网易云音乐API响应缓存
+ * 通过WebView请求拦截缓存API的GET响应，有效期规则与fsCache.js的CACHE_TTL一致
+ * （fsCache依赖Node的fs模块，在Android WebView里无法使用）。
+ * 过期后在宽限期内先返回旧数据再后台用ETag/Last-Modified重新验证；
+ * 响应体以gzip格式存放在磁盘；相同请求同时发起时只访问一次网络
+ */
+public class ApiResponseCache implements RequestInterceptor {
+    private static final String TAG = "ApiResponseCache";
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    // 与fsCache.js的CACHE_TTL对应
+    static final long TTL_PLAYLIST = 24 * HOUR_MS;
+    static final long TTL_SONG = 7 * 24 * HOUR_MS;
+    static final long TTL_SEARCH = 12 * HOUR_MS;
+    static final long TTL_MV = 24 * HOUR_MS;
+
+    private static final long MAX_CACHE_BYTES = 20L * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 20000;
+    // 等待共享请求结果的最长时间
+    private static final long FETCH_WAIT_MS = 30000;
+    // 预取时交给Web层的单个响应的最大大小（解压后），更大的响应仍由WebView从缓存读取
+    private static final int MAX_PRELOAD_BYTES = 1024 * 1024;
+    private static final int FILE_MAGIC = 0x594D4131; // "YMA1"
+
+    private static final Set<String> API_HOSTS = new HashSet<>(Arrays.asList(
+            "api.931125.xyz", "apiback.931125.xyz"));
+
+    // 按接口路径配置有效期；歌曲播放地址、MV地址带有时效签名，用户相关接口依赖登录状态，都不缓存
+    private static final Map<String, Long> TTL_RULES = new HashMap<>();
+
+    static {
+        TTL_RULES.put("/toplist", TTL_PLAYLIST);
+        TTL_RULES.put("/top/playlist", TTL_PLAYLIST);
+        TTL_RULES.put("/top/playlist/highquality", TTL_PLAYLIST);
+        TTL_RULES.put("/playlist/catlist", TTL_PLAYLIST);
+        TTL_RULES.put("/playlist/detail", TTL_PLAYLIST);
+        TTL_RULES.put("/playlist/track/all", TTL_PLAYLIST);
+        TTL_RULES.put("/album", TTL_PLAYLIST);
+        TTL_RULES.put("/song/detail", TTL_SONG);
+        TTL_RULES.put("/lyric", TTL_SONG);
+        TTL_RULES.put("/lyric/new", TTL_SONG);
+        TTL_RULES.put("/search", TTL_SEARCH);
+        TTL_RULES.put("/cloudsearch", TTL_SEARCH);
+        TTL_RULES.put("/top/mv", TTL_MV);
+        TTL_RULES.put("/mv/all", TTL_MV);
+        TTL_RULES.put("/mv/detail", TTL_MV);
+    }
+
+    /**
+     * 新的响应写入缓存后的回调，在请求线程调用，不能做耗时操作
+     */
+    public interface ResponseListener {
+        /**
+         * @param path 接口路径
+         * @param file 缓存文件，用openBody读取响应体
+         */
+        void onResponseCached(String path, File file);
+    }
+
+    private static ApiResponseCache instance;
+
+    private final DiskLruCache diskCache;
+    private final Map<String, FutureTask<Meta>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService revalidateExecutor;
+    private volatile ResponseListener responseListener;
+
+    // 统计
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong staleCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final AtomicLong dedupCount = new AtomicLong();
+    private final AtomicLong offlineCount = new AtomicLong();
+
+    /**
+     * 缓存条目的元数据，存放在文件头部
+     */
+    static final class Meta {
+        final long storedAt;
+        final String contentType;
+        final String etag;
+        final String lastModified;
+
+        Meta(long storedAt, String contentType, String etag, String lastModified) {
+            this.storedAt = storedAt;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    public static synchronized ApiResponseCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ApiResponseCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ApiResponseCache(Context context) {
+        diskCache = new DiskLruCache(new File(context.getCacheDir(), "api_cache"), MAX_CACHE_BYTES);
+        revalidateExecutor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "ApiCacheRevalidate");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void setResponseListener(ResponseListener listener) {
+        responseListener = listener;
+    }
+
+    /**
+     * 接口路径对应的有效期
+     * @return 有效期（毫秒），不缓存的接口返回0
+     */
+    static long ttlFor(String path) {
+        if (path == null) {
+            return 0;
+        }
+        if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        Long ttl = TTL_RULES.get(path);
+        return ttl != null ? ttl : 0;
+    }
+
+    @Override
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        Uri uri = request.getUrl();
+        if (!"GET".equalsIgnoreCase(request.getMethod()) || !API_HOSTS.contains(uri.getHost())) {
+            return null;
+        }
+        long ttl = ttlFor(uri.getPath());
+        // 带timestamp参数表示调用方要求跳过缓存（NeteaseCloudMusicApi的约定）
+        if (ttl <= 0 || uri.getQueryParameter("timestamp") != null) {
+            return null;
+        }
+
+        String url = uri.toString();
+        String key = keyOf(uri);
+        String origin = findHeader(request.getRequestHeaders(), "Origin");
+        try {
+            File file = diskCache.get(key);
+            Meta meta = file != null ? readMeta(file) : null;
+            if (meta != null) {
+                long age = System.currentTimeMillis() - meta.storedAt;
+                if (age >= 0 && age < ttl) {
+                    hitCount.incrementAndGet();
+                    return serve(file, meta, origin, "HIT");
+                }
+                // 过期不超过一个有效期：先返回旧数据，后台重新验证
+                if (age >= 0 && age < ttl * 2) {
+                    staleCount.incrementAndGet();
+                    revalidateAsync(key, url, meta);
+                    return serve(file, meta, origin, "STALE");
+                }
+            }
+
+            missCount.incrementAndGet();
+            Meta fetched = fetchShared(key, url, meta);
+            File fresh = fetched != null ? diskCache.get(key) : null;
+            if (fresh != null) {
+                return serve(fresh, fetched, origin, "MISS");
+            }
+            if (file != null && meta != null && file.exists()) {
+                // 网络不可用时返回过期数据，离线也能打开看过的页面
+                offlineCount.incrementAndGet();
+                return serve(file, meta, origin, "OFFLINE");
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "读取API缓存出错: " + url, e);
+        }
+        return null;
+    }
+
+    private static String keyOf(Uri uri) {
+        return uri.getHost() + uri.getEncodedPath() + "?" + uri.getEncodedQuery();
+    }
+
+    /**
+     * 冷启动时预取一个接口的响应：缓存在有效期内直接读取，否则请求网络并写入缓存，
+     * 之后WebView发起同样的请求时直接命中；与WebView同时请求时只访问一次网络
+     * @return 响应体文本，接口不缓存、响应过大或请求失败时返回null
+     */
+    public String preload(String url) {
+        Uri uri = Uri.parse(url);
+        if (!API_HOSTS.contains(uri.getHost())) {
+            return null;
+        }
+        long ttl = ttlFor(uri.getPath());
+        if (ttl <= 0 || uri.getQueryParameter("timestamp") != null) {
+            return null;
+        }
+        String key = keyOf(uri);
+        try {
+            File file = diskCache.get(key);
+            Meta meta = file != null ? readMeta(file) : null;
+            long age = meta != null ? System.currentTimeMillis() - meta.storedAt : -1;
+            if (meta == null || age < 0 || age >= ttl) {
+                Meta fetched = fetchShared(key, url, meta);
+                if (fetched != null) {
+                    file = diskCache.get(key);
+                    meta = fetched;
+                } else if (meta == null || age < 0 || age >= ttl * 2) {
+                    return null;
+                }
+            }
+            if (file == null) {
+                return null;
+            }
+            try (InputStream in = openBody(file)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    if (out.size() > MAX_PRELOAD_BYTES) {
+                        return null;
+                    }
+                }
+                return new String(out.toByteArray(), charsetOf(meta.contentType));
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "预取API响应失败: " + url + " " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void revalidateAsync(String key, String url, Meta meta) {
+        if (inFlight.containsKey(key)) {
+            return;
+        }
+        revalidateExecutor.execute(() -> fetchShared(key, url, meta));
+    }
+
+    /**
+     * 发起请求；同一个键已有请求在进行时等待它的结果
+     */
+    private Meta fetchShared(String key, String url, Meta meta) {
+        FutureTask<Meta> task = new FutureTask<>(() -> fetch(key, url, meta));
+        FutureTask<Meta> existing = inFlight.putIfAbsent(key, task);
+        if (existing == null) {
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(key, task);
+            }
+            existing = task;
+        } else {
+            dedupCount.incrementAndGet();
+        }
+        try {
+            return existing.get(FETCH_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            Log.w(TAG, "API请求失败: " + url + " " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Meta fetch(String key, String url, Meta meta) throws IOException {
+        try (NetworkScheduler.Call call = NetworkScheduler.getInstance().open(url, NetworkScheduler.PRIORITY_API)) {
+            HttpURLConnection connection = call.connection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            if (meta != null) {
+                if (!meta.etag.isEmpty()) {
+                    connection.setRequestProperty("If-None-Match", meta.etag);
+                }
+                if (!meta.lastModified.isEmpty()) {
+                    connection.setRequestProperty("If-Modified-Since", meta.lastModified);
+                }
+            }
+            int code = call.code();
+            long now = System.currentTimeMillis();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && meta != null) {
+                File file = diskCache.get(key);
+                if (file != null) {
+                    notModifiedCount.incrementAndGet();
+                    updateStoredAt(file, now);
+                    return new Meta(now, meta.contentType, meta.etag, meta.lastModified);
+                }
+                return null;
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                return null;
+            }
+
+            Meta fresh = new Meta(now,
+                    nonNull(connection.getContentType()),
+                    nonNull(connection.getHeaderField("ETag")),
+                    nonNull(connection.getHeaderField("Last-Modified")));
+            File temp = diskCache.newTempFile();
+            try (OutputStream out = new FileOutputStream(temp)) {
+                writeEntry(out, fresh, call.body());
+            } catch (IOException e) {
+                call.abort();
+                temp.delete();
+                throw e;
+            }
+            diskCache.commit(key, temp);
+            ResponseListener listener = responseListener;
+            if (listener != null) {
+                File file = diskCache.get(key);
+                if (file != null) {
+                    listener.onResponseCached(Uri.parse(url).getPath(), file);
+                }
+            }
+            return fresh;
+        }
+    }
+
+    private WebResourceResponse serve(File file, Meta meta, String origin, String cacheStatus) throws IOException {
+        String mimeType = meta.contentType.isEmpty() ? "application/json" : meta.contentType.split(";")[0].trim();
+        String charset = charsetOf(meta.contentType);
+        Map<String, String> headers = new HashMap<>();
+        if (origin != null) {
+            headers.put("Access-Control-Allow-Origin", origin);
+            headers.put("Access-Control-Allow-Credentials", "true");
+        } else {
+            headers.put("Access-Control-Allow-Origin", "*");
+        }
+        headers.put("Cache-Control", "no-cache");
+        headers.put("X-Native-Cache", cacheStatus);
+        return new WebResourceResponse(mimeType, charset, 200, "OK", headers, openBody(file));
+    }
+
+    /**
+     * Content-Type中的字符集，没有时为utf-8
+     */
+    static String charsetOf(String contentType) {
+        String[] parts = contentType.split(";");
+        for (int i = 1; i < parts.length; i++) {
+            String part = parts[i].trim();
+            if (part.regionMatches(true, 0, "charset=", 0, 8)) {
+                return part.substring(8).trim();
+            }
+        }
+        return "utf-8";
+    }
+
+    /**
+     * 写入缓存文件：固定格式的头部加gzip压缩的响应体
+     */
+    static void writeEntry(OutputStream out, Meta meta, InputStream body) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(FILE_MAGIC);
+        data.writeLong(meta.storedAt);
+        data.writeUTF(meta.contentType);
+        data.writeUTF(meta.etag);
+        data.writeUTF(meta.lastModified);
+        GZIPOutputStream gzip = new GZIPOutputStream(data);
+        byte[] buffer = new byte[16 * 1024];
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            gzip.write(buffer, 0, read);
+        }
+        gzip.finish();
+        data.flush();
+    }
+
+    static Meta readMeta(File file) {
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return readHeader(data);
+        } catch (IOException e) {
+            Log.w(TAG, "缓存文件损坏: " + file.getName());
+            return null;
+        }
+    }
+
+    /**
+     * 打开解压后的响应体
+     */
+    static InputStream openBody(File file) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            readHeader(data);
+            return new GZIPInputStream(data);
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+    }
+
+    private static Meta readHeader(DataInputStream data) throws IOException {
+        if (data.readInt() != FILE_MAGIC) {
+            throw new IOException("缓存文件格式不正确");
+        }
+        long storedAt = data.readLong();
+        return new Meta(storedAt, data.readUTF(), data.readUTF(), data.readUTF());
+    }
+
+    /**
+     * 重新验证成功后只改写头部的存储时间
+     */
+    static void updateStoredAt(File file, long storedAt) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(4);
+            raf.writeLong(storedAt);
+        }
+    }
+
+    private static String findHeader(Map<String, String> headers, String name) {
+        if (headers != null) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                if (name.equalsIgnoreCase(entry.getKey())) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String nonNull(String value) {
+        return value != null ? value : "";
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        diskCache.trimToSize(0);
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getStaleCount() {
+        return staleCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    public long getDedupCount() {
+        return dedupCount.get();
+    }
+
+    public long getOfflineCount() {
+        return offlineCount.get();
+    }
+
+    public long getCacheSize() {
+        return diskCache.size();
+    }
+}
@@ -0,0 +1,795 @@
+package com.ymmusic.app;
+
+import android.content.Context;
+import android.media.MediaDataSource;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 音频流磁盘缓存
+ * 通过WebView请求拦截为<audio>元素提供数据：完整缓存的文件直接从磁盘读取，
+ * 未缓存的文件在后台边下载边写入磁盘，同时把已下载部分交给播放器，支持HTTP Range请求。
+ * 还可以预取下一首歌曲的开头部分，切歌时无需等待网络。
+ * 原生播放引擎通过openDataSource使用同一套下载任务和缓存
+ */
+public class AudioCache implements RequestInterceptor {
+    private static final String TAG = "AudioCache";
+
+    private static final long MAX_CACHE_BYTES = 512L * 1024 * 1024;
+    // 预取开头约30秒（按320kbps估算）
+    static final long PREFETCH_BYTES = 30L * 320 * 1000 / 8;
+    // 等待上游响应头的最长时间，超时后交给WebView自己请求
+    private static final long HEADER_WAIT_MS = 10000;
+    // 播放器读取时等待新数据的最长时间
+    private static final long READ_WAIT_MS = 15000;
+    // Range起点超过已下载位置太多时直接走网络，避免等待顺序下载
+    private static final long MAX_FORWARD_GAP = 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 20000;
+
+    private static final Pattern AUDIO_PATH = Pattern.compile(
+            ".*\\.(mp3|m4a|flac|aac|ogg)$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final Pattern CONTENT_RANGE_TOTAL = Pattern.compile("/(\\d+)$");
+
+    private static AudioCache instance;
+
+    private final DiskLruCache diskCache;
+    private final File partialDir;
+    private final NetworkScheduler scheduler;
+    private final FillListener fillListener;
+    private final Map<String, FillTask> tasks = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    // 统计
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong fillCount = new AtomicLong();
+    private final AtomicLong bypassCount = new AtomicLong();
+    private final AtomicLong prefetchCount = new AtomicLong();
+
+    /**
+     * 下载任务结束（完成或失败）的回调，在下载线程中调用
+     */
+    interface FillListener {
+        /**
+         * @param error 下载成功时为null
+         */
+        void onFillFinished(String key, long contentLength, Exception error);
+    }
+
+    private static final FillListener LOG_LISTENER = (key, contentLength, error) -> {
+        if (error == null) {
+            Log.d(TAG, "音频缓存完成: " + key + " (" + contentLength + " 字节)");
+        } else {
+            Log.w(TAG, "音频下载失败: " + key + " " + error.getMessage());
+        }
+    };
+
+    public static synchronized AudioCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new AudioCache(context.getApplicationContext().getCacheDir(),
+                    NetworkScheduler.getInstance(), LOG_LISTENER);
+        }
+        return instance;
+    }
+
+    AudioCache(File cacheDir, NetworkScheduler scheduler, FillListener fillListener) {
+        this.scheduler = scheduler;
+        this.fillListener = fillListener;
+        diskCache = new DiskLruCache(new File(cacheDir, "audio_cache"), MAX_CACHE_BYTES);
+        partialDir = new File(cacheDir, "audio_partial");
+        // 上次运行留下的未完成文件无法确认完整性，直接清理
+        File[] leftovers = partialDir.listFiles();
+        if (leftovers != null) {
+            for (File file : leftovers) {
+                file.delete();
+            }
+        }
+        partialDir.mkdirs();
+        executor = Executors.newFixedThreadPool(3, runnable -> {
+            Thread thread = new Thread(runnable, "AudioCacheFill");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 是否是需要缓存的音频地址
+     */
+    public static boolean isAudioUrl(Uri uri) {
+        String scheme = uri.getScheme();
+        String path = uri.getPath();
+        return ("http".equals(scheme) || "https".equals(scheme))
+                && path != null && AUDIO_PATH.matcher(path).matches();
+    }
+
+    /**
+     * 缓存键：CDN地址的查询参数里带有会过期的签名，只用路径区分文件
+     */
+    static String cacheKey(Uri uri) {
+        return uri.getPath();
+    }
+
+    @Override
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        Uri uri = request.getUrl();
+        if (!"GET".equalsIgnoreCase(request.getMethod()) || !isAudioUrl(uri)) {
+            return null;
+        }
+        long[] range = parseRange(request.getRequestHeaders());
+        if (range == null) {
+            bypassCount.incrementAndGet();
+            return null;
+        }
+
+        try {
+            RangeStream stream = openRange(cacheKey(uri), uri.toString(), range);
+            return stream == null ? null : buildResponse(guessMimeType(uri.getPath()), stream, range[2] == 1);
+        } catch (Exception e) {
+            Log.e(TAG, "读取音频缓存出错: " + uri, e);
+            bypassCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * 按Range打开音频数据：已缓存的从磁盘读取，否则从下载任务边下边读
+     * @return 需要交给WebView自己请求时返回null
+     */
+    RangeStream openRange(String key, String url, long[] range) throws IOException, InterruptedException {
+        File cached = diskCache.get(key);
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            return openFileRange(cached, range);
+        }
+
+        FillTask task = obtainTask(key, url, Long.MAX_VALUE);
+        promote(task);
+        if (!task.awaitHeaders(HEADER_WAIT_MS) || range[0] > task.getWritten() + MAX_FORWARD_GAP) {
+            bypassCount.incrementAndGet();
+            return null;
+        }
+        fillCount.incrementAndGet();
+        try {
+            return openTaskRange(task, range);
+        } catch (FileNotFoundException e) {
+            // 打开之前下载刚好完成，临时文件已提交到磁盘缓存
+            File committed = diskCache.get(key);
+            if (committed == null) {
+                throw e;
+            }
+            return openFileRange(committed, range);
+        }
+    }
+
+    /**
+     * 已完整缓存的音频文件，原生播放引擎据此直接播放本地文件
+     * @return 没有缓存或不是音频地址时返回null
+     */
+    public File getCachedFile(String url) {
+        if (url == null) {
+            return null;
+        }
+        Uri uri = Uri.parse(url);
+        if (!isAudioUrl(uri)) {
+            return null;
+        }
+        File cached = diskCache.get(cacheKey(uri));
+        if (cached != null) {
+            hitCount.incrementAndGet();
+        }
+        return cached;
+    }
+
+    /**
+     * 原生播放引擎的数据源：边下载边读取，下载的数据同样提交到磁盘缓存，
+     * 预取过开头的歌曲从预取的位置继续下载
+     * @return 不是需要缓存的音频地址时返回null，调用方直接使用网络地址
+     */
+    public MediaDataSource openDataSource(String url) {
+        if (url == null) {
+            return null;
+        }
+        Uri uri = Uri.parse(url);
+        if (!isAudioUrl(uri)) {
+            return null;
+        }
+        FillTask task = obtainTask(cacheKey(uri), url, Long.MAX_VALUE);
+        promote(task);
+        fillCount.incrementAndGet();
+        return new TaskDataSource(task);
+    }
+
+    /**
+     * 预取歌曲开头部分，正式播放时从预取的位置继续下载
+     */
+    public void prefetch(String url) {
+        try {
+            Uri uri = Uri.parse(url);
+            if (!isAudioUrl(uri)) {
+                return;
+            }
+            String key = cacheKey(uri);
+            if (prefetch(key, url)) {
+                Log.d(TAG, "预取音频开头: " + key);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "预取音频出错: " + url, e);
+        }
+    }
+
+    /**
+     * 开始预取；已缓存或已有下载任务时不做任何事
+     * @return 是否新开始了预取
+     */
+    boolean prefetch(String key, String url) {
+        if (diskCache.contains(key) || tasks.containsKey(key)) {
+            return false;
+        }
+        // 只保留最近一次预取，丢弃之前尚未使用的预取数据
+        for (FillTask task : tasks.values()) {
+            if (task.isPrefetchOnly()) {
+                task.discard();
+            }
+        }
+        prefetchCount.incrementAndGet();
+        obtainTask(key, url, PREFETCH_BYTES);
+        return true;
+    }
+
+    /**
+     * 获取或创建下载任务；已暂停的预取任务会以新的地址和上限继续下载
+     */
+    private FillTask obtainTask(String key, String url, long stopAt) {
+        FillTask task;
+        synchronized (tasks) {
+            task = tasks.get(key);
+            if (task == null) {
+                task = new FillTask(key, url, new File(partialDir, DiskLruCache.hashKey(key)), stopAt);
+                tasks.put(key, task);
+            }
+        }
+        if (task.resume(url, stopAt)) {
+            executor.execute(task);
+        }
+        return task;
+    }
+
+    /**
+     * 播放器开始读取的任务成为当前曲目：其他完整下载的任务（切歌前的曲目）
+     * 改用预取级别继续下载，不再占用当前播放的名额
+     */
+    private void promote(FillTask current) {
+        current.setDemoted(false);
+        for (FillTask task : tasks.values()) {
+            if (task != current && !task.isPrefetchOnly()) {
+                task.setDemoted(true);
+            }
+        }
+    }
+
+    /**
+     * 按Range返回本地文件的内容，离线下载的文件也通过这里返回
+     */
+    static WebResourceResponse serveFile(File file, String mimeType, long[] range) throws IOException {
+        RangeStream stream = openFileRange(file, range);
+        return stream == null ? null : buildResponse(mimeType, stream, range[2] == 1);
+    }
+
+    private static RangeStream openFileRange(File file, long[] range) throws IOException {
+        long total = file.length();
+        long start = range[0];
+        long end = range[1] < 0 ? total - 1 : Math.min(range[1], total - 1);
+        if (start >= total) {
+            return null;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        raf.seek(start);
+        return new RangeStream(new BoundedFileInputStream(raf, end - start + 1), start, end, total);
+    }
+
+    private static RangeStream openTaskRange(FillTask task, long[] range) throws IOException {
+        long total = task.contentLength;
+        long start = range[0];
+        if (total <= 0 || start >= total) {
+            return null;
+        }
+        long end = range[1] < 0 ? total - 1 : Math.min(range[1], total - 1);
+        return new RangeStream(new GrowingFileInputStream(task, start, end + 1), start, end, total);
+    }
+
+    private static WebResourceResponse buildResponse(String mimeType, RangeStream stream, boolean partial) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Ranges", "bytes");
+        headers.put("Content-Length", String.valueOf(stream.end - stream.start + 1));
+        headers.put("Access-Control-Allow-Origin", "*");
+        if (partial) {
+            headers.put("Content-Range", "bytes " + stream.start + "-" + stream.end + "/" + stream.total);
+            return new WebResourceResponse(mimeType, null, 206, "Partial Content", headers, stream.in);
+        }
+        return new WebResourceResponse(mimeType, null, 200, "OK", headers, stream.in);
+    }
+
+    /**
+     * 按Range打开的数据流，end为包含在内的最后一个字节
+     */
+    static final class RangeStream {
+        final InputStream in;
+        final long start;
+        final long end;
+        final long total;
+
+        RangeStream(InputStream in, long start, long end, long total) {
+            this.in = in;
+            this.start = start;
+            this.end = end;
+            this.total = total;
+        }
+    }
+
+    /**
+     * 解析Range请求头
+     * @return [起点, 终点(-1表示到结尾), 是否带Range(1/0)]；不支持的Range格式返回null
+     */
+    static long[] parseRange(Map<String, String> headers) {
+        String value = null;
+        if (headers != null) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                if ("range".equalsIgnoreCase(entry.getKey())) {
+                    value = entry.getValue();
+                    break;
+                }
+            }
+        }
+        if (value == null) {
+            return new long[]{0, -1, 0};
+        }
+        Matcher matcher = RANGE.matcher(value.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        long start = Long.parseLong(matcher.group(1));
+        long end = matcher.group(2).isEmpty() ? -1 : Long.parseLong(matcher.group(2));
+        return new long[]{start, end, 1};
+    }
+
+    static String guessMimeType(String path) {
+        String lower = path == null ? "" : path.toLowerCase();
+        if (lower.endsWith(".m4a")) {
+            return "audio/mp4";
+        } else if (lower.endsWith(".flac")) {
+            return "audio/flac";
+        } else if (lower.endsWith(".aac")) {
+            return "audio/aac";
+        } else if (lower.endsWith(".ogg")) {
+            return "audio/ogg";
+        }
+        return "audio/mpeg";
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getFillCount() {
+        return fillCount.get();
+    }
+
+    public long getBypassCount() {
+        return bypassCount.get();
+    }
+
+    public long getPrefetchCount() {
+        return prefetchCount.get();
+    }
+
+    public long getCacheSize() {
+        return diskCache.size();
+    }
+
+    /**
+     * 后台下载任务：顺序写入临时文件，下载完成后提交到磁盘缓存
+     */
+    private final class FillTask implements Runnable {
+        final String key;
+        final File file;
+        volatile long contentLength = -1;
+        private String url;
+        private long written = 0;
+        private long stopAt;
+        private boolean running = false;
+        private boolean complete = false;
+        private boolean failed = false;
+        private boolean discarded = false;
+        // 已不是当前曲目，以预取级别下载
+        private boolean demoted = false;
+
+        FillTask(String key, String url, File file, long stopAt) {
+            this.key = key;
+            this.url = url;
+            this.file = file;
+            this.stopAt = stopAt;
+        }
+
+        /**
+         * 更新地址和下载上限
+         * @return 需要重新提交到线程池时返回true
+         */
+        synchronized boolean resume(String newUrl, long newStopAt) {
+            url = newUrl;
+            stopAt = Math.max(stopAt, newStopAt);
+            if (running || complete || discarded) {
+                return false;
+            }
+            if (failed) {
+                // 之前失败的任务从头开始，文件在下载线程里截断
+                failed = false;
+                written = 0;
+                contentLength = -1;
+            }
+            running = true;
+            return true;
+        }
+
+        synchronized boolean isPrefetchOnly() {
+            return stopAt != Long.MAX_VALUE;
+        }
+
+        synchronized void setDemoted(boolean value) {
+            demoted = value;
+        }
+
+        synchronized long getWritten() {
+            return written;
+        }
+
+        synchronized boolean awaitHeaders(long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (contentLength < 0 && !failed) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return !failed;
+        }
+
+        /**
+         * 等待数据写到指定位置之后
+         * @return 当前已写入的字节数
+         */
+        synchronized long awaitData(long position) throws IOException {
+            long deadline = System.currentTimeMillis() + READ_WAIT_MS;
+            while (written <= position && !complete) {
+                if (failed || discarded) {
+                    throw new IOException("音频下载失败: " + key);
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new IOException("等待音频数据超时: " + key);
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("读取音频缓存被中断", e);
+                }
+            }
+            return written;
+        }
+
+        synchronized void discard() {
+            discarded = true;
+            tasks.remove(key, this);
+            file.delete();
+            notifyAll();
+        }
+
+        @Override
+        public void run() {
+            NetworkScheduler.Call call = null;
+            boolean requeue = false;
+            try {
+                long offset;
+                String requestUrl;
+                int priority;
+                synchronized (this) {
+                    offset = written;
+                    requestUrl = url;
+                    // 只预取开头的是下一首，已切走的曲目也在后台下载，优先级都低于正在播放的
+                    priority = isPrefetchOnly() || demoted
+                            ? NetworkScheduler.PRIORITY_PREFETCH : NetworkScheduler.PRIORITY_PLAYBACK;
+                }
+                call = scheduler.open(requestUrl, priority);
+                HttpURLConnection connection = call.connection();
+                connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                connection.setReadTimeout(READ_TIMEOUT_MS);
+                if (offset > 0) {
+                    connection.setRequestProperty("Range", "bytes=" + offset + "-");
+                }
+                int code = call.code();
+                long total;
+                if (code == HttpURLConnection.HTTP_PARTIAL) {
+                    Matcher matcher = CONTENT_RANGE_TOTAL.matcher(
+                            String.valueOf(connection.getHeaderField("Content-Range")));
+                    total = matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+                } else if (code == HttpURLConnection.HTTP_OK) {
+                    // 服务器不支持续传，从头开始写
+                    offset = 0;
+                    total = connection.getContentLengthLong();
+                } else {
+                    throw new IOException("HTTP " + code);
+                }
+                if (total <= 0) {
+                    throw new IOException("无法确定音频长度");
+                }
+
+                boolean finished = false;
+                try (InputStream in = call.body();
+                     RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                    // 在原文件上截断而不是删除重建：已打开的读取句柄指向同一个文件，
+                    // 重新写到它们的位置之后可以继续读取
+                    synchronized (this) {
+                        if (discarded) {
+                            // 打开时可能重新创建了已被丢弃的文件
+                            file.delete();
+                            call.abort();
+                            return;
+                        }
+                        out.setLength(offset);
+                        written = offset;
+                        contentLength = total;
+                        notifyAll();
+                    }
+                    out.seek(offset);
+                    byte[] buffer = new byte[32 * 1024];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                        synchronized (this) {
+                            if (discarded) {
+                                call.abort();
+                                return;
+                            }
+                            written += read;
+                            notifyAll();
+                            if (demoted && priority == NetworkScheduler.PRIORITY_PLAYBACK
+                                    && written < contentLength) {
+                                // 已经切歌：归还播放名额，从当前位置以预取级别重新请求
+                                call.abort();
+                                requeue = true;
+                                break;
+                            }
+                            if (written >= stopAt && written < contentLength) {
+                                // 预取到上限，暂停等待正式播放；剩余的响应体不再读取
+                                call.abort();
+                                break;
+                            }
+                        }
+                    }
+                    synchronized (this) {
+                        finished = written >= contentLength;
+                    }
+                }
+
+                if (finished) {
+                    diskCache.commit(key, file);
+                    synchronized (this) {
+                        complete = true;
+                        notifyAll();
+                    }
+                    tasks.remove(key, this);
+                    fillListener.onFillFinished(key, contentLength, null);
+                }
+            } catch (Exception e) {
+                fillListener.onFillFinished(key, contentLength, e);
+                synchronized (this) {
+                    failed = true;
+                    notifyAll();
+                }
+                tasks.remove(key, this);
+                if (call != null) {
+                    call.abort();
+                }
+            } finally {
+                if (call != null) {
+                    call.close();
+                }
+                synchronized (this) {
+                    running = false;
+                    notifyAll();
+                }
+            }
+            if (requeue) {
+                boolean restart;
+                synchronized (this) {
+                    restart = resume(url, stopAt);
+                }
+                if (restart) {
+                    executor.execute(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * 从正在下载的文件中读取，数据未到时等待
+     */
+    private static final class GrowingFileInputStream extends InputStream {
+        private final FillTask task;
+        private final RandomAccessFile raf;
+        private long position;
+        private final long end;
+
+        GrowingFileInputStream(FillTask task, long start, long end) throws IOException {
+            this.task = task;
+            // 在提交到磁盘缓存之前打开，文件重命名后句柄仍然有效
+            this.raf = new RandomAccessFile(task.file, "r");
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                long available = Math.min(task.awaitData(position), end) - position;
+                raf.seek(position);
+                int n = raf.read(b, off, (int) Math.min(len, available));
+                if (n > 0) {
+                    position += n;
+                    return n;
+                }
+                // 文件刚被截断重新下载（服务器不支持续传），等数据重新写到当前位置
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+    }
+
+    /**
+     * 给MediaPlayer读取的下载任务数据，读取在MediaPlayer的内部线程进行，数据未到时等待
+     */
+    private final class TaskDataSource extends MediaDataSource {
+        private final FillTask task;
+        private RandomAccessFile raf;
+
+        TaskDataSource(FillTask task) {
+            this.task = task;
+        }
+
+        @Override
+        public long getSize() throws IOException {
+            try {
+                return task.awaitHeaders(HEADER_WAIT_MS) ? task.contentLength : -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("等待音频响应头被中断", e);
+            }
+        }
+
+        @Override
+        public synchronized int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+            long total = task.contentLength;
+            if (total > 0 && position >= total) {
+                return -1;
+            }
+            if (size == 0) {
+                return 0;
+            }
+            while (true) {
+                long available = task.awaitData(position) - position;
+                if (available <= 0) {
+                    return -1;
+                }
+                if (raf == null) {
+                    raf = openFile();
+                }
+                raf.seek(position);
+                int n = raf.read(buffer, offset, (int) Math.min(size, available));
+                if (n > 0) {
+                    return n;
+                }
+                // 文件刚被截断重新下载，等数据重新写到当前位置
+            }
+        }
+
+        /**
+         * 下载完成后临时文件已提交到磁盘缓存，改为读取缓存中的文件
+         */
+        private RandomAccessFile openFile() throws IOException {
+            try {
+                return new RandomAccessFile(task.file, "r");
+            } catch (IOException e) {
+                File cached = diskCache.get(task.key);
+                if (cached == null) {
+                    throw e;
+                }
+                return new RandomAccessFile(cached, "r");
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (raf != null) {
+                raf.close();
+                raf = null;
+            }
+        }
+    }
+
+    /**
+     * 只读取文件中指定长度的数据
+     */
+    private static final class BoundedFileInputStream extends InputStream {
+        private final RandomAccessFile raf;
+        private long remaining;
+
+        BoundedFileInputStream(RandomAccessFile raf, long length) {
+            this.raf = raf;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int value = raf.read();
+            if (value != -1) {
+                remaining--;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = raf.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.ymmusic.app;
+
+/**
+ * 媒体浏览树的节点ID和分页规则
+ * 根节点下是收藏、最近播放、排行榜和收藏的歌单四个目录，歌单节点为"playlist:<歌单ID>"，
+ * 歌曲节点为"<所在目录ID>|<歌曲ID>"，播放时按所在目录决定接下来播放的歌曲
+ */
+public final class BrowseTree {
+    public static final String ROOT = "root";
+    public static final String FAVORITES = "favorites";
+    public static final String RECENT = "recent";
+    public static final String TOPLISTS = "toplists";
+    public static final String PLAYLISTS = "playlists";
+    static final String PLAYLIST_PREFIX = "playlist:";
+    private static final char TRACK_SEPARATOR = '|';
+
+    // 客户端没有请求分页时最多返回的条数，避免整个歌单放进一次Binder传输
+    static final int DEFAULT_PAGE_SIZE = 100;
+    // 单页最多返回的条数，客户端请求更大的页时只返回前这么多条
+    static final int MAX_PAGE_SIZE = 200;
+
+    private BrowseTree() {
+    }
+
+    public static String playlistId(String playlistId) {
+        return PLAYLIST_PREFIX + playlistId;
+    }
+
+    /**
+     * 歌单节点对应的歌单ID，不是歌单节点时返回null
+     */
+    public static String playlistOf(String parentId) {
+        if (parentId == null || !parentId.startsWith(PLAYLIST_PREFIX)
+                || parentId.length() == PLAYLIST_PREFIX.length()
+                || parentId.indexOf(TRACK_SEPARATOR) >= 0) {
+            return null;
+        }
+        return parentId.substring(PLAYLIST_PREFIX.length());
+    }
+
+    public static String trackId(String parentId, String songId) {
+        return parentId + TRACK_SEPARATOR + songId;
+    }
+
+    /**
+     * 歌曲节点所在的目录，不是歌曲节点时返回null
+     */
+    public static String parentOf(String mediaId) {
+        int separator = mediaId != null ? mediaId.lastIndexOf(TRACK_SEPARATOR) : -1;
+        return separator > 0 && separator < mediaId.length() - 1 ? mediaId.substring(0, separator) : null;
+    }
+
+    /**
+     * 歌曲节点的歌曲ID，不是歌曲节点时返回null
+     */
+    public static String songOf(String mediaId) {
+        int separator = mediaId != null ? mediaId.lastIndexOf(TRACK_SEPARATOR) : -1;
+        return separator > 0 && separator < mediaId.length() - 1 ? mediaId.substring(separator + 1) : null;
+    }
+
+    /**
+     * 按EXTRA_PAGE/EXTRA_PAGE_SIZE计算读取范围
+     * @param page 页码（从0开始），没有请求分页时为负数
+     * @param pageSize 每页条数，没有请求分页时为0或负数
+     * @return {offset, limit}
+     */
+    public static int[] pageWindow(int page, int pageSize) {
+        if (page < 0 || pageSize <= 0) {
+            return new int[]{0, DEFAULT_PAGE_SIZE};
+        }
+        // 偏移量按客户端的页大小计算，保证各页与客户端的预期对齐
+        long offset = (long) page * pageSize;
+        return new int[]{(int) Math.min(offset, Integer.MAX_VALUE), Math.min(pageSize, MAX_PAGE_SIZE)};
+    }
+}
@@ -0,0 +1,240 @@
+package com.ymmusic.app;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 专辑封面加载器
+ * 在后台线程下载并按通知栏/锁屏尺寸降采样解码，
+ * 解码结果放入按字节限制的内存LRU，原始图片放入按URL索引的磁盘LRU
+ */
+public class CoverArtLoader {
+    private static final String TAG = "CoverArtLoader";
+
+    // 锁屏封面的最大边长，通知栏大图标使用同一张位图
+    public static final int COVER_SIZE = 512;
+    private static final long DISK_CACHE_BYTES = 30L * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 15000;
+
+    // 等待同一封面进行中的下载的最长时间
+    private static final long DOWNLOAD_WAIT_MS = 30000;
+    private static CoverArtLoader instance;
+
+    /**
+     * 封面加载回调，在主线程调用
+     */
+    public interface Callback {
+        void onCoverLoaded(String url, Bitmap bitmap);
+    }
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<String, Bitmap> memoryCache;
+    private final DiskLruCache diskCache;
+    private final ExecutorService executor;
+    private volatile Bitmap defaultArt;
+
+    public static synchronized CoverArtLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new CoverArtLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private CoverArtLoader(Context context) {
+        this.context = context;
+        // 内存缓存最多占用可用堆的1/16，且不超过16MB
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 16, 16L * 1024 * 1024);
+        memoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+        diskCache = new DiskLruCache(new File(context.getCacheDir(), "cover_art"), DISK_CACHE_BYTES);
+        executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "CoverArtLoader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 预先在后台解码默认封面，避免在主线程解码
+        executor.execute(this::getDefaultArt);
+        // 解码后的封面随时可以从磁盘缓存重建，内存紧张时最先释放
+        MemoryTrimRegistry.getInstance(context).register("coverArt", MemoryTrimRegistry.PRIORITY_LOW, this::trimMemory);
+    }
+
+    /**
+     * 释放内存缓存：界面隐藏时减半，进入后台或内存紧张时全部释放
+     * @return 释放的字节数
+     */
+    long trimMemory(int level) {
+        int before = memoryCache.size();
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            memoryCache.evictAll();
+        } else {
+            memoryCache.trimToSize(memoryCache.maxSize() / 2);
+        }
+        return before - memoryCache.size();
+    }
+
+    /**
+     * 获取默认封面（应用图标），只解码一次
+     */
+    public Bitmap getDefaultArt() {
+        Bitmap art = defaultArt;
+        if (art == null) {
+            synchronized (this) {
+                if (defaultArt == null) {
+                    defaultArt = BitmapFactory.decodeResource(context.getResources(),
+                            context.getResources().getIdentifier("ic_launcher", "mipmap", context.getPackageName()));
+                }
+                art = defaultArt;
+            }
+        }
+        return art;
+    }
+
+    /**
+     * 默认封面是否已经解码完成
+     */
+    public boolean isDefaultArtReady() {
+        return defaultArt != null;
+    }
+
+    /**
+     * 从内存缓存中获取封面，不触发加载
+     */
+    public Bitmap getCached(String url) {
+        return url == null ? null : memoryCache.get(url);
+    }
+
+    /**
+     * 异步加载封面，结果通过回调在主线程返回，加载失败时返回null
+     */
+    public void load(String url, Callback callback) {
+        if (url == null || url.isEmpty()) {
+            mainHandler.post(() -> callback.onCoverLoaded(url, null));
+            return;
+        }
+        Bitmap cached = memoryCache.get(url);
+        if (cached != null) {
+            mainHandler.post(() -> callback.onCoverLoaded(url, cached));
+            return;
+        }
+        executor.execute(() -> {
+            Bitmap bitmap = loadBlocking(url);
+            mainHandler.post(() -> callback.onCoverLoaded(url, bitmap));
+        });
+    }
+
+    /**
+     * 同步加载封面，只能在后台线程调用
+     */
+    public Bitmap loadBlocking(String url) {
+        Bitmap bitmap = memoryCache.get(url);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        try {
+            File file = getOrDownload(url);
+            if (file == null) {
+                return null;
+            }
+            bitmap = decodeSampled(file, COVER_SIZE);
+            if (bitmap != null) {
+                memoryCache.put(url, bitmap);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "加载封面出错: " + url, e);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 获取磁盘缓存中的原始图片，没有时下载
+     */
+    public File getOrDownload(String url) throws IOException {
+        File file = diskCache.get(url);
+        if (file != null) {
+            return file;
+        }
+        // 通知栏、媒体会话和桌面小部件可能同时请求同一张封面，只下载一次
+        return NetworkScheduler.getInstance().coalesce("cover:" + url, () -> download(url), DOWNLOAD_WAIT_MS);
+    }
+
+    private File download(String url) throws IOException {
+        try (NetworkScheduler.Call call = NetworkScheduler.getInstance()
+                .open(toSizedUrl(url, COVER_SIZE), NetworkScheduler.PRIORITY_COVER)) {
+            HttpURLConnection connection = call.connection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            int code = call.code();
+            if (code != HttpURLConnection.HTTP_OK) {
+                Log.w(TAG, "下载封面失败: " + code + " " + url);
+                return null;
+            }
+            try (InputStream in = call.body()) {
+                return diskCache.put(url, in);
+            } catch (IOException e) {
+                call.abort();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 网易云图片支持通过param参数由服务端缩放，直接请求目标尺寸以减少流量
+     */
+    static String toSizedUrl(String url, int size) {
+        if (url.contains("music.126.net") && !url.contains("param=")) {
+            return url + (url.contains("?") ? "&" : "?") + "param=" + size + "y" + size;
+        }
+        return url;
+    }
+
+    /**
+     * 按目标尺寸降采样解码图片
+     */
+    public static Bitmap decodeSampled(File file, int targetSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, targetSize);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
+    /**
+     * 计算不小于目标尺寸的最大2的幂采样率
+     */
+    public static int calculateInSampleSize(int width, int height, int targetSize) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetSize && height / (sampleSize * 2) >= targetSize) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
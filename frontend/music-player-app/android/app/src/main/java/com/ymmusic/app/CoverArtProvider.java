@@ -0,0 +1,127 @@
+package com.ymmusic.app;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.net.URI;
+
+/**
+ * 媒体浏览树中的封面
+ * 车机、手表等浏览客户端通过content://<包名>.coverart/cover?url=...读取封面，
+ * 数据来自封面磁盘缓存（CoverArtLoader），没有缓存时下载。只提供音乐平台图片域名下的封面
+ */
+public class CoverArtProvider extends ContentProvider {
+    private static final String TAG = "CoverArtProvider";
+    private static final String PATH = "/cover";
+    // 允许下载的图片域名（及其子域名）
+    private static final String[] ALLOWED_HOSTS = {"music.126.net", "kuwo.cn"};
+
+    /**
+     * 封面地址对应的content URI，不是可提供的封面时返回null
+     */
+    @Nullable
+    public static Uri coverUri(Context context, String coverUrl) {
+        if (!isAllowedCover(coverUrl)) {
+            return null;
+        }
+        return new Uri.Builder()
+                .scheme("content")
+                .authority(context.getPackageName() + ".coverart")
+                .path(PATH)
+                .appendQueryParameter("url", coverUrl)
+                .build();
+    }
+
+    /**
+     * 是否是允许提供的封面地址
+     */
+    static boolean isAllowedCover(String url) {
+        if (url == null || !(url.startsWith("https://") || url.startsWith("http://"))) {
+            return false;
+        }
+        String host;
+        try {
+            host = new URI(url).getHost();
+        } catch (Exception e) {
+            return false;
+        }
+        if (host == null) {
+            return false;
+        }
+        for (String allowed : ALLOWED_HOSTS) {
+            if (host.equals(allowed) || host.endsWith("." + allowed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode) throws FileNotFoundException {
+        String url = uri.getQueryParameter("url");
+        if (!PATH.equals(uri.getPath()) || !"r".equals(mode) || !isAllowedCover(url)) {
+            throw new FileNotFoundException("不支持的封面: " + uri);
+        }
+        final long start = MetricsRegistry.start();
+        try {
+            File file = CoverArtLoader.getInstance(getContext()).getOrDownload(url);
+            if (file == null) {
+                throw new FileNotFoundException("封面下载失败: " + url);
+            }
+            return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (Exception e) {
+            Log.w(TAG, "读取封面出错: " + url + " " + e.getMessage());
+            throw new FileNotFoundException(e.getMessage());
+        } finally {
+            MetricsRegistry.getInstance().recordSince("coverArt.provider", start);
+        }
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        return "image/*";
+    }
+
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        throw new UnsupportedOperationException("只读");
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException("只读");
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException("只读");
+    }
+}
@@ -0,0 +1,199 @@
+package com.ymmusic.app;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按总字节数限制的磁盘LRU缓存
+ * 每个条目对应目录下一个以key的MD5命名的文件，超出容量时按最近访问顺序淘汰
+ */
+public class DiskLruCache {
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long maxBytes;
+    // 文件名 -> 文件大小，按访问顺序排列
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes = 0;
+
+    public DiskLruCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        loadEntries();
+    }
+
+    /**
+     * 扫描缓存目录，按最后修改时间恢复访问顺序
+     */
+    private synchronized void loadEntries() {
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                // 上次写入中断留下的临时文件
+                file.delete();
+                continue;
+            }
+            entries.put(file.getName(), file.length());
+            totalBytes += file.length();
+        }
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * 获取缓存文件，不存在时返回null
+     */
+    public synchronized File get(String key) {
+        String name = hashKey(key);
+        if (entries.get(name) == null) {
+            return null;
+        }
+        File file = new File(directory, name);
+        if (!file.exists()) {
+            removeEntry(name);
+            return null;
+        }
+        // 更新修改时间，以便重启后恢复访问顺序
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(hashKey(key));
+    }
+
+    /**
+     * 写入一个条目，先写临时文件再重命名，避免读到不完整的数据
+     */
+    public File put(String key, byte[] data) throws IOException {
+        File temp = newTempFile();
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(data);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        return commit(key, temp);
+    }
+
+    /**
+     * 从输入流写入一个条目
+     */
+    public File put(String key, InputStream in) throws IOException {
+        File temp = newTempFile();
+        try (OutputStream out = new FileOutputStream(temp)) {
+            byte[] buffer = new byte[16 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            // 临时文件不计入缓存大小，写入失败时必须删除
+            temp.delete();
+            throw e;
+        }
+        return commit(key, temp);
+    }
+
+    /**
+     * 创建一个临时文件，写完后通过commit提交为缓存条目
+     */
+    public File newTempFile() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("无法创建缓存目录: " + directory);
+        }
+        return File.createTempFile("entry", TEMP_SUFFIX, directory);
+    }
+
+    /**
+     * 将临时文件提交为缓存条目
+     */
+    public synchronized File commit(String key, File temp) throws IOException {
+        String name = hashKey(key);
+        File target = new File(directory, name);
+        removeEntry(name);
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("无法提交缓存文件: " + target);
+        }
+        entries.put(name, target.length());
+        totalBytes += target.length();
+        trimToSize(maxBytes);
+        return target;
+    }
+
+    public synchronized void remove(String key) {
+        removeEntry(hashKey(key));
+    }
+
+    /**
+     * 淘汰最久未访问的条目，直到总大小不超过给定字节数
+     * @return 释放的字节数
+     */
+    public synchronized long trimToSize(long targetBytes) {
+        long freed = 0;
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > targetBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            new File(directory, eldest.getKey()).delete();
+            totalBytes -= eldest.getValue();
+            freed += eldest.getValue();
+        }
+        return freed;
+    }
+
+    public synchronized long size() {
+        return totalBytes;
+    }
+
+    public long maxSize() {
+        return maxBytes;
+    }
+
+    public synchronized int count() {
+        return entries.size();
+    }
+
+    private void removeEntry(String name) {
+        Long size = entries.remove(name);
+        if (size != null) {
+            totalBytes -= size;
+            new File(directory, name).delete();
+        }
+    }
+
+    /**
+     * 计算key的MD5，作为文件名
+     */
+    public static String hashKey(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] bytes = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return String.valueOf(key.hashCode());
+        }
+    }
+}
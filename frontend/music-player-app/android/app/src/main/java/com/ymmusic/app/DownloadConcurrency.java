@@ -0,0 +1,89 @@
+package com.ymmusic.app;
+
+/**
+ * 按实测吞吐量调整离线下载的并发数
+ * 每个统计窗口结束时与上一个窗口比较：吞吐量明显提高就沿当前方向继续调整，
+ * 明显下降就反向调整，变化不大时保持不变；请求出错时并发数减半
+ */
+public class DownloadConcurrency {
+    // 统计窗口长度，太短时单个分块的完成时间会让吞吐量波动很大
+    static final long WINDOW_MS = 2000;
+    // 吞吐量变化超过这个比例才调整
+    private static final double SIGNIFICANT_CHANGE = 0.1;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private int limit;
+    private int direction = 1;
+    private long windowStart = -1;
+    private long windowBytes = 0;
+    // 上一个窗口的吞吐量（字节/秒），-1表示还没有测量
+    private double lastThroughput = -1;
+
+    public DownloadConcurrency(int minLimit, int maxLimit, int initialLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("无效的并发范围");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = clamp(initialLimit);
+    }
+
+    /**
+     * 记录下载的字节数
+     * @param nowMs 单调递增的时间（毫秒）
+     */
+    public synchronized void record(long bytes, long nowMs) {
+        if (windowStart < 0) {
+            windowStart = nowMs;
+        }
+        windowBytes += bytes;
+        long elapsed = nowMs - windowStart;
+        if (elapsed < WINDOW_MS) {
+            return;
+        }
+        adjust(windowBytes * 1000.0 / elapsed);
+        windowStart = nowMs;
+        windowBytes = 0;
+    }
+
+    private void adjust(double throughput) {
+        if (lastThroughput < 0) {
+            // 第一个窗口：先尝试增加并发
+            direction = 1;
+            limit = clamp(limit + direction);
+        } else if (throughput > lastThroughput * (1 + SIGNIFICANT_CHANGE)) {
+            limit = clamp(limit + direction);
+        } else if (throughput < lastThroughput * (1 - SIGNIFICANT_CHANGE)) {
+            direction = -direction;
+            limit = clamp(limit + direction);
+        }
+        lastThroughput = throughput;
+    }
+
+    /**
+     * 请求出错（超时、连接被重置等）时并发数减半，并重新开始测量
+     */
+    public synchronized void onError() {
+        limit = clamp(limit / 2);
+        direction = 1;
+        windowStart = -1;
+        windowBytes = 0;
+        lastThroughput = -1;
+    }
+
+    private int clamp(int value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * 最近一个窗口的吞吐量（字节/秒），还没有测量时返回0
+     */
+    public synchronized double getThroughput() {
+        return Math.max(0, lastThroughput);
+    }
+}
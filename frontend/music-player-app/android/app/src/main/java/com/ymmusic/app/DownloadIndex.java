@@ -0,0 +1,206 @@
+package com.ymmusic.app;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 已下载歌曲的本地索引
+ * 按歌曲ID记录文件名、大小和MD5，按最近播放顺序排列，超出存储配额时淘汰最久未播放的歌曲。
+ * 同时按音频地址路径建立索引，旧的CDN地址也能命中本地文件
+ */
+public class DownloadIndex {
+    private static final int FILE_VERSION = 1;
+
+    /**
+     * 一首已下载的歌曲
+     */
+    public static final class Entry {
+        public final String songId;
+        public final String fileName;
+        public final long size;
+        public final String md5;
+        // 下载时音频地址的路径，不含会过期的签名参数
+        public final String urlKey;
+        public final String title;
+        public final String artist;
+        public final String cover;
+        public final long downloadedAt;
+
+        public Entry(String songId, String fileName, long size, String md5, String urlKey,
+                     String title, String artist, String cover, long downloadedAt) {
+            this.songId = songId;
+            this.fileName = fileName;
+            this.size = size;
+            this.md5 = md5 != null ? md5 : "";
+            this.urlKey = urlKey != null ? urlKey : "";
+            this.title = title != null ? title : "";
+            this.artist = artist != null ? artist : "";
+            this.cover = cover != null ? cover : "";
+            this.downloadedAt = downloadedAt;
+        }
+    }
+
+    // 按插入顺序排列，访问时移到末尾，第一个就是最久未播放的
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private long quotaBytes;
+    private long totalBytes = 0;
+
+    public DownloadIndex(long quotaBytes) {
+        this.quotaBytes = quotaBytes;
+    }
+
+    /**
+     * 获取条目但不改变淘汰顺序
+     */
+    public synchronized Entry peek(String songId) {
+        return entries.get(songId);
+    }
+
+    /**
+     * 获取条目并标记为最近播放
+     */
+    public synchronized Entry touch(String songId) {
+        Entry entry = entries.remove(songId);
+        if (entry != null) {
+            entries.put(songId, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * 按音频地址路径查找
+     */
+    public synchronized Entry findByUrlKey(String urlKey) {
+        if (urlKey == null || urlKey.isEmpty()) {
+            return null;
+        }
+        for (Entry entry : entries.values()) {
+            if (urlKey.equals(entry.urlKey)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 添加或替换条目，新条目视为最近播放
+     * @return 被替换的旧条目，没有时返回null
+     */
+    public synchronized Entry put(Entry entry) {
+        Entry previous = remove(entry.songId);
+        entries.put(entry.songId, entry);
+        totalBytes += entry.size;
+        return previous;
+    }
+
+    public synchronized Entry remove(String songId) {
+        Entry entry = entries.remove(songId);
+        if (entry != null) {
+            totalBytes -= entry.size;
+        }
+        return entry;
+    }
+
+    /**
+     * 淘汰最久未播放的条目直到不超过配额
+     * @param keepSongId 不淘汰的歌曲（刚下载完成的），可以为null
+     * @return 被淘汰的条目，由调用方删除文件
+     */
+    public synchronized List<Entry> trimToQuota(String keepSongId) {
+        List<Entry> evicted = new ArrayList<>();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (totalBytes > quotaBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.songId.equals(keepSongId)) {
+                continue;
+            }
+            iterator.remove();
+            totalBytes -= entry.size;
+            evicted.add(entry);
+        }
+        return evicted;
+    }
+
+    public synchronized void setQuotaBytes(long bytes) {
+        quotaBytes = Math.max(0, bytes);
+    }
+
+    public synchronized long getQuotaBytes() {
+        return quotaBytes;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 所有条目，最近播放的在前
+     */
+    public synchronized List<Entry> getEntries() {
+        List<Entry> list = new ArrayList<>(entries.values());
+        Collections.reverse(list);
+        return list;
+    }
+
+    /**
+     * 写入二进制快照，条目按淘汰顺序保存
+     */
+    public synchronized void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FILE_VERSION);
+        out.writeLong(quotaBytes);
+        out.writeInt(entries.size());
+        for (Entry entry : entries.values()) {
+            out.writeUTF(entry.songId);
+            out.writeUTF(entry.fileName);
+            out.writeLong(entry.size);
+            out.writeUTF(entry.md5);
+            out.writeUTF(entry.urlKey);
+            out.writeUTF(entry.title);
+            out.writeUTF(entry.artist);
+            out.writeUTF(entry.cover);
+            out.writeLong(entry.downloadedAt);
+        }
+    }
+
+    /**
+     * 从二进制快照恢复，格式不正确时抛出IOException且不修改当前索引
+     */
+    public synchronized void readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FILE_VERSION) {
+            throw new IOException("不支持的下载索引版本");
+        }
+        long quota = in.readLong();
+        int count = in.readInt();
+        if (quota < 0 || count < 0) {
+            throw new IOException("下载索引已损坏");
+        }
+        LinkedHashMap<String, Entry> restored = new LinkedHashMap<>();
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            Entry entry = new Entry(in.readUTF(), in.readUTF(), in.readLong(), in.readUTF(), in.readUTF(),
+                    in.readUTF(), in.readUTF(), in.readUTF(), in.readLong());
+            if (entry.size < 0) {
+                throw new IOException("下载索引已损坏");
+            }
+            Entry previous = restored.put(entry.songId, entry);
+            if (previous != null) {
+                total -= previous.size;
+            }
+            total += entry.size;
+        }
+        entries.clear();
+        entries.putAll(restored);
+        totalBytes = total;
+        quotaBytes = quota;
+    }
+}
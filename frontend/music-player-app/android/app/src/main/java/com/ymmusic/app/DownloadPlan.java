@@ -0,0 +1,153 @@
+package com.ymmusic.app;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * 离线下载的分块计划
+ * 文件按固定大小切成若干块，分别用HTTP Range并行下载；已完成的块记录在位图中，
+ * 与服务器返回的长度和校验标识（ETag/Last-Modified）一起保存，中断后可以从未完成的块继续
+ */
+public final class DownloadPlan {
+    private static final int FILE_VERSION = 1;
+
+    private final long totalBytes;
+    private final int chunkBytes;
+    // 服务器的ETag或Last-Modified，续传时用来确认文件没有变化，可以为空
+    private final String validator;
+    private final int chunkCount;
+    private final BitSet done;
+
+    public DownloadPlan(long totalBytes, int chunkBytes, String validator) {
+        if (totalBytes <= 0 || chunkBytes <= 0) {
+            throw new IllegalArgumentException("无效的下载长度或分块大小");
+        }
+        this.totalBytes = totalBytes;
+        this.chunkBytes = chunkBytes;
+        this.validator = validator != null ? validator : "";
+        this.chunkCount = (int) ((totalBytes + chunkBytes - 1) / chunkBytes);
+        this.done = new BitSet(chunkCount);
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public String getValidator() {
+        return validator;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * 块的起始字节
+     */
+    public long chunkStart(int chunk) {
+        return (long) chunk * chunkBytes;
+    }
+
+    /**
+     * 块的结束字节（包含）
+     */
+    public long chunkEnd(int chunk) {
+        return Math.min(totalBytes, chunkStart(chunk) + chunkBytes) - 1;
+    }
+
+    public long chunkLength(int chunk) {
+        return chunkEnd(chunk) - chunkStart(chunk) + 1;
+    }
+
+    public synchronized boolean isDone(int chunk) {
+        return done.get(chunk);
+    }
+
+    public synchronized void markDone(int chunk) {
+        if (chunk >= 0 && chunk < chunkCount) {
+            done.set(chunk);
+        }
+    }
+
+    public synchronized boolean isComplete() {
+        return done.cardinality() == chunkCount;
+    }
+
+    /**
+     * 已完成块的总字节数
+     */
+    public synchronized long completedBytes() {
+        long bytes = 0;
+        for (int chunk = done.nextSetBit(0); chunk >= 0; chunk = done.nextSetBit(chunk + 1)) {
+            bytes += chunkLength(chunk);
+        }
+        return bytes;
+    }
+
+    /**
+     * 未完成块的序号，按文件顺序排列
+     */
+    public synchronized int[] pendingChunks() {
+        int[] pending = new int[chunkCount - done.cardinality()];
+        int count = 0;
+        for (int chunk = done.nextClearBit(0); chunk < chunkCount; chunk = done.nextClearBit(chunk + 1)) {
+            pending[count++] = chunk;
+        }
+        return pending;
+    }
+
+    /**
+     * 服务器上的文件是否与计划一致，不一致时已下载的块不能续用
+     */
+    public boolean matches(long serverTotal, String serverValidator) {
+        return totalBytes == serverTotal
+                && validator.equals(serverValidator != null ? serverValidator : "");
+    }
+
+    /**
+     * 写入二进制快照
+     */
+    public synchronized void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FILE_VERSION);
+        out.writeLong(totalBytes);
+        out.writeInt(chunkBytes);
+        out.writeUTF(validator);
+        long[] words = done.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * 从二进制快照恢复，格式不正确时抛出IOException
+     */
+    public static DownloadPlan readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FILE_VERSION) {
+            throw new IOException("不支持的下载计划版本");
+        }
+        long totalBytes = in.readLong();
+        int chunkBytes = in.readInt();
+        String validator = in.readUTF();
+        if (totalBytes <= 0 || chunkBytes <= 0) {
+            throw new IOException("下载计划已损坏");
+        }
+        DownloadPlan plan = new DownloadPlan(totalBytes, chunkBytes, validator);
+        int wordCount = in.readInt();
+        if (wordCount < 0 || wordCount > (plan.chunkCount + 63) / 64) {
+            throw new IOException("下载计划已损坏");
+        }
+        long[] words = new long[wordCount];
+        for (int i = 0; i < wordCount; i++) {
+            words[i] = in.readLong();
+        }
+        BitSet restored = BitSet.valueOf(words);
+        if (restored.length() > plan.chunkCount) {
+            throw new IOException("下载计划已损坏");
+        }
+        plan.done.or(restored);
+        return plan;
+    }
+}
@@ -0,0 +1,420 @@
+package com.ymmusic.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 本地收藏存储
+ * 每种收藏类型一个追加写日志文件，内存中按收藏顺序保存ID索引，
+ * 增删查都是O(1)，磁盘写入在后台线程顺序执行；日志中失效记录过多时重写压缩
+ */
+public class FavoritesStore {
+    private static final String TAG = "FavoritesStore";
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_CLEAR = 3;
+
+    // 失效记录超过有效记录数量时压缩（至少积累这么多条才压缩）
+    static final int MIN_COMPACT_RECORDS = 64;
+    private static final Pattern TYPE_PATTERN = Pattern.compile("[A-Z]{1,32}");
+
+    /**
+     * 单条收藏：rid用于酷我歌曲的匹配，json是Web层保存的完整对象
+     */
+    private static final class Entry {
+        final String rid;
+        final String json;
+
+        Entry(String rid, String json) {
+            this.rid = rid;
+            this.json = json;
+        }
+    }
+
+    /**
+     * 一种收藏类型对应的日志和索引
+     */
+    private final class Collection {
+        final File file;
+        final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+        final Map<String, String> ridIndex = new HashMap<>();
+        int logRecords = 0;
+        OutputStream out;
+        FileOutputStream fileOut;
+        // 写入线程上最近一次写入失败，下一次修改时用内存中的完整列表重写日志
+        volatile boolean writeFailed = false;
+
+        Collection(File file) {
+            this.file = file;
+        }
+    }
+
+    /**
+     * 写入失败的通知，在写入线程调用
+     */
+    public interface ErrorListener {
+        void onWriteError(String message, Exception e);
+    }
+
+    private static FavoritesStore instance;
+
+    private final File directory;
+    private final Map<String, Collection> collections = new HashMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "FavoritesWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long compactionCount = 0;
+    private volatile ErrorListener errorListener;
+
+    public static synchronized FavoritesStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new FavoritesStore(new File(context.getApplicationContext().getFilesDir(), "favorites"));
+            instance.setErrorListener((message, e) -> Log.e(TAG, message, e));
+        }
+        return instance;
+    }
+
+    public FavoritesStore(File directory) {
+        this.directory = directory;
+        directory.mkdirs();
+    }
+
+    /**
+     * 添加或更新收藏，更新时保持原来的位置
+     * @return 是否是新添加的
+     */
+    public synchronized boolean put(String type, String id, String rid, String json) {
+        Collection collection = collection(type);
+        String safeRid = rid != null ? rid : "";
+        Entry previous = collection.entries.put(id, new Entry(safeRid, json));
+        if (previous != null && !previous.rid.isEmpty()) {
+            collection.ridIndex.remove(previous.rid);
+        }
+        if (!safeRid.isEmpty()) {
+            collection.ridIndex.put(safeRid, id);
+        }
+        append(collection, encode(OP_PUT, id, safeRid, json));
+        return previous == null;
+    }
+
+    public synchronized boolean remove(String type, String id) {
+        Collection collection = collection(type);
+        Entry removed = collection.entries.remove(id);
+        if (removed == null) {
+            return false;
+        }
+        if (!removed.rid.isEmpty()) {
+            collection.ridIndex.remove(removed.rid);
+        }
+        append(collection, encode(OP_REMOVE, id, "", null));
+        return true;
+    }
+
+    public synchronized void clear(String type) {
+        Collection collection = collection(type);
+        collection.entries.clear();
+        collection.ridIndex.clear();
+        append(collection, encode(OP_CLEAR, "", "", null));
+    }
+
+    public synchronized boolean contains(String type, String id) {
+        return collection(type).entries.containsKey(id);
+    }
+
+    /**
+     * 与favoritesService.js的isFavorited相同的匹配规则：
+     * 精确匹配；歌曲还会匹配kw_/kw-前缀的不同写法以及酷我rid
+     */
+    public synchronized boolean isFavorited(String type, String id) {
+        Collection collection = collection(type);
+        if (collection.entries.containsKey(id)) {
+            return true;
+        }
+        if (!"SONGS".equals(type)) {
+            return false;
+        }
+        if (id.startsWith("kw_") || id.startsWith("kw-")) {
+            String kwId = id.substring(3);
+            return collection.entries.containsKey(kwId) || collection.ridIndex.containsKey(kwId);
+        }
+        return collection.entries.containsKey("kw_" + id) || collection.entries.containsKey("kw-" + id);
+    }
+
+    public synchronized int count(String type) {
+        return collection(type).entries.size();
+    }
+
+    /**
+     * 按收藏顺序读取一页
+     * @return JSON数组字符串
+     */
+    public synchronized String page(String type, int offset, int limit) {
+        Collection collection = collection(type);
+        StringBuilder builder = new StringBuilder("[");
+        int index = 0;
+        int written = 0;
+        for (Entry entry : collection.entries.values()) {
+            if (written >= limit) {
+                break;
+            }
+            if (index++ < offset) {
+                continue;
+            }
+            if (written > 0) {
+                builder.append(',');
+            }
+            builder.append(entry.json);
+            written++;
+        }
+        return builder.append(']').toString();
+    }
+
+    public void setErrorListener(ErrorListener listener) {
+        errorListener = listener;
+    }
+
+    private void reportError(String message, Exception e) {
+        ErrorListener listener = errorListener;
+        if (listener != null) {
+            listener.onWriteError(message, e);
+        }
+    }
+
+    public synchronized long getCompactionCount() {
+        return compactionCount;
+    }
+
+    /**
+     * 等待已提交的写入完成
+     */
+    public void awaitWrites(long timeoutMs) throws Exception {
+        writer.submit(() -> { }).get(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 等待已提交的写入完成并同步到磁盘，用于删除其他副本之前（例如从localStorage迁移）
+     * @return 全部写入成功并已同步；超时或有写入失败时返回false
+     */
+    public boolean syncWrites(long timeoutMs) {
+        final List<Collection> targets;
+        synchronized (this) {
+            targets = new ArrayList<>(collections.values());
+        }
+        try {
+            return writer.submit(() -> {
+                boolean synced = true;
+                for (Collection collection : targets) {
+                    if (collection.writeFailed) {
+                        synced = false;
+                        continue;
+                    }
+                    if (collection.out == null) {
+                        continue;
+                    }
+                    try {
+                        collection.out.flush();
+                        collection.fileOut.getFD().sync();
+                    } catch (IOException e) {
+                        reportError("同步收藏日志出错: " + collection.file.getName(), e);
+                        closeQuietly(collection);
+                        collection.writeFailed = true;
+                        synced = false;
+                    }
+                }
+                return synced;
+            }).get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            reportError("等待收藏写入出错", e);
+            return false;
+        }
+    }
+
+    private Collection collection(String type) {
+        if (type == null || !TYPE_PATTERN.matcher(type).matches()) {
+            throw new IllegalArgumentException("无效的收藏类型: " + type);
+        }
+        Collection collection = collections.get(type);
+        if (collection == null) {
+            collection = new Collection(new File(directory, "favorites_" + type.toLowerCase() + ".log"));
+            boolean tornTail = load(collection);
+            collections.put(type, collection);
+            if (tornTail) {
+                // 上次写入中断留下了不完整的记录，重写一份干净的日志
+                compact(collection);
+            }
+        }
+        return collection;
+    }
+
+    /**
+     * 重放日志
+     * @return 日志末尾是否有不完整的记录
+     */
+    private boolean load(Collection collection) {
+        if (!collection.file.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(collection.file)))) {
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    return false;
+                }
+                String id = in.readUTF();
+                String rid = in.readUTF();
+                if (op == OP_PUT) {
+                    byte[] payload = new byte[in.readInt()];
+                    in.readFully(payload);
+                    Entry previous = collection.entries.put(id, new Entry(rid, new String(payload, StandardCharsets.UTF_8)));
+                    if (previous != null && !previous.rid.isEmpty()) {
+                        collection.ridIndex.remove(previous.rid);
+                    }
+                    if (!rid.isEmpty()) {
+                        collection.ridIndex.put(rid, id);
+                    }
+                } else if (op == OP_REMOVE) {
+                    Entry removed = collection.entries.remove(id);
+                    if (removed != null && !removed.rid.isEmpty()) {
+                        collection.ridIndex.remove(removed.rid);
+                    }
+                } else if (op == OP_CLEAR) {
+                    collection.entries.clear();
+                    collection.ridIndex.clear();
+                } else {
+                    return true;
+                }
+                collection.logRecords++;
+            }
+        } catch (IOException | RuntimeException e) {
+            return true;
+        }
+    }
+
+    private static byte[] encode(byte op, String id, String rid, String json) {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(buffer);
+            writeRecord(data, op, id, rid, json);
+            data.flush();
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            // 写入内存不会出错
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void writeRecord(DataOutputStream data, byte op, String id, String rid, String json) throws IOException {
+        data.writeByte(op);
+        data.writeUTF(id);
+        data.writeUTF(rid);
+        if (op == OP_PUT) {
+            byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(payload.length);
+            data.write(payload);
+        }
+    }
+
+    private void append(Collection collection, byte[] record) {
+        collection.logRecords++;
+        if (collection.writeFailed || (collection.logRecords >= MIN_COMPACT_RECORDS
+                && collection.logRecords > collection.entries.size() * 2)) {
+            // 之前的写入失败时日志缺少记录，用包含这次修改的完整列表重写
+            compact(collection);
+            return;
+        }
+        writer.execute(() -> {
+            try {
+                if (collection.out == null) {
+                    collection.fileOut = new FileOutputStream(collection.file, true);
+                    collection.out = new BufferedOutputStream(collection.fileOut);
+                }
+                collection.out.write(record);
+                collection.out.flush();
+            } catch (IOException e) {
+                reportError("写入收藏日志出错: " + collection.file.getName(), e);
+                closeQuietly(collection);
+                collection.writeFailed = true;
+            }
+        });
+    }
+
+    /**
+     * 在调用线程生成快照，后台线程写入临时文件后替换日志
+     */
+    private void compact(Collection collection) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(buffer);
+        try {
+            Iterator<Map.Entry<String, Entry>> iterator = collection.entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Entry> item = iterator.next();
+                writeRecord(data, OP_PUT, item.getKey(), item.getValue().rid, item.getValue().json);
+            }
+            data.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        final byte[] snapshot = buffer.toByteArray();
+        collection.logRecords = collection.entries.size();
+        compactionCount++;
+        writer.execute(() -> {
+            closeQuietly(collection);
+            File temp = new File(collection.file.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(snapshot);
+                out.getFD().sync();
+            } catch (IOException e) {
+                reportError("压缩收藏日志出错: " + collection.file.getName(), e);
+                temp.delete();
+                collection.writeFailed = true;
+                return;
+            }
+            if (temp.renameTo(collection.file)) {
+                collection.writeFailed = false;
+            } else {
+                reportError("替换收藏日志失败: " + collection.file.getName(), null);
+                temp.delete();
+                collection.writeFailed = true;
+            }
+        });
+    }
+
+    private static void closeQuietly(Collection collection) {
+        if (collection.out != null) {
+            try {
+                collection.out.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响后续重新打开
+            }
+            collection.out = null;
+            collection.fileOut = null;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ymmusic.app;
+
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 域名解析失败缓存
+ * 只记录最近解析失败的域名（保留十几秒）：断网时同一域名的请求立即失败，
+ * 不再每个请求都等待一次解析超时。成功的解析不在这里缓存，由HttpURLConnection和系统解析器处理。
+ * 网络切换时清空
+ */
+public class HostFailureCache {
+    static final long FAILURE_TTL_MS = 15 * 1000L;
+    private static final int MAX_HOSTS = 64;
+
+    /**
+     * 单调时钟（毫秒）
+     */
+    public interface Clock {
+        long now();
+    }
+
+    private final Clock clock;
+    // 域名到失败记录的过期时间
+    private final Map<String, Long> failures = new HashMap<>();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong failFastCount = new AtomicLong();
+
+    public HostFailureCache(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * 请求之前检查域名
+     * @throws UnknownHostException 最近解析失败过
+     */
+    public void check(String host) throws UnknownHostException {
+        String key = host.toLowerCase();
+        long now = clock.now();
+        synchronized (failures) {
+            Long expiresAt = failures.get(key);
+            if (expiresAt == null) {
+                return;
+            }
+            if (now < expiresAt) {
+                failFastCount.incrementAndGet();
+                throw new UnknownHostException("最近解析失败: " + host);
+            }
+            failures.remove(key);
+        }
+    }
+
+    /**
+     * 记录一次解析失败
+     */
+    public void recordFailure(String host) {
+        String key = host.toLowerCase();
+        long expiresAt = clock.now() + FAILURE_TTL_MS;
+        failureCount.incrementAndGet();
+        synchronized (failures) {
+            if (failures.size() >= MAX_HOSTS && !failures.containsKey(key)) {
+                failures.clear();
+            }
+            failures.put(key, expiresAt);
+        }
+    }
+
+    /**
+     * 网络切换后旧的失败记录不再可信
+     */
+    public void clear() {
+        synchronized (failures) {
+            failures.clear();
+        }
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public long getFailFastCount() {
+        return failFastCount.get();
+    }
+}
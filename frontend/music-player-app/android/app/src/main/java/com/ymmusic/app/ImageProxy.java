@@ -0,0 +1,388 @@
+package com.ymmusic.app;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 封面缩略图代理
+ * Web层把列表中的封面地址换成https://localhost/_image?w=尺寸&url=原地址，
+ * 请求被拦截后在原生层按目标尺寸降采样解码、转码为WebP并存入磁盘缓存（按地址和尺寸区分），
+ * WebView只需解码小尺寸的WebP，不再为几十像素的格子解码上千像素的JPEG。
+ * 处理失败时直接转发原图，列表翻页时可以预先处理下一页的封面。
+ * 缓存目录与CoverArtLoader分开：这里存的是按尺寸转码后的WebP，封面加载器存的是通知栏用的原图，两者只共用DiskLruCache的实现
+ */
+public class ImageProxy implements RequestInterceptor {
+    private static final String TAG = "ImageProxy";
+
+    public static final String PROXY_URL_PREFIX = "https://localhost/_image";
+    private static final String PROXY_PATH = "/_image";
+
+    private static final long MAX_CACHE_BYTES = 48L * 1024 * 1024;
+    // 原图超过这个大小不处理，直接转发
+    private static final int MAX_SOURCE_BYTES = 8 * 1024 * 1024;
+    // 请求的尺寸向上取整到SIZE_STEP的倍数，减少同一张图的缓存版本
+    static final int MIN_SIZE = 64;
+    static final int MAX_SIZE = 1024;
+    static final int SIZE_STEP = 64;
+    private static final int WEBP_QUALITY = 80;
+    // 等待处理结果的最长时间，超时后转发原图
+    // 等待同一张原图进行中的下载的最长时间
+    private static final long DOWNLOAD_WAIT_MS = 30000;
+    private static final long PROCESS_WAIT_MS = 15000;
+    // 一次预取的最大数量
+    private static final int MAX_PREFETCH = 60;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 15000;
+
+    private static ImageProxy instance;
+
+    private final DiskLruCache diskCache;
+    private final ExecutorService executor;
+    // 正在处理的图片，同一张图的并发请求共用一次处理
+    private final ConcurrentHashMap<String, Future<File>> inFlight = new ConcurrentHashMap<>();
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+    // 统计
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong transcodeCount = new AtomicLong();
+    private final AtomicLong passthroughCount = new AtomicLong();
+    private final AtomicLong prefetchCount = new AtomicLong();
+    private final AtomicLong sourceBytes = new AtomicLong();
+    private final AtomicLong outputBytes = new AtomicLong();
+
+    public static synchronized ImageProxy getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageProxy(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ImageProxy(Context context) {
+        diskCache = new DiskLruCache(new File(context.getCacheDir(), "image_proxy"), MAX_CACHE_BYTES);
+        executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "ImageProxy");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 把请求的像素尺寸取整到缓存使用的尺寸
+     */
+    static int quantizeSize(int requested) {
+        int size = Math.max(MIN_SIZE, Math.min(MAX_SIZE, requested));
+        return (size + SIZE_STEP - 1) / SIZE_STEP * SIZE_STEP;
+    }
+
+    /**
+     * 缓存键：同一地址的不同尺寸分别缓存
+     */
+    static String cacheKey(String url, int size) {
+        return size + "|" + url;
+    }
+
+    static boolean isRemoteImage(String url) {
+        return url != null && (url.startsWith("https://") || url.startsWith("http://"));
+    }
+
+    @Override
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        Uri uri = request.getUrl();
+        if (!"GET".equalsIgnoreCase(request.getMethod()) || !"localhost".equals(uri.getHost())
+                || !PROXY_PATH.equals(uri.getPath())) {
+            return null;
+        }
+        String url = uri.getQueryParameter("url");
+        if (!isRemoteImage(url)) {
+            return notFound();
+        }
+        int size;
+        try {
+            size = quantizeSize(Integer.parseInt(uri.getQueryParameter("w")));
+        } catch (NumberFormatException e) {
+            size = quantizeSize(CoverArtLoader.COVER_SIZE);
+        }
+        try {
+            File cached = diskCache.get(cacheKey(url, size));
+            if (cached != null) {
+                hitCount.incrementAndGet();
+                return serveWebp(cached);
+            }
+            File file = submit(url, size).get(PROCESS_WAIT_MS, TimeUnit.MILLISECONDS);
+            if (file != null) {
+                return serveWebp(file);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "处理封面失败，转发原图: " + url + " " + e.getMessage());
+        }
+        return passthrough(url);
+    }
+
+    /**
+     * 预先处理一批封面（例如列表的下一页），已缓存的会被跳过
+     */
+    public void prefetch(List<String> urls, int requestedSize) {
+        int size = quantizeSize(requestedSize);
+        int count = 0;
+        for (String url : urls) {
+            if (count >= MAX_PREFETCH) {
+                break;
+            }
+            if (!isRemoteImage(url) || diskCache.contains(cacheKey(url, size))) {
+                continue;
+            }
+            submit(url, size);
+            prefetchCount.incrementAndGet();
+            count++;
+        }
+    }
+
+    /**
+     * 提交处理任务，同一张图同一尺寸正在处理时返回已有的任务
+     */
+    private Future<File> submit(String url, int size) {
+        final String key = cacheKey(url, size);
+        Future<File> existing = inFlight.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        FutureTask<File> task = new FutureTask<>(() -> {
+            try {
+                return process(key, url, size);
+            } finally {
+                inFlight.remove(key);
+            }
+        });
+        existing = inFlight.putIfAbsent(key, task);
+        if (existing != null) {
+            return existing;
+        }
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * 下载原图，降采样解码并转码为WebP写入缓存（处理线程）
+     * @return 缓存文件，失败时返回null
+     */
+    private File process(String key, String url, int size) {
+        File cached = diskCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        final long start = MetricsRegistry.start();
+        Bitmap bitmap = null;
+        File temp = null;
+        try {
+            final String sourceUrl = CoverArtLoader.toSizedUrl(url, size);
+            byte[] source = NetworkScheduler.getInstance().coalesce("image:" + sourceUrl,
+                    () -> download(sourceUrl), DOWNLOAD_WAIT_MS);
+            if (source == null) {
+                return null;
+            }
+            bitmap = decode(source, size);
+            if (bitmap == null) {
+                Log.w(TAG, "无法解码封面: " + url);
+                return null;
+            }
+            temp = diskCache.newTempFile();
+            try (OutputStream out = new FileOutputStream(temp)) {
+                if (!bitmap.compress(webpFormat(), WEBP_QUALITY, out)) {
+                    throw new IOException("WebP编码失败");
+                }
+            }
+            long encoded = temp.length();
+            File file = diskCache.commit(key, temp);
+            temp = null;
+            transcodeCount.incrementAndGet();
+            sourceBytes.addAndGet(source.length);
+            outputBytes.addAndGet(encoded);
+            metrics.recordSince("imageProxy.transcode", start);
+            return file;
+        } catch (Exception e) {
+            Log.w(TAG, "转码封面失败: " + url + " " + e.getMessage());
+            return null;
+        } finally {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * 按目标尺寸降采样解码，较短的一边缩放到目标尺寸
+     */
+    private static Bitmap decode(byte[] data, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inSampleSize = CoverArtLoader.calculateInSampleSize(options.outWidth, options.outHeight, size);
+        options.inJustDecodeBounds = false;
+        Bitmap decoded = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (decoded == null) {
+            return null;
+        }
+        int shortSide = Math.min(decoded.getWidth(), decoded.getHeight());
+        if (shortSide <= size) {
+            return decoded;
+        }
+        float scale = size / (float) shortSide;
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, Math.max(1, Math.round(decoded.getWidth() * scale)),
+                Math.max(1, Math.round(decoded.getHeight() * scale)), true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webpFormat() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+    }
+
+    /**
+     * 下载原图到内存，失败或超过大小上限时返回null
+     */
+    private static byte[] download(String url) throws IOException {
+        try (NetworkScheduler.Call call = NetworkScheduler.getInstance().open(url, NetworkScheduler.PRIORITY_COVER)) {
+            HttpURLConnection connection = call.connection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            if (call.code() != HttpURLConnection.HTTP_OK || connection.getContentLength() > MAX_SOURCE_BYTES) {
+                call.abort();
+                return null;
+            }
+            try (InputStream in = call.body()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[16 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    if (out.size() + read > MAX_SOURCE_BYTES) {
+                        call.abort();
+                        return null;
+                    }
+                    out.write(buffer, 0, read);
+                }
+                return out.toByteArray();
+            } catch (IOException e) {
+                call.abort();
+                throw e;
+            }
+        }
+    }
+
+    private static WebResourceResponse serveWebp(File file) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Length", String.valueOf(file.length()));
+        headers.put("Cache-Control", "max-age=604800");
+        headers.put("Access-Control-Allow-Origin", "*");
+        return new WebResourceResponse("image/webp", null, 200, "OK", headers, new FileInputStream(file));
+    }
+
+    /**
+     * 转发原图，原图也取不到时返回404让<img>触发onerror
+     */
+    private WebResourceResponse passthrough(String url) {
+        passthroughCount.incrementAndGet();
+        NetworkScheduler.Call call = null;
+        try {
+            call = NetworkScheduler.getInstance().open(url, NetworkScheduler.PRIORITY_COVER);
+            HttpURLConnection connection = call.connection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            if (call.code() != HttpURLConnection.HTTP_OK) {
+                call.close();
+                return notFound();
+            }
+            String mimeType = connection.getContentType();
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Access-Control-Allow-Origin", "*");
+            // WebView读完并关闭响应流时才归还连接
+            return new WebResourceResponse(mimeType != null ? mimeType : "image/jpeg", null, 200, "OK",
+                    headers, call.detachBody());
+        } catch (Exception e) {
+            if (call != null) {
+                call.abort();
+                call.close();
+            }
+            Log.w(TAG, "转发原图失败: " + url + " " + e.getMessage());
+            return notFound();
+        }
+    }
+
+    private static WebResourceResponse notFound() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Access-Control-Allow-Origin", "*");
+        return new WebResourceResponse("text/plain", "utf-8", 404, "Not Found", headers,
+                new ByteArrayInputStream(new byte[0]));
+    }
+
+    public long getCacheSize() {
+        return diskCache.size();
+    }
+
+    public int getCacheCount() {
+        return diskCache.count();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getTranscodeCount() {
+        return transcodeCount.get();
+    }
+
+    public long getPassthroughCount() {
+        return passthroughCount.get();
+    }
+
+    public long getPrefetchCount() {
+        return prefetchCount.get();
+    }
+
+    public long getSourceBytes() {
+        return sourceBytes.get();
+    }
+
+    public long getOutputBytes() {
+        return outputBytes.get();
+    }
+}
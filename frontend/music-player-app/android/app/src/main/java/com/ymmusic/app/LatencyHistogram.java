@@ -0,0 +1,90 @@
+package com.ymmusic.app;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定分桶的耗时直方图
+ * 记录只做几次原子加法，不加锁也不分配对象，可以在发布版本中常开；
+ * 分位数按桶的上界估算，精度取决于分桶
+ */
+public class LatencyHistogram {
+    // 桶上界（微秒），最后一个桶收集超出上界的记录
+    static final long[] BOUNDS_US = {
+            50, 100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 500000, 1000000
+    };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_US.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalUs = new AtomicLong();
+    private final AtomicLong maxUs = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     */
+    public void recordNanos(long nanos) {
+        long us = Math.max(0, nanos / 1000);
+        buckets.incrementAndGet(bucketOf(us));
+        count.incrementAndGet();
+        totalUs.addAndGet(us);
+        long max = maxUs.get();
+        while (us > max && !maxUs.compareAndSet(max, us)) {
+            max = maxUs.get();
+        }
+    }
+
+    static int bucketOf(long us) {
+        for (int i = 0; i < BOUNDS_US.length; i++) {
+            if (us <= BOUNDS_US[i]) {
+                return i;
+            }
+        }
+        return BOUNDS_US.length;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMeanUs() {
+        long n = count.get();
+        return n > 0 ? totalUs.get() / n : 0;
+    }
+
+    public long getMaxUs() {
+        return maxUs.get();
+    }
+
+    /**
+     * 估算分位数（微秒），返回该分位所在桶的上界，落在最后一个桶时返回最大值
+     * @param quantile 0到1之间
+     */
+    public long getPercentileUs(double quantile) {
+        long[] snapshot = new long[BOUNDS_US.length + 1];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_US.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(BOUNDS_US[i], maxUs.get());
+            }
+        }
+        return maxUs.get();
+    }
+
+    /**
+     * 单行摘要，用于日志
+     */
+    public String toCompactString() {
+        return "n=" + getCount() + " p50=" + getPercentileUs(0.5) + " p99=" + getPercentileUs(0.99)
+                + " max=" + getMaxUs() + "us";
+    }
+}
@@ -0,0 +1,273 @@
+package com.ymmusic.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 解析后的歌词时间轴
+ * 支持LRC（[mm:ss.xx]，可多个时间标签共用一行）、网易云逐字歌词YRC（[开始,时长](字开始,字时长,0)字）
+ * 以及YRC的JSON元数据行（{"t":0,"c":[{"tx":"作词: "}]}）。
+ * 行和逐字的时间都保存在排序好的基本类型数组中，按播放位置二分查找
+ */
+public final class LyricTimeline {
+    public static final LyricTimeline EMPTY = new LyricTimeline(new long[0], new String[0], new int[1], new long[0]);
+
+    private static final Pattern LRC_TAG = Pattern.compile("\\[(\\d{1,3}):(\\d{1,2})(?:[.:](\\d{1,3}))?\\]");
+    private static final Pattern YRC_LINE = Pattern.compile("^\\[(\\d+),(\\d+)\\]");
+    private static final Pattern YRC_WORD = Pattern.compile("\\((\\d+),(\\d+),\\d+\\)");
+    private static final Pattern INLINE_WORD_TAG = Pattern.compile("<\\d+,\\d+>");
+    private static final Pattern JSON_TIME = Pattern.compile("\"t\"\\s*:\\s*(\\d+)");
+    private static final Pattern JSON_TEXT = Pattern.compile("\"tx\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"");
+
+    // 行开始时间（毫秒）和文本，按时间升序
+    private final long[] lineTimes;
+    private final String[] lineTexts;
+    // 第i行的逐字时间位于wordTimes[wordStart[i], wordStart[i + 1])
+    private final int[] wordStart;
+    private final long[] wordTimes;
+
+    private LyricTimeline(long[] lineTimes, String[] lineTexts, int[] wordStart, long[] wordTimes) {
+        this.lineTimes = lineTimes;
+        this.lineTexts = lineTexts;
+        this.wordStart = wordStart;
+        this.wordTimes = wordTimes;
+    }
+
+    /**
+     * 解析中间结果：一行歌词及其逐字时间
+     */
+    private static final class Line {
+        final long time;
+        final String text;
+        final long[] words;
+
+        Line(long time, String text, long[] words) {
+            this.time = time;
+            this.text = text;
+            this.words = words;
+        }
+    }
+
+    /**
+     * 解析LRC/YRC文本，无法识别的行直接跳过
+     */
+    public static LyricTimeline parse(String source) {
+        if (source == null || source.isEmpty()) {
+            return EMPTY;
+        }
+        List<Line> lines = new ArrayList<>();
+        for (String raw : source.split("\n")) {
+            String line = raw.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("{")) {
+                parseJsonLine(line, lines);
+            } else if (line.startsWith("[")) {
+                Matcher yrc = YRC_LINE.matcher(line);
+                if (yrc.find()) {
+                    parseYrcLine(Long.parseLong(yrc.group(1)), line.substring(yrc.end()), lines);
+                } else {
+                    parseLrcLine(line, lines);
+                }
+            }
+        }
+
+        // 稳定排序，同一时间的行保持原顺序
+        Line[] sorted = lines.toArray(new Line[0]);
+        Arrays.sort(sorted, (a, b) -> Long.compare(a.time, b.time));
+
+        int wordCount = 0;
+        for (Line line : sorted) {
+            wordCount += line.words.length;
+        }
+        long[] lineTimes = new long[sorted.length];
+        String[] lineTexts = new String[sorted.length];
+        int[] wordStart = new int[sorted.length + 1];
+        long[] wordTimes = new long[wordCount];
+        int word = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            lineTimes[i] = sorted[i].time;
+            lineTexts[i] = sorted[i].text;
+            wordStart[i] = word;
+            System.arraycopy(sorted[i].words, 0, wordTimes, word, sorted[i].words.length);
+            word += sorted[i].words.length;
+        }
+        wordStart[sorted.length] = word;
+        return new LyricTimeline(lineTimes, lineTexts, wordStart, wordTimes);
+    }
+
+    private static void parseLrcLine(String line, List<Line> out) {
+        Matcher tag = LRC_TAG.matcher(line);
+        List<Long> times = new ArrayList<>(1);
+        int end = 0;
+        // 行首可以有多个连续的时间标签
+        while (tag.find() && tag.start() == end) {
+            long millis = 0;
+            String fraction = tag.group(3);
+            if (fraction != null) {
+                millis = Long.parseLong(fraction);
+                for (int i = fraction.length(); i < 3; i++) {
+                    millis *= 10;
+                }
+            }
+            times.add((Long.parseLong(tag.group(1)) * 60 + Long.parseLong(tag.group(2))) * 1000 + millis);
+            end = tag.end();
+        }
+        if (times.isEmpty()) {
+            // [ti:]、[ar:]等标签行
+            return;
+        }
+        String content = line.substring(end).trim();
+        String text;
+        if (content.startsWith("{") && content.contains("\"c\":[")) {
+            text = joinJsonText(content);
+        } else {
+            text = INLINE_WORD_TAG.matcher(content).replaceAll("").trim();
+        }
+        if (text.isEmpty()) {
+            return;
+        }
+        for (Long time : times) {
+            out.add(new Line(time, text, new long[0]));
+        }
+    }
+
+    private static void parseYrcLine(long lineTime, String content, List<Line> out) {
+        Matcher word = YRC_WORD.matcher(content);
+        StringBuilder text = new StringBuilder();
+        long[] words = new long[8];
+        int count = 0;
+        int textStart = -1;
+        while (word.find()) {
+            if (textStart >= 0) {
+                text.append(content, textStart, word.start());
+            }
+            if (count == words.length) {
+                words = Arrays.copyOf(words, count * 2);
+            }
+            words[count++] = Long.parseLong(word.group(1));
+            textStart = word.end();
+        }
+        if (textStart < 0) {
+            // 没有逐字标记，整行作为文本
+            text.append(content);
+        } else {
+            text.append(content, textStart, content.length());
+        }
+        String result = text.toString().trim();
+        if (!result.isEmpty()) {
+            out.add(new Line(lineTime, result, Arrays.copyOf(words, count)));
+        }
+    }
+
+    private static void parseJsonLine(String line, List<Line> out) {
+        Matcher time = JSON_TIME.matcher(line);
+        if (!line.contains("\"c\":[") || !time.find()) {
+            return;
+        }
+        String text = joinJsonText(line);
+        if (!text.isEmpty()) {
+            out.add(new Line(Long.parseLong(time.group(1)), text, new long[0]));
+        }
+    }
+
+    /**
+     * 拼接YRC JSON中所有"tx"字段
+     */
+    private static String joinJsonText(String json) {
+        Matcher matcher = JSON_TEXT.matcher(json);
+        StringBuilder text = new StringBuilder();
+        while (matcher.find()) {
+            unescape(matcher.group(1), text);
+        }
+        return text.toString().trim();
+    }
+
+    private static void unescape(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 >= value.length()) {
+                out.append(c);
+                continue;
+            }
+            char next = value.charAt(++i);
+            if (next == 'u' && i + 4 < value.length()) {
+                try {
+                    out.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+                    i += 4;
+                } catch (NumberFormatException e) {
+                    out.append(next);
+                }
+            } else if (next == 'n') {
+                out.append(' ');
+            } else {
+                out.append(next);
+            }
+        }
+    }
+
+    public int size() {
+        return lineTimes.length;
+    }
+
+    public long getTime(int line) {
+        return lineTimes[line];
+    }
+
+    public String getText(int line) {
+        return lineTexts[line];
+    }
+
+    /**
+     * 播放位置对应的歌词行：开始时间不晚于该位置的最后一行
+     * @return 行号，位置在第一行之前时返回-1
+     */
+    public int lineAt(long positionMs) {
+        return floor(lineTimes, 0, lineTimes.length, positionMs);
+    }
+
+    /**
+     * 行内正在唱的字（仅逐字歌词）
+     * @return 行内的字序号，没有逐字时间或还没唱到第一个字时返回-1
+     */
+    public int wordAt(int line, long positionMs) {
+        if (line < 0 || line >= lineTimes.length) {
+            return -1;
+        }
+        int start = wordStart[line];
+        int index = floor(wordTimes, start, wordStart[line + 1], positionMs);
+        return index < 0 ? -1 : index - start;
+    }
+
+    /**
+     * 该位置之后下一次切换歌词行的时间
+     * @return 毫秒，已经是最后一行时返回-1
+     */
+    public long nextLineTime(long positionMs) {
+        int next = lineAt(positionMs) + 1;
+        return next < lineTimes.length ? lineTimes[next] : -1;
+    }
+
+    /**
+     * [from, to)范围内不大于value的最后一个位置，不存在时返回-1
+     */
+    private static int floor(long[] values, int from, int to, long value) {
+        int low = from;
+        int high = to - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= value) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+}
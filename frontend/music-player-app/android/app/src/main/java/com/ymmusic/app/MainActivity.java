@@ -1,28 +1,51 @@
 package com.ymmusic.app;
 
-import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.ServiceConnection;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
 import android.webkit.JavascriptInterface;
 import android.app.Activity;
 
 import com.getcapacitor.BridgeActivity;
 
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 public class MainActivity extends BridgeActivity {
     private static final String TAG = "MainActivity";
-    private MusicPlaybackService musicService;
-    private boolean isBound = false;
-    
-    // 广播接收器，用于接收来自服务的命令
-    private BroadcastReceiver musicControlReceiver;
+    // 等待首帧绘制的最长时间，超时后照常启动播放服务
+    private static final long FIRST_FRAME_TIMEOUT_MS = 2000;
+    // 离线搜索单次最多返回的结果数
+    private static final int MAX_OFFLINE_RESULTS = 100;
+    // 导入旧收藏后等待写入磁盘的最长时间
+    private static final long IMPORT_SYNC_TIMEOUT_MS = 5000;
+    // 已连接的播放服务，未连接时为null；只在主线程写入，JavaBridge线程先读到局部变量再使用
+    private volatile MusicPlaybackService musicService;
+    // 是否已发起绑定（连接建立前musicService仍为null）
+    private boolean bindRequested = false;
+    // Web层状态同步，按版本号丢弃过期状态
+    private final PlayerStateSync playerStateSync = new PlayerStateSync();
+    // 大歌单的流式解析与分页
+    private final PlaylistTrackLoader playlistTrackLoader = new PlaylistTrackLoader();
+    // 服务连接建立前收到的原生引擎操作，只在主线程访问，连接后按顺序补执行
+    private final List<Runnable> pendingEngineActions = new ArrayList<>();
+    // 最近一次加载的歌词，服务连接建立后补发
+    private String lyricSongId = null;
+    private LyricTimeline lyricTimeline = null;
+    // 桥接调用和JavaScript往返耗时
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
     
     /**
      * 与服务的连接
@@ -31,77 +54,308 @@ public class MainActivity extends BridgeActivity {
         @Override
         public void onServiceConnected(ComponentName name, IBinder service) {
             MusicPlaybackService.LocalBinder binder = (MusicPlaybackService.LocalBinder) service;
-            musicService = binder.getService();
-            isBound = true;
+            final MusicPlaybackService connected = binder.getService();
+            musicService = connected;
+            if (connected.getAudioEngine() != null) {
+                connected.getAudioEngine().addListener(engineListener);
+            }
+            // 注册命令监听器，服务会补发未连接期间排队的命令
+            connected.setCommandListener(commandListener);
+            // 补上连接建立前Web层同步过来的状态和歌词
+            final PlayerStateSync.PlayerState state = playerStateSync.getAppliedCount() > 0
+                    ? playerStateSync.getCurrent() : null;
+            final String songId;
+            final LyricTimeline timeline;
+            synchronized (MainActivity.this) {
+                songId = lyricSongId;
+                timeline = lyricTimeline;
+            }
+            connected.getMediaWorker().execute(() -> {
+                if (state != null) {
+                    connected.applyPlayerState(state);
+                }
+                if (timeline != null) {
+                    connected.setLyrics(songId, timeline);
+                }
+            });
+            flushPendingEngineActions();
             Log.d(TAG, "已连接到音乐播放服务");
         }
 
         @Override
         public void onServiceDisconnected(ComponentName name) {
-            isBound = false;
+            musicService = null;
             Log.d(TAG, "与音乐播放服务断开连接");
         }
     };
     
+    /**
+     * 原生播放引擎状态监听器，将状态回调给WebView
+     */
+    private final NativeAudioEngine.Listener engineListener = new NativeAudioEngine.Listener() {
+        @Override
+        public void onStateChanged(String state, NativeAudioEngine.QueueItem item, long positionMs, long durationMs) {
+            try {
+                JSONObject event = new JSONObject();
+                event.put("type", "state");
+                event.put("state", state);
+                event.put("id", item != null ? item.id : JSONObject.NULL);
+                event.put("position", positionMs);
+                event.put("duration", durationMs);
+                dispatchNativePlayerEvent(event);
+            } catch (Exception e) {
+                Log.e(TAG, "回调原生播放状态出错", e);
+            }
+        }
+
+        @Override
+        public void onBufferingUpdate(int percent) {
+            try {
+                JSONObject event = new JSONObject();
+                event.put("type", "buffering");
+                event.put("percent", percent);
+                dispatchNativePlayerEvent(event);
+            } catch (Exception e) {
+                Log.e(TAG, "回调缓冲进度出错", e);
+            }
+        }
+    };
+
+    /**
+     * 将原生播放引擎事件派发给WebView中的window.onNativePlayerEvent
+     */
+    private void dispatchNativePlayerEvent(JSONObject event) {
+        final String jsCode = "if(window.onNativePlayerEvent) window.onNativePlayerEvent(" + event + ");";
+        final long start = MetricsRegistry.start();
+        runOnUiThread(() -> evaluateTimed("js.nativePlayerEvent", jsCode, start));
+    }
+
+    /**
+     * 在主线程执行JavaScript，记录从start到脚本执行完成的往返耗时
+     */
+    private void evaluateTimed(String metric, String jsCode, long start) {
+        bridge.getWebView().evaluateJavascript(jsCode, value -> metrics.recordSince(metric, start));
+    }
+
+    /**
+     * 歌单加载进度回调，派发给window.onNativePlaylistEvent
+     */
+    private final PlaylistTrackLoader.Callback playlistCallback = new PlaylistTrackLoader.Callback() {
+        @Override
+        public void onProgress(String playlistId, TrackTable table) {
+            dispatchPlaylistEvent("progress", playlistId, table.size(), null);
+        }
+
+        @Override
+        public void onLoaded(String playlistId, TrackTable table) {
+            dispatchPlaylistEvent("loaded", playlistId, table.size(), null);
+            OfflineSearch.getInstance(MainActivity.this).indexTracks(table);
+        }
+
+        @Override
+        public void onError(String playlistId, String message) {
+            dispatchPlaylistEvent("error", playlistId, 0, message);
+        }
+    };
+
+    private void dispatchPlaylistEvent(String type, String playlistId, int count, String message) {
+        try {
+            JSONObject event = new JSONObject();
+            event.put("type", type);
+            event.put("playlistId", playlistId);
+            event.put("count", count);
+            if (message != null) {
+                event.put("message", message);
+            }
+            final String jsCode = "if(window.onNativePlaylistEvent) window.onNativePlaylistEvent(" + event + ");";
+            final long start = MetricsRegistry.start();
+            runOnUiThread(() -> evaluateTimed("js.playlistEvent", jsCode, start));
+        } catch (Exception e) {
+            Log.e(TAG, "派发歌单加载事件出错", e);
+        }
+    }
+
+    /**
+     * 原生缓存释放后通知Web层清理自己的缓存，派发给window.onNativeMemoryTrim
+     */
+    private final MemoryTrimRegistry.Listener memoryTrimListener = (level, maxPriority, bytesReclaimed) -> {
+        try {
+            JSONObject event = new JSONObject();
+            event.put("level", level);
+            event.put("priority", maxPriority);
+            event.put("reclaimed", bytesReclaimed);
+            final String jsCode = "if(window.onNativeMemoryTrim) window.onNativeMemoryTrim(" + event + ");";
+            final long start = MetricsRegistry.start();
+            runOnUiThread(() -> evaluateTimed("js.memoryTrim", jsCode, start));
+        } catch (Exception e) {
+            Log.e(TAG, "派发内存回收事件出错", e);
+        }
+    };
+
+    /**
+     * 离线下载进度按批派发给window.onOfflineDownloadProgress（主线程回调）
+     */
+    private final OfflineDownloadManager.ProgressListener downloadProgressListener = batch -> {
+        try {
+            final long start = MetricsRegistry.start();
+            JSONArray events = new JSONArray();
+            for (OfflineDownloadManager.Progress progress : batch) {
+                JSONObject event = new JSONObject();
+                event.put("songId", progress.songId);
+                event.put("state", progress.state);
+                event.put("downloaded", progress.downloaded);
+                event.put("total", progress.total);
+                if (progress.error != null) {
+                    event.put("error", progress.error);
+                }
+                events.put(event);
+            }
+            evaluateTimed("js.downloadProgress",
+                    "if(window.onOfflineDownloadProgress) window.onOfflineDownloadProgress(" + events + ");", start);
+        } catch (Exception e) {
+            Log.e(TAG, "派发离线下载进度出错", e);
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        
-        // 添加JavaScript接口
-        bridge.getWebView().addJavascriptInterface(new WebAppInterface(this), "AndroidPlayer");
-        
-        // 启动音乐播放服务
-        startMusicService();
-        
-        // 注册广播接收器，用于接收来自服务的命令
-        registerMusicControlReceiver();
+        // 原生缓存初始化和上次启动接口的预取在后台进行，与下面Capacitor创建WebView、加载页面同时进行
+        StartupPreloader.getInstance(this).start();
+
+        StartupTrace.Section onCreateSection = StartupTrace.begin("activity.onCreate");
+        try {
+            StartupTrace.Section bridgeSection = StartupTrace.begin("activity.bridge");
+            try {
+                super.onCreate(savedInstanceState);
+            } finally {
+                bridgeSection.close();
+            }
+
+            StartupTrace.Section interfacesSection = StartupTrace.begin("activity.interfaces");
+            try {
+                // 添加JavaScript接口
+                bridge.getWebView().addJavascriptInterface(new WebAppInterface(this), "AndroidPlayer");
+                bridge.getWebView().addJavascriptInterface(new FavoritesInterface(), "AndroidFavorites");
+
+                // 已下载的歌曲优先从本地文件读取，音频、API请求和封面缩略图走原生磁盘缓存，其余请求仍由Capacitor处理
+                OfflineDownloadManager downloadManager = OfflineDownloadManager.getInstance(this);
+                downloadManager.setProgressListener(downloadProgressListener);
+                MusicWebViewClient webViewClient = new MusicWebViewClient(bridge);
+                webViewClient.addInterceptor(downloadManager);
+                webViewClient.addInterceptor(AudioCache.getInstance(this));
+                webViewClient.addInterceptor(ApiResponseCache.getInstance(this));
+                // 列表封面经https://localhost/_image缩放转码为WebP
+                webViewClient.addInterceptor(ImageProxy.getInstance(this));
+                bridge.setWebViewClient(webViewClient);
+
+                // 内存紧张时按优先级释放原生缓存，并通知Web层
+                MemoryTrimRegistry memoryTrimRegistry = MemoryTrimRegistry.getInstance(this);
+                memoryTrimRegistry.register("playlistTracks", MemoryTrimRegistry.PRIORITY_NORMAL, playlistTrackLoader::trimMemory);
+                memoryTrimRegistry.addListener(memoryTrimListener);
+            } finally {
+                interfacesSection.close();
+            }
+        } finally {
+            onCreateSection.close();
+        }
+
+        // 播放服务的启动和绑定不影响首帧，等首帧绘制后再进行
+        runAfterFirstFrame();
     }
-    
+
     /**
-     * 注册音乐控制广播接收器
+     * 首帧绘制后启动并绑定音乐播放服务；窗口迟迟没有绘制（如在后台启动）时超时后照常进行
      */
-    private void registerMusicControlReceiver() {
-        musicControlReceiver = new BroadcastReceiver() {
+    private void runAfterFirstFrame() {
+        final View decorView = getWindow().getDecorView();
+        final Handler handler = new Handler(Looper.getMainLooper());
+        final Runnable startService = new Runnable() {
+            private boolean done = false;
+
             @Override
-            public void onReceive(Context context, Intent intent) {
-                if (intent.getAction().equals("YM_MUSIC_CONTROL_ACTION")) {
-                    String command = intent.getStringExtra("command");
-                    if (command != null) {
-                        Log.d(TAG, "收到音乐控制命令: " + command);
-                        // 执行JavaScript调用WebView中的方法
-                        final String jsCode;
-                        switch (command) {
-                            case "play":
-                                jsCode = "if(window.playerControls) window.playerControls.play();";
-                                break;
-                            case "pause":
-                                jsCode = "if(window.playerControls) window.playerControls.pause();";
-                                break;
-                            case "previous":
-                                jsCode = "if(window.playerControls) window.playerControls.previous();";
-                                break;
-                            case "next":
-                                jsCode = "if(window.playerControls) window.playerControls.next();";
-                                break;
-                            default:
-                                jsCode = null;
-                        }
-                        
-                        if (jsCode != null) {
-                            runOnUiThread(() -> {
-                                bridge.getWebView().evaluateJavascript(jsCode, null);
-                                Log.d(TAG, "执行JavaScript命令: " + command);
-                            });
-                        }
-                    }
+            public void run() {
+                if (done || isFinishing()) {
+                    return;
+                }
+                done = true;
+                handler.removeCallbacks(this);
+                StartupTrace.Section section = StartupTrace.begin("activity.startService");
+                try {
+                    // 启动音乐播放服务
+                    startMusicService();
+                    // 绑定服务，Activity存在期间保持连接，以便后台也能收到媒体按钮命令
+                    bindMusicService();
+                } finally {
+                    section.close();
                 }
             }
         };
-        
-        IntentFilter filter = new IntentFilter("YM_MUSIC_CONTROL_ACTION");
-        registerReceiver(musicControlReceiver, filter);
+        decorView.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean drawn = false;
+
+            @Override
+            public void onDraw() {
+                if (drawn) {
+                    return;
+                }
+                drawn = true;
+                StartupTrace.mark("activity.firstFrame");
+                // 绘制回调中不能移除监听器，且服务要在这一帧提交之后再启动
+                final ViewTreeObserver.OnDrawListener listener = this;
+                handler.postAtFrontOfQueue(() -> {
+                    if (decorView.getViewTreeObserver().isAlive()) {
+                        decorView.getViewTreeObserver().removeOnDrawListener(listener);
+                    }
+                    handler.post(startService);
+                });
+            }
+        });
+        handler.postDelayed(startService, FIRST_FRAME_TIMEOUT_MS);
     }
+
+    /**
+     * 服务发来的播放控制命令监听器，在主线程调用WebView中的方法
+     */
+    private final PlayerCommandChannel.Listener commandListener = command -> {
+        final String jsCode;
+        switch (command.type) {
+            case PLAY:
+                jsCode = "if(window.playerControls) window.playerControls.play();";
+                break;
+            case PAUSE:
+                jsCode = "if(window.playerControls) window.playerControls.pause();";
+                break;
+            case PREVIOUS:
+                jsCode = "if(window.playerControls) window.playerControls.previous(" + skipTarget(command) + ");";
+                break;
+            case NEXT:
+                jsCode = "if(window.playerControls) window.playerControls.next(" + skipTarget(command) + ");";
+                break;
+            case SEEK:
+                jsCode = "if(window.playerControls && window.playerControls.seek) window.playerControls.seek("
+                        + command.positionMs + ");";
+                break;
+            default:
+                return;
+        }
+        // 耗时从服务创建命令时算起：dispatch到主线程开始执行，roundTrip到脚本执行完成
+        runOnUiThread(() -> {
+            metrics.recordSince("command.dispatch", command.createdAtNanos);
+            evaluateTimed("command.roundTrip", jsCode, command.createdAtNanos);
+            Log.d(TAG, "执行JavaScript命令: " + command);
+        });
+    };
     
+    /**
+     * 服务端队列决定的切歌目标，作为JavaScript参数（index, songId）
+     */
+    private static String skipTarget(PlayerCommand command) {
+        if (!command.isResolvedSkip()) {
+            return "";
+        }
+        return command.queueIndex + ", " + JSONObject.quote(command.songId != null ? command.songId : "");
+    }
+
     /**
      * 重写返回键行为，使应用最小化而不是退出
      * 这样音乐可以在后台继续播放
@@ -113,32 +367,25 @@ public class MainActivity extends BridgeActivity {
         moveTaskToBack(true);
     }
     
-    @Override
-    public void onStart() {
-        super.onStart();
-        // 绑定服务
-        if (!isBound) {
-            Intent intent = new Intent(this, MusicPlaybackService.class);
-            bindService(intent, serviceConnection, Context.BIND_AUTO_CREATE);
-        }
-    }
-    
-    @Override
-    public void onStop() {
-        super.onStop();
-        // 解绑服务，但不停止它，允许在后台继续播放
-        if (isBound) {
-            unbindService(serviceConnection);
-            isBound = false;
-        }
-    }
-    
     @Override
     public void onDestroy() {
         super.onDestroy();
-        // 注销广播接收器
-        if (musicControlReceiver != null) {
-            unregisterReceiver(musicControlReceiver);
+        MemoryTrimRegistry memoryTrimRegistry = MemoryTrimRegistry.getInstance(this);
+        memoryTrimRegistry.removeListener(memoryTrimListener);
+        memoryTrimRegistry.unregister("playlistTracks");
+        OfflineDownloadManager.getInstance(this).setProgressListener(null);
+        // 解绑服务，但不停止它，允许在后台继续播放
+        if (bindRequested) {
+            MusicPlaybackService service = musicService;
+            if (service != null) {
+                service.clearCommandListener(commandListener);
+                if (service.getAudioEngine() != null) {
+                    service.getAudioEngine().removeListener(engineListener);
+                }
+            }
+            unbindService(serviceConnection);
+            bindRequested = false;
+            musicService = null;
         }
     }
     
@@ -154,15 +401,16 @@ public class MainActivity extends BridgeActivity {
      * 绑定音乐服务
      */
     private void bindMusicService() {
-        if (!isBound) {
+        if (musicService == null && !bindRequested) {
             Log.d(TAG, "尝试重新绑定音乐服务");
             Intent intent = new Intent(this, MusicPlaybackService.class);
-            bindService(intent, serviceConnection, Context.BIND_AUTO_CREATE);
+            bindRequested = bindService(intent, serviceConnection, Context.BIND_AUTO_CREATE);
         }
     }
     
     /**
      * 为WebView提供的JavaScript接口
+     * 每个方法的调用耗时记录为bridge.<方法名>，可通过getMetrics()查看
      */
     public class WebAppInterface {
         Context mContext;
@@ -179,81 +427,1265 @@ public class MainActivity extends BridgeActivity {
          */
         @JavascriptInterface
         public void updateNowPlaying(String title, String artist) {
-            Log.d(TAG, "更新通知栏信息: " + title + " - " + artist);
-            // 确保在主线程上执行
+            timed("bridge.updateNowPlaying", () -> {
+                Log.d(TAG, "更新通知栏信息: " + title + " - " + artist);
+                runOnService(service -> service.updateNotificationInfo(title, artist), "更新通知栏信息");
+            });
+        }
+        
+        /**
+         * 更新当前播放歌曲信息（包含专辑封面URL）
+         */
+        @JavascriptInterface
+        public void updateNowPlayingWithCover(String title, String artist, String albumArtUrl) {
+            timed("bridge.updateNowPlayingWithCover", () -> {
+                Log.d(TAG, "更新通知栏信息(带封面): " + title + " - " + artist);
+                // 封面由服务在后台加载并缓存
+                runOnService(service -> service.updateNotificationInfoWithCover(title, artist, albumArtUrl),
+                        "更新通知栏信息(带封面)");
+            });
+        }
+        
+        /**
+         * 设置播放状态
+         */
+        @JavascriptInterface
+        public void setPlayingState(boolean isPlaying) {
+            timed("bridge.setPlayingState", () -> {
+                Log.d(TAG, "设置播放状态: " + (isPlaying ? "播放" : "暂停"));
+                runOnService(service -> service.setPlayingState(isPlaying), "设置播放状态");
+            });
+        }
+        
+        /**
+         * 一次性同步播放状态（JSON字符串，可以是完整或部分状态）
+         * 字段: version, session, songId, title, artist, cover, playing, position, speed, timestamp, duration, index
+         * JSON在调用线程上解析，过期版本直接丢弃，合并后的状态交给服务的工作线程应用
+         */
+        @JavascriptInterface
+        public void syncState(String json) {
+            timed("bridge.syncState", () -> {
+                final PlayerStateSync.PlayerState state;
+                try {
+                    state = playerStateSync.merge(json);
+                } catch (Exception e) {
+                    Log.e(TAG, "解析播放状态出错: " + json, e);
+                    return;
+                }
+                if (state == null) {
+                    return;
+                }
+                runOnService(service -> service.applyPlayerState(state), "同步播放状态");
+            });
+        }
+
+        /**
+         * 使用原生播放引擎加载歌曲（会清空原生播放队列）
+         * @param autoPlay 加载完成后是否立即播放
+         */
+        @JavascriptInterface
+        public void nativeLoad(String songId, String url, String title, String artist, boolean autoPlay) {
+            timed("bridge.nativeLoad", () -> {
+                Log.d(TAG, "原生引擎加载: " + title + " - " + artist);
+                final NativeAudioEngine.QueueItem item = createQueueItem(songId, url, title, artist);
+                runOnEngine(engine -> engine.load(item, autoPlay), "原生引擎加载");
+            });
+        }
+
+        /**
+         * 设置原生引擎当前歌曲之后的下一首（替换之前设置的），当前歌曲播完后引擎直接切换
+         * @param url 为空时只清除之前设置的下一首
+         */
+        @JavascriptInterface
+        public void nativeEnqueue(String songId, String url, String title, String artist) {
+            timed("bridge.nativeEnqueue", () -> {
+                final NativeAudioEngine.QueueItem item = url == null || url.isEmpty()
+                        ? null : createQueueItem(songId, url, title, artist);
+                runOnEngine(engine -> engine.setNext(item), "原生引擎设置下一首");
+            });
+        }
+
+        /**
+         * 原生引擎播放
+         */
+        @JavascriptInterface
+        public void nativePlay() {
+            timed("bridge.nativePlay", () -> runOnEngine(NativeAudioEngine::play, "原生引擎播放"));
+        }
+
+        /**
+         * 原生引擎暂停
+         */
+        @JavascriptInterface
+        public void nativePause() {
+            timed("bridge.nativePause", () -> runOnEngine(NativeAudioEngine::pause, "原生引擎暂停"));
+        }
+
+        /**
+         * 原生引擎跳转到指定位置（毫秒）
+         */
+        @JavascriptInterface
+        public void nativeSeek(long positionMs) {
+            timed("bridge.nativeSeek", () -> runOnEngine(engine -> engine.seekTo(positionMs), "原生引擎跳转"));
+        }
+
+        /**
+         * 原生引擎音量（0到1）
+         */
+        @JavascriptInterface
+        public void nativeSetVolume(float volume) {
+            timed("bridge.nativeSetVolume", () -> runOnEngine(engine -> engine.setVolume(volume), "原生引擎设置音量"));
+        }
+
+        /**
+         * 原生引擎播放速度
+         */
+        @JavascriptInterface
+        public void nativeSetSpeed(float speed) {
+            timed("bridge.nativeSetSpeed", () -> runOnEngine(engine -> engine.setSpeed(speed), "原生引擎设置速度"));
+        }
+
+        /**
+         * 停止原生引擎并释放播放器
+         */
+        @JavascriptInterface
+        public void nativeStop() {
+            timed("bridge.nativeStop", () -> runOnEngine(NativeAudioEngine::release, "原生引擎停止"));
+        }
+
+        /**
+         * 获取原生引擎当前状态（JSON字符串）
+         */
+        @JavascriptInterface
+        public String nativeGetState() {
+            return timed("bridge.nativeGetState", () -> {
+                try {
+                    JSONObject result = new JSONObject();
+                    MusicPlaybackService service = musicService;
+                    NativeAudioEngine engine = service != null ? service.getAudioEngine() : null;
+                    if (engine == null) {
+                        result.put("state", NativeAudioEngine.STATE_IDLE);
+                        return result.toString();
+                    }
+                    NativeAudioEngine.QueueItem item = engine.getCurrentItem();
+                    result.put("state", engine.getState());
+                    result.put("id", item != null ? item.id : JSONObject.NULL);
+                    result.put("index", engine.getCurrentIndex());
+                    result.put("queueSize", engine.getQueueSize());
+                    result.put("position", engine.getPosition());
+                    result.put("duration", engine.getDuration());
+                    result.put("buffered", engine.getBufferedPercent());
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取原生引擎状态时出错", e);
+                    return "{}";
+                }
+            });
+        }
+
+        private NativeAudioEngine.QueueItem createQueueItem(String songId, String url, String title, String artist) {
+            return new NativeAudioEngine.QueueItem(songId, url,
+                    title != null ? title : "未知歌曲",
+                    artist != null ? artist : "未知艺术家");
+        }
+
+        /**
+         * 把对播放服务的操作提交到服务的工作线程，不经过主线程
+         */
+        private void runOnService(ServiceAction action, String actionName) {
+            MusicPlaybackService service = musicService;
+            if (service == null) {
+                Log.w(TAG, actionName + "失败: 服务未绑定或为空");
+                // 尝试重新绑定服务
+                runOnUiThread(MainActivity.this::bindMusicService);
+                return;
+            }
+            service.getMediaWorker().execute(() -> {
+                try {
+                    action.run(service);
+                } catch (Exception e) {
+                    Log.e(TAG, actionName + "时出错", e);
+                }
+            });
+        }
+
+        /**
+         * 在主线程上对原生播放引擎执行操作
+         */
+        private void runOnEngine(EngineAction action, String actionName) {
             runOnUiThread(() -> {
+                Runnable task = () -> {
+                    try {
+                        action.run(musicService.getAudioEngine());
+                    } catch (Exception e) {
+                        Log.e(TAG, actionName + "时出错", e);
+                    }
+                };
+                if (musicService != null && musicService.getAudioEngine() != null) {
+                    task.run();
+                } else {
+                    // 服务还没连上（启动阶段或被系统回收后），排队等连接建立后执行
+                    Log.w(TAG, actionName + ": 服务未绑定，连接后执行");
+                    pendingEngineActions.add(task);
+                    bindMusicService();
+                }
+            });
+        }
+
+        /**
+         * 获取服务保存的播放状态快照（JSON字符串），Web层启动时用来直接恢复当前歌曲和进度
+         * 服务未绑定时读取快照文件；没有快照时返回"null"
+         */
+        @JavascriptInterface
+        public String getPlaybackSnapshot() {
+            return timed("bridge.getPlaybackSnapshot", () -> {
                 try {
-                    if (isBound && musicService != null) {
-                        musicService.updateNotificationInfo(title, artist);
-                    } else {
-                        Log.w(TAG, "无法更新通知栏信息: 服务未绑定或为空");
-                        // 尝试重新绑定服务
-                        if (!isBound) {
-                            bindMusicService();
+                    MusicPlaybackService service = musicService;
+                    PlaybackSnapshot snapshot = service != null
+                            ? service.getPlaybackSnapshot()
+                            : MusicPlaybackService.readSnapshot(MainActivity.this);
+                    if (snapshot == null) {
+                        return "null";
+                    }
+                    JSONObject result = new JSONObject();
+                    result.put("songId", snapshot.songId);
+                    result.put("title", snapshot.title);
+                    result.put("artist", snapshot.artist);
+                    result.put("cover", snapshot.coverUrl);
+                    result.put("position", snapshot.positionMs / 1000.0);
+                    result.put("duration", snapshot.durationMs / 1000.0);
+                    result.put("savedAt", snapshot.savedAt);
+                    if (service != null) {
+                        PlayQueue queue = service.getPlayQueue();
+                        JSONArray ids = new JSONArray();
+                        synchronized (queue) {
+                            for (int i = 0; i < queue.size(); i++) {
+                                ids.put(queue.getSongId(i));
+                            }
+                            result.put("index", queue.getCurrentIndex());
+                            result.put("mode", queue.getMode());
                         }
+                        result.put("queue", ids);
                     }
+                    return result.toString();
                 } catch (Exception e) {
-                    Log.e(TAG, "更新通知栏信息时出错", e);
+                    Log.e(TAG, "获取播放状态快照时出错", e);
+                    return "null";
                 }
             });
         }
-        
+
         /**
-         * 更新当前播放歌曲信息（包含专辑封面URL）
+         * 获取通知渲染统计（JSON字符串）：实际渲染次数与被丢弃/合并的更新次数
          */
         @JavascriptInterface
-        public void updateNowPlayingWithCover(String title, String artist, String albumArtUrl) {
-            Log.d(TAG, "更新通知栏信息(带封面): " + title + " - " + artist);
-            // 确保在主线程上执行
-            runOnUiThread(() -> {
+        public String getNotificationStats() {
+            return timed("bridge.getNotificationStats", () -> {
                 try {
-                    if (isBound && musicService != null) {
-                        // 这里可以添加下载专辑封面的代码
-                        // 简单起见，我们先使用默认图标
-                        musicService.updateNotificationInfo(title, artist);
-                    } else {
-                        Log.w(TAG, "无法更新通知栏信息(带封面): 服务未绑定或为空");
-                        // 尝试重新绑定服务
-                        if (!isBound) {
-                            bindMusicService();
-                        }
+                    JSONObject result = new JSONObject();
+                    MusicPlaybackService service = musicService;
+                    NotificationRenderer renderer = service != null ? service.getNotificationRenderer() : null;
+                    result.put("rendered", renderer != null ? renderer.getRenderedCount() : 0);
+                    result.put("suppressed", renderer != null ? renderer.getSuppressedCount() : 0);
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取通知渲染统计时出错", e);
+                    return "{}";
+                }
+            });
+        }
+
+        /**
+         * 获取服务工作线程统计（JSON字符串）：排队深度和任务等待/执行耗时（毫秒）
+         */
+        @JavascriptInterface
+        public String getMediaWorkerStats() {
+            return timed("bridge.getMediaWorkerStats", () -> {
+                try {
+                    JSONObject result = new JSONObject();
+                    MusicPlaybackService service = musicService;
+                    MediaWorker worker = service != null ? service.getMediaWorker() : null;
+                    if (worker != null) {
+                        result.put("pending", worker.getPendingCount());
+                        result.put("maxPending", worker.getMaxPendingCount());
+                        result.put("executed", worker.getExecutedCount());
+                        result.put("avgWaitMs", worker.getAverageWaitMs());
+                        result.put("maxWaitMs", worker.getMaxWaitMs());
+                        result.put("avgRunMs", worker.getAverageRunMs());
+                        result.put("maxRunMs", worker.getMaxRunMs());
                     }
+                    return result.toString();
                 } catch (Exception e) {
-                    Log.e(TAG, "更新通知栏信息(带封面)时出错", e);
+                    Log.e(TAG, "获取工作线程统计时出错", e);
+                    return "{}";
                 }
             });
         }
-        
+
         /**
-         * 设置播放状态
+         * 获取内存回收统计（JSON字符串）：回收次数、最近级别和各缓存累计释放的字节数
          */
         @JavascriptInterface
-        public void setPlayingState(boolean isPlaying) {
-            Log.d(TAG, "设置播放状态: " + (isPlaying ? "播放" : "暂停"));
-            // 确保在主线程上执行
-            runOnUiThread(() -> {
+        public String getMemoryTrimStats() {
+            return timed("bridge.getMemoryTrimStats", () -> {
                 try {
-                    if (isBound && musicService != null) {
-                        musicService.setPlayingState(isPlaying);
-                    } else {
-                        Log.w(TAG, "无法设置播放状态: 服务未绑定或为空");
-                        // 尝试重新绑定服务
-                        if (!isBound) {
-                            bindMusicService();
-                        }
+                    MemoryTrimRegistry registry = MemoryTrimRegistry.getInstance(MainActivity.this);
+                    JSONObject result = new JSONObject();
+                    result.put("trimCount", registry.getTrimCount());
+                    result.put("lastLevel", registry.getLastLevel());
+                    result.put("totalReclaimed", registry.getTotalBytesReclaimed());
+                    JSONObject caches = new JSONObject();
+                    for (String name : registry.getNames()) {
+                        caches.put(name, registry.getBytesReclaimed(name));
                     }
+                    result.put("caches", caches);
+                    return result.toString();
                 } catch (Exception e) {
-                    Log.e(TAG, "设置播放状态时出错", e);
+                    Log.e(TAG, "获取内存回收统计时出错", e);
+                    return "{}";
                 }
             });
         }
-        
+
         /**
-         * 检查服务是否运行
+         * 获取WakeLock持有统计（JSON字符串），用于排查耗电
          */
         @JavascriptInterface
-        public boolean isServiceRunning() {
-            return isBound && musicService != null;
+        public String getWakeLockStats() {
+            return timed("bridge.getWakeLockStats", () -> {
+                try {
+                    JSONObject result = new JSONObject();
+                    MusicPlaybackService service = musicService;
+                    WakeLockManager manager = service != null ? service.getWakeLockManager() : null;
+                    if (manager != null) {
+                        result.put("held", manager.isHeld());
+                        result.put("totalHeldMs", manager.getTotalHeldMs());
+                        result.put("acquireCount", manager.getAcquireCount());
+                        result.put("renewCount", manager.getRenewCount());
+                    }
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取WakeLock统计时出错", e);
+                    return "{}";
+                }
+            });
+        }
+
+        /**
+         * 预取音频开头部分（下一首歌曲），在后台线程下载
+         */
+        @JavascriptInterface
+        public void prefetchAudio(String url) {
+            timed("bridge.prefetchAudio", () -> {
+                if (url == null || url.isEmpty()) {
+                    return;
+                }
+                AudioCache.getInstance(MainActivity.this).prefetch(url);
+            });
+        }
+
+        /**
+         * 获取音频缓存统计（JSON字符串）
+         */
+        @JavascriptInterface
+        public String getAudioCacheStats() {
+            return timed("bridge.getAudioCacheStats", () -> {
+                try {
+                    AudioCache cache = AudioCache.getInstance(MainActivity.this);
+                    JSONObject result = new JSONObject();
+                    result.put("hits", cache.getHitCount());
+                    result.put("fills", cache.getFillCount());
+                    result.put("bypassed", cache.getBypassCount());
+                    result.put("prefetches", cache.getPrefetchCount());
+                    result.put("sizeBytes", cache.getCacheSize());
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取音频缓存统计时出错", e);
+                    return "{}";
+                }
+            });
         }
+
+        /**
+         * 设置/song/url接口地址，原生层用它批量解析并在过期前刷新播放地址
+         */
+        @JavascriptInterface
+        public void setSongUrlEndpoint(String url) {
+            timed("bridge.setSongUrlEndpoint", () -> SongUrlResolver.getInstance().setEndpoint(url));
+        }
+
+        /**
+         * 预取歌曲的播放地址（逗号分隔的ID），合并成一次/song/url请求
+         */
+        @JavascriptInterface
+        public void prefetchSongUrls(String songIds) {
+            timed("bridge.prefetchSongUrls", () -> {
+                if (songIds == null || songIds.isEmpty()) {
+                    return;
+                }
+                SongUrlResolver.getInstance().prefetch(songIds.split(","));
+            });
+        }
+
+        /**
+         * 同步获取已解析的播放地址（JSON字符串）：{url, duration(毫秒), expiresAt}
+         * 没有可用地址时返回空字符串，并在后台解析
+         */
+        @JavascriptInterface
+        public String getResolvedSongUrl(String songId) {
+            return timed("bridge.getResolvedSongUrl", () -> {
+                try {
+                    SongUrlCache.Entry entry = SongUrlResolver.getInstance().lookup(songId);
+                    if (entry == null) {
+                        return "";
+                    }
+                    JSONObject result = new JSONObject();
+                    result.put("url", entry.url);
+                    result.put("duration", entry.durationMs);
+                    result.put("expiresAt", entry.expiresAt);
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取已解析的播放地址时出错: " + songId, e);
+                    return "";
+                }
+            });
+        }
+
+        /**
+         * 获取播放地址解析统计（JSON字符串）
+         */
+        @JavascriptInterface
+        public String getSongUrlResolverStats() {
+            return timed("bridge.getSongUrlResolverStats", () -> {
+                try {
+                    SongUrlResolver resolver = SongUrlResolver.getInstance();
+                    JSONObject result = new JSONObject();
+                    result.put("cached", resolver.getCacheSize());
+                    result.put("hits", resolver.getHitCount());
+                    result.put("misses", resolver.getMissCount());
+                    result.put("batches", resolver.getBatchCount());
+                    result.put("resolved", resolver.getResolvedCount());
+                    result.put("refreshed", resolver.getRefreshCount());
+                    result.put("failures", resolver.getFailureCount());
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取播放地址解析统计时出错", e);
+                    return "{}";
+                }
+            });
+        }
+
+        /**
+         * 下载歌曲供离线播放，进度通过window.onOfflineDownloadProgress按批通知
+         * 之前中断的下载会用新的地址从已完成的分块继续
+         * @return 开始或继续下载时返回true，已经下载过时返回false
+         */
+        @JavascriptInterface
+        public boolean downloadTrack(String songId, String url, String title, String artist, String cover) {
+            return timed("bridge.downloadTrack", () -> {
+                try {
+                    return OfflineDownloadManager.getInstance(MainActivity.this).download(songId, url, title, artist, cover);
+                } catch (Exception e) {
+                    Log.e(TAG, "开始离线下载时出错: " + songId, e);
+                    return false;
+                }
+            });
+        }
+
+        /**
+         * 取消下载并删除已下载的部分
+         */
+        @JavascriptInterface
+        public void cancelDownload(String songId) {
+            timed("bridge.cancelDownload", () -> OfflineDownloadManager.getInstance(MainActivity.this).cancel(songId));
+        }
+
+        /**
+         * 删除已下载的歌曲
+         */
+        @JavascriptInterface
+        public void removeDownload(String songId) {
+            timed("bridge.removeDownload", () -> OfflineDownloadManager.getInstance(MainActivity.this).remove(songId));
+        }
+
+        /**
+         * 已下载歌曲的播放地址，没有下载时返回空字符串
+         */
+        @JavascriptInterface
+        public String getOfflineUrl(String songId) {
+            return timed("bridge.getOfflineUrl", () -> {
+                String url = OfflineDownloadManager.getInstance(MainActivity.this).getOfflineUrl(songId);
+                return url != null ? url : "";
+            });
+        }
+
+        /**
+         * 获取离线歌曲列表（JSON字符串）：已下载的歌曲按最近播放排列，以及下载中的任务
+         */
+        @JavascriptInterface
+        public String getDownloads() {
+            return timed("bridge.getDownloads", () -> {
+                try {
+                    OfflineDownloadManager manager = OfflineDownloadManager.getInstance(MainActivity.this);
+                    JSONArray completed = new JSONArray();
+                    for (DownloadIndex.Entry entry : manager.getDownloadedEntries()) {
+                        JSONObject item = new JSONObject();
+                        item.put("songId", entry.songId);
+                        item.put("title", entry.title);
+                        item.put("artist", entry.artist);
+                        item.put("cover", entry.cover);
+                        item.put("size", entry.size);
+                        item.put("downloadedAt", entry.downloadedAt);
+                        completed.put(item);
+                    }
+                    JSONArray active = new JSONArray();
+                    for (OfflineDownloadManager.Progress progress : manager.getActiveDownloads()) {
+                        JSONObject item = new JSONObject();
+                        item.put("songId", progress.songId);
+                        item.put("state", progress.state);
+                        item.put("downloaded", progress.downloaded);
+                        item.put("total", progress.total);
+                        active.put(item);
+                    }
+                    JSONObject result = new JSONObject();
+                    result.put("completed", completed);
+                    result.put("active", active);
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取离线歌曲列表时出错", e);
+                    return "{\"completed\":[],\"active\":[]}";
+                }
+            });
+        }
+
+        /**
+         * 设置离线存储配额（MB），超出部分按最久未播放淘汰
+         */
+        @JavascriptInterface
+        public void setDownloadQuota(int megabytes) {
+            timed("bridge.setDownloadQuota", () -> {
+                OfflineDownloadManager.getInstance(MainActivity.this).setQuotaBytes(Math.max(0, megabytes) * 1024L * 1024L);
+            });
+        }
+
+        /**
+         * 获取离线下载统计（JSON字符串）：当前并发数、吞吐量和存储占用
+         */
+        @JavascriptInterface
+        public String getDownloadStats() {
+            return timed("bridge.getDownloadStats", () -> {
+                try {
+                    OfflineDownloadManager manager = OfflineDownloadManager.getInstance(MainActivity.this);
+                    JSONObject result = new JSONObject();
+                    result.put("concurrency", manager.getConcurrencyLimit());
+                    result.put("running", manager.getRunningJobs());
+                    result.put("throughput", manager.getThroughput());
+                    result.put("usedBytes", manager.getUsedBytes());
+                    result.put("quotaBytes", manager.getQuotaBytes());
+                    result.put("completed", manager.getCompletedCount());
+                    result.put("failed", manager.getFailedCount());
+                    result.put("offlineHits", manager.getOfflineHitCount());
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取离线下载统计时出错", e);
+                    return "{}";
+                }
+            });
+        }
+
+        /**
+         * 获取性能指标（JSON字符串）：计数器，以及各项耗时的次数、平均值、分位数和最大值（微秒）
+         */
+        @JavascriptInterface
+        public String getMetrics() {
+            return timed("bridge.getMetrics", () -> {
+                try {
+                    JSONObject counters = new JSONObject();
+                    for (Map.Entry<String, Long> entry : metrics.getCounters().entrySet()) {
+                        counters.put(entry.getKey(), entry.getValue());
+                    }
+                    JSONObject histograms = new JSONObject();
+                    for (Map.Entry<String, LatencyHistogram> entry : metrics.getHistograms().entrySet()) {
+                        LatencyHistogram histogram = entry.getValue();
+                        JSONObject item = new JSONObject();
+                        item.put("count", histogram.getCount());
+                        item.put("meanUs", histogram.getMeanUs());
+                        item.put("p50Us", histogram.getPercentileUs(0.5));
+                        item.put("p90Us", histogram.getPercentileUs(0.9));
+                        item.put("p99Us", histogram.getPercentileUs(0.99));
+                        item.put("maxUs", histogram.getMaxUs());
+                        histograms.put(entry.getKey(), item);
+                    }
+                    JSONObject result = new JSONObject();
+                    result.put("uptimeMs", metrics.getUptimeMs());
+                    result.put("counters", counters);
+                    result.put("histograms", histograms);
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取性能指标时出错", e);
+                    return "{}";
+                }
+            });
+        }
+
+        /**
+         * 获取启动时预取的接口数据（JSON字符串）：responses为地址到响应体文本的映射，
+         * Web层用它直接完成首批同样的请求；只返回一次，之后返回空的responses
+         */
+        @JavascriptInterface
+        public String getInitialData() {
+            return timed("bridge.getInitialData", () -> {
+                try {
+                    StartupPreloader preloader = StartupPreloader.getInstance(MainActivity.this);
+                    JSONObject responses = new JSONObject();
+                    for (Map.Entry<String, String> entry : preloader.takeResponses().entrySet()) {
+                        responses.put(entry.getKey(), entry.getValue());
+                    }
+                    JSONObject result = new JSONObject();
+                    result.put("responses", responses);
+                    result.put("complete", preloader.isFinished());
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取启动数据时出错", e);
+                    return "{}";
+                }
+            });
+        }
+
+        /**
+         * 保存本次启动时请求的接口地址（JSON数组），下次冷启动时预取
+         */
+        @JavascriptInterface
+        public void setStartupRequests(String urlsJson) {
+            timed("bridge.setStartupRequests", () -> {
+                try {
+                    JSONArray array = new JSONArray(urlsJson);
+                    List<String> urls = new ArrayList<>(array.length());
+                    for (int i = 0; i < array.length(); i++) {
+                        urls.add(array.optString(i, null));
+                    }
+                    StartupPreloader.getInstance(MainActivity.this).saveRequests(urls);
+                } catch (Exception e) {
+                    Log.e(TAG, "保存启动请求时出错", e);
+                }
+            });
+        }
+
+        /**
+         * 记录Web层的启动时间点（如脚本开始执行、应用挂载完成），与原生阶段放在同一条时间线上
+         */
+        @JavascriptInterface
+        public void markStartupPhase(String name) {
+            timed("bridge.markStartupPhase", () -> {
+                if (name != null && !name.isEmpty()) {
+                    StartupTrace.mark("web." + name);
+                }
+            });
+        }
+
+        /**
+         * 获取启动时间线（JSON字符串）：各阶段相对进程启动的开始时间和耗时（毫秒）及所在线程
+         */
+        @JavascriptInterface
+        public String getStartupReport() {
+            return timed("bridge.getStartupReport", () -> {
+                try {
+                    JSONArray phases = new JSONArray();
+                    for (StartupTrace.Phase phase : StartupTrace.getPhases()) {
+                        JSONObject item = new JSONObject();
+                        item.put("name", phase.name);
+                        item.put("thread", phase.thread);
+                        item.put("startMs", phase.startMs);
+                        item.put("durationMs", phase.durationMs);
+                        phases.put(item);
+                    }
+                    JSONObject result = new JSONObject();
+                    result.put("uptimeMs", StartupTrace.getUptimeMs());
+                    result.put("phases", phases);
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取启动时间线时出错", e);
+                    return "{}";
+                }
+            });
+        }
+
+        /**
+         * 获取API响应缓存统计（JSON字符串）
+         */
+        @JavascriptInterface
+        public String getApiCacheStats() {
+            return timed("bridge.getApiCacheStats", () -> {
+                try {
+                    ApiResponseCache cache = ApiResponseCache.getInstance(MainActivity.this);
+                    JSONObject result = new JSONObject();
+                    result.put("hits", cache.getHitCount());
+                    result.put("stale", cache.getStaleCount());
+                    result.put("misses", cache.getMissCount());
+                    result.put("notModified", cache.getNotModifiedCount());
+                    result.put("deduplicated", cache.getDedupCount());
+                    result.put("offline", cache.getOfflineCount());
+                    result.put("sizeBytes", cache.getCacheSize());
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取API缓存统计时出错", e);
+                    return "{}";
+                }
+            });
+        }
+
+        /**
+         * 在离线搜索索引中查询看过的歌曲和歌单（JSON字符串），按得分从高到低排列
+         * @param limit 最多返回的条数
+         */
+        @JavascriptInterface
+        public String searchOffline(String query, int limit) {
+            return timed("bridge.searchOffline", () -> {
+                try {
+                    OfflineSearch search = OfflineSearch.getInstance(MainActivity.this);
+                    long began = System.nanoTime();
+                    List<SearchIndex.Result> results = search.query(query, Math.max(1, Math.min(limit, MAX_OFFLINE_RESULTS)));
+                    long tookUs = (System.nanoTime() - began) / 1000;
+                    JSONArray items = new JSONArray();
+                    for (SearchIndex.Result result : results) {
+                        SearchIndex.Document document = result.document;
+                        JSONObject item = new JSONObject();
+                        item.put("type", document.type == SearchIndex.TYPE_PLAYLIST ? "playlist" : "song");
+                        item.put("id", document.id);
+                        item.put("name", document.title);
+                        item.put("artist", document.artist);
+                        item.put("album", document.album);
+                        item.put("cover", document.cover);
+                        item.put("isFromKw", (document.flags & SearchIndex.FLAG_KUWO) != 0);
+                        item.put("favorite", (document.flags & SearchIndex.FLAG_FAVORITE) != 0);
+                        item.put("score", result.score);
+                        items.put(item);
+                    }
+                    JSONObject response = new JSONObject();
+                    response.put("ready", search.isReady());
+                    response.put("tookUs", tookUs);
+                    response.put("results", items);
+                    return response.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "离线搜索时出错: " + query, e);
+                    return "{}";
+                }
+            });
+        }
+
+        /**
+         * 获取离线搜索索引统计（JSON字符串）
+         */
+        @JavascriptInterface
+        public String getSearchIndexStats() {
+            return timed("bridge.getSearchIndexStats", () -> {
+                try {
+                    OfflineSearch search = OfflineSearch.getInstance(MainActivity.this);
+                    SearchIndex index = search.getIndex();
+                    JSONObject result = new JSONObject();
+                    result.put("ready", search.isReady());
+                    result.put("documents", index.size());
+                    result.put("pending", index.deltaSize());
+                    result.put("tokens", index.segmentTokenCount());
+                    result.put("sizeBytes", index.segmentBytes());
+                    result.put("merges", search.getMergeCount());
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取离线搜索统计时出错", e);
+                    return "{}";
+                }
+            });
+        }
+
+        /**
+         * 获取原生网络调度统计（JSON字符串）：各优先级的并发上限、进行中、等待和累计请求数，
+         * 合并的重复请求数和域名解析缓存的命中情况
+         */
+        @JavascriptInterface
+        public String getNetworkStats() {
+            return timed("bridge.getNetworkStats", () -> {
+                try {
+                    NetworkScheduler scheduler = NetworkScheduler.getInstance();
+                    JSONObject classes = new JSONObject();
+                    for (int priority = NetworkScheduler.PRIORITY_PLAYBACK;
+                            priority <= NetworkScheduler.PRIORITY_DOWNLOAD; priority++) {
+                        JSONObject stats = new JSONObject();
+                        stats.put("limit", scheduler.getLimit(priority));
+                        stats.put("active", scheduler.getActive(priority));
+                        stats.put("waiting", scheduler.getWaiting(priority));
+                        stats.put("requests", scheduler.getRequestCount(priority));
+                        classes.put(NetworkScheduler.CLASS_NAMES[priority], stats);
+                    }
+                    HostFailureCache hostFailures = scheduler.getHostFailures();
+                    JSONObject result = new JSONObject();
+                    result.put("classes", classes);
+                    result.put("coalesced", scheduler.getCoalescedCount());
+                    result.put("dnsFailures", hostFailures.getFailureCount());
+                    result.put("dnsFailFast", hostFailures.getFailFastCount());
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取网络调度统计时出错", e);
+                    return "{}";
+                }
+            });
+        }
+
+        /**
+         * 预先处理一批封面缩略图（JSON数组字符串），用于列表的下一页
+         * @param size 目标尺寸（像素）
+         */
+        @JavascriptInterface
+        public void prefetchImages(String urls, int size) {
+            timed("bridge.prefetchImages", () -> {
+                try {
+                    JSONArray array = new JSONArray(urls);
+                    List<String> list = new ArrayList<>(array.length());
+                    for (int i = 0; i < array.length(); i++) {
+                        String url = array.optString(i, "");
+                        if (!url.isEmpty()) {
+                            list.add(url);
+                        }
+                    }
+                    ImageProxy.getInstance(MainActivity.this).prefetch(list, size);
+                } catch (Exception e) {
+                    Log.e(TAG, "预取封面时出错", e);
+                }
+            });
+        }
+
+        /**
+         * 获取封面代理统计（JSON字符串）：缓存命中、转码和转发原图次数，以及转码前后的字节数
+         */
+        @JavascriptInterface
+        public String getImageProxyStats() {
+            return timed("bridge.getImageProxyStats", () -> {
+                try {
+                    ImageProxy proxy = ImageProxy.getInstance(MainActivity.this);
+                    JSONObject result = new JSONObject();
+                    result.put("hits", proxy.getHitCount());
+                    result.put("transcoded", proxy.getTranscodeCount());
+                    result.put("passthrough", proxy.getPassthroughCount());
+                    result.put("prefetched", proxy.getPrefetchCount());
+                    result.put("sourceBytes", proxy.getSourceBytes());
+                    result.put("outputBytes", proxy.getOutputBytes());
+                    result.put("count", proxy.getCacheCount());
+                    result.put("sizeBytes", proxy.getCacheSize());
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "获取封面代理统计时出错", e);
+                    return "{}";
+                }
+            });
+        }
+
+        /**
+         * 清空API响应缓存
+         */
+        @JavascriptInterface
+        public void clearApiCache() {
+            timed("bridge.clearApiCache", () -> {
+                ApiResponseCache.getInstance(MainActivity.this).clear();
+                Log.d(TAG, "已清空API响应缓存");
+            });
+        }
+
+        /**
+         * 在后台加载歌单歌曲，进度通过window.onNativePlaylistEvent通知
+         * @param playlistId 歌单ID，也是后续分页读取的句柄
+         * @param url /playlist/track/all的完整地址
+         */
+        @JavascriptInterface
+        public void openPlaylistTracks(String playlistId, String url) {
+            timed("bridge.openPlaylistTracks", () -> {
+                if (playlistId == null || url == null || !url.startsWith("http")) {
+                    Log.e(TAG, "无效的歌单加载参数: " + playlistId);
+                    return;
+                }
+                playlistTrackLoader.load(playlistId, url, playlistCallback);
+            });
+        }
+
+        /**
+         * 解析LRC/YRC歌词
+         * 传入歌曲ID时同时交给播放服务，在锁屏和通知栏显示当前歌词行
+         * @return 按时间排序的歌词行JSON数组 [{time(秒), text}]
+         */
+        @JavascriptInterface
+        public String parseLyrics(String lrc, String songId) {
+            return timed("bridge.parseLyrics", () -> {
+                try {
+                    LyricTimeline timeline = LyricTimeline.parse(lrc);
+                    if (songId != null && !songId.isEmpty()) {
+                        synchronized (MainActivity.this) {
+                            lyricSongId = songId;
+                            lyricTimeline = timeline;
+                        }
+                        runOnService(service -> service.setLyrics(songId, timeline), "设置歌词");
+                    }
+                    JSONArray lines = new JSONArray();
+                    for (int i = 0; i < timeline.size(); i++) {
+                        JSONObject line = new JSONObject();
+                        line.put("time", timeline.getTime(i) / 1000.0);
+                        line.put("text", timeline.getText(i));
+                        lines.put(line);
+                    }
+                    return lines.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "解析歌词时出错", e);
+                    return "[]";
+                }
+            });
+        }
+
+        /**
+         * 分页读取已加载的歌单歌曲（JSON字符串）
+         */
+        @JavascriptInterface
+        public String getPlaylistTracksPage(String playlistId, int offset, int limit) {
+            return timed("bridge.getPlaylistTracksPage", () -> {
+                try {
+                    TrackTable table = playlistTrackLoader.get(playlistId);
+                    if (table == null) {
+                        return "{}";
+                    }
+                    JSONArray tracks = new JSONArray();
+                    table.readPage(offset, limit, (index, id, name, artist, album, cover, durationMs, flags) -> {
+                        try {
+                            JSONObject track = new JSONObject();
+                            track.put("id", id);
+                            track.put("name", name);
+                            track.put("artist", artist);
+                            track.put("album", album);
+                            track.put("cover", cover);
+                            track.put("duration", durationMs);
+                            track.put("sq", (flags & TrackTable.FLAG_SQ) != 0);
+                            track.put("hr", (flags & TrackTable.FLAG_HR) != 0);
+                            tracks.put(track);
+                        } catch (Exception e) {
+                            Log.e(TAG, "生成歌曲数据出错", e);
+                        }
+                    });
+                    JSONObject result = new JSONObject();
+                    result.put("playlistId", playlistId);
+                    result.put("offset", Math.max(0, offset));
+                    result.put("total", table.size());
+                    result.put("complete", table.isComplete());
+                    result.put("tracks", tracks);
+                    return result.toString();
+                } catch (Exception e) {
+                    Log.e(TAG, "读取歌单分页时出错", e);
+                    return "{}";
+                }
+            });
+        }
+
+        /**
+         * 同步播放队列（JSON字符串：{ids: [...], index, mode}），服务据此自行决定上一首/下一首
+         */
+        @JavascriptInterface
+        public void setQueue(String json) {
+            timed("bridge.setQueue", () -> {
+                try {
+                    JSONObject object = new JSONObject(json);
+                    JSONArray idArray = object.optJSONArray("ids");
+                    int size = idArray != null ? idArray.length() : 0;
+                    long[] ids = new long[size];
+                    byte[] sources = new byte[size];
+                    byte[] source = new byte[1];
+                    for (int i = 0; i < size; i++) {
+                        ids[i] = PlayQueue.parseId(idArray.optString(i, null), source);
+                        sources[i] = source[0];
+                    }
+                    final int index = object.optInt("index", -1);
+                    final int mode = PlayQueue.parseMode(object.optString("mode", "sequential"));
+                    runOnService(service -> service.setQueue(ids, sources, index, mode), "同步播放队列");
+                } catch (Exception e) {
+                    Log.e(TAG, "同步播放队列时出错", e);
+                }
+            });
+        }
+
+        /**
+         * 播放结束后自动切换的目标位置（随机模式使用服务端的随机顺序），没有队列时返回-1
+         */
+        @JavascriptInterface
+        public int peekNextQueueIndex() {
+            return timed("bridge.peekNextQueueIndex", () -> {
+                MusicPlaybackService service = musicService;
+                return service != null ? service.getPlayQueue().peekNext(true) : -1;
+            });
+        }
+
+        /**
+         * 检查服务是否运行
+         */
+        @JavascriptInterface
+        public boolean isServiceRunning() {
+            return timed("bridge.isServiceRunning", () -> musicService != null);
+        }
+    }
+
+    /**
+     * 收藏存储的JavaScript接口（window.AndroidFavorites）
+     * type为favoritesService.js中STORAGE_KEYS的键名（SONGS、PLAYLISTS等）
+     */
+    public class FavoritesInterface {
+        private FavoritesStore store() {
+            return FavoritesStore.getInstance(MainActivity.this);
+        }
+
+        /**
+         * 歌单和排行榜在离线索引中是同一种文档，返回另一种收藏类型，其他类型返回null
+         */
+        private String siblingType(String type) {
+            if ("PLAYLISTS".equals(type)) {
+                return "RANKINGS";
+            }
+            return "RANKINGS".equals(type) ? "PLAYLISTS" : null;
+        }
+
+        /**
+         * 清空收藏后清除离线索引中的收藏标志，另一种仍然收藏着的歌单重新标记
+         */
+        private void unindexAll(String type) {
+            OfflineSearch search = OfflineSearch.getInstance(MainActivity.this);
+            search.unfavoriteAll(type);
+            String sibling = siblingType(type);
+            if (sibling != null) {
+                FavoritesStore store = store();
+                int count = store.count(sibling);
+                if (count > 0) {
+                    search.indexFavorites(sibling, store.page(sibling, 0, count));
+                }
+            }
+        }
+
+        /**
+         * 添加或更新收藏
+         * @return 是否是新添加的
+         */
+        @JavascriptInterface
+        public boolean put(String type, String id, String rid, String json) {
+            return timed("bridge.favorites.put", () -> {
+                try {
+                    boolean added = store().put(type, id, rid, json);
+                    OfflineSearch.getInstance(MainActivity.this).indexFavorite(type, json);
+                    return added;
+                } catch (Exception e) {
+                    Log.e(TAG, "保存收藏时出错: " + type + "/" + id, e);
+                    return false;
+                }
+            });
+        }
+
+        @JavascriptInterface
+        public boolean remove(String type, String id) {
+            return timed("bridge.favorites.remove", () -> {
+                try {
+                    FavoritesStore store = store();
+                    boolean removed = store.remove(type, id);
+                    String sibling = siblingType(type);
+                    if (removed && (sibling == null || !store.contains(sibling, id))) {
+                        OfflineSearch.getInstance(MainActivity.this).unfavorite(type, id);
+                    }
+                    return removed;
+                } catch (Exception e) {
+                    Log.e(TAG, "移除收藏时出错: " + type + "/" + id, e);
+                    return false;
+                }
+            });
+        }
+
+        /**
+         * 是否存在完全相同的ID
+         */
+        @JavascriptInterface
+        public boolean contains(String type, String id) {
+            return timed("bridge.favorites.contains", () -> {
+                try {
+                    return store().contains(type, id);
+                } catch (Exception e) {
+                    Log.e(TAG, "检查收藏ID时出错: " + type + "/" + id, e);
+                    return false;
+                }
+            });
+        }
+
+        @JavascriptInterface
+        public boolean isFavorited(String type, String id) {
+            return timed("bridge.favorites.isFavorited", () -> {
+                try {
+                    return store().isFavorited(type, id);
+                } catch (Exception e) {
+                    Log.e(TAG, "检查收藏状态时出错: " + type + "/" + id, e);
+                    return false;
+                }
+            });
+        }
+
+        @JavascriptInterface
+        public int count(String type) {
+            return timed("bridge.favorites.count", () -> {
+                try {
+                    return store().count(type);
+                } catch (Exception e) {
+                    Log.e(TAG, "获取收藏数量时出错: " + type, e);
+                    return 0;
+                }
+            });
+        }
+
+        /**
+         * 按收藏顺序分页读取（JSON数组字符串）
+         */
+        @JavascriptInterface
+        public String getPage(String type, int offset, int limit) {
+            return timed("bridge.favorites.getPage", () -> {
+                try {
+                    return store().page(type, offset, limit);
+                } catch (Exception e) {
+                    Log.e(TAG, "读取收藏列表时出错: " + type, e);
+                    return "[]";
+                }
+            });
+        }
+
+        @JavascriptInterface
+        public void clear(String type) {
+            timed("bridge.favorites.clear", () -> {
+                try {
+                    store().clear(type);
+                    unindexAll(type);
+                } catch (Exception e) {
+                    Log.e(TAG, "清空收藏时出错: " + type, e);
+                }
+            });
+        }
+
+        /**
+         * 导入localStorage中的旧收藏（JSON数组字符串），已存在的ID不覆盖
+         * @return 导入的数量，出错时返回-1
+         */
+        @JavascriptInterface
+        public int importAll(String type, String json) {
+            return timed("bridge.favorites.importAll", () -> {
+                try {
+                    JSONArray items = new JSONArray(json);
+                    FavoritesStore store = store();
+                    int imported = 0;
+                    for (int i = 0; i < items.length(); i++) {
+                        JSONObject item = items.optJSONObject(i);
+                        if (item == null || !item.has("id") || store.contains(type, item.optString("id"))) {
+                            continue;
+                        }
+                        store.put(type, item.optString("id"), item.optString("rid", ""), item.toString());
+                        imported++;
+                    }
+                    // Web层收到结果后会删除localStorage中的旧收藏，必须确认已写入磁盘
+                    if (!store.syncWrites(IMPORT_SYNC_TIMEOUT_MS)) {
+                        Log.e(TAG, "导入的收藏未能写入磁盘，保留旧收藏: " + type);
+                        return -1;
+                    }
+                    Log.d(TAG, "已导入收藏: " + type + " " + imported + " 条");
+                    OfflineSearch.getInstance(MainActivity.this).indexFavorites(type, json);
+                    return imported;
+                } catch (Exception e) {
+                    Log.e(TAG, "导入收藏时出错: " + type, e);
+                    return -1;
+                }
+            });
+        }
+
+        /**
+         * 用给定列表替换全部收藏（JSON数组字符串）
+         */
+        @JavascriptInterface
+        public boolean replaceAll(String type, String json) {
+            return timed("bridge.favorites.replaceAll", () -> {
+                try {
+                    JSONArray items = new JSONArray(json);
+                    FavoritesStore store = store();
+                    store.clear(type);
+                    unindexAll(type);
+                    for (int i = 0; i < items.length(); i++) {
+                        JSONObject item = items.optJSONObject(i);
+                        if (item != null && item.has("id")) {
+                            store.put(type, item.optString("id"), item.optString("rid", ""), item.toString());
+                        }
+                    }
+                    OfflineSearch.getInstance(MainActivity.this).indexFavorites(type, json);
+                    return true;
+                } catch (Exception e) {
+                    Log.e(TAG, "替换收藏时出错: " + type, e);
+                    return false;
+                }
+            });
+        }
+    }
+
+    /**
+     * 按顺序执行服务连接前排队的原生引擎操作（主线程）
+     */
+    private void flushPendingEngineActions() {
+        if (pendingEngineActions.isEmpty() || musicService == null || musicService.getAudioEngine() == null) {
+            return;
+        }
+        List<Runnable> actions = new ArrayList<>(pendingEngineActions);
+        pendingEngineActions.clear();
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    /**
+     * 执行桥接方法的主体并记录耗时（返回值版本）
+     */
+    private <T> T timed(String metric, TimedCall<T> call) {
+        final long start = MetricsRegistry.start();
+        try {
+            return call.call();
+        } finally {
+            metrics.recordSince(metric, start);
+        }
+    }
+
+    /**
+     * 执行桥接方法的主体并记录耗时（无返回值版本）
+     */
+    private void timed(String metric, TimedAction action) {
+        final long start = MetricsRegistry.start();
+        try {
+            action.run();
+        } finally {
+            metrics.recordSince(metric, start);
+        }
+    }
+
+    /**
+     * 有返回值的桥接方法主体
+     */
+    private interface TimedCall<T> {
+        T call();
+    }
+
+    /**
+     * 无返回值的桥接方法主体
+     */
+    private interface TimedAction {
+        void run();
+    }
+
+    /**
+     * 对原生播放引擎执行的操作
+     */
+    private interface EngineAction {
+        void run(NativeAudioEngine engine);
+    }
+
+    /**
+     * 在服务工作线程上执行的操作
+     */
+    private interface ServiceAction {
+        void run(MusicPlaybackService service);
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+package com.ymmusic.app;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 媒体浏览客户端校验
+ * 浏览服务会提供收藏、最近播放和媒体会话，只允许本应用、系统（系统签名或预装的系统应用）
+ * 以及已知的车机、手表和语音助手宿主连接。已知宿主按包名识别，并要求包名确实属于调用方的uid
+ */
+final class MediaClientValidator {
+    private static final String TAG = "MediaClientValidator";
+
+    // 已知的浏览宿主：Android Auto及其模拟器、Wear OS、Google助理
+    private static final Set<String> KNOWN_HOSTS = new HashSet<>(Arrays.asList(
+            "com.google.android.projection.gearhead",
+            "com.google.android.autosimulator",
+            "com.google.android.wearable.app",
+            "com.google.android.googlequicksearchbox",
+            "com.google.android.carassistant"));
+
+    private final Context context;
+    // 校验结果按包名和uid缓存，同一客户端每次连接不再查询PackageManager
+    private final Map<String, Boolean> results = new HashMap<>();
+
+    MediaClientValidator(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * 是否允许该客户端浏览和控制播放
+     */
+    boolean isAllowed(String packageName, int uid) {
+        if (uid == Process.myUid() || uid == Process.SYSTEM_UID) {
+            return true;
+        }
+        String key = packageName + ":" + uid;
+        synchronized (results) {
+            Boolean cached = results.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        boolean allowed = check(packageName, uid);
+        synchronized (results) {
+            results.put(key, allowed);
+        }
+        if (!allowed) {
+            Log.w(TAG, "拒绝媒体浏览客户端: " + packageName + " (uid " + uid + ")");
+        }
+        return allowed;
+    }
+
+    private boolean check(String packageName, int uid) {
+        PackageManager packageManager = context.getPackageManager();
+        String[] packages = packageManager.getPackagesForUid(uid);
+        if (packages == null || !Arrays.asList(packages).contains(packageName)) {
+            // 声称的包名不属于调用方
+            return false;
+        }
+        // 系统界面的媒体控件、蓝牙等持有只授予系统的媒体控制权限
+        if (context.checkPermission(Manifest.permission.MEDIA_CONTENT_CONTROL, -1, uid)
+                == PackageManager.PERMISSION_GRANTED) {
+            return true;
+        }
+        if (packageManager.checkSignatures("android", packageName) == PackageManager.SIGNATURE_MATCH) {
+            return true;
+        }
+        try {
+            ApplicationInfo info = packageManager.getApplicationInfo(packageName, 0);
+            if ((info.flags & (ApplicationInfo.FLAG_SYSTEM | ApplicationInfo.FLAG_UPDATED_SYSTEM_APP)) != 0) {
+                return true;
+            }
+        } catch (PackageManager.NameNotFoundException e) {
+            return false;
+        }
+        return KNOWN_HOSTS.contains(packageName);
+    }
+}
@@ -0,0 +1,349 @@
+package com.ymmusic.app;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.v4.media.MediaBrowserCompat;
+import android.support.v4.media.MediaDescriptionCompat;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 媒体浏览树的数据来源
+ * 收藏和收藏的歌单来自FavoritesStore，最近播放来自RecentTracks，排行榜来自API响应缓存，
+ * 歌单歌曲由PlaylistTrackLoader流式加载，每次只构建客户端请求的那一页。
+ * 目录内容在后台线程构建；酷我歌曲的地址只能由Web层获取，不出现在浏览树中
+ */
+public class MediaLibrary {
+    private static final String TAG = "MediaLibrary";
+
+    // 与src/services/api.js的默认BASE_URL一致，Web层没有运行时也能直接请求
+    static final String API_BASE = "https://api.931125.xyz";
+    private static final String FAVORITE_SONGS = "SONGS";
+    private static final String FAVORITE_PLAYLISTS = "PLAYLISTS";
+    // 从浏览树开始播放时，连同选中的歌曲一起放入播放队列的歌曲数
+    static final int PLAY_AHEAD = 5;
+    // 查找选中歌曲时每次读取的收藏条数
+    private static final int SCAN_PAGE_SIZE = 100;
+
+    /**
+     * 目录内容回调，在后台线程调用；目录不存在时items为null
+     */
+    public interface ChildrenCallback {
+        void onChildren(List<MediaBrowserCompat.MediaItem> items);
+    }
+
+    /**
+     * 播放准备回调，在后台线程调用
+     */
+    public interface PlaybackCallback {
+        /**
+         * 解析出一首歌曲的播放地址，first为选中的歌曲，其余按顺序追加到队列
+         */
+        void onTrackReady(RecentTracks.Track track, String url, boolean first);
+
+        void onError(String message);
+    }
+
+    private final Context context;
+    private final RecentTracks recentTracks;
+    private final PlaylistTrackLoader playlistTrackLoader = new PlaylistTrackLoader();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MediaLibrary");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MediaLibrary(Context context, RecentTracks recentTracks) {
+        this.context = context.getApplicationContext();
+        this.recentTracks = recentTracks;
+    }
+
+    /**
+     * 读取目录的一页
+     * @param page 页码，没有请求分页时为负数
+     * @param pageSize 每页条数，没有请求分页时为0
+     */
+    public void loadChildren(String parentId, int page, int pageSize, ChildrenCallback callback) {
+        final int[] window = BrowseTree.pageWindow(page, pageSize);
+        final int offset = window[0];
+        final int limit = window[1];
+        executor.execute(() -> {
+            final long start = MetricsRegistry.start();
+            try {
+                String playlistId = BrowseTree.playlistOf(parentId);
+                if (playlistId != null) {
+                    // 歌单歌曲可能要等网络，加载完成后再回调
+                    loadPlaylistTracks(parentId, playlistId, offset, limit, callback);
+                    return;
+                }
+                List<MediaBrowserCompat.MediaItem> items;
+                switch (parentId) {
+                    case BrowseTree.ROOT:
+                        items = rootItems();
+                        break;
+                    case BrowseTree.FAVORITES:
+                        items = trackItems(BrowseTree.FAVORITES, favoriteSongs(offset, limit));
+                        break;
+                    case BrowseTree.RECENT:
+                        items = trackItems(BrowseTree.RECENT, recentTracks.page(offset, limit));
+                        break;
+                    case BrowseTree.TOPLISTS:
+                        items = toplistItems(offset, limit);
+                        break;
+                    case BrowseTree.PLAYLISTS:
+                        items = favoritePlaylistItems(offset, limit);
+                        break;
+                    default:
+                        items = null;
+                        break;
+                }
+                callback.onChildren(items);
+            } catch (Exception e) {
+                Log.e(TAG, "读取浏览目录出错: " + parentId, e);
+                callback.onChildren(Collections.<MediaBrowserCompat.MediaItem>emptyList());
+            } finally {
+                MetricsRegistry.getInstance().recordSince("browse.loadChildren", start);
+            }
+        });
+    }
+
+    private List<MediaBrowserCompat.MediaItem> rootItems() {
+        List<MediaBrowserCompat.MediaItem> items = new ArrayList<>(4);
+        items.add(item(BrowseTree.FAVORITES, "我的收藏", null, null, MediaBrowserCompat.MediaItem.FLAG_BROWSABLE));
+        items.add(item(BrowseTree.RECENT, "最近播放", null, null, MediaBrowserCompat.MediaItem.FLAG_BROWSABLE));
+        items.add(item(BrowseTree.TOPLISTS, "排行榜", null, null, MediaBrowserCompat.MediaItem.FLAG_BROWSABLE));
+        items.add(item(BrowseTree.PLAYLISTS, "收藏的歌单", null, null, MediaBrowserCompat.MediaItem.FLAG_BROWSABLE));
+        return items;
+    }
+
+    private List<MediaBrowserCompat.MediaItem> trackItems(String parentId, List<RecentTracks.Track> tracks) {
+        List<MediaBrowserCompat.MediaItem> items = new ArrayList<>(tracks.size());
+        for (RecentTracks.Track track : tracks) {
+            if (SongUrlResolver.accepts(track.songId)) {
+                items.add(item(BrowseTree.trackId(parentId, track.songId), track.title, track.artist,
+                        track.coverUrl, MediaBrowserCompat.MediaItem.FLAG_PLAYABLE));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * 收藏的歌曲（按收藏顺序）
+     */
+    private List<RecentTracks.Track> favoriteSongs(int offset, int limit) throws Exception {
+        JSONArray array = new JSONArray(FavoritesStore.getInstance(context).page(FAVORITE_SONGS, offset, limit));
+        List<RecentTracks.Track> tracks = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject song = array.optJSONObject(i);
+            if (song != null) {
+                tracks.add(new RecentTracks.Track(song.optString("id"), song.optString("name", "未知歌曲"),
+                        song.optString("artist", "未知艺术家"), song.optString("albumArt", null)));
+            }
+        }
+        return tracks;
+    }
+
+    private List<MediaBrowserCompat.MediaItem> toplistItems(int offset, int limit) throws Exception {
+        String body = ApiResponseCache.getInstance(context).preload(API_BASE + "/toplist");
+        JSONArray list = body != null ? new JSONObject(body).optJSONArray("list") : null;
+        List<MediaBrowserCompat.MediaItem> items = new ArrayList<>();
+        for (int i = offset; list != null && i < list.length() && items.size() < limit; i++) {
+            JSONObject toplist = list.optJSONObject(i);
+            if (toplist != null && toplist.has("id")) {
+                items.add(item(BrowseTree.playlistId(String.valueOf(toplist.optLong("id"))),
+                        toplist.optString("name"), toplist.optString("updateFrequency", null),
+                        toplist.optString("coverImgUrl", null), MediaBrowserCompat.MediaItem.FLAG_BROWSABLE));
+            }
+        }
+        return items;
+    }
+
+    private List<MediaBrowserCompat.MediaItem> favoritePlaylistItems(int offset, int limit) throws Exception {
+        JSONArray array = new JSONArray(FavoritesStore.getInstance(context).page(FAVORITE_PLAYLISTS, offset, limit));
+        List<MediaBrowserCompat.MediaItem> items = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject playlist = array.optJSONObject(i);
+            if (playlist == null || !playlist.has("id")) {
+                continue;
+            }
+            int trackCount = playlist.optInt("trackCount", 0);
+            String cover = playlist.optString("coverImgUrl", playlist.optString("picUrl", null));
+            items.add(item(BrowseTree.playlistId(playlist.optString("id")), playlist.optString("name"),
+                    trackCount > 0 ? trackCount + "首" : null, cover, MediaBrowserCompat.MediaItem.FLAG_BROWSABLE));
+        }
+        return items;
+    }
+
+    /**
+     * 歌单的一页；歌单还没加载到这一页时，解析到这一页（或加载完成）后再回调
+     */
+    private void loadPlaylistTracks(String parentId, String playlistId, int offset, int limit,
+                                    ChildrenCallback callback) {
+        final AtomicBoolean sent = new AtomicBoolean(false);
+        playlistTrackLoader.load(playlistId, playlistTracksUrl(playlistId), new PlaylistTrackLoader.Callback() {
+            @Override
+            public void onProgress(String id, TrackTable table) {
+                if (table.size() >= offset + limit && sent.compareAndSet(false, true)) {
+                    callback.onChildren(trackItems(parentId, readTracks(table, offset, limit)));
+                }
+            }
+
+            @Override
+            public void onLoaded(String id, TrackTable table) {
+                if (sent.compareAndSet(false, true)) {
+                    callback.onChildren(trackItems(parentId, readTracks(table, offset, limit)));
+                }
+            }
+
+            @Override
+            public void onError(String id, String message) {
+                if (sent.compareAndSet(false, true)) {
+                    callback.onChildren(Collections.<MediaBrowserCompat.MediaItem>emptyList());
+                }
+            }
+        });
+    }
+
+    static String playlistTracksUrl(String playlistId) {
+        return API_BASE + "/playlist/track/all?id=" + Uri.encode(playlistId) + "&limit=9999&offset=0";
+    }
+
+    private static List<RecentTracks.Track> readTracks(TrackTable table, int offset, int limit) {
+        final List<RecentTracks.Track> tracks = new ArrayList<>();
+        table.readPage(offset, limit, (index, id, name, artist, album, cover, durationMs, flags) ->
+                tracks.add(new RecentTracks.Track(String.valueOf(id), name, artist, cover)));
+        return tracks;
+    }
+
+    private MediaBrowserCompat.MediaItem item(String mediaId, String title, String subtitle, String coverUrl, int flags) {
+        MediaDescriptionCompat.Builder builder = new MediaDescriptionCompat.Builder()
+                .setMediaId(mediaId)
+                .setTitle(title)
+                .setSubtitle(subtitle);
+        Uri icon = CoverArtProvider.coverUri(context, coverUrl);
+        if (icon != null) {
+            builder.setIconUri(icon);
+        }
+        return new MediaBrowserCompat.MediaItem(builder.build(), flags);
+    }
+
+    /**
+     * 准备从浏览树播放一首歌曲：先解析选中歌曲的地址并回调，再解析所在目录中接下来的几首
+     */
+    public void preparePlayback(String mediaId, PlaybackCallback callback) {
+        executor.execute(() -> {
+            final long start = MetricsRegistry.start();
+            try {
+                String parentId = BrowseTree.parentOf(mediaId);
+                String songId = BrowseTree.songOf(mediaId);
+                if (parentId == null || !SongUrlResolver.accepts(songId)) {
+                    callback.onError("不支持的歌曲: " + mediaId);
+                    return;
+                }
+                List<RecentTracks.Track> tracks = tracksFrom(parentId, songId);
+                if (tracks.isEmpty()) {
+                    callback.onError("找不到歌曲: " + mediaId);
+                    return;
+                }
+                SongUrlResolver resolver = SongUrlResolver.getInstance();
+                if (resolver.getEndpoint() == null) {
+                    resolver.setEndpoint(API_BASE + "/song/url");
+                }
+
+                // 选中的歌曲单独解析，尽快开始播放
+                RecentTracks.Track first = tracks.get(0);
+                resolver.resolveNow(first.songId);
+                SongUrlCache.Entry entry = resolver.lookup(first.songId);
+                if (entry == null) {
+                    callback.onError("无法获取播放地址: " + first.title);
+                    return;
+                }
+                callback.onTrackReady(first, entry.url, true);
+                MetricsRegistry.getInstance().recordSince("browse.playStart", start);
+
+                String[] rest = new String[tracks.size() - 1];
+                for (int i = 1; i < tracks.size(); i++) {
+                    rest[i - 1] = tracks.get(i).songId;
+                }
+                resolver.resolveNow(rest);
+                for (int i = 1; i < tracks.size(); i++) {
+                    SongUrlCache.Entry next = resolver.lookup(tracks.get(i).songId);
+                    if (next != null) {
+                        callback.onTrackReady(tracks.get(i), next.url, false);
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "准备播放出错: " + mediaId, e);
+                callback.onError(e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 目录中从选中歌曲开始的几首可播放的歌曲
+     */
+    private List<RecentTracks.Track> tracksFrom(String parentId, String songId) throws Exception {
+        List<RecentTracks.Track> candidates = new ArrayList<>();
+        String playlistId = BrowseTree.playlistOf(parentId);
+        if (playlistId != null) {
+            TrackTable table = playlistTrackLoader.get(playlistId);
+            if (table != null) {
+                final long id = Long.parseLong(songId);
+                final int[] found = {-1};
+                table.readPage(0, table.size(), (index, rowId, name, artist, album, cover, durationMs, flags) -> {
+                    if (found[0] < 0 && rowId == id) {
+                        found[0] = index;
+                    }
+                });
+                if (found[0] >= 0) {
+                    candidates = readTracks(table, found[0], PLAY_AHEAD);
+                }
+            }
+        } else if (BrowseTree.RECENT.equals(parentId)) {
+            candidates = startingAt(recentTracks.page(0, RecentTracks.MAX_TRACKS), songId);
+        } else if (BrowseTree.FAVORITES.equals(parentId)) {
+            for (int offset = 0; candidates.isEmpty(); offset += SCAN_PAGE_SIZE) {
+                List<RecentTracks.Track> page = favoriteSongs(offset, SCAN_PAGE_SIZE + PLAY_AHEAD);
+                if (page.isEmpty()) {
+                    break;
+                }
+                candidates = startingAt(page, songId);
+                if (page.size() < SCAN_PAGE_SIZE + PLAY_AHEAD) {
+                    break;
+                }
+            }
+        }
+        List<RecentTracks.Track> tracks = new ArrayList<>(PLAY_AHEAD);
+        for (RecentTracks.Track track : candidates) {
+            if (tracks.size() < PLAY_AHEAD && SongUrlResolver.accepts(track.songId)) {
+                tracks.add(track);
+            }
+        }
+        return tracks;
+    }
+
+    private static List<RecentTracks.Track> startingAt(List<RecentTracks.Track> tracks, String songId) {
+        for (int i = 0; i < tracks.size(); i++) {
+            if (songId.equals(tracks.get(i).songId)) {
+                return tracks.subList(i, tracks.size());
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * 内存紧张时释放已加载的歌单
+     */
+    public long trimMemory(int level) {
+        return playlistTrackLoader.trimMemory(level);
+    }
+}
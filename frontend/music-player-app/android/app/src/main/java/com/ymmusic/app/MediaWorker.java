@@ -0,0 +1,150 @@
+package com.ymmusic.app;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 播放服务的串行工作线程
+ * 媒体会话、通知栏和WakeLock的更新都在这个线程上按提交顺序执行，不占用主线程；
+ * 记录排队深度和每个任务的等待/执行耗时，用于确认主线程不再被这些工作阻塞
+ */
+public class MediaWorker implements Executor {
+    private static final String TAG = "MediaWorker";
+
+    // 执行超过这个时间的任务会打印日志
+    private static final long SLOW_TASK_MS = 16;
+
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger maxPending = new AtomicInteger();
+    private final AtomicLong executedCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxRunNanos = new AtomicLong();
+
+    public MediaWorker(String name) {
+        thread = new HandlerThread(name, Process.THREAD_PRIORITY_AUDIO);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * 提交任务，按提交顺序执行
+     */
+    @Override
+    public void execute(Runnable task) {
+        final long enqueuedAt = SystemClock.elapsedRealtimeNanos();
+        int depth = pending.incrementAndGet();
+        updateMax(maxPending, depth);
+        boolean posted = handler.post(() -> {
+            pending.decrementAndGet();
+            long startedAt = SystemClock.elapsedRealtimeNanos();
+            try {
+                task.run();
+            } catch (Exception e) {
+                Log.e(TAG, "执行任务出错", e);
+            } finally {
+                long finishedAt = SystemClock.elapsedRealtimeNanos();
+                recordTask(startedAt - enqueuedAt, finishedAt - startedAt);
+            }
+        });
+        if (!posted) {
+            // 线程已退出，任务被丢弃
+            pending.decrementAndGet();
+            Log.w(TAG, "工作线程已退出，丢弃任务");
+        }
+    }
+
+    private void recordTask(long waitNanos, long runNanos) {
+        executedCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        totalRunNanos.addAndGet(runNanos);
+        updateMax(maxWaitNanos, waitNanos);
+        updateMax(maxRunNanos, runNanos);
+        if (runNanos > SLOW_TASK_MS * 1_000_000L) {
+            Log.w(TAG, "任务执行耗时 " + runNanos / 1_000_000L + "ms");
+        }
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // 重试
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // 重试
+        }
+    }
+
+    /**
+     * 工作线程的Looper，供需要延迟执行的组件创建Handler
+     */
+    public Looper getLooper() {
+        return thread.getLooper();
+    }
+
+    /**
+     * 当前是否在工作线程上
+     */
+    public boolean isCurrentThread() {
+        return Looper.myLooper() == thread.getLooper();
+    }
+
+    /**
+     * 执行完已提交的任务后退出，尚未到期的延迟任务会被丢弃
+     */
+    public void quitSafely() {
+        thread.quitSafely();
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    public int getMaxPendingCount() {
+        return maxPending.get();
+    }
+
+    public long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    /**
+     * 平均排队等待时间（毫秒）
+     */
+    public double getAverageWaitMs() {
+        long count = executedCount.get();
+        return count > 0 ? totalWaitNanos.get() / 1e6 / count : 0;
+    }
+
+    public double getMaxWaitMs() {
+        return maxWaitNanos.get() / 1e6;
+    }
+
+    /**
+     * 平均执行时间（毫秒）
+     */
+    public double getAverageRunMs() {
+        long count = executedCount.get();
+        return count > 0 ? totalRunNanos.get() / 1e6 / count : 0;
+    }
+
+    public double getMaxRunMs() {
+        return maxRunNanos.get() / 1e6;
+    }
+}
@@ -0,0 +1,199 @@
+package com.ymmusic.app;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 内存压力处理
+ * 原生缓存按优先级注册，收到onTrimMemory/onLowMemory时按级别从低优先级开始释放，
+ * 并通知监听者（Activity再转发给Web层清理JS缓存），同时统计释放的字节数
+ */
+public class MemoryTrimRegistry implements ComponentCallbacks2 {
+    private static final String TAG = "MemoryTrimRegistry";
+
+    // 可以随时重建的缓存，界面隐藏就释放
+    public static final int PRIORITY_LOW = 0;
+    // 重建有一定代价的缓存，内存较紧张时释放
+    public static final int PRIORITY_NORMAL = 1;
+    // 当前界面正在使用的数据，只在内存严重不足时释放
+    public static final int PRIORITY_HIGH = 2;
+
+    private static MemoryTrimRegistry instance;
+
+    /**
+     * 可释放内存的缓存
+     */
+    public interface Trimmable {
+        /**
+         * @param level onTrimMemory的级别，可据此决定部分或全部释放
+         * @return 释放的字节数（估算值）
+         */
+        long trimMemory(int level);
+    }
+
+    /**
+     * 释放完成的监听器
+     */
+    public interface Listener {
+        void onMemoryTrimmed(int level, int maxPriority, long bytesReclaimed);
+    }
+
+    private static final class Entry {
+        final String name;
+        final int priority;
+        final Trimmable trimmable;
+        long bytesReclaimed;
+
+        Entry(String name, int priority, Trimmable trimmable) {
+            this.name = name;
+            this.priority = priority;
+            this.trimmable = trimmable;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private long trimCount = 0;
+    private long totalBytesReclaimed = 0;
+    private int lastLevel = -1;
+
+    /**
+     * 获取单例，首次调用时注册到Application上接收整个进程的内存回调
+     */
+    public static synchronized MemoryTrimRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new MemoryTrimRegistry();
+            context.getApplicationContext().registerComponentCallbacks(instance);
+        }
+        return instance;
+    }
+
+    MemoryTrimRegistry() {
+    }
+
+    /**
+     * 注册缓存，同名的缓存会被替换
+     */
+    public synchronized void register(String name, int priority, Trimmable trimmable) {
+        unregister(name);
+        entries.add(new Entry(name, priority, trimmable));
+    }
+
+    public synchronized void unregister(String name) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (entries.get(i).name.equals(name)) {
+                entries.remove(i);
+            }
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 该级别需要释放到的最高优先级
+     */
+    static int maxPriorityFor(int level) {
+        if (level >= TRIM_MEMORY_COMPLETE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            return PRIORITY_HIGH;
+        }
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_LOW) {
+            return PRIORITY_NORMAL;
+        }
+        return PRIORITY_LOW;
+    }
+
+    /**
+     * 按级别释放缓存，低优先级的先释放
+     * @return 释放的字节数
+     */
+    public long trim(int level) {
+        int maxPriority = maxPriorityFor(level);
+        long reclaimed = 0;
+        synchronized (this) {
+            for (int priority = PRIORITY_LOW; priority <= maxPriority; priority++) {
+                for (Entry entry : entries) {
+                    if (entry.priority != priority) {
+                        continue;
+                    }
+                    try {
+                        long bytes = Math.max(0, entry.trimmable.trimMemory(level));
+                        entry.bytesReclaimed += bytes;
+                        reclaimed += bytes;
+                    } catch (Exception e) {
+                        Log.e(TAG, "释放缓存出错: " + entry.name, e);
+                    }
+                }
+            }
+            trimCount++;
+            totalBytesReclaimed += reclaimed;
+            lastLevel = level;
+        }
+        Log.d(TAG, "内存回收 级别=" + level + " 优先级<=" + maxPriority + " 释放 " + reclaimed / 1024 + "KB");
+        for (Listener listener : listeners) {
+            listener.onMemoryTrimmed(level, maxPriority, reclaimed);
+        }
+        return reclaimed;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        trim(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    public synchronized long getTrimCount() {
+        return trimCount;
+    }
+
+    public synchronized long getTotalBytesReclaimed() {
+        return totalBytesReclaimed;
+    }
+
+    public synchronized int getLastLevel() {
+        return lastLevel;
+    }
+
+    /**
+     * 各缓存累计释放的字节数
+     */
+    public synchronized long getBytesReclaimed(String name) {
+        long bytes = 0;
+        for (Entry entry : entries) {
+            if (entry.name.equals(name)) {
+                bytes += entry.bytesReclaimed;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 已注册缓存的名称
+     */
+    public synchronized List<String> getNames() {
+        List<String> names = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            names.add(entry.name);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,140 @@
+package com.ymmusic.app;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的性能指标
+ * 计数器和耗时直方图按名称注册，名称用点分隔（如bridge.syncState、notification.build），
+ * 首次使用时创建，之后的记录都是无锁的原子操作。通过getMetrics()桥接方法和定期的日志摘要查看
+ */
+public class MetricsRegistry {
+
+    private static MetricsRegistry instance;
+
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final long createdAtNanos = System.nanoTime();
+    // 上次输出摘要时的记录总数，没有新记录时跳过
+    private long lastDumpedTotal = -1;
+
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+
+    MetricsRegistry() {
+    }
+
+    /**
+     * 计时起点，与recordSince配对使用
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    public void increment(String name) {
+        counter(name).incrementAndGet();
+    }
+
+    public void add(String name, long delta) {
+        counter(name).addAndGet(delta);
+    }
+
+    /**
+     * 记录从startNanos（start()的返回值）到现在的耗时
+     */
+    public void recordSince(String name, long startNanos) {
+        histogram(name).recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public void recordNanos(String name, long nanos) {
+        histogram(name).recordNanos(nanos);
+    }
+
+    private AtomicLong counter(String name) {
+        AtomicLong counter = counters.get(name);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    public long getCounter(String name) {
+        AtomicLong counter = counters.get(name);
+        return counter != null ? counter.get() : 0;
+    }
+
+    /**
+     * 按名称排序的计数器快照
+     */
+    public Map<String, Long> getCounters() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        return snapshot;
+    }
+
+    /**
+     * 按名称排序的直方图
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        return new TreeMap<>(histograms);
+    }
+
+    public long getUptimeMs() {
+        return (System.nanoTime() - createdAtNanos) / 1000000;
+    }
+
+    /**
+     * 所有指标的单行摘要，自上次调用以来没有新记录时返回null
+     */
+    public synchronized String dumpIfChanged() {
+        long total = 0;
+        for (AtomicLong counter : counters.values()) {
+            total += counter.get();
+        }
+        for (LatencyHistogram histogram : histograms.values()) {
+            total += histogram.getCount();
+        }
+        if (total == lastDumpedTotal) {
+            return null;
+        }
+        lastDumpedTotal = total;
+        StringBuilder line = new StringBuilder();
+        for (Map.Entry<String, Long> entry : getCounters().entrySet()) {
+            appendSeparator(line).append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        for (Map.Entry<String, LatencyHistogram> entry : getHistograms().entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                appendSeparator(line).append(entry.getKey()).append(' ').append(entry.getValue().toCompactString());
+            }
+        }
+        return line.toString();
+    }
+
+    private static StringBuilder appendSeparator(StringBuilder line) {
+        return line.length() > 0 ? line.append("; ") : line;
+    }
+}
@@ -3,40 +3,125 @@ package com.ymmusic.app;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
+import android.net.Uri;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Binder;
 import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
-import android.os.PowerManager;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.v4.media.MediaBrowserCompat;
+import android.support.v4.media.MediaMetadataCompat;
 import android.support.v4.media.session.MediaSessionCompat;
 import android.support.v4.media.session.PlaybackStateCompat;
+import android.util.AtomicFile;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.core.app.NotificationCompat;
+import androidx.media.MediaBrowserServiceCompat;
+import androidx.media.MediaSessionManager;
 import androidx.media.session.MediaButtonReceiver;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * 后台音乐播放服务
- * 使用前台服务保持音频在后台播放和屏幕关闭时继续播放
+ * 使用前台服务保持音频在后台播放和屏幕关闭时继续播放。
+ * 同时作为媒体浏览服务，车机、手表和蓝牙设备可以浏览收藏、最近播放、排行榜和歌单（MediaLibrary），
+ * 从浏览树选中的歌曲由原生播放引擎直接播放，不需要启动WebView。
+ * 媒体会话、通知栏和歌词的状态只在MediaWorker线程上读写，公开的更新方法都应提交到该线程调用
  */
-public class MusicPlaybackService extends Service {
+public class MusicPlaybackService extends MediaBrowserServiceCompat {
     private static final String TAG = "MusicPlaybackService";
     private static final int NOTIFICATION_ID = 1;
     private static final String CHANNEL_ID = "MusicPlaybackChannel";
+    private static final String DEFAULT_TITLE = "YMMusic正在播放";
+    private static final String DEFAULT_ARTIST = "点击返回应用";
+    // 切歌、播放/暂停后等待这么久再写快照，合并连续的状态同步
+    private static final long SNAPSHOT_DEBOUNCE_MS = 500;
+    // 只有播放位置变化时，快照最多这么久写一次
+    private static final long SNAPSHOT_POSITION_INTERVAL_MS = 15000;
+    // 提前解析播放地址的歌曲数
+    private static final int RESOLVE_AHEAD = 3;
+    // 性能指标摘要输出到日志的间隔
+    private static final long METRICS_DUMP_INTERVAL_MS = 5 * 60 * 1000;
 
     private final IBinder mBinder = new LocalBinder();
-    private PowerManager.WakeLock wakeLock;
+    // 在工作线程上延后创建，创建前为null
+    private volatile WakeLockManager wakeLockManager;
     private MediaSessionCompat mediaSession;
     private boolean isPlaying = false;
-    private String currentTitle = "YMMusic正在播放";
-    private String currentArtist = "点击返回应用";
+    private String currentTitle = DEFAULT_TITLE;
+    private String currentArtist = DEFAULT_ARTIST;
     private Bitmap currentAlbumArt = null;
+    private String currentAlbumArtUrl = null;
+    private long currentDurationMs = 0;
+    // 播放进度锚点：位置、速度和采样时间（elapsedRealtime）
+    private long positionAnchorMs = 0;
+    private float playbackSpeed = 1.0f;
+    private long positionAnchorTime = SystemClock.elapsedRealtime();
+    // 最近一次应用的Web层进度锚点时间戳
+    private long lastAnchorTimestamp = 0;
+    private CoverArtLoader coverArtLoader;
+    private NotificationRenderer notificationRenderer;
+    private final PlayerCommandChannel commandChannel = new PlayerCommandChannel();
+    private NativeAudioEngine audioEngine;
+    // 服务端播放队列，切歌时直接决定下一首
+    private final PlayQueue playQueue = new PlayQueue();
+    private AtomicFile queueFile;
+    private final ExecutorService queueWriter = Executors.newSingleThreadExecutor();
+    // 媒体会话、通知栏和WakeLock的更新都在这个串行线程上执行
+    private MediaWorker mediaWorker;
+    // Web层当前歌曲ID，用于判断歌词是否属于当前歌曲
+    private String currentSongId = null;
+    // 歌词时间轴及其所属歌曲，只在歌词行切换时更新锁屏和通知
+    private LyricTimeline lyricTimeline = LyricTimeline.EMPTY;
+    private String lyricSongId = null;
+    private String currentLyricLine = null;
+    private Handler lyricHandler;
+    private final Runnable lyricTick = this::onLyricTick;
+    // 播放状态快照，服务被系统重建时用来立即恢复通知栏和锁屏
+    private AtomicFile snapshotFile;
+    private Handler snapshotHandler;
+    private final Runnable snapshotWrite = this::writeSnapshot;
+    private volatile PlaybackSnapshot lastSnapshot;
+    private boolean lastSnapshotPlaying = false;
+    private boolean snapshotPending = false;
+    private long lastSnapshotWriteTime = 0;
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+    private Handler metricsHandler;
+    private final Runnable metricsDump = this::dumpMetrics;
+    // 是否已经调用过startForeground，只记录第一次的启动耗时
+    private boolean foregroundStarted = false;
+    private long createStartNanos;
+    // 延后的初始化是否已提交（主线程）
+    private boolean deferredInitScheduled = false;
+    // 最近播放的歌曲，切歌时记录，供浏览树使用
+    private final RecentTracks recentTracks = new RecentTracks();
+    private AtomicFile recentFile;
+    private MediaLibrary mediaLibrary;
+    private MediaClientValidator clientValidator;
+    // 从浏览树开始播放的歌曲的封面，原生引擎切歌时据此更新通知栏封面
+    private final Map<String, String> browseCovers = new ConcurrentHashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     // 定义广播接收器的Action常量
     public static final String ACTION_PLAY = "com.ymmusic.app.ACTION_PLAY";
@@ -56,18 +141,178 @@ public class MusicPlaybackService extends Service {
     @Override
     public void onCreate() {
         super.onCreate();
+        createStartNanos = MetricsRegistry.start();
         Log.d(TAG, "音乐播放服务已创建");
 
-        // 创建通知渠道
-        createNotificationChannel();
+        // 这里只做显示第一条通知和绑定所需的工作，其余的等第一条通知显示后在工作线程上完成（runDeferredInit）
+        StartupTrace.Section onCreateSection = StartupTrace.begin("service.onCreate");
+        try {
+            mediaWorker = new MediaWorker("MediaWorker");
+            lyricHandler = new Handler(mediaWorker.getLooper());
+            snapshotHandler = new Handler(mediaWorker.getLooper());
+
+            // 恢复上次保存的播放队列，在工作线程上读取文件，之后提交的队列操作都排在它后面
+            queueFile = new AtomicFile(new File(getFilesDir(), "play_queue.bin"));
+            mediaWorker.execute(this::loadQueue);
+            recentFile = new AtomicFile(new File(getFilesDir(), "recent_tracks.bin"));
+            mediaWorker.execute(this::loadRecentTracks);
+            mediaLibrary = new MediaLibrary(this, recentTracks);
+            clientValidator = new MediaClientValidator(this);
+
+            // 封面加载器会在后台预先解码默认封面
+            coverArtLoader = CoverArtLoader.getInstance(this);
+
+            StartupTrace.Section sessionSection = StartupTrace.begin("service.mediaSession");
+            try {
+                // 创建通知渠道
+                createNotificationChannel();
+
+                // 初始化媒体会话
+                initMediaSession();
+
+                // 创建通知渲染器，PendingIntent只创建一次
+                notificationRenderer = new NotificationRenderer(this, CHANNEL_ID, NOTIFICATION_ID,
+                        mediaSession != null ? mediaSession.getSessionToken() : null, mediaWorker.getLooper());
+
+                // 浏览客户端通过这个会话控制播放
+                if (mediaSession != null) {
+                    setSessionToken(mediaSession.getSessionToken());
+                }
+            } finally {
+                sessionSection.close();
+            }
+
+            // 初始化原生播放引擎，Activity连接服务时就要用到，不能延后
+            StartupTrace.Section engineSection = StartupTrace.begin("service.audioEngine");
+            try {
+                initAudioEngine();
+            } finally {
+                engineSection.close();
+            }
+
+            // 恢复上次的歌曲和进度，START_STICKY重建时通知栏不再显示默认标题
+            StartupTrace.Section snapshotSection = StartupTrace.begin("service.restoreSnapshot");
+            try {
+                snapshotFile = snapshotFile(this);
+                restoreSnapshot();
+            } finally {
+                snapshotSection.close();
+            }
+
+            metricsHandler = new Handler(mediaWorker.getLooper());
+        } finally {
+            onCreateSection.close();
+        }
+        metrics.increment("service.create");
+        metrics.recordSince("service.onCreate", createStartNanos);
+    }
+
+    /**
+     * 第一条通知显示后（或只绑定未启动时绑定后）提交剩余的初始化，只执行一次
+     */
+    private void scheduleDeferredInit() {
+        if (deferredInitScheduled) {
+            return;
+        }
+        deferredInitScheduled = true;
+        mediaWorker.execute(this::runDeferredInit);
+    }
+
+    /**
+     * 不影响第一条通知的初始化（工作线程）
+     */
+    private void runDeferredInit() {
+        StartupTrace.Section section = StartupTrace.begin("service.deferredInit");
+        try {
+            // WakeLock只在播放或缓冲时持有，由播放状态驱动；创建前已经开始播放时立即补上
+            wakeLockManager = new WakeLockManager(this, "YMMusic:MusicWakeLock",
+                    WakeLockManager.DEFAULT_RELEASE_DELAY_MS, mediaWorker.getLooper());
+            if (isPlaying) {
+                wakeLockManager.setActive(true);
+            }
+
+            // 暂停期间内存紧张时释放当前封面位图和浏览树加载的歌单
+            MemoryTrimRegistry.getInstance(this).register("nowPlayingArt", MemoryTrimRegistry.PRIORITY_NORMAL, this::trimMemory);
+            MemoryTrimRegistry.getInstance(this).register("browseTracks", MemoryTrimRegistry.PRIORITY_NORMAL, mediaLibrary::trimMemory);
+
+            // 定期在日志中输出一行性能指标摘要
+            metricsHandler.postDelayed(metricsDump, METRICS_DUMP_INTERVAL_MS);
+        } catch (Exception e) {
+            Log.e(TAG, "延后初始化出错", e);
+        } finally {
+            section.close();
+        }
+    }
+
+    /**
+     * 输出性能指标摘要，没有新记录时跳过（工作线程）
+     */
+    private void dumpMetrics() {
+        String summary = metrics.dumpIfChanged();
+        if (summary != null) {
+            Log.d(TAG, "性能指标: " + summary);
+        }
+        metricsHandler.postDelayed(metricsDump, METRICS_DUMP_INTERVAL_MS);
+    }
+
+    /**
+     * 初始化原生播放引擎，引擎状态变化时同步到媒体会话和通知栏
+     */
+    private void initAudioEngine() {
+        audioEngine = new NativeAudioEngine(this);
+        audioEngine.addListener(new NativeAudioEngine.Listener() {
+            @Override
+            public void onStateChanged(String state, NativeAudioEngine.QueueItem item, long positionMs, long durationMs) {
+                // 采样时间在主线程上记录，媒体会话和通知的更新交给工作线程
+                final long sampledAt = SystemClock.elapsedRealtime();
+                mediaWorker.execute(() -> applyEngineState(state, item, positionMs, durationMs, sampledAt));
+            }
+
+            @Override
+            public void onBufferingUpdate(int percent) {
+            }
+        });
+    }
 
-        // 初始化媒体会话
-        initMediaSession();
+    /**
+     * 把原生引擎的状态同步到媒体会话和通知栏（工作线程）
+     */
+    private void applyEngineState(String state, NativeAudioEngine.QueueItem item, long positionMs, long durationMs, long sampledAt) {
+        try {
+            boolean playing = NativeAudioEngine.STATE_PLAYING.equals(state);
+            String title = item != null ? item.title : currentTitle;
+            String artist = item != null ? item.artist : currentArtist;
+            // 从浏览树开始播放的歌曲没有Web层同步状态，歌曲ID和封面由这里更新
+            String browseCover = item != null ? browseCovers.get(item.id) : null;
+            if (browseCover != null && !item.id.equals(currentSongId)) {
+                currentSongId = item.id;
+                currentTitle = item.title;
+                currentArtist = item.artist;
+                applyAlbumArtUrl(browseCover);
+            }
+            // 每次状态变化都以引擎的真实位置作为新的进度锚点
+            setPositionAnchor(positionMs, 1.0f, sampledAt);
+            if (durationMs > 0) {
+                currentDurationMs = durationMs;
+            }
+            isPlaying = playing;
+            if (NativeAudioEngine.STATE_BUFFERING.equals(state)) {
+                updatePlaybackState(PlaybackStateCompat.STATE_BUFFERING);
+            } else {
+                updatePlaybackState(playing ? PlaybackStateCompat.STATE_PLAYING : PlaybackStateCompat.STATE_PAUSED);
+            }
+            updateNotificationInfo(title, artist, currentAlbumArt);
+            scheduleSnapshot();
+        } catch (Exception e) {
+            Log.e(TAG, "同步原生播放状态出错", e);
+        }
+    }
 
-        // 获取WakeLock，保持CPU运行
-        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
-        wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "YMMusic:MusicWakeLock");
-        wakeLock.acquire();
+    /**
+     * 获取原生播放引擎
+     */
+    public NativeAudioEngine getAudioEngine() {
+        return audioEngine;
     }
 
     /**
@@ -82,11 +327,22 @@ public class MusicPlaybackService extends Service {
                 @Override
                 public void onPlay() {
                     try {
-                        // 通知WebView播放
-                        sendCommandToWebView("play");
-                        isPlaying = true;
-                        updatePlaybackState(PlaybackStateCompat.STATE_PLAYING);
-                        updateNotificationInfo(currentTitle, currentArtist, currentAlbumArt);
+                        // 原生引擎接管播放时直接控制，否则通知WebView播放
+                        if (audioEngine != null && audioEngine.isActive()) {
+                            audioEngine.play();
+                            return;
+                        }
+                        sendCommandToWebView(PlayerCommand.Type.PLAY);
+                        final long requestedAt = SystemClock.elapsedRealtime();
+                        mediaWorker.execute(() -> {
+                            // 从暂停位置开始推算进度
+                            if (!isPlaying) {
+                                setPositionAnchor(positionAnchorMs, playbackSpeed, requestedAt);
+                            }
+                            isPlaying = true;
+                            updatePlaybackState(PlaybackStateCompat.STATE_PLAYING);
+                            updateNotificationInfo(currentTitle, currentArtist, currentAlbumArt);
+                        });
                     } catch (Exception e) {
                         Log.e(TAG, "媒体会话onPlay回调出错", e);
                     }
@@ -95,11 +351,19 @@ public class MusicPlaybackService extends Service {
                 @Override
                 public void onPause() {
                     try {
-                        // 通知WebView暂停
-                        sendCommandToWebView("pause");
-                        isPlaying = false;
-                        updatePlaybackState(PlaybackStateCompat.STATE_PAUSED);
-                        updateNotificationInfo(currentTitle, currentArtist, currentAlbumArt);
+                        // 原生引擎接管播放时直接控制，否则通知WebView暂停
+                        if (audioEngine != null && audioEngine.isActive()) {
+                            audioEngine.pause();
+                            return;
+                        }
+                        sendCommandToWebView(PlayerCommand.Type.PAUSE);
+                        mediaWorker.execute(() -> {
+                            // 暂停时将推算出的位置固定下来
+                            setPositionAnchor(getExtrapolatedPosition(), playbackSpeed, SystemClock.elapsedRealtime());
+                            isPlaying = false;
+                            updatePlaybackState(PlaybackStateCompat.STATE_PAUSED);
+                            updateNotificationInfo(currentTitle, currentArtist, currentAlbumArt);
+                        });
                     } catch (Exception e) {
                         Log.e(TAG, "媒体会话onPause回调出错", e);
                     }
@@ -108,9 +372,13 @@ public class MusicPlaybackService extends Service {
                 @Override
                 public void onSkipToPrevious() {
                     try {
-                        // 通知WebView播放上一首
+                        // 原生引擎队列中有上一首时直接切换，无需唤醒WebView
+                        if (audioEngine != null && audioEngine.isActive() && audioEngine.skipToPrevious()) {
+                            return;
+                        }
+                        // 由服务端队列决定上一首，再通知WebView播放
                         Log.d(TAG, "收到通知栏上一首命令，通知WebView");
-                        sendCommandToWebView("previous");
+                        mediaWorker.execute(() -> skipInQueue(PlayerCommand.Type.PREVIOUS));
                         // 在通知栏点击上一首后，不立即更新通知栏信息
                         // 等待WebView处理完毕后，会通过updateNowPlaying方法更新
                     } catch (Exception e) {
@@ -118,18 +386,46 @@ public class MusicPlaybackService extends Service {
                     }
                 }
 
+                @Override
+                public void onSeekTo(long pos) {
+                    try {
+                        // 先更新锚点，让锁屏进度条立即跳到目标位置
+                        final long requestedAt = SystemClock.elapsedRealtime();
+                        mediaWorker.execute(() -> {
+                            setPositionAnchor(pos, playbackSpeed, requestedAt);
+                            updatePlaybackState(isPlaying ? PlaybackStateCompat.STATE_PLAYING : PlaybackStateCompat.STATE_PAUSED);
+                        });
+                        if (audioEngine != null && audioEngine.isActive()) {
+                            audioEngine.seekTo(pos);
+                            return;
+                        }
+                        commandChannel.dispatch(PlayerCommand.seekTo(pos));
+                    } catch (Exception e) {
+                        Log.e(TAG, "媒体会话onSeekTo回调出错", e);
+                    }
+                }
+
                 @Override
                 public void onSkipToNext() {
                     try {
-                        // 通知WebView播放下一首
+                        // 原生引擎队列中有下一首时直接切换，无需唤醒WebView
+                        if (audioEngine != null && audioEngine.isActive() && audioEngine.skipToNext()) {
+                            return;
+                        }
+                        // 由服务端队列决定下一首，再通知WebView播放
                         Log.d(TAG, "收到通知栏下一首命令，通知WebView");
-                        sendCommandToWebView("next");
+                        mediaWorker.execute(() -> skipInQueue(PlayerCommand.Type.NEXT));
                         // 在通知栏点击下一首后，不立即更新通知栏信息
                         // 等待WebView处理完毕后，会通过updateNowPlaying方法更新
                     } catch (Exception e) {
                         Log.e(TAG, "媒体会话onSkipToNext回调出错", e);
                     }
                 }
+
+                @Override
+                public void onPlayFromMediaId(String mediaId, Bundle extras) {
+                    playFromMediaId(mediaId);
+                }
             });
             
             // 设置媒体会话标志
@@ -145,29 +441,317 @@ public class MusicPlaybackService extends Service {
 
     /**
      * 更新媒体会话播放状态
+     * 播放进度以最近一次锚点（位置、速度、时间）提交，由系统根据更新时间自行推算当前进度
      */
     private void updatePlaybackState(int state) {
         PlaybackStateCompat.Builder stateBuilder = new PlaybackStateCompat.Builder()
                 .setActions(PlaybackStateCompat.ACTION_PLAY |
                         PlaybackStateCompat.ACTION_PAUSE |
+                        PlaybackStateCompat.ACTION_PLAY_PAUSE |
                         PlaybackStateCompat.ACTION_SKIP_TO_NEXT |
-                        PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS)
-                .setState(state, 0, 1.0f);
+                        PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS |
+                        PlaybackStateCompat.ACTION_SEEK_TO |
+                        PlaybackStateCompat.ACTION_PLAY_FROM_MEDIA_ID)
+                .setState(state, positionAnchorMs,
+                        state == PlaybackStateCompat.STATE_PLAYING ? playbackSpeed : 0f,
+                        positionAnchorTime);
         
         mediaSession.setPlaybackState(stateBuilder.build());
+
+        // 进度锚点或播放状态变化后重新计算歌词行和下一次切换时间
+        if (updateLyricLine()) {
+            updateMediaMetadata();
+            refreshNotification();
+        }
+
+        // 播放或缓冲时保持CPU运行，暂停后宽限期结束再释放
+        if (wakeLockManager != null) {
+            wakeLockManager.setActive(state == PlaybackStateCompat.STATE_PLAYING
+                    || state == PlaybackStateCompat.STATE_BUFFERING);
+        }
+    }
+
+    /**
+     * 暂停时释放当前封面，恢复同步时会从封面磁盘缓存重新加载
+     * @return 释放的字节数
+     */
+    private long trimMemory(int level) {
+        Bitmap art = currentAlbumArt;
+        if (isPlaying || art == null) {
+            return 0;
+        }
+        mediaWorker.execute(() -> {
+            if (!isPlaying && currentAlbumArt == art) {
+                currentAlbumArt = null;
+                currentAlbumArtUrl = null;
+                updateMediaMetadata();
+                refreshNotification();
+            }
+        });
+        return art.getAllocationByteCount();
+    }
+
+    /**
+     * 获取媒体工作线程，更新播放状态、通知和歌词的调用都应提交到这里
+     */
+    public MediaWorker getMediaWorker() {
+        return mediaWorker;
     }
 
     /**
-     * 向WebView发送命令
+     * 获取WakeLock管理器
      */
-    private void sendCommandToWebView(String command) {
+    public WakeLockManager getWakeLockManager() {
+        return wakeLockManager;
+    }
+
+    /**
+     * 记录播放进度锚点
+     * @param elapsedRealtime 采样位置时的SystemClock.elapsedRealtime()
+     */
+    private void setPositionAnchor(long positionMs, float speed, long elapsedRealtime) {
+        positionAnchorMs = Math.max(0, positionMs);
+        playbackSpeed = speed > 0 ? speed : 1.0f;
+        positionAnchorTime = elapsedRealtime;
+    }
+
+    /**
+     * 按当前锚点推算的播放位置
+     */
+    private long getExtrapolatedPosition() {
+        if (!isPlaying) {
+            return positionAnchorMs;
+        }
+        long elapsed = SystemClock.elapsedRealtime() - positionAnchorTime;
+        return positionAnchorMs + (long) (elapsed * playbackSpeed);
+    }
+
+    /**
+     * 向WebView发送命令，通过进程内命令通道派发给Activity
+     */
+    private void sendCommandToWebView(PlayerCommand.Type type) {
+        try {
+            commandChannel.dispatch(PlayerCommand.of(type));
+        } catch (Exception e) {
+            Log.e(TAG, "向WebView发送命令出错: " + type, e);
+        }
+    }
+
+    /**
+     * 在服务端队列中切歌，并把目标位置发给WebView；队列为空时退回由Web层决定
+     */
+    private void skipInQueue(PlayerCommand.Type type) {
+        int index = type == PlayerCommand.Type.NEXT ? playQueue.skipToNext(false) : playQueue.skipToPrevious();
+        if (index < 0) {
+            sendCommandToWebView(type);
+            return;
+        }
+        saveQueue();
+        prefetchUpcomingUrls();
+        commandChannel.dispatch(PlayerCommand.skipTo(type, index, playQueue.getSongId(index)));
+    }
+
+    /**
+     * Web层同步整个播放队列
+     */
+    public void setQueue(long[] ids, byte[] sources, int currentIndex, int mode) {
+        playQueue.setQueue(ids, sources, currentIndex);
+        playQueue.setMode(mode);
+        saveQueue();
+        prefetchUpcomingUrls();
+        Log.d(TAG, "播放队列已同步: " + ids.length + " 首, 当前位置 " + currentIndex);
+    }
+
+    /**
+     * 批量解析当前和接下来几首歌曲的播放地址，切歌时Web层可以直接拿到
+     */
+    private void prefetchUpcomingUrls() {
+        String[] upcoming = playQueue.upcoming(RESOLVE_AHEAD);
+        String[] ids = new String[upcoming.length + 1];
+        ids[0] = playQueue.getSongId(playQueue.getCurrentIndex());
+        System.arraycopy(upcoming, 0, ids, 1, upcoming.length);
+        SongUrlResolver.getInstance().prefetch(ids);
+    }
+
+    public PlayQueue getPlayQueue() {
+        return playQueue;
+    }
+
+    private void loadQueue() {
+        try (FileInputStream in = queueFile.openRead()) {
+            playQueue.readFrom(new DataInputStream(new BufferedInputStream(in)));
+            Log.d(TAG, "已恢复播放队列: " + playQueue.size() + " 首");
+        } catch (FileNotFoundException e) {
+            // 首次运行没有队列文件
+        } catch (Exception e) {
+            Log.e(TAG, "恢复播放队列出错", e);
+        }
+    }
+
+    /**
+     * 在调用线程生成快照，由后台线程写入文件
+     */
+    private void saveQueue() {
         try {
-            Intent intent = new Intent("YM_MUSIC_CONTROL_ACTION");
-            intent.putExtra("command", command);
-            sendBroadcast(intent);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            playQueue.writeTo(new DataOutputStream(buffer));
+            final byte[] data = buffer.toByteArray();
+            queueWriter.execute(() -> {
+                FileOutputStream out = null;
+                try {
+                    out = queueFile.startWrite();
+                    out.write(data);
+                    queueFile.finishWrite(out);
+                } catch (Exception e) {
+                    Log.e(TAG, "保存播放队列出错", e);
+                    if (out != null) {
+                        queueFile.failWrite(out);
+                    }
+                }
+            });
         } catch (Exception e) {
-            Log.e(TAG, "向WebView发送命令出错: " + command, e);
+            Log.e(TAG, "生成播放队列快照出错", e);
+        }
+    }
+
+    /**
+     * 读取上次保存的播放状态快照（主线程，只读文件），状态在工作线程上恢复；
+     * 在onCreate中提交，排在Activity连接后同步的任何状态之前
+     */
+    private void restoreSnapshot() {
+        final PlaybackSnapshot snapshot = readSnapshot(snapshotFile);
+        if (snapshot == null) {
+            return;
+        }
+        lastSnapshot = snapshot;
+        mediaWorker.execute(() -> applySnapshot(snapshot));
+    }
+
+    /**
+     * 把快照中的歌曲和进度应用到媒体会话和通知（工作线程）
+     */
+    private void applySnapshot(PlaybackSnapshot snapshot) {
+        currentSongId = snapshot.songId;
+        if (snapshot.title != null) {
+            currentTitle = snapshot.title;
         }
+        if (snapshot.artist != null) {
+            currentArtist = snapshot.artist;
+        }
+        currentDurationMs = snapshot.durationMs;
+        // 重建后不会自动继续播放，停在上次保存的位置
+        isPlaying = false;
+        setPositionAnchor(snapshot.positionMs, 1.0f, SystemClock.elapsedRealtime());
+        applyAlbumArtUrl(snapshot.coverUrl);
+        updatePlaybackState(PlaybackStateCompat.STATE_PAUSED);
+        updateMediaMetadata();
+        Log.d(TAG, "已恢复播放状态快照: " + snapshot.title + " @" + snapshot.positionMs / 1000 + "s");
+    }
+
+    private static AtomicFile snapshotFile(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), "playback_snapshot.bin"));
+    }
+
+    @Nullable
+    private static PlaybackSnapshot readSnapshot(AtomicFile file) {
+        try (FileInputStream in = file.openRead()) {
+            return PlaybackSnapshot.readFrom(new DataInputStream(new BufferedInputStream(in)));
+        } catch (FileNotFoundException e) {
+            // 首次运行没有快照文件
+        } catch (Exception e) {
+            Log.e(TAG, "读取播放状态快照出错", e);
+        }
+        return null;
+    }
+
+    /**
+     * 服务未运行时直接读取快照文件
+     */
+    @Nullable
+    public static PlaybackSnapshot readSnapshot(Context context) {
+        return readSnapshot(snapshotFile(context));
+    }
+
+    /**
+     * 上次保存的播放状态快照，Web层启动时可以直接用它恢复，没有时返回null
+     */
+    @Nullable
+    public PlaybackSnapshot getPlaybackSnapshot() {
+        return lastSnapshot;
+    }
+
+    /**
+     * 状态变化后安排写入快照（工作线程）
+     * 切歌和播放/暂停只做短暂合并，仅播放位置变化时按较长间隔写入
+     */
+    private void scheduleSnapshot() {
+        if (currentSongId == null && DEFAULT_TITLE.equals(currentTitle)) {
+            return;
+        }
+        boolean important = lastSnapshot == null
+                || isPlaying != lastSnapshotPlaying
+                || !Objects.equals(currentSongId, lastSnapshot.songId)
+                || !Objects.equals(currentTitle, lastSnapshot.title)
+                || !Objects.equals(currentAlbumArtUrl, lastSnapshot.coverUrl);
+        if (important) {
+            snapshotHandler.removeCallbacks(snapshotWrite);
+            snapshotHandler.postDelayed(snapshotWrite, SNAPSHOT_DEBOUNCE_MS);
+            snapshotPending = true;
+        } else if (!snapshotPending) {
+            long sinceLast = SystemClock.elapsedRealtime() - lastSnapshotWriteTime;
+            snapshotHandler.postDelayed(snapshotWrite,
+                    Math.max(SNAPSHOT_DEBOUNCE_MS, SNAPSHOT_POSITION_INTERVAL_MS - sinceLast));
+            snapshotPending = true;
+        }
+    }
+
+    /**
+     * 在工作线程生成快照，由后台线程原子写入文件
+     */
+    private void writeSnapshot() {
+        snapshotPending = false;
+        try {
+            PlaybackSnapshot snapshot = new PlaybackSnapshot(currentSongId, currentTitle, currentArtist,
+                    currentAlbumArtUrl, getExtrapolatedPosition(), currentDurationMs, System.currentTimeMillis());
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            snapshot.writeTo(new DataOutputStream(buffer));
+            final byte[] data = buffer.toByteArray();
+            if (currentSongId != null && (lastSnapshot == null || !currentSongId.equals(lastSnapshot.songId))) {
+                recordRecentTrack(snapshot);
+            }
+            lastSnapshot = snapshot;
+            lastSnapshotPlaying = isPlaying;
+            lastSnapshotWriteTime = SystemClock.elapsedRealtime();
+            queueWriter.execute(() -> {
+                FileOutputStream out = null;
+                try {
+                    out = snapshotFile.startWrite();
+                    out.write(data);
+                    snapshotFile.finishWrite(out);
+                } catch (Exception e) {
+                    Log.e(TAG, "保存播放状态快照出错", e);
+                    if (out != null) {
+                        snapshotFile.failWrite(out);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "生成播放状态快照出错", e);
+        }
+    }
+
+    /**
+     * 注册命令监听器，会补发Activity未连接期间排队的命令
+     */
+    public void setCommandListener(PlayerCommandChannel.Listener listener) {
+        commandChannel.setListener(listener);
+    }
+
+    /**
+     * 注销命令监听器
+     */
+    public void clearCommandListener(PlayerCommandChannel.Listener listener) {
+        commandChannel.clearListener(listener);
     }
 
     @Override
@@ -198,8 +782,23 @@ public class MusicPlaybackService extends Service {
                 }
             }
 
-            // 启动前台服务，显示通知
-            startForeground(NOTIFICATION_ID, createNotification());
+            // 启动前台服务，显示通知；第一次的耗时从onCreate开始计算，即服务冷启动到通知显示的时间
+            if (!foregroundStarted) {
+                StartupTrace.Section section = StartupTrace.begin("service.firstNotification");
+                try {
+                    startForeground(NOTIFICATION_ID, createNotification());
+                } finally {
+                    section.close();
+                }
+                foregroundStarted = true;
+                metrics.recordSince("service.startForeground", createStartNanos);
+                // 第一条通知用的可能是默认内容，由工作线程补上当前歌曲
+                mediaWorker.execute(this::refreshNotification);
+                scheduleDeferredInit();
+            } else {
+                // 已经在前台：按钮等后续启动只需刷新通知，交给工作线程比较状态并合并渲染
+                mediaWorker.execute(this::refreshNotification);
+            }
         } catch (Exception e) {
             Log.e(TAG, "onStartCommand出错", e);
         }
@@ -211,25 +810,205 @@ public class MusicPlaybackService extends Service {
     @Nullable
     @Override
     public IBinder onBind(Intent intent) {
+        scheduleDeferredInit();
+        // 浏览客户端（车机、蓝牙设备等）走媒体浏览服务，应用自己的Activity使用本地绑定器
+        if (intent != null && SERVICE_INTERFACE.equals(intent.getAction())) {
+            return super.onBind(intent);
+        }
         return mBinder;
     }
 
+    @Override
+    public BrowserRoot onGetRoot(@NonNull String clientPackageName, int clientUid, @Nullable Bundle rootHints) {
+        // 只有本应用、系统和已知的车机/手表宿主可以浏览收藏、最近播放并取得媒体会话
+        if (!clientValidator.isAllowed(clientPackageName, clientUid)) {
+            return null;
+        }
+        // 系统恢复播放（媒体通知的"继续播放"）只需要最近播放
+        if (rootHints != null && rootHints.getBoolean(BrowserRoot.EXTRA_RECENT)) {
+            return new BrowserRoot(BrowseTree.RECENT, null);
+        }
+        return new BrowserRoot(BrowseTree.ROOT, null);
+    }
+
+    @Override
+    public void onLoadChildren(@NonNull String parentId, @NonNull Result<List<MediaBrowserCompat.MediaItem>> result) {
+        onLoadChildren(parentId, result, null);
+    }
+
+    /**
+     * 按EXTRA_PAGE/EXTRA_PAGE_SIZE分页读取目录，没有分页参数时只返回第一页
+     */
+    @Override
+    public void onLoadChildren(@NonNull String parentId, @NonNull Result<List<MediaBrowserCompat.MediaItem>> result,
+                               @Nullable Bundle options) {
+        int page = options != null ? options.getInt(MediaBrowserCompat.EXTRA_PAGE, -1) : -1;
+        int pageSize = options != null ? options.getInt(MediaBrowserCompat.EXTRA_PAGE_SIZE, 0) : 0;
+        final MediaSessionManager.RemoteUserInfo browser = getCurrentBrowserInfo();
+        final String browserPackage = browser != null ? browser.getPackageName() : null;
+        result.detach();
+        mediaLibrary.loadChildren(parentId, page, pageSize, items -> {
+            grantCoverAccess(browserPackage, items);
+            result.sendResult(items);
+        });
+    }
+
+    /**
+     * 封面提供者不导出，按条目授予当前浏览客户端读取封面的权限
+     */
+    private void grantCoverAccess(@Nullable String browserPackage, @Nullable List<MediaBrowserCompat.MediaItem> items) {
+        if (browserPackage == null || items == null || browserPackage.equals(getPackageName())) {
+            return;
+        }
+        for (MediaBrowserCompat.MediaItem item : items) {
+            Uri icon = item.getDescription().getIconUri();
+            if (icon == null) {
+                continue;
+            }
+            try {
+                grantUriPermission(browserPackage, icon, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            } catch (Exception e) {
+                Log.w(TAG, "授予封面读取权限失败: " + browserPackage + " " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * 从浏览树播放歌曲：解析出选中歌曲的地址后立即由原生引擎播放，接下来的几首随后加入引擎队列
+     */
+    private void playFromMediaId(String mediaId) {
+        Log.d(TAG, "从浏览树播放: " + mediaId);
+        browseCovers.clear();
+        mediaLibrary.preparePlayback(mediaId, new MediaLibrary.PlaybackCallback() {
+            @Override
+            public void onTrackReady(RecentTracks.Track track, String url, boolean first) {
+                if (track.coverUrl != null) {
+                    browseCovers.put(track.songId, track.coverUrl);
+                }
+                NativeAudioEngine.QueueItem item = new NativeAudioEngine.QueueItem(track.songId, url,
+                        track.title != null ? track.title : "未知歌曲",
+                        track.artist != null ? track.artist : "未知艺术家");
+                // 原生引擎只在主线程上使用
+                mainHandler.post(() -> {
+                    if (audioEngine == null) {
+                        return;
+                    }
+                    if (first) {
+                        ensureStarted();
+                        audioEngine.load(item, true);
+                    } else {
+                        audioEngine.enqueue(item);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(String message) {
+                Log.w(TAG, "从浏览树播放失败: " + message);
+            }
+        });
+    }
+
+    /**
+     * 只被浏览客户端绑定时服务没有启动，开始播放前启动为前台服务，解绑后播放不会中断
+     */
+    private void ensureStarted() {
+        if (foregroundStarted) {
+            return;
+        }
+        Intent intent = new Intent(this, MusicPlaybackService.class);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            startForegroundService(intent);
+        } else {
+            startService(intent);
+        }
+    }
+
+    private void loadRecentTracks() {
+        try (FileInputStream in = recentFile.openRead()) {
+            recentTracks.readFrom(new DataInputStream(new BufferedInputStream(in)));
+        } catch (FileNotFoundException e) {
+            // 首次运行没有最近播放文件
+        } catch (Exception e) {
+            Log.e(TAG, "恢复最近播放出错", e);
+        }
+    }
+
+    /**
+     * 切歌后记录最近播放，由后台线程写入文件，并通知浏览客户端刷新（工作线程）
+     */
+    private void recordRecentTrack(PlaybackSnapshot snapshot) {
+        try {
+            RecentTracks.Track track = new RecentTracks.Track(snapshot.songId, snapshot.title, snapshot.artist, snapshot.coverUrl);
+            recentTracks.add(track);
+            OfflineSearch.getInstance(this).indexRecent(track);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            recentTracks.writeTo(new DataOutputStream(buffer));
+            final byte[] data = buffer.toByteArray();
+            queueWriter.execute(() -> {
+                FileOutputStream out = null;
+                try {
+                    out = recentFile.startWrite();
+                    out.write(data);
+                    recentFile.finishWrite(out);
+                } catch (Exception e) {
+                    Log.e(TAG, "保存最近播放出错", e);
+                    if (out != null) {
+                        recentFile.failWrite(out);
+                    }
+                }
+            });
+            notifyChildrenChanged(BrowseTree.RECENT);
+        } catch (Exception e) {
+            Log.e(TAG, "记录最近播放出错", e);
+        }
+    }
+
     @Override
     public void onDestroy() {
         Log.d(TAG, "音乐播放服务已销毁");
+        MemoryTrimRegistry.getInstance(this).unregister("nowPlayingArt");
+        MemoryTrimRegistry.getInstance(this).unregister("browseTracks");
 
         try {
-            // 释放媒体会话
-            if (mediaSession != null) {
-                mediaSession.setActive(false);
-                mediaSession.release();
-                mediaSession = null;
+            // 释放原生播放引擎（主线程）
+            if (audioEngine != null) {
+                audioEngine.release();
+                audioEngine = null;
             }
 
-            // 释放WakeLock
-            if (wakeLock != null && wakeLock.isHeld()) {
-                wakeLock.release();
-            }
+            // 在工作线程上排在已提交的更新之后释放媒体会话和WakeLock，然后退出线程
+            mediaWorker.execute(() -> {
+                // 取消尚未渲染的通知更新
+                if (notificationRenderer != null) {
+                    notificationRenderer.cancelPending();
+                }
+                lyricHandler.removeCallbacks(lyricTick);
+                metricsHandler.removeCallbacks(metricsDump);
+
+                // 退出前立即写入尚未到期的快照
+                if (snapshotPending) {
+                    snapshotHandler.removeCallbacks(snapshotWrite);
+                    writeSnapshot();
+                }
+
+                // 释放媒体会话
+                if (mediaSession != null) {
+                    mediaSession.setActive(false);
+                    mediaSession.release();
+                    mediaSession = null;
+                }
+
+                // 释放WakeLock
+                if (wakeLockManager != null) {
+                    wakeLockManager.release();
+                }
+
+                // 快照写入提交之后再关闭写入线程，已提交的队列和快照写入仍会完成
+                queueWriter.shutdown();
+            });
+            mediaWorker.quitSafely();
         } catch (Exception e) {
             Log.e(TAG, "onDestroy出错", e);
         }
@@ -256,68 +1035,41 @@ public class MusicPlaybackService extends Service {
     }
 
     /**
-     * 创建通知
+     * 创建startForeground用的通知（主线程）
+     * 歌曲和播放状态字段归工作线程所有，这里只使用工作线程最近提交给渲染器的状态，还没有时显示默认内容
      */
     private Notification createNotification() {
-        // 创建带有媒体控制的通知
-        return createMediaStyleNotification(currentTitle, currentArtist, currentAlbumArt);
-    }
-
-    /**
-     * 创建媒体样式通知
-     */
-    private Notification createMediaStyleNotification(String title, String artist, Bitmap albumArt) {
-        // 主Activity的PendingIntent
-        Intent notificationIntent = new Intent(this, MainActivity.class);
-        PendingIntent contentIntent = PendingIntent.getActivity(
-                this, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
-
-        // 播放/暂停按钮的PendingIntent
-        Intent playPauseIntent = new Intent(this, MusicPlaybackService.class);
-        playPauseIntent.setAction(isPlaying ? ACTION_PAUSE : ACTION_PLAY);
-        PendingIntent playPausePendingIntent = PendingIntent.getService(
-                this, 0, playPauseIntent, PendingIntent.FLAG_IMMUTABLE);
-
-        // 上一首按钮的PendingIntent
-        Intent previousIntent = new Intent(this, MusicPlaybackService.class);
-        previousIntent.setAction(ACTION_PREVIOUS);
-        PendingIntent previousPendingIntent = PendingIntent.getService(
-                this, 0, previousIntent, PendingIntent.FLAG_IMMUTABLE);
-
-        // 下一首按钮的PendingIntent
-        Intent nextIntent = new Intent(this, MusicPlaybackService.class);
-        nextIntent.setAction(ACTION_NEXT);
-        PendingIntent nextPendingIntent = PendingIntent.getService(
-                this, 0, nextIntent, PendingIntent.FLAG_IMMUTABLE);
-
-        // 如果没有专辑封面，使用默认图标
-        if (albumArt == null) {
-            albumArt = BitmapFactory.decodeResource(getResources(), 
-                    getResources().getIdentifier("ic_launcher", "mipmap", getPackageName()));
-        }
-
-        // 创建媒体样式通知
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setContentTitle(title)
-                .setContentText(artist)
-                .setSmallIcon(getResources().getIdentifier("ic_launcher", "mipmap", getPackageName()))
-                .setLargeIcon(albumArt)
-                .setContentIntent(contentIntent)
-                .setPriority(NotificationCompat.PRIORITY_LOW)
-                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
-                .setOnlyAlertOnce(true)
-                .setOngoing(true)
-                // 添加媒体控制按钮
-                .addAction(android.R.drawable.ic_media_previous, "上一首", previousPendingIntent)
-                .addAction(isPlaying ? android.R.drawable.ic_media_pause : android.R.drawable.ic_media_play, 
-                        isPlaying ? "暂停" : "播放", playPausePendingIntent)
-                .addAction(android.R.drawable.ic_media_next, "下一首", nextPendingIntent)
-                // 设置媒体样式
-                .setStyle(new androidx.media.app.NotificationCompat.MediaStyle()
-                        .setMediaSession(mediaSession.getSessionToken())
-                        .setShowActionsInCompactView(0, 1, 2)); // 显示所有三个按钮
-
-        return builder.build();
+        NotificationRenderer.NotificationState state = notificationRenderer.getLatestState();
+        if (state == null) {
+            state = new NotificationRenderer.NotificationState(DEFAULT_TITLE, DEFAULT_ARTIST, null, false, null);
+        }
+        return notificationRenderer.renderNow(state);
+    }
+
+    /**
+     * 刷新通知，由渲染器比较状态并合并短时间内的连续更新（工作线程）
+     */
+    private void refreshNotification() {
+        notificationRenderer.render(currentNotificationState());
+    }
+
+    /**
+     * 当前要显示的通知状态，只在工作线程上构建
+     */
+    private NotificationRenderer.NotificationState currentNotificationState() {
+        // 如果没有专辑封面，使用默认图标（默认图标在后台解码，尚未完成时先不显示大图标）
+        Bitmap albumArt = currentAlbumArt;
+        if (albumArt == null && coverArtLoader.isDefaultArtReady()) {
+            albumArt = coverArtLoader.getDefaultArt();
+        }
+        return new NotificationRenderer.NotificationState(currentTitle, currentArtist, albumArt, isPlaying, currentLyricLine);
+    }
+
+    /**
+     * 获取通知渲染器
+     */
+    public NotificationRenderer getNotificationRenderer() {
+        return notificationRenderer;
     }
 
     /**
@@ -327,12 +1079,12 @@ public class MusicPlaybackService extends Service {
         try {
             this.currentTitle = title;
             this.currentArtist = artist;
+
+            // 更新锁屏元数据
+            updateMediaMetadata();
             
             // 更新通知
-            NotificationManager notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-            if (notificationManager != null) {
-                notificationManager.notify(NOTIFICATION_ID, createNotification());
-            }
+            refreshNotification();
         } catch (Exception e) {
             Log.e(TAG, "更新通知栏信息出错", e);
         }
@@ -346,32 +1098,182 @@ public class MusicPlaybackService extends Service {
             this.currentTitle = title;
             this.currentArtist = artist;
             this.currentAlbumArt = albumArt;
+
+            // 更新锁屏元数据
+            updateMediaMetadata();
             
             // 更新通知
-            NotificationManager notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-            if (notificationManager != null) {
-                notificationManager.notify(NOTIFICATION_ID, createNotification());
-            }
+            refreshNotification();
         } catch (Exception e) {
             Log.e(TAG, "更新通知栏信息(带封面)出错", e);
         }
     }
 
+    /**
+     * 更新通知栏信息（带专辑封面URL）
+     * 封面在后台加载，加载完成前先使用内存缓存中的封面或默认图标
+     */
+    public void updateNotificationInfoWithCover(String title, String artist, String albumArtUrl) {
+        try {
+            applyAlbumArtUrl(albumArtUrl);
+            updateNotificationInfo(title, artist, currentAlbumArt);
+        } catch (Exception e) {
+            Log.e(TAG, "更新通知栏信息(带封面URL)出错", e);
+        }
+    }
+
+    /**
+     * 切换专辑封面URL，先使用内存缓存中的封面，没有时在后台加载
+     */
+    private void applyAlbumArtUrl(String albumArtUrl) {
+        if (albumArtUrl == null || albumArtUrl.equals(currentAlbumArtUrl)) {
+            return;
+        }
+        currentAlbumArtUrl = albumArtUrl;
+        currentAlbumArt = coverArtLoader.getCached(albumArtUrl);
+        if (currentAlbumArt == null) {
+            coverArtLoader.load(albumArtUrl, (url, bitmap) -> {
+                // 加载期间歌曲可能已经切换，只应用当前歌曲的封面
+                mediaWorker.execute(() -> {
+                    if (bitmap != null && url.equals(currentAlbumArtUrl)) {
+                        updateNotificationInfo(currentTitle, currentArtist, bitmap);
+                    }
+                });
+            });
+        }
+    }
+
+    /**
+     * 应用Web层一次性同步的完整播放状态，只更新一次媒体会话和通知
+     */
+    public void applyPlayerState(PlayerStateSync.PlayerState state) {
+        try {
+            currentTitle = state.title;
+            currentArtist = state.artist;
+            currentDurationMs = state.durationMs;
+            if (!Objects.equals(state.songId, currentSongId)) {
+                currentSongId = state.songId;
+                updateLyricLine();
+            }
+            applyAlbumArtUrl(state.coverUrl);
+            boolean anchorChanged = state.positionTimestamp != lastAnchorTimestamp;
+            if (anchorChanged) {
+                // 扣除桥接传递耗时，换算成elapsedRealtime时间轴上的采样时间
+                lastAnchorTimestamp = state.positionTimestamp;
+                long delay = Math.max(0, System.currentTimeMillis() - state.positionTimestamp);
+                setPositionAnchor(state.positionMs, state.speed, SystemClock.elapsedRealtime() - delay);
+            } else if (state.playing != isPlaying && !state.playing) {
+                // 只收到暂停而没有新锚点时，固定推算出的位置
+                setPositionAnchor(getExtrapolatedPosition(), playbackSpeed, SystemClock.elapsedRealtime());
+            }
+            if (state.playing != isPlaying || anchorChanged) {
+                isPlaying = state.playing;
+                updatePlaybackState(isPlaying ? PlaybackStateCompat.STATE_PLAYING : PlaybackStateCompat.STATE_PAUSED);
+            }
+            updateMediaMetadata();
+            refreshNotification();
+            syncQueuePosition(state.queueIndex, PlayQueue.parseMode(state.playbackMode));
+            scheduleSnapshot();
+        } catch (Exception e) {
+            Log.e(TAG, "应用同步的播放状态出错", e);
+        }
+    }
+
+    /**
+     * Web层切歌或切换模式后同步队列位置
+     */
+    private void syncQueuePosition(int queueIndex, int mode) {
+        if (queueIndex == playQueue.getCurrentIndex() && mode == playQueue.getMode()) {
+            return;
+        }
+        playQueue.setCurrentIndex(queueIndex);
+        playQueue.setMode(mode);
+        saveQueue();
+        prefetchUpcomingUrls();
+    }
+
+    /**
+     * 更新媒体会话元数据，供锁屏和蓝牙设备显示
+     */
+    private void updateMediaMetadata() {
+        if (mediaSession == null) {
+            return;
+        }
+        MediaMetadataCompat.Builder builder = new MediaMetadataCompat.Builder()
+                .putString(MediaMetadataCompat.METADATA_KEY_TITLE, currentTitle)
+                .putString(MediaMetadataCompat.METADATA_KEY_ARTIST, currentArtist);
+        if (currentDurationMs > 0) {
+            builder.putLong(MediaMetadataCompat.METADATA_KEY_DURATION, currentDurationMs);
+        }
+        if (currentAlbumArt != null) {
+            builder.putBitmap(MediaMetadataCompat.METADATA_KEY_ALBUM_ART, currentAlbumArt);
+        }
+        if (currentLyricLine != null) {
+            builder.putString(MediaMetadataCompat.METADATA_KEY_DISPLAY_SUBTITLE, currentLyricLine);
+        }
+        mediaSession.setMetadata(builder.build());
+    }
+
+    /**
+     * 设置歌曲的歌词，歌曲ID与当前播放的歌曲一致时显示在锁屏和通知栏
+     */
+    public void setLyrics(String songId, LyricTimeline timeline) {
+        lyricSongId = songId;
+        lyricTimeline = timeline != null ? timeline : LyricTimeline.EMPTY;
+        if (updateLyricLine()) {
+            updateMediaMetadata();
+            refreshNotification();
+        }
+    }
+
+    /**
+     * 按当前播放位置更新歌词行，并在下一行开始时再次检查
+     * @return 显示的歌词行是否变化
+     */
+    private boolean updateLyricLine() {
+        lyricHandler.removeCallbacks(lyricTick);
+        boolean active = lyricSongId != null && lyricSongId.equals(currentSongId) && lyricTimeline.size() > 0;
+        long position = getExtrapolatedPosition();
+        int index = active ? lyricTimeline.lineAt(position) : -1;
+        String line = index >= 0 ? lyricTimeline.getText(index) : null;
+        boolean changed = !Objects.equals(line, currentLyricLine);
+        currentLyricLine = line;
+
+        if (active && isPlaying) {
+            long next = lyricTimeline.nextLineTime(position);
+            if (next >= 0) {
+                // 多等几毫秒，保证到点时推算位置已经进入下一行
+                long delay = (long) ((next - position) / playbackSpeed) + 5;
+                lyricHandler.postDelayed(lyricTick, delay);
+            }
+        }
+        return changed;
+    }
+
+    private void onLyricTick() {
+        if (updateLyricLine()) {
+            updateMediaMetadata();
+            refreshNotification();
+        }
+    }
+
     /**
      * 设置播放状态
      */
     public void setPlayingState(boolean isPlaying) {
         try {
+            if (isPlaying != this.isPlaying) {
+                // 播放状态切换时重新设定进度锚点，暂停时固定位置，恢复播放时从当前时间开始推算
+                setPositionAnchor(getExtrapolatedPosition(), playbackSpeed, SystemClock.elapsedRealtime());
+            }
             this.isPlaying = isPlaying;
             
             // 更新播放状态
             updatePlaybackState(isPlaying ? PlaybackStateCompat.STATE_PLAYING : PlaybackStateCompat.STATE_PAUSED);
             
             // 更新通知
-            NotificationManager notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-            if (notificationManager != null) {
-                notificationManager.notify(NOTIFICATION_ID, createNotification());
-            }
+            refreshNotification();
+            scheduleSnapshot();
         } catch (Exception e) {
             Log.e(TAG, "设置播放状态出错", e);
         }
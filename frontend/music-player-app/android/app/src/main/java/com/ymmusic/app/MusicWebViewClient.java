@@ -0,0 +1,45 @@
+package com.ymmusic.app;
+
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+
+import com.getcapacitor.Bridge;
+import com.getcapacitor.BridgeWebViewClient;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 在Capacitor的BridgeWebViewClient之前插入原生拦截器（音频缓存等）
+ * 拦截器都不处理的请求交回Capacitor，保证本地资源照常加载
+ */
+public class MusicWebViewClient extends BridgeWebViewClient {
+    private static final String TAG = "MusicWebViewClient";
+
+    private final List<RequestInterceptor> interceptors = new CopyOnWriteArrayList<>();
+
+    public MusicWebViewClient(Bridge bridge) {
+        super(bridge);
+    }
+
+    public void addInterceptor(RequestInterceptor interceptor) {
+        interceptors.add(interceptor);
+    }
+
+    @Override
+    public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+        for (RequestInterceptor interceptor : interceptors) {
+            try {
+                WebResourceResponse response = interceptor.intercept(request);
+                if (response != null) {
+                    return response;
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "拦截请求出错: " + request.getUrl(), e);
+            }
+        }
+        return super.shouldInterceptRequest(view, request);
+    }
+}
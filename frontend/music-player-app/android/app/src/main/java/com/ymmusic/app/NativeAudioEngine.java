@@ -0,0 +1,475 @@
+package com.ymmusic.app;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFocusRequest;
+import android.media.AudioManager;
+import android.media.MediaDataSource;
+import android.media.MediaPlayer;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 原生音频播放引擎
+ * 由MusicPlaybackService持有，负责解码、缓冲、跳转和播放队列，播放时不需要WebView。
+ * Web层的播放器通过AndroidPlayer的native*接口使用它（nativeAudio.js把<audio>元素的操作转接过来），
+ * 从浏览树（车机、手表）开始的播放也使用它
+ * 所有方法都需要在主线程调用
+ */
+public class NativeAudioEngine {
+    private static final String TAG = "NativeAudioEngine";
+
+    // 引擎状态常量，同时作为回调给Web层的状态字符串
+    public static final String STATE_IDLE = "idle";
+    public static final String STATE_BUFFERING = "buffering";
+    public static final String STATE_PLAYING = "playing";
+    public static final String STATE_PAUSED = "paused";
+    public static final String STATE_ENDED = "ended";
+    public static final String STATE_ERROR = "error";
+
+    /**
+     * 播放队列中的一项
+     */
+    public static class QueueItem {
+        public final String id;
+        public final String url;
+        public final String title;
+        public final String artist;
+
+        public QueueItem(String id, String url, String title, String artist) {
+            this.id = id;
+            this.url = url;
+            this.title = title;
+            this.artist = artist;
+        }
+    }
+
+    /**
+     * 引擎状态监听器
+     */
+    public interface Listener {
+        /**
+         * 播放状态变化
+         */
+        void onStateChanged(String state, QueueItem item, long positionMs, long durationMs);
+
+        /**
+         * 缓冲进度变化（百分比）
+         */
+        void onBufferingUpdate(int percent);
+    }
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<QueueItem> queue = new ArrayList<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AudioManager audioManager;
+
+    private MediaPlayer mediaPlayer;
+    private AudioFocusRequest focusRequest;
+    private int currentIndex = -1;
+    private String state = STATE_IDLE;
+    private boolean prepared = false;
+    private boolean playWhenReady = false;
+    private long pendingSeekMs = -1;
+    private int bufferedPercent = 0;
+    private float volume = 1f;
+    private float speed = 1f;
+
+    public NativeAudioEngine(Context context) {
+        this.context = context.getApplicationContext();
+        this.audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+    }
+
+    public void addListener(Listener listener) {
+        if (listener != null && !listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 是否已接管播放（队列中有歌曲）
+     */
+    public boolean isActive() {
+        return currentIndex >= 0 && !STATE_IDLE.equals(state);
+    }
+
+    public boolean isPlaying() {
+        return STATE_PLAYING.equals(state);
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public QueueItem getCurrentItem() {
+        return currentIndex >= 0 && currentIndex < queue.size() ? queue.get(currentIndex) : null;
+    }
+
+    public int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getBufferedPercent() {
+        return bufferedPercent;
+    }
+
+    public long getPosition() {
+        if (mediaPlayer != null && prepared) {
+            try {
+                return mediaPlayer.getCurrentPosition();
+            } catch (IllegalStateException e) {
+                return 0;
+            }
+        }
+        return pendingSeekMs > 0 ? pendingSeekMs : 0;
+    }
+
+    public long getDuration() {
+        if (mediaPlayer != null && prepared) {
+            try {
+                return mediaPlayer.getDuration();
+            } catch (IllegalStateException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 清空队列并加载一首歌曲
+     */
+    public void load(QueueItem item, boolean autoPlay) {
+        queue.clear();
+        queue.add(item);
+        prepareAt(0, autoPlay);
+    }
+
+    /**
+     * 追加到播放队列末尾
+     */
+    public void enqueue(QueueItem item) {
+        queue.add(item);
+        Log.d(TAG, "加入播放队列: " + item.title + "，队列长度: " + queue.size());
+        // 上一首已经播完且在等待新歌曲时，直接开始播放
+        if (STATE_ENDED.equals(state) && currentIndex == queue.size() - 2) {
+            prepareAt(currentIndex + 1, true);
+        }
+    }
+
+    /**
+     * 设置当前歌曲之后的下一首，替换之前设置的后续歌曲
+     * @param item 为null时只清除后续歌曲
+     */
+    public void setNext(QueueItem item) {
+        if (currentIndex < 0) {
+            return;
+        }
+        while (queue.size() > currentIndex + 1) {
+            queue.remove(queue.size() - 1);
+        }
+        if (item != null) {
+            queue.add(item);
+        }
+    }
+
+    public void setVolume(float value) {
+        volume = value;
+        if (mediaPlayer != null) {
+            try {
+                mediaPlayer.setVolume(volume, volume);
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "设置音量出错", e);
+            }
+        }
+    }
+
+    /**
+     * 设置播放速度，暂停时只记录下来（暂停状态下设置速度会让MediaPlayer开始播放）
+     */
+    public void setSpeed(float value) {
+        speed = value;
+        if (STATE_PLAYING.equals(state)) {
+            applySpeed();
+        }
+    }
+
+    private void applySpeed() {
+        try {
+            mediaPlayer.setPlaybackParams(mediaPlayer.getPlaybackParams().setSpeed(speed));
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            Log.e(TAG, "设置播放速度出错", e);
+        }
+    }
+
+    public void play() {
+        playWhenReady = true;
+        if (mediaPlayer == null || !prepared) {
+            // 播放结束或出错后重新准备当前歌曲
+            if ((STATE_ENDED.equals(state) || STATE_ERROR.equals(state)) && currentIndex >= 0) {
+                prepareAt(currentIndex, true);
+            }
+            return;
+        }
+        if (!requestAudioFocus()) {
+            Log.w(TAG, "未获得音频焦点，暂不播放");
+            return;
+        }
+        try {
+            mediaPlayer.start();
+            if (speed != 1f) {
+                applySpeed();
+            }
+            setState(STATE_PLAYING);
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "播放出错", e);
+            prepared = false;
+            setState(STATE_ERROR);
+        }
+    }
+
+    public void pause() {
+        playWhenReady = false;
+        if (mediaPlayer != null && prepared && mediaPlayer.isPlaying()) {
+            try {
+                mediaPlayer.pause();
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "暂停出错", e);
+            }
+        }
+        if (STATE_PLAYING.equals(state) || STATE_BUFFERING.equals(state)) {
+            setState(STATE_PAUSED);
+        }
+    }
+
+    public void seekTo(long positionMs) {
+        if (mediaPlayer != null && prepared) {
+            try {
+                mediaPlayer.seekTo((int) positionMs);
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "跳转出错", e);
+            }
+            notifyState();
+        } else {
+            // 尚未准备好时记录下来，准备完成后再跳转
+            pendingSeekMs = positionMs;
+        }
+    }
+
+    /**
+     * 播放队列中的下一首
+     * @return 队列中没有下一首时返回false
+     */
+    public boolean skipToNext() {
+        if (currentIndex + 1 < queue.size()) {
+            prepareAt(currentIndex + 1, true);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 播放队列中的上一首，已播放超过3秒时回到本首开头
+     * @return 队列中没有上一首时返回false
+     */
+    public boolean skipToPrevious() {
+        if (getPosition() > 3000) {
+            seekTo(0);
+            return true;
+        }
+        if (currentIndex > 0) {
+            prepareAt(currentIndex - 1, true);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 停止并释放播放器
+     */
+    public void release() {
+        playWhenReady = false;
+        releasePlayer();
+        abandonAudioFocus();
+        queue.clear();
+        currentIndex = -1;
+        setState(STATE_IDLE);
+    }
+
+    private void prepareAt(int index, boolean autoPlay) {
+        releasePlayer();
+        currentIndex = index;
+        playWhenReady = autoPlay;
+        pendingSeekMs = -1;
+        bufferedPercent = 0;
+        QueueItem item = queue.get(index);
+        try {
+            mediaPlayer = new MediaPlayer();
+            mediaPlayer.setAudioAttributes(new AudioAttributes.Builder()
+                    .setUsage(AudioAttributes.USAGE_MEDIA)
+                    .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                    .build());
+            // 播放时由MediaPlayer自行持有WakeLock，暂停后自动释放
+            mediaPlayer.setWakeMode(context, PowerManager.PARTIAL_WAKE_LOCK);
+            mediaPlayer.setOnPreparedListener(this::onPrepared);
+            mediaPlayer.setOnCompletionListener(mp -> onCompletion());
+            mediaPlayer.setOnErrorListener((mp, what, extra) -> {
+                Log.e(TAG, "播放器错误: what=" + what + ", extra=" + extra);
+                prepared = false;
+                setState(STATE_ERROR);
+                return true;
+            });
+            mediaPlayer.setOnInfoListener((mp, what, extra) -> {
+                if (what == MediaPlayer.MEDIA_INFO_BUFFERING_START) {
+                    setState(STATE_BUFFERING);
+                } else if (what == MediaPlayer.MEDIA_INFO_BUFFERING_END) {
+                    setState(mp.isPlaying() ? STATE_PLAYING : STATE_PAUSED);
+                }
+                return false;
+            });
+            mediaPlayer.setOnBufferingUpdateListener((mp, percent) -> {
+                if (percent != bufferedPercent) {
+                    bufferedPercent = percent;
+                    for (Listener listener : listeners) {
+                        listener.onBufferingUpdate(percent);
+                    }
+                }
+            });
+            mediaPlayer.setVolume(volume, volume);
+            // 已下载或已完整缓存的歌曲直接播放本地文件，其他歌曲边下载边缓存
+            AudioCache audioCache = AudioCache.getInstance(context);
+            File local = OfflineDownloadManager.getInstance(context).getLocalFile(item.id);
+            if (local == null) {
+                local = audioCache.getCachedFile(item.url);
+            }
+            MediaDataSource source = local == null ? audioCache.openDataSource(item.url) : null;
+            if (local != null) {
+                mediaPlayer.setDataSource(local.getAbsolutePath());
+            } else if (source != null) {
+                mediaPlayer.setDataSource(source);
+            } else {
+                mediaPlayer.setDataSource(item.url);
+            }
+            setState(STATE_BUFFERING);
+            mediaPlayer.prepareAsync();
+            Log.d(TAG, "开始加载: " + item.title + " - " + item.artist);
+        } catch (Exception e) {
+            Log.e(TAG, "加载歌曲出错: " + item.url, e);
+            setState(STATE_ERROR);
+        }
+    }
+
+    private void onPrepared(MediaPlayer mp) {
+        prepared = true;
+        if (pendingSeekMs > 0) {
+            mp.seekTo((int) pendingSeekMs);
+            pendingSeekMs = -1;
+        }
+        if (playWhenReady) {
+            play();
+        } else {
+            setState(STATE_PAUSED);
+        }
+    }
+
+    private void onCompletion() {
+        if (!skipToNext()) {
+            playWhenReady = false;
+            setState(STATE_ENDED);
+        }
+    }
+
+    private void releasePlayer() {
+        prepared = false;
+        if (mediaPlayer != null) {
+            try {
+                mediaPlayer.reset();
+                mediaPlayer.release();
+            } catch (Exception e) {
+                Log.e(TAG, "释放播放器出错", e);
+            }
+            mediaPlayer = null;
+        }
+    }
+
+    private final AudioManager.OnAudioFocusChangeListener focusChangeListener = focusChange -> {
+        switch (focusChange) {
+            case AudioManager.AUDIOFOCUS_LOSS:
+            case AudioManager.AUDIOFOCUS_LOSS_TRANSIENT:
+                mainHandler.post(this::pause);
+                break;
+            default:
+                break;
+        }
+    };
+
+    private boolean requestAudioFocus() {
+        if (audioManager == null) {
+            return true;
+        }
+        int result;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            if (focusRequest == null) {
+                focusRequest = new AudioFocusRequest.Builder(AudioManager.AUDIOFOCUS_GAIN)
+                        .setAudioAttributes(new AudioAttributes.Builder()
+                                .setUsage(AudioAttributes.USAGE_MEDIA)
+                                .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                                .build())
+                        .setOnAudioFocusChangeListener(focusChangeListener, mainHandler)
+                        .build();
+            }
+            result = audioManager.requestAudioFocus(focusRequest);
+        } else {
+            result = audioManager.requestAudioFocus(focusChangeListener,
+                    AudioManager.STREAM_MUSIC, AudioManager.AUDIOFOCUS_GAIN);
+        }
+        return result == AudioManager.AUDIOFOCUS_REQUEST_GRANTED;
+    }
+
+    private void abandonAudioFocus() {
+        if (audioManager == null) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            if (focusRequest != null) {
+                audioManager.abandonAudioFocusRequest(focusRequest);
+            }
+        } else {
+            audioManager.abandonAudioFocus(focusChangeListener);
+        }
+    }
+
+    private void setState(String newState) {
+        state = newState;
+        notifyState();
+    }
+
+    private void notifyState() {
+        QueueItem item = getCurrentItem();
+        long position = getPosition();
+        long duration = getDuration();
+        for (Listener listener : listeners) {
+            try {
+                listener.onStateChanged(state, item, position, duration);
+            } catch (Exception e) {
+                Log.e(TAG, "通知播放状态出错", e);
+            }
+        }
+    }
+}
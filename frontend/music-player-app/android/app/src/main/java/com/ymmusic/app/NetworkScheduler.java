@@ -0,0 +1,399 @@
+package com.ymmusic.app;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 原生网络请求调度
+ * 音频、API、封面和离线下载共用一个连接池（系统HttpURLConnection的keep-alive连接池，
+ * 响应体读完后关闭流而不是断开连接，连接放回池中复用），并按优先级分配连接名额：
+ * 当前播放的音频 > 下一首预取 > API > 封面 > 后台下载，每个级别有自己的并发上限，
+ * 另外为音频保留几个名额，封面和下载再多也不会让播放等待。
+ * 相同的进行中请求可以合并（coalesce），最近解析失败的域名记录在HostFailureCache中，断网时立即失败
+ */
+public class NetworkScheduler {
+    public static final int PRIORITY_PLAYBACK = 0;
+    public static final int PRIORITY_PREFETCH = 1;
+    public static final int PRIORITY_API = 2;
+    public static final int PRIORITY_COVER = 3;
+    public static final int PRIORITY_DOWNLOAD = 4;
+    static final String[] CLASS_NAMES = {"playback", "prefetch", "api", "cover", "download"};
+
+    // 各级别的并发上限，后台下载与OfflineDownloadManager的最大并发一致
+    static final int[] DEFAULT_LIMITS = {2, 2, 4, 3, 6};
+    // 同时进行的请求总数上限
+    static final int DEFAULT_MAX_ACTIVE = 12;
+    // 只能由播放和预取使用的名额
+    static final int DEFAULT_RESERVED_FOR_AUDIO = 3;
+    // 等待名额的最长时间
+    static final long PERMIT_WAIT_MS = 30000;
+    // 连接池中保留的空闲连接数和保留时间
+    private static final int POOL_IDLE_CONNECTIONS = 8;
+    private static final long POOL_KEEP_ALIVE_MS = 5 * 60 * 1000L;
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 10000;
+    private static final int DEFAULT_READ_TIMEOUT_MS = 20000;
+
+    private static NetworkScheduler instance;
+
+    private final int[] limits;
+    private final int maxActive;
+    private final int reservedForAudio;
+    private final HostFailureCache hostFailures;
+    private final Object lock = new Object();
+    private final int[] active = new int[CLASS_NAMES.length];
+    private final int[] waiting = new int[CLASS_NAMES.length];
+    private int totalActive = 0;
+    private final long[] requestCounts = new long[CLASS_NAMES.length];
+    private final Map<String, FutureTask<?>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+    public static synchronized NetworkScheduler getInstance() {
+        if (instance == null) {
+            configurePlatformPool();
+            instance = new NetworkScheduler(DEFAULT_LIMITS, DEFAULT_MAX_ACTIVE, DEFAULT_RESERVED_FOR_AUDIO,
+                    new HostFailureCache(() -> System.nanoTime() / 1000000));
+        }
+        return instance;
+    }
+
+    NetworkScheduler(int[] limits, int maxActive, int reservedForAudio, HostFailureCache hostFailures) {
+        if (limits.length != CLASS_NAMES.length || reservedForAudio >= maxActive) {
+            throw new IllegalArgumentException("无效的并发配置");
+        }
+        this.limits = limits.clone();
+        this.maxActive = maxActive;
+        this.reservedForAudio = reservedForAudio;
+        this.hostFailures = hostFailures;
+    }
+
+    /**
+     * 系统HttpURLConnection的连接池通过系统属性配置，需要在第一次请求之前设置
+     */
+    private static void configurePlatformPool() {
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(POOL_IDLE_CONNECTIONS));
+        System.setProperty("http.keepAliveDuration", String.valueOf(POOL_KEEP_ALIVE_MS));
+    }
+
+    /**
+     * 一个连接名额，关闭时归还
+     */
+    public final class Permit implements AutoCloseable {
+        private final int priority;
+        private boolean released = false;
+
+        Permit(int priority) {
+            this.priority = priority;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public void close() {
+            synchronized (lock) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                active[priority]--;
+                totalActive--;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 等待一个连接名额；多个级别同时等待时高优先级的先得到
+     * @throws IOException 等待超时或线程被中断
+     */
+    public Permit acquire(int priority, long timeoutMs) throws IOException {
+        checkPriority(priority);
+        final long start = MetricsRegistry.start();
+        synchronized (lock) {
+            waiting[priority]++;
+            boolean acquired = false;
+            try {
+                long deadline = System.currentTimeMillis() + timeoutMs;
+                while (!mayProceed(priority)) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new IOException("等待网络名额超时: " + CLASS_NAMES[priority]);
+                    }
+                    try {
+                        lock.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("等待网络名额被中断");
+                    }
+                }
+                active[priority]++;
+                totalActive++;
+                requestCounts[priority]++;
+                acquired = true;
+            } finally {
+                waiting[priority]--;
+                if (!acquired) {
+                    // 放弃等待后，被它挡住的低优先级请求可能可以继续
+                    lock.notifyAll();
+                }
+            }
+        }
+        metrics.recordSince("net.wait." + CLASS_NAMES[priority], start);
+        return new Permit(priority);
+    }
+
+    /**
+     * 该级别现在能否占用一个名额（调用时持有lock）
+     */
+    private boolean canRun(int priority) {
+        if (active[priority] >= limits[priority]) {
+            return false;
+        }
+        int cap = priority <= PRIORITY_PREFETCH ? maxActive : maxActive - reservedForAudio;
+        return totalActive < cap;
+    }
+
+    /**
+     * 有名额，并且没有能够运行的更高优先级请求在等待（调用时持有lock）
+     */
+    private boolean mayProceed(int priority) {
+        if (!canRun(priority)) {
+            return false;
+        }
+        for (int higher = 0; higher < priority; higher++) {
+            if (waiting[higher] > 0 && canRun(higher)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void checkPriority(int priority) {
+        if (priority < 0 || priority >= CLASS_NAMES.length) {
+            throw new IllegalArgumentException("无效的优先级: " + priority);
+        }
+    }
+
+    /**
+     * 取得名额后打开连接，连接在Call关闭时放回连接池并归还名额
+     * @throws java.net.UnknownHostException 最近解析失败过的域名立即失败，不占用名额
+     */
+    public Call open(String url, int priority) throws IOException {
+        checkPriority(priority);
+        URL target = new URL(url);
+        String host = target.getHost();
+        if (host != null && !host.isEmpty()) {
+            hostFailures.check(host);
+        }
+        Permit permit = acquire(priority, PERMIT_WAIT_MS);
+        try {
+            HttpURLConnection connection = (HttpURLConnection) target.openConnection();
+            connection.setConnectTimeout(DEFAULT_CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(DEFAULT_READ_TIMEOUT_MS);
+            return new Call(connection, permit, hostFailures, host);
+        } catch (IOException | RuntimeException e) {
+            permit.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 一次请求
+     * 用code()取得状态码、body()读取响应体；关闭时响应体已读完的连接放回连接池，
+     * 出错或abort()的连接直接断开
+     */
+    public static final class Call implements AutoCloseable {
+        private final HttpURLConnection connection;
+        private final Permit permit;
+        private final HostFailureCache hostFailures;
+        private final String host;
+        private InputStream body;
+        private boolean responded = false;
+        private boolean aborted = false;
+        private boolean closed = false;
+
+        Call(HttpURLConnection connection, Permit permit, HostFailureCache hostFailures, String host) {
+            this.connection = connection;
+            this.permit = permit;
+            this.hostFailures = hostFailures;
+            this.host = host;
+        }
+
+        /**
+         * 底层连接，用于设置请求头和读取响应头
+         */
+        public HttpURLConnection connection() {
+            return connection;
+        }
+
+        public int code() throws IOException {
+            try {
+                int code = connection.getResponseCode();
+                responded = true;
+                return code;
+            } catch (IOException e) {
+                failed(e);
+                throw e;
+            }
+        }
+
+        public InputStream body() throws IOException {
+            if (body == null) {
+                responded = true;
+                try {
+                    body = connection.getInputStream();
+                } catch (IOException e) {
+                    failed(e);
+                    throw e;
+                }
+            }
+            return body;
+        }
+
+        /**
+         * 连接出错时断开；域名解析失败时记录下来，之后同一域名的请求立即失败
+         */
+        private void failed(IOException e) {
+            aborted = true;
+            if (e instanceof UnknownHostException && host != null && !host.isEmpty()) {
+                hostFailures.recordFailure(host);
+            }
+        }
+
+        /**
+         * 把响应体交给调用方（例如WebView），关闭返回的流时才关闭这次请求
+         */
+        public InputStream detachBody() throws IOException {
+            return new FilterInputStream(body()) {
+                @Override
+                public void close() {
+                    Call.this.close();
+                }
+            };
+        }
+
+        /**
+         * 不再读取剩余的响应体，关闭时断开连接而不是放回连接池
+         */
+        public void abort() {
+            aborted = true;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (aborted || !responded) {
+                    connection.disconnect();
+                } else if (body != null) {
+                    body.close();
+                } else {
+                    // 没有读取响应体（例如304或错误状态码）：关闭响应流让连接回到连接池
+                    InputStream stream = connection.getResponseCode() >= 400
+                            ? connection.getErrorStream() : connection.getInputStream();
+                    if (stream != null) {
+                        stream.close();
+                    }
+                }
+            } catch (IOException e) {
+                connection.disconnect();
+            } finally {
+                permit.close();
+            }
+        }
+    }
+
+    /**
+     * 合并相同的进行中请求：同一个键已有请求在进行时等待它的结果，否则在调用线程执行
+     * @param key 请求的唯一键，不同用途的请求应加上不同的前缀
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T coalesce(String key, Callable<T> task, long timeoutMs) throws IOException {
+        FutureTask<T> own = new FutureTask<>(task);
+        FutureTask<T> existing = (FutureTask<T>) inFlight.putIfAbsent(key, own);
+        if (existing == null) {
+            try {
+                own.run();
+            } finally {
+                inFlight.remove(key, own);
+            }
+            existing = own;
+        } else {
+            coalescedCount.incrementAndGet();
+        }
+        try {
+            return existing.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (TimeoutException e) {
+            throw new IOException("等待合并的请求超时: " + key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待合并的请求被中断");
+        }
+    }
+
+    public boolean isInFlight(String key) {
+        return inFlight.containsKey(key);
+    }
+
+    /**
+     * 网络切换（例如Wi-Fi切到移动网络）后丢弃旧的域名解析失败记录
+     */
+    public void onNetworkChanged() {
+        hostFailures.clear();
+    }
+
+    public HostFailureCache getHostFailures() {
+        return hostFailures;
+    }
+
+    public int getActive(int priority) {
+        synchronized (lock) {
+            return active[priority];
+        }
+    }
+
+    public int getWaiting(int priority) {
+        synchronized (lock) {
+            return waiting[priority];
+        }
+    }
+
+    public long getRequestCount(int priority) {
+        synchronized (lock) {
+            return requestCounts[priority];
+        }
+    }
+
+    public int getLimit(int priority) {
+        return limits[priority];
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+}
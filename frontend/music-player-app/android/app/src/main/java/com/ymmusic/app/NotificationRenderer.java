@@ -0,0 +1,230 @@
+package com.ymmusic.app;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.media.session.MediaSessionCompat;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 媒体通知渲染器
+ * PendingIntent和静态资源只创建一次；与上次渲染的状态比较，丢弃无变化的更新；
+ * 短时间内的连续更新合并为一次notify()
+ */
+public class NotificationRenderer {
+    private static final String TAG = "NotificationRenderer";
+
+    // 合并窗口，窗口内的多次更新只渲染最后一次
+    static final long COALESCE_WINDOW_MS = 100;
+
+    /**
+     * 通知显示的状态，用于与上次渲染结果比较
+     */
+    public static final class NotificationState {
+        final String title;
+        final String artist;
+        final Bitmap albumArt;
+        final boolean playing;
+        // 当前歌词行，没有歌词时为null
+        final String lyric;
+
+        public NotificationState(String title, String artist, Bitmap albumArt, boolean playing, String lyric) {
+            this.title = title;
+            this.artist = artist;
+            this.albumArt = albumArt;
+            this.playing = playing;
+            this.lyric = lyric;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof NotificationState)) {
+                return false;
+            }
+            NotificationState other = (NotificationState) o;
+            // 封面按引用比较，同一首歌的封面来自同一个缓存位图
+            return playing == other.playing
+                    && albumArt == other.albumArt
+                    && Objects.equals(title, other.title)
+                    && Objects.equals(artist, other.artist)
+                    && Objects.equals(lyric, other.lyric);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(title, artist, System.identityHashCode(albumArt), playing, lyric);
+        }
+    }
+
+    private final int notificationId;
+    private final NotificationManager notificationManager;
+    private final Handler handler;
+    private final NotificationCompat.Builder builder;
+    private final PendingIntent playPendingIntent;
+    private final PendingIntent pausePendingIntent;
+    private final PendingIntent previousPendingIntent;
+    private final PendingIntent nextPendingIntent;
+
+    private final AtomicLong renderedCount = new AtomicLong();
+    private final AtomicLong suppressedCount = new AtomicLong();
+    private final MetricsRegistry metrics = MetricsRegistry.getInstance();
+
+    private NotificationState lastRendered;
+    private NotificationState pending;
+    private boolean flushScheduled = false;
+
+    private final Runnable flushRunnable = this::flush;
+
+    /**
+     * @param looper 合并渲染所在线程的Looper（播放服务的工作线程）
+     */
+    public NotificationRenderer(Service service, String channelId, int notificationId,
+                                MediaSessionCompat.Token sessionToken, Looper looper) {
+        this.notificationId = notificationId;
+        this.handler = new Handler(looper);
+        this.notificationManager = (NotificationManager) service.getSystemService(Context.NOTIFICATION_SERVICE);
+
+        // 主Activity的PendingIntent
+        Intent notificationIntent = new Intent(service, MainActivity.class);
+        PendingIntent contentIntent = PendingIntent.getActivity(
+                service, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
+
+        // 媒体控制按钮的PendingIntent，只创建一次
+        playPendingIntent = createServiceIntent(service, MusicPlaybackService.ACTION_PLAY);
+        pausePendingIntent = createServiceIntent(service, MusicPlaybackService.ACTION_PAUSE);
+        previousPendingIntent = createServiceIntent(service, MusicPlaybackService.ACTION_PREVIOUS);
+        nextPendingIntent = createServiceIntent(service, MusicPlaybackService.ACTION_NEXT);
+
+        int smallIcon = service.getResources().getIdentifier("ic_launcher", "mipmap", service.getPackageName());
+
+        // 不随状态变化的部分只设置一次
+        builder = new NotificationCompat.Builder(service, channelId)
+                .setSmallIcon(smallIcon)
+                .setContentIntent(contentIntent)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .setOnlyAlertOnce(true)
+                .setOngoing(true)
+                // 设置媒体样式
+                .setStyle(new androidx.media.app.NotificationCompat.MediaStyle()
+                        .setMediaSession(sessionToken)
+                        .setShowActionsInCompactView(0, 1, 2)); // 显示所有三个按钮
+    }
+
+    private static PendingIntent createServiceIntent(Service service, String action) {
+        Intent intent = new Intent(service, MusicPlaybackService.class);
+        intent.setAction(action);
+        return PendingIntent.getService(service, 0, intent, PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    /**
+     * 提交新的通知状态，无变化时直接丢弃，有变化时在合并窗口结束后渲染
+     */
+    public synchronized void render(NotificationState state) {
+        NotificationState latest = pending != null ? pending : lastRendered;
+        if (state.equals(latest)) {
+            suppressedCount.incrementAndGet();
+            return;
+        }
+        if (flushScheduled) {
+            // 覆盖窗口内尚未渲染的状态
+            suppressedCount.incrementAndGet();
+            pending = state;
+            return;
+        }
+        pending = state;
+        flushScheduled = true;
+        handler.postDelayed(flushRunnable, COALESCE_WINDOW_MS);
+    }
+
+    /**
+     * 最近提交的通知状态（包括还在合并窗口中等待渲染的），没有提交过时返回null
+     */
+    public synchronized NotificationState getLatestState() {
+        return pending != null ? pending : lastRendered;
+    }
+
+    /**
+     * 立即构建通知（用于startForeground），同时取消等待中的合并渲染
+     */
+    public synchronized Notification renderNow(NotificationState state) {
+        cancelPending();
+        lastRendered = state;
+        renderedCount.incrementAndGet();
+        return build(state);
+    }
+
+    private synchronized void flush() {
+        flushScheduled = false;
+        NotificationState state = pending;
+        pending = null;
+        if (state == null || state.equals(lastRendered)) {
+            return;
+        }
+        try {
+            if (notificationManager != null) {
+                Notification notification = build(state);
+                final long start = MetricsRegistry.start();
+                notificationManager.notify(notificationId, notification);
+                metrics.recordSince("notification.post", start);
+                lastRendered = state;
+                renderedCount.incrementAndGet();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "渲染通知出错", e);
+        }
+    }
+
+    /**
+     * 取消尚未执行的合并渲染
+     */
+    public synchronized void cancelPending() {
+        handler.removeCallbacks(flushRunnable);
+        flushScheduled = false;
+        pending = null;
+    }
+
+    /**
+     * 构建通知，耗时记录为notification.build
+     */
+    private Notification build(NotificationState state) {
+        final long start = MetricsRegistry.start();
+        boolean hasLyric = state.lyric != null && !state.lyric.isEmpty();
+        // 有歌词时正文显示当前歌词行，歌手移到副标题
+        builder.setContentTitle(state.title)
+                .setContentText(hasLyric ? state.lyric : state.artist)
+                .setSubText(hasLyric ? state.artist : null)
+                .setLargeIcon(state.albumArt)
+                .clearActions()
+                // 添加媒体控制按钮
+                .addAction(android.R.drawable.ic_media_previous, "上一首", previousPendingIntent)
+                .addAction(state.playing ? android.R.drawable.ic_media_pause : android.R.drawable.ic_media_play,
+                        state.playing ? "暂停" : "播放", state.playing ? pausePendingIntent : playPendingIntent)
+                .addAction(android.R.drawable.ic_media_next, "下一首", nextPendingIntent);
+        Notification notification = builder.build();
+        metrics.recordSince("notification.build", start);
+        return notification;
+    }
+
+    public long getRenderedCount() {
+        return renderedCount.get();
+    }
+
+    public long getSuppressedCount() {
+        return suppressedCount.get();
+    }
+}
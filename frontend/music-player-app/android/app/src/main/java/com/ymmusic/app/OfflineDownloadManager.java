@@ -0,0 +1,902 @@
+package com.ymmusic.app;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 离线下载管理
+ * 歌曲按固定大小分块，用HTTP Range并行下载到files/offline，并发数按实测吞吐量调整；
+ * 分块进度保存在旁边的计划文件中，中断后用新的地址从未完成的块继续。
+ * 下载完成后校验长度、音频文件头和ETag中的MD5，再加入本地索引，超出配额时淘汰最久未播放的歌曲。
+ * 同时作为WebView拦截器，为离线地址和已下载歌曲的旧CDN地址直接返回本地文件
+ */
+public class OfflineDownloadManager implements RequestInterceptor {
+    private static final String TAG = "OfflineDownloadManager";
+
+    // Web层播放离线歌曲使用的地址，由intercept直接返回本地文件
+    public static final String OFFLINE_URL_PREFIX = "https://localhost/_offline/";
+    private static final String OFFLINE_PATH_PREFIX = "/_offline/";
+
+    public static final String STATE_DOWNLOADING = "downloading";
+    public static final String STATE_COMPLETED = "completed";
+    public static final String STATE_FAILED = "failed";
+    public static final String STATE_CANCELLED = "cancelled";
+
+    private static final long DEFAULT_QUOTA_BYTES = 1024L * 1024 * 1024;
+    private static final int CHUNK_BYTES = 512 * 1024;
+    private static final int MIN_PARALLEL = 1;
+    private static final int MAX_PARALLEL = 6;
+    private static final int INITIAL_PARALLEL = 2;
+    private static final int MAX_CHUNK_RETRIES = 3;
+    // 进度事件的合并间隔
+    private static final long PROGRESS_INTERVAL_MS = 500;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 20000;
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+    private static final Pattern MD5_ETAG = Pattern.compile("^(?:W/)?\"?([0-9a-fA-F]{32})\"?$");
+
+    /**
+     * 一批进度事件中的一项
+     */
+    public static final class Progress {
+        public final String songId;
+        public final String state;
+        public final long downloaded;
+        public final long total;
+        public final String error;
+
+        Progress(String songId, String state, long downloaded, long total, String error) {
+            this.songId = songId;
+            this.state = state;
+            this.downloaded = downloaded;
+            this.total = total;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 进度监听器，在主线程上按批回调
+     */
+    public interface ProgressListener {
+        void onProgress(List<Progress> batch);
+    }
+
+    private static OfflineDownloadManager instance;
+
+    private final File directory;
+    private final File partialDir;
+    private final AtomicFile indexFile;
+    private final DownloadIndex index = new DownloadIndex(DEFAULT_QUOTA_BYTES);
+    private final DownloadConcurrency concurrency =
+            new DownloadConcurrency(MIN_PARALLEL, MAX_PARALLEL, INITIAL_PARALLEL);
+    private final ExecutorService workers;
+    private final ExecutorService indexWriter = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // 以下字段由this保护
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private final ArrayDeque<Runnable> pendingJobs = new ArrayDeque<>();
+    private int runningJobs = 0;
+    private final Set<String> dirtySongs = new LinkedHashSet<>();
+    private final Map<String, Progress> finishedProgress = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+
+    private volatile ProgressListener progressListener;
+
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong offlineHitCount = new AtomicLong();
+
+    public static synchronized OfflineDownloadManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new OfflineDownloadManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private OfflineDownloadManager(Context context) {
+        directory = new File(context.getFilesDir(), "offline");
+        partialDir = new File(directory, "partial");
+        partialDir.mkdirs();
+        indexFile = new AtomicFile(new File(directory, "index.bin"));
+        workers = Executors.newFixedThreadPool(MAX_PARALLEL, runnable -> {
+            Thread thread = new Thread(runnable, "OfflineDownload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        loadIndex();
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        progressListener = listener;
+    }
+
+    /**
+     * 读取索引，并丢弃文件已丢失或大小不符的条目
+     */
+    private void loadIndex() {
+        try (FileInputStream in = indexFile.openRead()) {
+            index.readFrom(new DataInputStream(new BufferedInputStream(in)));
+        } catch (FileNotFoundException e) {
+            // 还没有下载过歌曲
+            return;
+        } catch (Exception e) {
+            Log.e(TAG, "读取下载索引出错", e);
+            return;
+        }
+        boolean changed = false;
+        for (DownloadIndex.Entry entry : index.getEntries()) {
+            File file = new File(directory, entry.fileName);
+            if (!file.isFile() || file.length() != entry.size) {
+                index.remove(entry.songId);
+                file.delete();
+                changed = true;
+            }
+        }
+        if (changed) {
+            saveIndex();
+        }
+        Log.d(TAG, "已加载下载索引: " + index.size() + " 首, " + index.getTotalBytes() / 1024 / 1024 + "MB");
+    }
+
+    /**
+     * 在调用线程生成快照，由后台线程写入文件
+     */
+    private void saveIndex() {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            index.writeTo(new DataOutputStream(buffer));
+            final byte[] data = buffer.toByteArray();
+            indexWriter.execute(() -> {
+                FileOutputStream out = null;
+                try {
+                    out = indexFile.startWrite();
+                    out.write(data);
+                    indexFile.finishWrite(out);
+                } catch (Exception e) {
+                    Log.e(TAG, "保存下载索引出错", e);
+                    if (out != null) {
+                        indexFile.failWrite(out);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "生成下载索引快照出错", e);
+        }
+    }
+
+    /**
+     * 开始或继续下载一首歌曲
+     * 已有未完成的任务时使用新的地址续传（CDN地址会过期）
+     * @return 已经下载过时返回false
+     */
+    public boolean download(String songId, String url, String title, String artist, String cover) {
+        if (songId == null || songId.isEmpty() || url == null || url.isEmpty()) {
+            throw new IllegalArgumentException("歌曲ID和地址不能为空");
+        }
+        if (index.peek(songId) != null) {
+            return false;
+        }
+        synchronized (this) {
+            Task task = tasks.get(songId);
+            if (task != null) {
+                task.url = url;
+                if (!task.failed) {
+                    return true;
+                }
+                tasks.remove(songId);
+            }
+            final Task newTask = new Task(songId, url, title, artist, cover);
+            tasks.put(songId, newTask);
+            pendingJobs.add(() -> probe(newTask));
+            markDirty(songId);
+        }
+        pump();
+        Log.d(TAG, "开始下载: " + title + " - " + artist);
+        return true;
+    }
+
+    /**
+     * 取消下载并删除已下载的部分
+     */
+    public void cancel(String songId) {
+        Task task;
+        synchronized (this) {
+            task = tasks.remove(songId);
+            if (task == null) {
+                return;
+            }
+            task.cancelled = true;
+            finishedProgress.put(songId, new Progress(songId, STATE_CANCELLED, 0, task.total, null));
+            scheduleFlush();
+        }
+        // 正在运行的分块会在下一次写入前发现已取消
+        task.deletePartial();
+    }
+
+    /**
+     * 删除已下载的歌曲（下载中的会被取消）
+     */
+    public void remove(String songId) {
+        cancel(songId);
+        DownloadIndex.Entry entry = index.remove(songId);
+        if (entry != null) {
+            new File(directory, entry.fileName).delete();
+            saveIndex();
+        }
+    }
+
+    /**
+     * 已下载歌曲的本地文件，并标记为最近播放；文件丢失或大小不符时移出索引
+     */
+    public File getLocalFile(String songId) {
+        if (songId == null) {
+            return null;
+        }
+        DownloadIndex.Entry entry = index.touch(songId);
+        if (entry == null) {
+            return null;
+        }
+        File file = checkFile(entry);
+        if (file != null) {
+            // 保存新的播放顺序，淘汰时以此为准
+            saveIndex();
+        }
+        return file;
+    }
+
+    private File checkFile(DownloadIndex.Entry entry) {
+        File file = new File(directory, entry.fileName);
+        if (file.isFile() && file.length() == entry.size) {
+            return file;
+        }
+        Log.w(TAG, "离线文件已丢失: " + entry.songId);
+        index.remove(entry.songId);
+        file.delete();
+        saveIndex();
+        return null;
+    }
+
+    /**
+     * Web层播放已下载歌曲使用的地址，没有下载时返回null
+     */
+    public String getOfflineUrl(String songId) {
+        return getLocalFile(songId) != null ? OFFLINE_URL_PREFIX + Uri.encode(songId) : null;
+    }
+
+    public boolean isDownloaded(String songId) {
+        return songId != null && index.peek(songId) != null;
+    }
+
+    /**
+     * 设置存储配额，超出部分立即按最久未播放淘汰
+     */
+    public void setQuotaBytes(long bytes) {
+        index.setQuotaBytes(bytes);
+        deleteEvicted(index.trimToQuota(null));
+        saveIndex();
+    }
+
+    private void deleteEvicted(List<DownloadIndex.Entry> evicted) {
+        for (DownloadIndex.Entry entry : evicted) {
+            new File(directory, entry.fileName).delete();
+            Log.d(TAG, "超出离线配额，淘汰: " + entry.title);
+        }
+    }
+
+    @Override
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        Uri uri = request.getUrl();
+        if (!"GET".equalsIgnoreCase(request.getMethod())) {
+            return null;
+        }
+        String path = uri.getPath();
+        DownloadIndex.Entry entry;
+        if ("localhost".equals(uri.getHost()) && path != null && path.startsWith(OFFLINE_PATH_PREFIX)) {
+            entry = index.peek(path.substring(OFFLINE_PATH_PREFIX.length()));
+            if (entry == null) {
+                return notFound();
+            }
+        } else if (AudioCache.isAudioUrl(uri)) {
+            // 已下载歌曲的CDN地址也直接使用本地文件
+            entry = index.findByUrlKey(AudioCache.cacheKey(uri));
+            if (entry == null) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        try {
+            File file = checkFile(entry);
+            long[] range = AudioCache.parseRange(request.getRequestHeaders());
+            if (file == null || range == null) {
+                return null;
+            }
+            offlineHitCount.incrementAndGet();
+            return AudioCache.serveFile(file, AudioCache.guessMimeType(entry.fileName), range);
+        } catch (Exception e) {
+            Log.e(TAG, "读取离线文件出错: " + entry.songId, e);
+            return null;
+        }
+    }
+
+    private static WebResourceResponse notFound() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Access-Control-Allow-Origin", "*");
+        return new WebResourceResponse("text/plain", "utf-8", 404, "Not Found", headers,
+                new ByteArrayInputStream(new byte[0]));
+    }
+
+    /**
+     * 在并发上限内启动排队的任务
+     */
+    private void pump() {
+        List<Runnable> toRun = new ArrayList<>();
+        synchronized (this) {
+            int limit = concurrency.getLimit();
+            while (runningJobs < limit && !pendingJobs.isEmpty()) {
+                runningJobs++;
+                toRun.add(pendingJobs.poll());
+            }
+        }
+        for (Runnable job : toRun) {
+            workers.execute(() -> {
+                try {
+                    job.run();
+                } catch (Exception e) {
+                    Log.e(TAG, "下载任务出错", e);
+                } finally {
+                    synchronized (this) {
+                        runningJobs--;
+                    }
+                    pump();
+                }
+            });
+        }
+    }
+
+    /**
+     * 首个请求：读取长度和校验标识，确认服务器是否支持Range，并顺带下载第一块
+     */
+    private void probe(Task task) {
+        if (task.cancelled) {
+            return;
+        }
+        NetworkScheduler.Call call = null;
+        try {
+            call = open(task.url);
+            HttpURLConnection connection = call.connection();
+            connection.setRequestProperty("Range", "bytes=0-" + (CHUNK_BYTES - 1));
+            int code = call.code();
+            String validator = connection.getHeaderField("ETag");
+            if (validator == null) {
+                validator = connection.getHeaderField("Last-Modified");
+            }
+            if (code == HttpURLConnection.HTTP_OK) {
+                // 不支持Range，只能整个文件顺序下载
+                streamWhole(task, call, validator);
+                return;
+            }
+            if (code != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("HTTP " + code);
+            }
+            long[] contentRange = parseContentRange(connection.getHeaderField("Content-Range"));
+            if (contentRange == null || contentRange[0] != 0) {
+                throw new IOException("无效的Content-Range");
+            }
+            DownloadPlan plan = task.preparePlan(contentRange[2], validator);
+            if (plan.isDone(0)) {
+                call.abort();
+            } else {
+                try (InputStream in = call.body()) {
+                    writeChunk(task, plan, 0, in);
+                }
+            }
+            synchronized (this) {
+                if (task.cancelled) {
+                    return;
+                }
+                for (int chunk : plan.pendingChunks()) {
+                    pendingJobs.add(new ChunkJob(task, chunk, 0));
+                }
+            }
+            if (plan.isComplete()) {
+                finish(task);
+            }
+        } catch (Exception e) {
+            if (call != null) {
+                call.abort();
+            }
+            concurrency.onError();
+            fail(task, e);
+        } finally {
+            if (call != null) {
+                call.close();
+            }
+        }
+    }
+
+    /**
+     * 下载一个分块，失败时重新排队，超过重试次数后整个任务失败（已完成的块保留以便续传）
+     */
+    private final class ChunkJob implements Runnable {
+        final Task task;
+        final int chunk;
+        final int attempt;
+
+        ChunkJob(Task task, int chunk, int attempt) {
+            this.task = task;
+            this.chunk = chunk;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void run() {
+            if (task.cancelled || task.failed) {
+                return;
+            }
+            DownloadPlan plan = task.plan;
+            NetworkScheduler.Call call = null;
+            try {
+                call = open(task.url);
+                HttpURLConnection connection = call.connection();
+                connection.setRequestProperty("Range", "bytes=" + plan.chunkStart(chunk) + "-" + plan.chunkEnd(chunk));
+                int code = call.code();
+                long[] contentRange = parseContentRange(connection.getHeaderField("Content-Range"));
+                if (code != HttpURLConnection.HTTP_PARTIAL || contentRange == null
+                        || contentRange[0] != plan.chunkStart(chunk) || contentRange[2] != plan.getTotalBytes()) {
+                    throw new IOException("分块响应不匹配: HTTP " + code);
+                }
+                try (InputStream in = call.body()) {
+                    writeChunk(task, plan, chunk, in);
+                }
+                if (plan.isComplete()) {
+                    finish(task);
+                }
+            } catch (Exception e) {
+                if (call != null) {
+                    call.abort();
+                }
+                concurrency.onError();
+                if (attempt + 1 < MAX_CHUNK_RETRIES && !task.cancelled) {
+                    Log.w(TAG, "分块下载失败，重试: " + task.songId + " #" + chunk + " " + e.getMessage());
+                    synchronized (OfflineDownloadManager.this) {
+                        pendingJobs.addFirst(new ChunkJob(task, chunk, attempt + 1));
+                    }
+                } else {
+                    fail(task, e);
+                }
+            } finally {
+                if (call != null) {
+                    call.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 把一个分块写入临时文件的对应位置，完整写完后才记为完成
+     */
+    private void writeChunk(Task task, DownloadPlan plan, int chunk, InputStream in) throws IOException {
+        long start = plan.chunkStart(chunk);
+        long length = plan.chunkLength(chunk);
+        long written = 0;
+        try (RandomAccessFile out = new RandomAccessFile(task.partFile, "rw")) {
+            out.seek(start);
+            byte[] buffer = new byte[32 * 1024];
+            int read;
+            while (written < length && (read = in.read(buffer, 0, (int) Math.min(buffer.length, length - written))) != -1) {
+                if (task.cancelled) {
+                    throw new IOException("下载已取消");
+                }
+                out.write(buffer, 0, read);
+                written += read;
+                task.downloaded.addAndGet(read);
+                concurrency.record(read, SystemClock.elapsedRealtime());
+                markDirty(task.songId);
+            }
+        } catch (IOException e) {
+            task.downloaded.addAndGet(-written);
+            throw e;
+        }
+        if (written != length) {
+            task.downloaded.addAndGet(-written);
+            throw new IOException("分块长度不足: " + written + "/" + length);
+        }
+        plan.markDone(chunk);
+        task.savePlan();
+    }
+
+    /**
+     * 服务器不支持Range时顺序下载整个文件
+     */
+    private void streamWhole(Task task, NetworkScheduler.Call call, String validator) throws IOException {
+        long total = call.connection().getContentLengthLong();
+        if (total <= 0) {
+            throw new IOException("无法确定音频长度");
+        }
+        task.deletePartial();
+        task.total = total;
+        task.downloaded.set(0);
+        try (InputStream in = call.body();
+             OutputStream out = new FileOutputStream(task.partFile)) {
+            byte[] buffer = new byte[32 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (task.cancelled) {
+                    throw new IOException("下载已取消");
+                }
+                out.write(buffer, 0, read);
+                task.downloaded.addAndGet(read);
+                concurrency.record(read, SystemClock.elapsedRealtime());
+                markDirty(task.songId);
+            }
+        }
+        task.validator = validator;
+        finish(task);
+    }
+
+    /**
+     * 校验并提交下载完成的文件
+     */
+    private void finish(Task task) {
+        synchronized (task) {
+            if (task.finished) {
+                return;
+            }
+            task.finished = true;
+        }
+        if (task.cancelled) {
+            return;
+        }
+        try {
+            File part = task.partFile;
+            if (part.length() != task.total) {
+                throw new IOException("文件长度不符: " + part.length() + "/" + task.total);
+            }
+            if (!looksLikeAudio(part)) {
+                throw new IOException("不是有效的音频文件");
+            }
+            String md5 = md5(part);
+            String validator = task.plan != null ? task.plan.getValidator() : task.validator;
+            Matcher etag = MD5_ETAG.matcher(validator != null ? validator.trim() : "");
+            if (etag.matches() && !etag.group(1).equalsIgnoreCase(md5)) {
+                throw new IOException("MD5校验失败");
+            }
+
+            String fileName = DiskLruCache.hashKey(task.songId) + task.extension;
+            File target = new File(directory, fileName);
+            target.delete();
+            if (!part.renameTo(target)) {
+                throw new IOException("无法保存离线文件");
+            }
+            task.planFile.delete();
+            DownloadIndex.Entry previous = index.put(new DownloadIndex.Entry(task.songId, fileName, target.length(), md5,
+                    task.urlKey, task.title, task.artist, task.cover, System.currentTimeMillis()));
+            if (previous != null && !previous.fileName.equals(fileName)) {
+                new File(directory, previous.fileName).delete();
+            }
+            deleteEvicted(index.trimToQuota(task.songId));
+            saveIndex();
+            completedCount.incrementAndGet();
+
+            synchronized (this) {
+                tasks.remove(task.songId, task);
+                finishedProgress.put(task.songId, new Progress(task.songId, STATE_COMPLETED, task.total, task.total, null));
+                scheduleFlush();
+            }
+            Log.d(TAG, "下载完成: " + task.title + " (" + task.total / 1024 + "KB)");
+        } catch (Exception e) {
+            // 校验失败的数据不能续用
+            task.deletePartial();
+            fail(task, e);
+        }
+    }
+
+    private void fail(Task task, Exception e) {
+        synchronized (this) {
+            if (task.failed || task.cancelled) {
+                return;
+            }
+            task.failed = true;
+            // 丢弃该任务排队中的分块
+            Iterator<Runnable> iterator = pendingJobs.iterator();
+            while (iterator.hasNext()) {
+                Runnable job = iterator.next();
+                if (job instanceof ChunkJob && ((ChunkJob) job).task == task) {
+                    iterator.remove();
+                }
+            }
+            finishedProgress.put(task.songId, new Progress(task.songId, STATE_FAILED,
+                    task.downloaded.get(), task.total, e.getMessage()));
+            scheduleFlush();
+        }
+        failedCount.incrementAndGet();
+        Log.w(TAG, "下载失败: " + task.songId + " " + e.getMessage());
+    }
+
+    /**
+     * 记录需要上报进度的歌曲，合并后按固定间隔发给Web层
+     */
+    private synchronized void markDirty(String songId) {
+        dirtySongs.add(songId);
+        scheduleFlush();
+    }
+
+    private synchronized void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            mainHandler.postDelayed(this::flushProgress, PROGRESS_INTERVAL_MS);
+        }
+    }
+
+    private void flushProgress() {
+        List<Progress> batch = new ArrayList<>();
+        synchronized (this) {
+            flushScheduled = false;
+            for (String songId : dirtySongs) {
+                Task task = tasks.get(songId);
+                if (task != null && !task.failed && !finishedProgress.containsKey(songId)) {
+                    batch.add(new Progress(songId, STATE_DOWNLOADING, task.downloaded.get(), task.total, null));
+                }
+            }
+            batch.addAll(finishedProgress.values());
+            dirtySongs.clear();
+            finishedProgress.clear();
+        }
+        ProgressListener listener = progressListener;
+        if (listener != null && !batch.isEmpty()) {
+            listener.onProgress(batch);
+        }
+    }
+
+    /**
+     * 下载中和失败（可续传）的任务
+     */
+    public synchronized List<Progress> getActiveDownloads() {
+        List<Progress> list = new ArrayList<>();
+        for (Task task : tasks.values()) {
+            list.add(new Progress(task.songId, task.failed ? STATE_FAILED : STATE_DOWNLOADING,
+                    task.downloaded.get(), task.total, null));
+        }
+        return list;
+    }
+
+    public List<DownloadIndex.Entry> getDownloadedEntries() {
+        return index.getEntries();
+    }
+
+    public long getUsedBytes() {
+        return index.getTotalBytes();
+    }
+
+    public long getQuotaBytes() {
+        return index.getQuotaBytes();
+    }
+
+    public int getConcurrencyLimit() {
+        return concurrency.getLimit();
+    }
+
+    /**
+     * 最近测得的下载吞吐量（字节/秒）
+     */
+    public double getThroughput() {
+        return concurrency.getThroughput();
+    }
+
+    public synchronized int getRunningJobs() {
+        return runningJobs;
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getOfflineHitCount() {
+        return offlineHitCount.get();
+    }
+
+    private static NetworkScheduler.Call open(String url) throws IOException {
+        NetworkScheduler.Call call = NetworkScheduler.getInstance().open(url, NetworkScheduler.PRIORITY_DOWNLOAD);
+        HttpURLConnection connection = call.connection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        // 避免透明压缩改变字节偏移
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        return call;
+    }
+
+    /**
+     * 解析Content-Range
+     * @return [起点, 终点, 总长度]，格式不正确时返回null
+     */
+    static long[] parseContentRange(String value) {
+        if (value == null) {
+            return null;
+        }
+        Matcher matcher = CONTENT_RANGE.matcher(value.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        return new long[]{Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)),
+                Long.parseLong(matcher.group(3))};
+    }
+
+    /**
+     * 检查文件头，避免把接口返回的错误页面当作音频保存
+     */
+    private static boolean looksLikeAudio(File file) throws IOException {
+        byte[] header = new byte[12];
+        int length;
+        try (FileInputStream in = new FileInputStream(file)) {
+            length = in.read(header);
+        }
+        if (length < 4) {
+            return false;
+        }
+        // ID3标签、MP3/AAC帧同步、FLAC、Ogg、MP4(ftyp)
+        return (header[0] == 'I' && header[1] == 'D' && header[2] == '3')
+                || ((header[0] & 0xff) == 0xff && (header[1] & 0xe0) == 0xe0)
+                || (header[0] == 'f' && header[1] == 'L' && header[2] == 'a' && header[3] == 'C')
+                || (header[0] == 'O' && header[1] == 'g' && header[2] == 'g' && header[3] == 'S')
+                || (length >= 8 && header[4] == 'f' && header[5] == 't' && header[6] == 'y' && header[7] == 'p');
+    }
+
+    private static String md5(File file) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder sb = new StringBuilder(32);
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 一首歌曲的下载任务
+     */
+    private final class Task {
+        final String songId;
+        final String title;
+        final String artist;
+        final String cover;
+        final String urlKey;
+        final String extension;
+        final File partFile;
+        final AtomicFile planFile;
+        final AtomicLong downloaded = new AtomicLong();
+        volatile String url;
+        volatile long total = -1;
+        volatile DownloadPlan plan;
+        volatile String validator;
+        volatile boolean cancelled = false;
+        volatile boolean failed = false;
+        boolean finished = false;
+
+        Task(String songId, String url, String title, String artist, String cover) {
+            this.songId = songId;
+            this.url = url;
+            this.title = title;
+            this.artist = artist;
+            this.cover = cover;
+            Uri uri = Uri.parse(url);
+            this.urlKey = AudioCache.isAudioUrl(uri) ? AudioCache.cacheKey(uri) : "";
+            String path = uri.getPath() != null ? uri.getPath().toLowerCase() : "";
+            int dot = path.lastIndexOf('.');
+            String ext = dot >= 0 ? path.substring(dot) : "";
+            this.extension = ext.matches("\\.(mp3|m4a|flac|aac|ogg)") ? ext : ".mp3";
+            String name = DiskLruCache.hashKey(songId);
+            this.partFile = new File(partialDir, name + ".part");
+            this.planFile = new AtomicFile(new File(partialDir, name + ".plan"));
+        }
+
+        /**
+         * 读取上次中断时保存的计划，服务器文件没有变化时续用已完成的块
+         */
+        DownloadPlan preparePlan(long serverTotal, String serverValidator) throws IOException {
+            DownloadPlan saved = null;
+            if (partFile.exists()) {
+                try (FileInputStream in = planFile.openRead()) {
+                    saved = DownloadPlan.readFrom(new DataInputStream(new BufferedInputStream(in)));
+                } catch (FileNotFoundException e) {
+                    // 没有保存的计划
+                } catch (Exception e) {
+                    Log.w(TAG, "下载计划已损坏，重新下载: " + songId);
+                }
+            }
+            DownloadPlan result;
+            if (saved != null && saved.matches(serverTotal, serverValidator) && partFile.length() == serverTotal) {
+                result = saved;
+                Log.d(TAG, "续传: " + songId + " 已完成 " + saved.completedBytes() / 1024 + "KB");
+            } else {
+                deletePartial();
+                result = new DownloadPlan(serverTotal, CHUNK_BYTES, serverValidator);
+                try (RandomAccessFile file = new RandomAccessFile(partFile, "rw")) {
+                    file.setLength(serverTotal);
+                }
+            }
+            total = serverTotal;
+            downloaded.set(result.completedBytes());
+            plan = result;
+            return result;
+        }
+
+        /**
+         * 保存分块进度
+         */
+        synchronized void savePlan() {
+            DownloadPlan current = plan;
+            if (current == null || cancelled) {
+                return;
+            }
+            FileOutputStream out = null;
+            try {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                current.writeTo(new DataOutputStream(buffer));
+                out = planFile.startWrite();
+                out.write(buffer.toByteArray());
+                planFile.finishWrite(out);
+            } catch (Exception e) {
+                Log.e(TAG, "保存下载计划出错: " + songId, e);
+                if (out != null) {
+                    planFile.failWrite(out);
+                }
+            }
+        }
+
+        synchronized void deletePartial() {
+            partFile.delete();
+            planFile.delete();
+        }
+    }
+}
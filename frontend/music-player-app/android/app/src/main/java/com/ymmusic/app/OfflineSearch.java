@@ -0,0 +1,373 @@
+package com.ymmusic.app;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 离线搜索
+ * 把应用见过的歌曲和歌单（收藏、歌单和排行榜、搜索结果、最近播放）加入本地倒排索引（SearchIndex），
+ * 搜索时先查本地，断网也能搜到看过的内容。API响应写入缓存后增量加入索引，
+ * 增量积累一定数量或空闲一段时间后在后台合并写入磁盘，启动时内存映射读取
+ */
+public class OfflineSearch {
+    private static final String TAG = "OfflineSearch";
+
+    // 增量达到这么多条时立即合并
+    private static final int MERGE_THRESHOLD = 512;
+    // 有更新后空闲这么久合并写入磁盘
+    private static final long FLUSH_DELAY_MS = 30000;
+    // 解析的单个响应的最大大小（解压后）
+    private static final int MAX_RESPONSE_BYTES = 4 * 1024 * 1024;
+    // 首次建立索引时导入的收藏类型
+    private static final String[] FAVORITE_TYPES = {"SONGS", "PLAYLISTS", "RANKINGS"};
+    private static final int FAVORITES_PAGE_SIZE = 200;
+
+    private static OfflineSearch instance;
+
+    private final Context context;
+    private final AtomicFile indexFile;
+    private final SearchTokenizer tokenizer;
+    // 所有写入都在这个线程上执行，查询在调用线程直接读取
+    private final ScheduledExecutorService executor;
+    private volatile SearchIndex index;
+    private volatile boolean ready = false;
+    private boolean flushScheduled = false;
+    private final AtomicLong mergeCount = new AtomicLong();
+
+    public static synchronized OfflineSearch getInstance(Context context) {
+        if (instance == null) {
+            instance = new OfflineSearch(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private OfflineSearch(Context context) {
+        this.context = context;
+        indexFile = new AtomicFile(new File(context.getFilesDir(), "search_index.bin"));
+        tokenizer = new SearchTokenizer(createRomanizer());
+        index = new SearchIndex(tokenizer);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "OfflineSearch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.execute(this::load);
+        ApiResponseCache.getInstance(context).setResponseListener(this::indexResponse);
+        MemoryTrimRegistry.getInstance(context).register("searchIndex", MemoryTrimRegistry.PRIORITY_LOW, this::trimMemory);
+    }
+
+    /**
+     * 全拼使用系统ICU（Android 10起提供），更早的系统只索引常用字的拼音首字母
+     */
+    private static SearchTokenizer.Romanizer createRomanizer() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return null;
+        }
+        try {
+            final android.icu.text.Transliterator transliterator =
+                    android.icu.text.Transliterator.getInstance("Han-Latin; Latin-ASCII; Lower");
+            return han -> {
+                String[] syllables = transliterator.transliterate(han).trim().split("\\s+");
+                return syllables.length == han.length() ? syllables : null;
+            };
+        } catch (Exception e) {
+            Log.w(TAG, "拼音转换不可用: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void load() {
+        StartupTrace.Section section = StartupTrace.begin("search.load");
+        try {
+            SearchIndex loaded = null;
+            if (indexFile.getBaseFile().exists()) {
+                try {
+                    loaded = SearchIndex.open(map(), tokenizer);
+                } catch (Exception e) {
+                    Log.e(TAG, "读取搜索索引出错，重新建立", e);
+                }
+            }
+            if (loaded != null) {
+                index = loaded;
+            } else {
+                index = new SearchIndex(tokenizer);
+                importFavorites();
+            }
+            Log.d(TAG, "搜索索引已加载: " + index.size() + " 条");
+        } catch (Exception e) {
+            Log.e(TAG, "加载搜索索引出错", e);
+        } finally {
+            section.close();
+            ready = true;
+        }
+    }
+
+    /**
+     * 内存映射索引文件，映射在文件被替换后依然有效
+     */
+    private ByteBuffer map() throws Exception {
+        try (FileInputStream in = indexFile.openRead(); FileChannel channel = in.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * 首次建立索引时导入已有的收藏，之后的收藏变化由FavoritesInterface通知
+     */
+    private void importFavorites() {
+        FavoritesStore store = FavoritesStore.getInstance(context);
+        int imported = 0;
+        for (String type : FAVORITE_TYPES) {
+            int count = store.count(type);
+            for (int offset = 0; offset < count; offset += FAVORITES_PAGE_SIZE) {
+                try {
+                    imported += putFavorites(type, new JSONArray(store.page(type, offset, FAVORITES_PAGE_SIZE)));
+                } catch (Exception e) {
+                    Log.w(TAG, "导入收藏出错: " + type + " " + e.getMessage());
+                }
+            }
+        }
+        Log.d(TAG, "已导入收藏: " + imported + " 条");
+        if (imported > 0) {
+            mergeNow();
+        }
+    }
+
+    private int putFavorites(String type, JSONArray items) {
+        int changed = 0;
+        for (int i = 0; i < items.length(); i++) {
+            JSONObject item = items.optJSONObject(i);
+            SearchIndex.Document document = item != null ? SearchDocuments.fromFavorite(type, item) : null;
+            if (document != null && index.put(document)) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 查询，索引尚未加载完成时返回空列表
+     */
+    public List<SearchIndex.Result> query(String query, int limit) {
+        if (!ready) {
+            return new ArrayList<>();
+        }
+        final long start = MetricsRegistry.start();
+        try {
+            return index.query(query, limit);
+        } finally {
+            MetricsRegistry.getInstance().recordSince("search.query", start);
+        }
+    }
+
+    public SearchIndex getIndex() {
+        return index;
+    }
+
+    public long getMergeCount() {
+        return mergeCount.get();
+    }
+
+    /**
+     * API响应写入缓存后在后台解析，加入其中的歌曲和歌单
+     */
+    private void indexResponse(String path, File file) {
+        if (!SearchDocuments.isIndexable(path)) {
+            return;
+        }
+        executor.execute(() -> {
+            final long start = MetricsRegistry.start();
+            try (InputStream in = ApiResponseCache.openBody(file)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[16 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    if (out.size() > MAX_RESPONSE_BYTES) {
+                        return;
+                    }
+                }
+                int changed = 0;
+                for (SearchIndex.Document document
+                        : SearchDocuments.fromResponse(path, new String(out.toByteArray(), StandardCharsets.UTF_8))) {
+                    if (index.put(document)) {
+                        changed++;
+                    }
+                }
+                afterUpdate(changed);
+            } catch (Exception e) {
+                Log.w(TAG, "索引API响应出错: " + path + " " + e.getMessage());
+            } finally {
+                MetricsRegistry.getInstance().recordSince("search.indexResponse", start);
+            }
+        });
+    }
+
+    /**
+     * 加入收藏的歌曲或歌单（单个JSON对象字符串）
+     */
+    public void indexFavorite(String type, String json) {
+        executor.execute(() -> {
+            try {
+                SearchIndex.Document document = SearchDocuments.fromFavorite(type, new JSONObject(json));
+                afterUpdate(document != null && index.put(document) ? 1 : 0);
+            } catch (Exception e) {
+                Log.w(TAG, "索引收藏出错: " + type + " " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 取消收藏：清除对应文档的收藏标志，文档仍可被搜索到
+     * @param id 收藏的ID，歌曲的main_前缀与fromFavorite一样去掉
+     */
+    public void unfavorite(String type, String id) {
+        final int docType = SearchDocuments.favoriteType(type);
+        if (docType < 0 || id == null) {
+            return;
+        }
+        executor.execute(() -> {
+            int changed = index.clearFlags(docType, id, SearchIndex.FLAG_FAVORITE) ? 1 : 0;
+            String songId = SearchDocuments.songId(id);
+            if (docType == SearchIndex.TYPE_SONG && !songId.equals(id)
+                    && index.clearFlags(docType, songId, SearchIndex.FLAG_FAVORITE)) {
+                changed++;
+            }
+            afterUpdate(changed);
+        });
+    }
+
+    /**
+     * 清空某一类型的收藏：清除该类文档的全部收藏标志
+     */
+    public void unfavoriteAll(String type) {
+        final int docType = SearchDocuments.favoriteType(type);
+        if (docType < 0) {
+            return;
+        }
+        executor.execute(() -> afterUpdate(index.clearFlagsAll(docType, SearchIndex.FLAG_FAVORITE)));
+    }
+
+    /**
+     * 加入一批收藏（JSON数组字符串）
+     */
+    public void indexFavorites(String type, String json) {
+        executor.execute(() -> {
+            try {
+                afterUpdate(putFavorites(type, new JSONArray(json)));
+            } catch (Exception e) {
+                Log.w(TAG, "索引收藏出错: " + type + " " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 加入歌单加载器解析出的全部歌曲
+     */
+    public void indexTracks(TrackTable table) {
+        final List<SearchIndex.Document> documents = new ArrayList<>(table.size());
+        // 访问回调持有TrackTable的锁，这里只收集，索引在后台线程进行
+        table.readPage(0, table.size(), (row, id, name, artist, album, cover, durationMs, flags) ->
+                documents.add(SearchDocuments.fromTrack(id, name, artist, album, cover)));
+        executor.execute(() -> {
+            int changed = 0;
+            for (SearchIndex.Document document : documents) {
+                if (index.put(document)) {
+                    changed++;
+                }
+            }
+            afterUpdate(changed);
+        });
+    }
+
+    /**
+     * 加入最近播放的歌曲
+     */
+    public void indexRecent(RecentTracks.Track track) {
+        executor.execute(() -> afterUpdate(index.put(SearchDocuments.fromRecent(track)) ? 1 : 0));
+    }
+
+    /**
+     * 增量较多时立即合并，否则空闲一段时间后合并
+     */
+    private void afterUpdate(int changed) {
+        if (changed <= 0) {
+            return;
+        }
+        if (index.deltaSize() >= MERGE_THRESHOLD) {
+            mergeNow();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            executor.schedule(this::mergeNow, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 合并增量写入磁盘并换上新的只读段（在索引线程执行）
+     */
+    private void mergeNow() {
+        flushScheduled = false;
+        SearchIndex current = index;
+        SearchIndex.Merge merge = current.beginMerge();
+        if (merge.isEmpty()) {
+            return;
+        }
+        final long start = MetricsRegistry.start();
+        FileOutputStream out = null;
+        try {
+            out = indexFile.startWrite();
+            merge.writeTo(out);
+            indexFile.finishWrite(out);
+            out = null;
+            current.finishMerge(merge, map());
+            mergeCount.incrementAndGet();
+            Log.d(TAG, "搜索索引已合并: " + current.size() + " 条, " + current.segmentBytes() + " 字节");
+        } catch (Exception e) {
+            Log.e(TAG, "合并搜索索引出错", e);
+            if (out != null) {
+                indexFile.failWrite(out);
+            }
+        } finally {
+            MetricsRegistry.getInstance().recordSince("search.merge", start);
+        }
+    }
+
+    /**
+     * 界面隐藏时把内存中的增量合并到磁盘
+     */
+    private long trimMemory(int level) {
+        SearchIndex current = index;
+        int pending = current.deltaSize();
+        if (pending == 0) {
+            return 0;
+        }
+        executor.execute(this::mergeNow);
+        // 每条增量文档的词项表和字段估算约2KB
+        return pending * 2048L;
+    }
+}
@@ -0,0 +1,295 @@
+package com.ymmusic.app;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * 服务端的紧凑播放队列
+ * 歌曲ID保存在基本类型数组中，随机模式使用预先生成的排列，
+ * 这样耳机/通知栏切歌时服务可以直接决定下一首，不需要等待WebView
+ */
+public class PlayQueue {
+    // 与player.js中的PLAYBACK_MODES对应
+    public static final int MODE_SEQUENTIAL = 0;
+    public static final int MODE_SINGLE = 1;
+    public static final int MODE_SHUFFLE = 2;
+
+    // 歌曲来源：主API的数字ID，或酷我的kw_前缀ID
+    public static final byte SOURCE_MAIN = 0;
+    public static final byte SOURCE_KW = 1;
+
+    private static final int FILE_VERSION = 1;
+
+    private long[] ids = new long[0];
+    private byte[] sources = new byte[0];
+    // 随机播放顺序及其逆映射（队列位置 -> 在随机顺序中的位置）
+    private int[] shuffleOrder = new int[0];
+    private int[] shufflePosition = new int[0];
+    private int currentIndex = -1;
+    private int mode = MODE_SEQUENTIAL;
+    private final Random random;
+
+    public PlayQueue() {
+        this(new Random());
+    }
+
+    PlayQueue(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * 把Web层的歌曲ID编码为来源+数字ID
+     * @return 编码后的ID，无法识别时返回-1
+     */
+    public static long parseId(String songId, byte[] sourceOut) {
+        if (songId == null) {
+            return -1;
+        }
+        String value = songId;
+        sourceOut[0] = SOURCE_MAIN;
+        if (value.startsWith("kw_") || value.startsWith("kw-")) {
+            value = value.substring(3);
+            sourceOut[0] = SOURCE_KW;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 还原为Web层使用的歌曲ID
+     */
+    public static String formatId(long id, byte source) {
+        return source == SOURCE_KW ? "kw_" + id : String.valueOf(id);
+    }
+
+    /**
+     * 替换整个队列
+     */
+    public synchronized void setQueue(long[] newIds, byte[] newSources, int newIndex) {
+        if (newIds.length != newSources.length) {
+            throw new IllegalArgumentException("ids与sources长度不一致");
+        }
+        ids = newIds;
+        sources = newSources;
+        currentIndex = newIds.length == 0 ? -1 : Math.max(-1, Math.min(newIndex, newIds.length - 1));
+        rebuildShuffle();
+    }
+
+    public synchronized void setCurrentIndex(int index) {
+        if (index >= -1 && index < ids.length) {
+            currentIndex = index;
+        }
+    }
+
+    public synchronized void setMode(int newMode) {
+        if (newMode < MODE_SEQUENTIAL || newMode > MODE_SHUFFLE || newMode == mode) {
+            return;
+        }
+        mode = newMode;
+        if (mode == MODE_SHUFFLE) {
+            // 进入随机模式时重新洗牌，当前歌曲作为随机顺序的起点
+            rebuildShuffle();
+        }
+    }
+
+    /**
+     * Fisher-Yates洗牌，并把当前歌曲换到第一位
+     */
+    private void rebuildShuffle() {
+        int size = ids.length;
+        shuffleOrder = new int[size];
+        for (int i = 0; i < size; i++) {
+            shuffleOrder[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = shuffleOrder[i];
+            shuffleOrder[i] = shuffleOrder[j];
+            shuffleOrder[j] = tmp;
+        }
+        shufflePosition = new int[size];
+        for (int i = 0; i < size; i++) {
+            shufflePosition[shuffleOrder[i]] = i;
+        }
+        if (currentIndex >= 0) {
+            swapShuffle(0, shufflePosition[currentIndex]);
+        }
+    }
+
+    private void swapShuffle(int a, int b) {
+        int indexA = shuffleOrder[a];
+        int indexB = shuffleOrder[b];
+        shuffleOrder[a] = indexB;
+        shuffleOrder[b] = indexA;
+        shufflePosition[indexB] = a;
+        shufflePosition[indexA] = b;
+    }
+
+    /**
+     * 下一首的位置，不移动当前位置
+     * @param auto 是否是播放结束后的自动切换（单曲循环只在自动切换时重复当前歌曲）
+     * @return 队列位置，队列为空时返回-1
+     */
+    public synchronized int peekNext(boolean auto) {
+        if (ids.length == 0) {
+            return -1;
+        }
+        if (mode == MODE_SINGLE && auto && currentIndex >= 0) {
+            return currentIndex;
+        }
+        return nextOf(currentIndex);
+    }
+
+    /**
+     * 按当前模式排在index之后的位置（手动切歌的顺序），index为-1时返回第一首
+     */
+    private int nextOf(int index) {
+        int size = ids.length;
+        if (index < 0) {
+            return mode == MODE_SHUFFLE ? shuffleOrder[0] : 0;
+        }
+        if (mode == MODE_SHUFFLE) {
+            return shuffleOrder[(shufflePosition[index] + 1) % size];
+        }
+        return (index + 1) % size;
+    }
+
+    /**
+     * 接下来要播放的歌曲ID（Web层格式），不包括当前歌曲，用于提前解析播放地址
+     * @param count 最多返回的数量
+     */
+    public synchronized String[] upcoming(int count) {
+        int available = currentIndex < 0 ? ids.length : ids.length - 1;
+        String[] result = new String[Math.max(0, Math.min(count, available))];
+        int index = currentIndex;
+        for (int i = 0; i < result.length; i++) {
+            index = nextOf(index);
+            result[i] = ids[index] < 0 ? null : formatId(ids[index], sources[index]);
+        }
+        return result;
+    }
+
+    /**
+     * 上一首的位置，不移动当前位置
+     */
+    public synchronized int peekPrevious() {
+        int size = ids.length;
+        if (size == 0) {
+            return -1;
+        }
+        if (currentIndex < 0) {
+            return 0;
+        }
+        if (mode == MODE_SHUFFLE) {
+            return shuffleOrder[(shufflePosition[currentIndex] - 1 + size) % size];
+        }
+        return (currentIndex - 1 + size) % size;
+    }
+
+    public synchronized int skipToNext(boolean auto) {
+        int next = peekNext(auto);
+        if (next >= 0) {
+            currentIndex = next;
+        }
+        return next;
+    }
+
+    public synchronized int skipToPrevious() {
+        int previous = peekPrevious();
+        if (previous >= 0) {
+            currentIndex = previous;
+        }
+        return previous;
+    }
+
+    public synchronized int size() {
+        return ids.length;
+    }
+
+    public synchronized int getCurrentIndex() {
+        return currentIndex;
+    }
+
+    public synchronized int getMode() {
+        return mode;
+    }
+
+    /**
+     * 指定位置的歌曲ID（Web层格式），越界时返回null
+     */
+    public synchronized String getSongId(int index) {
+        if (index < 0 || index >= ids.length || ids[index] < 0) {
+            return null;
+        }
+        return formatId(ids[index], sources[index]);
+    }
+
+    /**
+     * 写入二进制快照
+     */
+    public synchronized void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FILE_VERSION);
+        out.writeInt(mode);
+        out.writeInt(currentIndex);
+        out.writeInt(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            out.writeLong(ids[i]);
+            out.writeByte(sources[i]);
+            out.writeInt(shuffleOrder[i]);
+        }
+    }
+
+    /**
+     * 从二进制快照恢复，格式不正确时抛出IOException且不修改当前队列
+     */
+    public synchronized void readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FILE_VERSION) {
+            throw new IOException("不支持的队列文件版本");
+        }
+        int newMode = in.readInt();
+        int newIndex = in.readInt();
+        int size = in.readInt();
+        if (size < 0 || newMode < MODE_SEQUENTIAL || newMode > MODE_SHUFFLE || newIndex < -1 || newIndex >= size) {
+            throw new IOException("队列文件已损坏");
+        }
+        long[] newIds = new long[size];
+        byte[] newSources = new byte[size];
+        int[] newOrder = new int[size];
+        int[] newPosition = new int[size];
+        boolean[] seen = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            newIds[i] = in.readLong();
+            newSources[i] = in.readByte();
+            int index = in.readInt();
+            if (index < 0 || index >= size || seen[index]) {
+                throw new IOException("随机顺序已损坏");
+            }
+            seen[index] = true;
+            newOrder[i] = index;
+            newPosition[index] = i;
+        }
+        ids = newIds;
+        sources = newSources;
+        shuffleOrder = newOrder;
+        shufflePosition = newPosition;
+        currentIndex = newIndex;
+        mode = newMode;
+    }
+
+    /**
+     * Web层的播放模式名称转换为常量
+     */
+    public static int parseMode(String name) {
+        if ("single".equals(name)) {
+            return MODE_SINGLE;
+        } else if ("shuffle".equals(name)) {
+            return MODE_SHUFFLE;
+        }
+        return MODE_SEQUENTIAL;
+    }
+}
@@ -0,0 +1,105 @@
+package com.ymmusic.app;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 播放状态快照
+ * 服务被系统杀死后按START_STICKY重建时，用它立即恢复通知栏和锁屏上的歌曲和进度，
+ * Web层启动后也可以直接从这里恢复，不必等待接口返回。播放队列由PlayQueue单独保存
+ */
+public final class PlaybackSnapshot {
+    private static final int FILE_VERSION = 1;
+    // 标题等字段的最大长度，防止损坏的文件导致分配过大的字符串
+    private static final int MAX_TEXT_LENGTH = 4096;
+
+    public final String songId;
+    public final String title;
+    public final String artist;
+    // 封面URL，同时也是封面磁盘缓存的键
+    public final String coverUrl;
+    public final long positionMs;
+    public final long durationMs;
+    // 保存时间（System.currentTimeMillis()）
+    public final long savedAt;
+
+    public PlaybackSnapshot(String songId, String title, String artist, String coverUrl,
+                            long positionMs, long durationMs, long savedAt) {
+        this.songId = songId;
+        this.title = title;
+        this.artist = artist;
+        this.coverUrl = coverUrl;
+        this.positionMs = Math.max(0, positionMs);
+        this.durationMs = Math.max(0, durationMs);
+        this.savedAt = savedAt;
+    }
+
+    /**
+     * 与另一个快照相比是否只有播放位置不同
+     */
+    public boolean sameTrack(PlaybackSnapshot other) {
+        return other != null
+                && equals(songId, other.songId)
+                && equals(title, other.title)
+                && equals(artist, other.artist)
+                && equals(coverUrl, other.coverUrl)
+                && durationMs == other.durationMs;
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * 写入二进制快照
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FILE_VERSION);
+        writeString(out, songId);
+        writeString(out, title);
+        writeString(out, artist);
+        writeString(out, coverUrl);
+        out.writeLong(positionMs);
+        out.writeLong(durationMs);
+        out.writeLong(savedAt);
+    }
+
+    /**
+     * 从二进制快照读取，格式不正确时抛出IOException
+     */
+    public static PlaybackSnapshot readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FILE_VERSION) {
+            throw new IOException("不支持的快照文件版本");
+        }
+        String songId = readString(in);
+        String title = readString(in);
+        String artist = readString(in);
+        String coverUrl = readString(in);
+        long positionMs = in.readLong();
+        long durationMs = in.readLong();
+        long savedAt = in.readLong();
+        if (positionMs < 0 || durationMs < 0) {
+            throw new IOException("快照文件已损坏");
+        }
+        return new PlaybackSnapshot(songId, title, artist, coverUrl, positionMs, durationMs, savedAt);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value.length() > MAX_TEXT_LENGTH ? value.substring(0, MAX_TEXT_LENGTH) : value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String value = in.readUTF();
+        if (value.length() > MAX_TEXT_LENGTH) {
+            throw new IOException("快照文件已损坏");
+        }
+        return value;
+    }
+}
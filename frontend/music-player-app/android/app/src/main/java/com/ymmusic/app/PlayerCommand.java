@@ -0,0 +1,77 @@
+package com.ymmusic.app;
+
+/**
+ * 从服务发往Web层的播放控制命令
+ */
+public final class PlayerCommand {
+
+    /**
+     * 命令类型
+     */
+    public enum Type {
+        PLAY,
+        PAUSE,
+        PREVIOUS,
+        NEXT,
+        SEEK
+    }
+
+    public final Type type;
+    // SEEK命令的目标位置（毫秒），其他命令为-1
+    public final long positionMs;
+    // 服务端播放队列已决定的目标位置（NEXT/PREVIOUS），-1表示由Web层自行决定
+    public final int queueIndex;
+    // 目标位置上的歌曲ID，Web层据此确认两边的队列一致
+    public final String songId;
+    // 命令创建时间（System.nanoTime），用于统计派发耗时和丢弃过期命令
+    public final long createdAtNanos;
+
+    private PlayerCommand(Type type, long positionMs, int queueIndex, String songId) {
+        this.type = type;
+        this.positionMs = positionMs;
+        this.queueIndex = queueIndex;
+        this.songId = songId;
+        this.createdAtNanos = System.nanoTime();
+    }
+
+    public static PlayerCommand of(Type type) {
+        return new PlayerCommand(type, -1, -1, null);
+    }
+
+    public static PlayerCommand seekTo(long positionMs) {
+        return new PlayerCommand(Type.SEEK, positionMs, -1, null);
+    }
+
+    /**
+     * 服务端队列已决定目标歌曲的切歌命令
+     * @param type NEXT或PREVIOUS
+     */
+    public static PlayerCommand skipTo(Type type, int queueIndex, String songId) {
+        if (type != Type.NEXT && type != Type.PREVIOUS) {
+            throw new IllegalArgumentException("skipTo只支持NEXT/PREVIOUS: " + type);
+        }
+        return new PlayerCommand(type, -1, queueIndex, songId);
+    }
+
+    /**
+     * 指定了目标位置的切歌命令，排队时只需保留最后一条
+     */
+    boolean isResolvedSkip() {
+        return queueIndex >= 0;
+    }
+
+    /**
+     * 播放/暂停这类切换状态的命令，排队时只需保留最后一条
+     */
+    boolean isPlayPause() {
+        return type == Type.PLAY || type == Type.PAUSE;
+    }
+
+    @Override
+    public String toString() {
+        if (type == Type.SEEK) {
+            return "seek(" + positionMs + ")";
+        }
+        return isResolvedSkip() ? type.name().toLowerCase() + "(" + queueIndex + ")" : type.name().toLowerCase();
+    }
+}
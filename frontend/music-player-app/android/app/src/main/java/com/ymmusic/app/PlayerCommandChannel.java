@@ -0,0 +1,148 @@
+package com.ymmusic.app;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务与Activity之间的进程内命令通道
+ * 监听器存在时直接同步派发；Activity未连接时命令进入有界队列，重新连接后按顺序补发
+ */
+public class PlayerCommandChannel {
+    // 队列最大长度，超出时丢弃最早的命令
+    static final int MAX_QUEUED = 32;
+    // 排队超过该时长的命令不再补发，避免重新打开应用时执行很久以前的操作
+    static final long MAX_QUEUED_AGE_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    /**
+     * 命令监听器，由Activity实现
+     */
+    public interface Listener {
+        void onCommand(PlayerCommand command);
+    }
+
+    private final ArrayDeque<PlayerCommand> queue = new ArrayDeque<>();
+    private Listener listener;
+    // 正在补发排队的命令，此时新命令也进入队列，排在之前的命令之后
+    private boolean flushing = false;
+    private long dispatchedCount = 0;
+    private long droppedCount = 0;
+
+    /**
+     * 派发命令，没有监听器时进入队列
+     */
+    public void dispatch(PlayerCommand command) {
+        Listener target;
+        synchronized (this) {
+            target = listener;
+            if (target == null || flushing) {
+                enqueue(command);
+                return;
+            }
+            dispatchedCount++;
+        }
+        target.onCommand(command);
+    }
+
+    private void enqueue(PlayerCommand command) {
+        if (command.isPlayPause() || command.type == PlayerCommand.Type.SEEK) {
+            // 播放/暂停和跳转都只保留最后一条
+            Iterator<PlayerCommand> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                PlayerCommand queued = iterator.next();
+                if (command.type == PlayerCommand.Type.SEEK
+                        ? queued.type == PlayerCommand.Type.SEEK : queued.isPlayPause()) {
+                    iterator.remove();
+                    droppedCount++;
+                }
+            }
+        }
+        if (command.isResolvedSkip()) {
+            // 目标位置是绝对的，之前排队的切歌和跳转都已失效
+            Iterator<PlayerCommand> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                PlayerCommand queued = iterator.next();
+                if (queued.isResolvedSkip() || queued.type == PlayerCommand.Type.SEEK) {
+                    iterator.remove();
+                    droppedCount++;
+                }
+            }
+        }
+        if (queue.size() >= MAX_QUEUED) {
+            queue.pollFirst();
+            droppedCount++;
+        }
+        queue.addLast(command);
+    }
+
+    /**
+     * 设置监听器，并按顺序补发排队中的命令；补发期间派发的命令排在队尾，一起补发
+     */
+    public void setListener(Listener newListener) {
+        synchronized (this) {
+            listener = newListener;
+            if (newListener == null || flushing) {
+                // 进行中的补发会把剩余的命令交给新的监听器
+                return;
+            }
+            flushing = true;
+        }
+        boolean finished = false;
+        try {
+            while (true) {
+                Listener target;
+                List<PlayerCommand> pending = new ArrayList<>();
+                synchronized (this) {
+                    target = listener;
+                    if (target == null || queue.isEmpty()) {
+                        flushing = false;
+                        finished = true;
+                        return;
+                    }
+                    long now = System.nanoTime();
+                    for (PlayerCommand command : queue) {
+                        if (now - command.createdAtNanos <= MAX_QUEUED_AGE_NANOS) {
+                            pending.add(command);
+                        } else {
+                            droppedCount++;
+                        }
+                    }
+                    queue.clear();
+                    dispatchedCount += pending.size();
+                }
+                for (PlayerCommand command : pending) {
+                    target.onCommand(command);
+                }
+            }
+        } finally {
+            if (!finished) {
+                synchronized (this) {
+                    flushing = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * 仅当当前监听器是给定对象时清除，避免新Activity注册后被旧Activity清除
+     */
+    public synchronized void clearListener(Listener oldListener) {
+        if (listener == oldListener) {
+            listener = null;
+        }
+    }
+
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    public synchronized long getDispatchedCount() {
+        return dispatchedCount;
+    }
+
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+}
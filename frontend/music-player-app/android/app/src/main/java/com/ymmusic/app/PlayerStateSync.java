@@ -0,0 +1,115 @@
+package com.ymmusic.app;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Web层播放状态同步
+ * 解析AndroidPlayer.syncState传入的JSON（完整或部分状态），
+ * 丢弃版本号不大于已应用版本的旧状态，并与当前状态合并成一个不可变快照
+ */
+public class PlayerStateSync {
+
+    /**
+     * 合并后的播放状态快照
+     */
+    public static final class PlayerState {
+        public static final PlayerState EMPTY = new PlayerState(
+                null, "YMMusic正在播放", "点击返回应用", null, false, 0, 1.0f, 0, 0, -1, "sequential", 0);
+
+        public final String songId;
+        public final String title;
+        public final String artist;
+        public final String coverUrl;
+        public final boolean playing;
+        public final long positionMs;
+        public final float speed;
+        // 采样positionMs时的时间戳（System.currentTimeMillis），0表示未知
+        public final long positionTimestamp;
+        public final long durationMs;
+        public final int queueIndex;
+        // 播放模式：sequential / single / shuffle
+        public final String playbackMode;
+        public final long version;
+
+        PlayerState(String songId, String title, String artist, String coverUrl, boolean playing,
+                    long positionMs, float speed, long positionTimestamp, long durationMs,
+                    int queueIndex, String playbackMode, long version) {
+            this.songId = songId;
+            this.title = title;
+            this.artist = artist;
+            this.coverUrl = coverUrl;
+            this.playing = playing;
+            this.positionMs = positionMs;
+            this.speed = speed;
+            this.positionTimestamp = positionTimestamp;
+            this.durationMs = durationMs;
+            this.queueIndex = queueIndex;
+            this.playbackMode = playbackMode;
+            this.version = version;
+        }
+    }
+
+    private PlayerState current = PlayerState.EMPTY;
+    private String session = null;
+    private long lastVersion = -1;
+    private long appliedCount = 0;
+    private long staleCount = 0;
+
+    /**
+     * 解析并合并一次状态同步
+     * @return 合并后的状态；版本过旧时返回null
+     */
+    public synchronized PlayerState merge(String json) throws JSONException {
+        JSONObject object = new JSONObject(json);
+        long version = object.optLong("version", 0);
+        // 页面重新加载后会话标识变化，版本号从头开始
+        String newSession = object.optString("session", "");
+        if (!newSession.equals(session)) {
+            session = newSession;
+            lastVersion = -1;
+        }
+        if (version <= lastVersion) {
+            staleCount++;
+            return null;
+        }
+        lastVersion = version;
+
+        PlayerState base = current;
+        current = new PlayerState(
+                object.has("songId") ? optNullableString(object, "songId") : base.songId,
+                object.has("title") ? object.optString("title", base.title) : base.title,
+                object.has("artist") ? object.optString("artist", base.artist) : base.artist,
+                object.has("cover") ? optNullableString(object, "cover") : base.coverUrl,
+                object.has("playing") ? object.optBoolean("playing") : base.playing,
+                object.has("position") ? object.optLong("position") : base.positionMs,
+                object.has("speed") ? (float) object.optDouble("speed", 1.0) : base.speed,
+                object.has("position") ? object.optLong("timestamp", System.currentTimeMillis()) : base.positionTimestamp,
+                object.has("duration") ? object.optLong("duration") : base.durationMs,
+                object.has("index") ? object.optInt("index", -1) : base.queueIndex,
+                object.has("mode") ? object.optString("mode", base.playbackMode) : base.playbackMode,
+                version);
+        appliedCount++;
+        return current;
+    }
+
+    private static String optNullableString(JSONObject object, String key) {
+        if (object.isNull(key)) {
+            return null;
+        }
+        String value = object.optString(key, null);
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    public synchronized PlayerState getCurrent() {
+        return current;
+    }
+
+    public synchronized long getAppliedCount() {
+        return appliedCount;
+    }
+
+    public synchronized long getStaleCount() {
+        return staleCount;
+    }
+}
@@ -0,0 +1,287 @@
+package com.ymmusic.app;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 歌单歌曲列表加载器
+ * 在后台线程流式解析/playlist/track/all的响应，边解析边写入TrackTable，
+ * 解析出第一页后就通知Web层，Web层再按滚动位置分页读取
+ */
+public class PlaylistTrackLoader {
+    private static final String TAG = "PlaylistTrackLoader";
+
+    // 解析到这么多首时先通知一次，让列表尽快显示
+    static final int FIRST_PAGE_SIZE = 100;
+    // 最多保留的歌单数量
+    private static final int MAX_CACHED_PLAYLISTS = 3;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 30000;
+
+    /**
+     * 加载回调，在后台线程调用
+     */
+    public interface Callback {
+        void onProgress(String playlistId, TrackTable table);
+
+        void onLoaded(String playlistId, TrackTable table);
+
+        void onError(String playlistId, String message);
+    }
+
+    private final Map<String, TrackTable> tables = new LinkedHashMap<>(8, 0.75f, true);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PlaylistTrackLoader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 获取已加载（或正在加载）的歌单
+     */
+    public TrackTable get(String playlistId) {
+        synchronized (tables) {
+            return tables.get(playlistId);
+        }
+    }
+
+    /**
+     * 加载歌单歌曲；已完整加载的歌单直接回调
+     */
+    public void load(String playlistId, String url, Callback callback) {
+        TrackTable existing = get(playlistId);
+        if (existing != null && existing.isComplete()) {
+            callback.onLoaded(playlistId, existing);
+            return;
+        }
+        executor.execute(() -> {
+            TrackTable current = get(playlistId);
+            if (current != null && current.isComplete()) {
+                callback.onLoaded(playlistId, current);
+                return;
+            }
+            TrackTable table = new TrackTable();
+            putTable(playlistId, table);
+            NetworkScheduler.Call call = null;
+            long start = System.currentTimeMillis();
+            try {
+                call = NetworkScheduler.getInstance().open(url, NetworkScheduler.PRIORITY_API);
+                HttpURLConnection connection = call.connection();
+                connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                connection.setReadTimeout(READ_TIMEOUT_MS);
+                int code = call.code();
+                if (code != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("HTTP " + code);
+                }
+                try (InputStream in = new BufferedInputStream(call.body());
+                     JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                    parse(reader, table, () -> callback.onProgress(playlistId, table));
+                }
+                table.markComplete();
+                Log.d(TAG, "歌单歌曲解析完成: " + playlistId + ", " + table.size() + " 首, 耗时 "
+                        + (System.currentTimeMillis() - start) + "ms");
+                callback.onLoaded(playlistId, table);
+            } catch (Exception e) {
+                Log.e(TAG, "加载歌单歌曲出错: " + playlistId, e);
+                removeTable(playlistId, table);
+                callback.onError(playlistId, e.getMessage());
+                if (call != null) {
+                    call.abort();
+                }
+            } finally {
+                if (call != null) {
+                    call.close();
+                }
+            }
+        });
+    }
+
+    private void putTable(String playlistId, TrackTable table) {
+        synchronized (tables) {
+            tables.put(playlistId, table);
+            Iterator<Map.Entry<String, TrackTable>> iterator = tables.entrySet().iterator();
+            while (tables.size() > MAX_CACHED_PLAYLISTS && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    private void removeTable(String playlistId, TrackTable table) {
+        synchronized (tables) {
+            if (tables.get(playlistId) == table) {
+                tables.remove(playlistId);
+            }
+        }
+    }
+
+    /**
+     * 内存紧张时释放歌单，保留最近使用的一个供当前页面继续分页；内存严重不足时全部释放
+     * @return 释放的字节数（估算）
+     */
+    public long trimMemory(int level) {
+        int keep = MemoryTrimRegistry.maxPriorityFor(level) >= MemoryTrimRegistry.PRIORITY_HIGH ? 0 : 1;
+        long released = 0;
+        synchronized (tables) {
+            // 访问顺序的LinkedHashMap，最久未使用的在前
+            Iterator<Map.Entry<String, TrackTable>> iterator = tables.entrySet().iterator();
+            while (tables.size() > keep && iterator.hasNext()) {
+                released += iterator.next().getValue().estimatedBytes();
+                iterator.remove();
+            }
+        }
+        return released;
+    }
+
+    /**
+     * 释放所有已加载的歌单
+     */
+    public void clear() {
+        synchronized (tables) {
+            tables.clear();
+        }
+    }
+
+    /**
+     * 流式解析{"songs":[...], "privileges":[...], "code":200}，只保留列表需要的字段
+     */
+    static void parse(JsonReader reader, TrackTable table, Runnable firstPageListener) throws IOException {
+        // 歌手、专辑名重复很多，解析时复用同一个字符串
+        Map<String, String> stringPool = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("songs".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    readSong(reader, table, stringPool);
+                    if (table.size() == FIRST_PAGE_SIZE && firstPageListener != null) {
+                        firstPageListener.run();
+                    }
+                }
+                reader.endArray();
+            } else if ("code".equals(name) && reader.peek() == JsonToken.NUMBER) {
+                int code = reader.nextInt();
+                if (code != 200) {
+                    throw new IOException("接口返回错误码: " + code);
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static void readSong(JsonReader reader, TrackTable table, Map<String, String> pool) throws IOException {
+        long id = 0;
+        String name = null;
+        String artist = null;
+        String album = null;
+        String cover = null;
+        int duration = 0;
+        byte flags = 0;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "id":
+                    id = reader.nextLong();
+                    break;
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "dt":
+                    duration = reader.nextInt();
+                    break;
+                case "ar":
+                    artist = intern(pool, readArtists(reader));
+                    break;
+                case "al":
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String albumField = reader.nextName();
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                        } else if ("name".equals(albumField)) {
+                            album = intern(pool, reader.nextString());
+                        } else if ("picUrl".equals(albumField)) {
+                            cover = intern(pool, toHttps(reader.nextString()));
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                case "sq":
+                    flags |= TrackTable.FLAG_SQ;
+                    reader.skipValue();
+                    break;
+                case "hr":
+                    flags |= TrackTable.FLAG_HR;
+                    reader.skipValue();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        table.append(id, name, artist, album, cover, duration, flags);
+    }
+
+    private static String readArtists(JsonReader reader) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("name".equals(reader.nextName()) && reader.peek() == JsonToken.STRING) {
+                    if (builder.length() > 0) {
+                        builder.append(", ");
+                    }
+                    builder.append(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+        return builder.length() > 0 ? builder.toString() : null;
+    }
+
+    private static String intern(Map<String, String> pool, String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = pool.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        pool.put(value, value);
+        return value;
+    }
+
+    private static String toHttps(String url) {
+        return url != null && url.startsWith("http://") ? "https://" + url.substring(7) : url;
+    }
+}
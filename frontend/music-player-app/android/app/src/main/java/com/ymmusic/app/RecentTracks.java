@@ -0,0 +1,126 @@
+package com.ymmusic.app;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * 最近播放的歌曲
+ * 由播放服务在切歌时记录，供媒体浏览树（车机、蓝牙设备）的"最近播放"目录使用，最近的在前
+ */
+public class RecentTracks {
+    private static final int FILE_VERSION = 1;
+    static final int MAX_TRACKS = 50;
+    // 标题等字段的最大长度，防止损坏的文件导致分配过大的字符串
+    private static final int MAX_TEXT_LENGTH = 4096;
+
+    /**
+     * 一首最近播放的歌曲
+     */
+    public static final class Track {
+        public final String songId;
+        public final String title;
+        public final String artist;
+        public final String coverUrl;
+
+        public Track(String songId, String title, String artist, String coverUrl) {
+            this.songId = songId;
+            this.title = title;
+            this.artist = artist;
+            this.coverUrl = coverUrl;
+        }
+    }
+
+    private final LinkedList<Track> tracks = new LinkedList<>();
+
+    /**
+     * 记录一首歌曲，已有的移到最前
+     */
+    public synchronized void add(Track track) {
+        if (track.songId == null || track.songId.isEmpty()) {
+            return;
+        }
+        Iterator<Track> iterator = tracks.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().songId.equals(track.songId)) {
+                iterator.remove();
+                break;
+            }
+        }
+        tracks.addFirst(track);
+        while (tracks.size() > MAX_TRACKS) {
+            tracks.removeLast();
+        }
+    }
+
+    public synchronized int size() {
+        return tracks.size();
+    }
+
+    /**
+     * 按播放时间从近到远读取一页
+     */
+    public synchronized List<Track> page(int offset, int limit) {
+        int start = Math.max(0, offset);
+        int end = (int) Math.min((long) start + Math.max(0, limit), tracks.size());
+        return start < end ? new ArrayList<>(tracks.subList(start, end)) : new ArrayList<>();
+    }
+
+    public synchronized void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FILE_VERSION);
+        out.writeInt(tracks.size());
+        for (Track track : tracks) {
+            out.writeUTF(track.songId);
+            writeString(out, track.title);
+            writeString(out, track.artist);
+            writeString(out, track.coverUrl);
+        }
+    }
+
+    /**
+     * 从二进制文件读取，替换当前内容；格式不正确时抛出IOException且不修改当前内容
+     */
+    public void readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FILE_VERSION) {
+            throw new IOException("不支持的最近播放文件版本");
+        }
+        int count = in.readInt();
+        if (count < 0 || count > MAX_TRACKS) {
+            throw new IOException("最近播放文件已损坏");
+        }
+        List<Track> loaded = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String songId = in.readUTF();
+            if (songId.isEmpty() || songId.length() > MAX_TEXT_LENGTH) {
+                throw new IOException("最近播放文件已损坏");
+            }
+            loaded.add(new Track(songId, readString(in), readString(in), readString(in)));
+        }
+        synchronized (this) {
+            tracks.clear();
+            tracks.addAll(loaded);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value.length() > MAX_TEXT_LENGTH ? value.substring(0, MAX_TEXT_LENGTH) : value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        String value = in.readUTF();
+        if (value.length() > MAX_TEXT_LENGTH) {
+            throw new IOException("最近播放文件已损坏");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,16 @@
+package com.ymmusic.app;
+
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+/**
+ * WebView请求拦截器，由MusicWebViewClient按注册顺序依次调用
+ */
+public interface RequestInterceptor {
+    /**
+     * 拦截请求
+     * 在WebView的后台线程调用，可以阻塞
+     * @return 自行处理时返回响应，不处理时返回null交给下一个拦截器或网络
+     */
+    WebResourceResponse intercept(WebResourceRequest request);
+}
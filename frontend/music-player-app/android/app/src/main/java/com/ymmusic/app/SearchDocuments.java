@@ -0,0 +1,226 @@
+package com.ymmusic.app;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 从API响应、收藏和播放记录中提取离线搜索的文档
+ */
+public final class SearchDocuments {
+    // Web层开启ID前缀时主API歌曲ID的前缀，索引中统一保存不带前缀的ID
+    private static final String MAIN_ID_PREFIX = "main_";
+
+    private SearchDocuments() {
+    }
+
+    /**
+     * 是否是包含可索引内容的接口
+     */
+    public static boolean isIndexable(String path) {
+        if (path == null) {
+            return false;
+        }
+        switch (path) {
+            case "/search":
+            case "/cloudsearch":
+            case "/song/detail":
+            case "/playlist/track/all":
+            case "/playlist/detail":
+            case "/album":
+            case "/top/playlist":
+            case "/top/playlist/highquality":
+            case "/toplist":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 提取API响应中的歌曲和歌单
+     * @param path 接口路径
+     * @param body 响应体
+     */
+    public static List<SearchIndex.Document> fromResponse(String path, String body) throws JSONException {
+        List<SearchIndex.Document> documents = new ArrayList<>();
+        if (!isIndexable(path)) {
+            return documents;
+        }
+        JSONObject root = new JSONObject(body);
+        if (root.optInt("code", 200) != 200) {
+            return documents;
+        }
+        JSONObject result = root.optJSONObject("result");
+        switch (path) {
+            case "/search":
+            case "/cloudsearch":
+                if (result != null) {
+                    addSongs(result.optJSONArray("songs"), documents);
+                    addPlaylists(result.optJSONArray("playlists"), documents);
+                }
+                break;
+            case "/playlist/detail":
+                JSONObject playlist = root.optJSONObject("playlist");
+                if (playlist != null) {
+                    addPlaylist(playlist, documents);
+                    addSongs(playlist.optJSONArray("tracks"), documents);
+                }
+                break;
+            case "/top/playlist":
+            case "/top/playlist/highquality":
+                addPlaylists(root.optJSONArray("playlists"), documents);
+                break;
+            case "/toplist":
+                addPlaylists(root.optJSONArray("list"), documents);
+                break;
+            default:
+                // /song/detail、/playlist/track/all、/album
+                addSongs(root.optJSONArray("songs"), documents);
+                break;
+        }
+        return documents;
+    }
+
+    /**
+     * 收藏的歌曲或歌单（favoritesService.js保存的对象）
+     * @param type 收藏类型，SONGS或PLAYLISTS、RANKINGS，其他类型返回null
+     */
+    public static SearchIndex.Document fromFavorite(String type, JSONObject item) {
+        String id = item.optString("id", "");
+        if ("SONGS".equals(type)) {
+            boolean kuwo = item.optBoolean("isFromKw", false);
+            return new SearchIndex.Document(SearchIndex.TYPE_SONG, kuwo ? id : songId(id),
+                    item.optString("name", ""), item.optString("artist", ""), item.optString("album", ""),
+                    item.optString("albumArt", ""),
+                    SearchIndex.FLAG_FAVORITE | (kuwo ? SearchIndex.FLAG_KUWO : 0));
+        }
+        if ("PLAYLISTS".equals(type) || "RANKINGS".equals(type)) {
+            String cover = item.optString("coverImgUrl", "");
+            return new SearchIndex.Document(SearchIndex.TYPE_PLAYLIST, id, item.optString("name", ""),
+                    creatorOf(item), "", cover.isEmpty() ? item.optString("picUrl", "") : cover,
+                    SearchIndex.FLAG_FAVORITE);
+        }
+        return null;
+    }
+
+    /**
+     * 收藏类型对应的文档类型，歌单和排行榜都是TYPE_PLAYLIST，其他类型返回-1
+     */
+    public static int favoriteType(String type) {
+        if ("SONGS".equals(type)) {
+            return SearchIndex.TYPE_SONG;
+        }
+        if ("PLAYLISTS".equals(type) || "RANKINGS".equals(type)) {
+            return SearchIndex.TYPE_PLAYLIST;
+        }
+        return -1;
+    }
+
+    /**
+     * 最近播放的歌曲
+     */
+    public static SearchIndex.Document fromRecent(RecentTracks.Track track) {
+        boolean kuwo = !isNumeric(songId(track.songId));
+        return new SearchIndex.Document(SearchIndex.TYPE_SONG, kuwo ? track.songId : songId(track.songId),
+                track.title, track.artist, "", track.coverUrl,
+                SearchIndex.FLAG_RECENT | (kuwo ? SearchIndex.FLAG_KUWO : 0));
+    }
+
+    /**
+     * 歌单加载器解析出的歌曲
+     */
+    public static SearchIndex.Document fromTrack(long id, String name, String artist, String album, String cover) {
+        return new SearchIndex.Document(SearchIndex.TYPE_SONG, String.valueOf(id), name, artist, album, cover, 0);
+    }
+
+    static String songId(String id) {
+        return id.startsWith(MAIN_ID_PREFIX) ? id.substring(MAIN_ID_PREFIX.length()) : id;
+    }
+
+    private static boolean isNumeric(String id) {
+        if (id.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (id.charAt(i) < '0' || id.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addSongs(JSONArray songs, List<SearchIndex.Document> out) {
+        if (songs == null) {
+            return;
+        }
+        for (int i = 0; i < songs.length(); i++) {
+            JSONObject song = songs.optJSONObject(i);
+            long id = song != null ? song.optLong("id", 0) : 0;
+            if (id <= 0) {
+                continue;
+            }
+            // /search返回artists、album，其余接口返回ar、al
+            JSONArray artists = song.has("ar") ? song.optJSONArray("ar") : song.optJSONArray("artists");
+            JSONObject album = song.has("al") ? song.optJSONObject("al") : song.optJSONObject("album");
+            out.add(fromTrack(id, song.optString("name", ""), joinNames(artists),
+                    album != null ? album.optString("name", "") : "",
+                    album != null ? album.optString("picUrl", "") : ""));
+        }
+    }
+
+    private static void addPlaylists(JSONArray playlists, List<SearchIndex.Document> out) {
+        if (playlists == null) {
+            return;
+        }
+        for (int i = 0; i < playlists.length(); i++) {
+            JSONObject playlist = playlists.optJSONObject(i);
+            if (playlist != null) {
+                addPlaylist(playlist, out);
+            }
+        }
+    }
+
+    private static void addPlaylist(JSONObject playlist, List<SearchIndex.Document> out) {
+        long id = playlist.optLong("id", 0);
+        if (id <= 0) {
+            return;
+        }
+        String cover = playlist.optString("coverImgUrl", "");
+        out.add(new SearchIndex.Document(SearchIndex.TYPE_PLAYLIST, String.valueOf(id), playlist.optString("name", ""),
+                creatorOf(playlist), "", cover.isEmpty() ? playlist.optString("picUrl", "") : cover, 0));
+    }
+
+    /**
+     * 歌单创建者：API返回对象，收藏中保存的是昵称字符串
+     */
+    private static String creatorOf(JSONObject playlist) {
+        JSONObject creator = playlist.optJSONObject("creator");
+        if (creator != null) {
+            return creator.optString("nickname", "");
+        }
+        return playlist.optString("creator", "");
+    }
+
+    private static String joinNames(JSONArray artists) {
+        if (artists == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < artists.length(); i++) {
+            JSONObject artist = artists.optJSONObject(i);
+            String name = artist != null ? artist.optString("name", "") : "";
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(name);
+        }
+        return builder.toString();
+    }
+}
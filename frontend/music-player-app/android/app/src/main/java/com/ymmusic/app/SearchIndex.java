@@ -0,0 +1,897 @@
+package com.ymmusic.app;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * 离线搜索的倒排索引
+ * 分为两部分：磁盘上的只读段（内存映射，按词项排序后二分查找，倒排表按文档号排序）
+ * 和内存中的增量（新加入或更新的文档）。更新时旧文档在只读段中标记删除，
+ * 增量积累到一定数量后在后台线程合并写出新的只读段（beginMerge/finishMerge）
+ */
+public class SearchIndex {
+    public static final int TYPE_SONG = 0;
+    public static final int TYPE_PLAYLIST = 1;
+
+    public static final int FLAG_FAVORITE = 1;
+    public static final int FLAG_RECENT = 2;
+    public static final int FLAG_KUWO = 4;
+
+    private static final int FILE_MAGIC = 0x594D5331; // "YMS1"
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int DOC_ENTRY_BYTES = 8;
+    private static final int TOKEN_ENTRY_BYTES = 12;
+    private static final int DOC_FIELDS = 5;
+    // 最多保留的文档数，合并时超出的部分从最早加入的非收藏文档开始丢弃
+    static final int MAX_DOCS = 50000;
+    // 字段的最大长度，保证UTF-8编码后不超过2字节长度前缀
+    static final int MAX_TEXT_LENGTH = 512;
+
+    // 打分：标题命中的词项权重高于歌手、专辑，收藏和最近播放的排在前面
+    private static final double TITLE_WEIGHT = 4;
+    private static final double FIELD_WEIGHT = 1;
+    private static final double FAVORITE_BOOST = 6;
+    private static final double RECENT_BOOST = 3;
+    // 同样命中时标题越短越接近查询
+    private static final double LENGTH_PENALTY = 0.01;
+    private static final int MAX_PENALIZED_LENGTH = 100;
+
+    /**
+     * 一个可搜索的文档（歌曲或歌单）
+     */
+    public static final class Document {
+        public final int type;
+        public final String id;
+        public final String title;
+        // 歌曲为歌手，歌单为创建者
+        public final String artist;
+        public final String album;
+        public final String cover;
+        public final int flags;
+
+        public Document(int type, String id, String title, String artist, String album, String cover, int flags) {
+            this.type = type;
+            this.id = id;
+            this.title = clip(title);
+            this.artist = clip(artist);
+            this.album = clip(album);
+            this.cover = clip(cover);
+            this.flags = flags;
+        }
+
+        String key() {
+            return type + ":" + id;
+        }
+
+        /**
+         * 合并已有的文档：标志位累加，新文档缺少的字段沿用旧值
+         */
+        Document mergedWith(Document previous) {
+            return new Document(type, id,
+                    title.isEmpty() ? previous.title : title,
+                    artist.isEmpty() ? previous.artist : artist,
+                    album.isEmpty() ? previous.album : album,
+                    cover.isEmpty() ? previous.cover : cover,
+                    flags | previous.flags);
+        }
+
+        boolean sameAs(Document other) {
+            return type == other.type && flags == other.flags && id.equals(other.id) && title.equals(other.title)
+                    && artist.equals(other.artist) && album.equals(other.album) && cover.equals(other.cover);
+        }
+
+        private static String clip(String value) {
+            if (value == null) {
+                return "";
+            }
+            return value.length() > MAX_TEXT_LENGTH ? value.substring(0, MAX_TEXT_LENGTH) : value;
+        }
+    }
+
+    /**
+     * 查询结果
+     */
+    public static final class Result {
+        public final Document document;
+        public final double score;
+
+        Result(Document document, double score) {
+            this.document = document;
+            this.score = score;
+        }
+    }
+
+    /**
+     * 增量中的文档，tokens为词项到是否在标题中出现
+     */
+    static final class DeltaDoc {
+        final Document document;
+        final Map<String, Boolean> tokens;
+        final long seq;
+        // 被更新的版本替换后仍留在倒排表中，查询时跳过
+        volatile boolean dead;
+
+        DeltaDoc(Document document, Map<String, Boolean> tokens, long seq) {
+            this.document = document;
+            this.tokens = tokens;
+            this.seq = seq;
+        }
+    }
+
+    private final SearchTokenizer tokenizer;
+    private Segment base;
+    private BitSet tombstones = new BitSet();
+    private final LinkedHashMap<String, DeltaDoc> deltaDocs = new LinkedHashMap<>();
+    private final Map<String, List<DeltaDoc>> deltaPostings = new HashMap<>();
+    private long seq = 0;
+
+    /**
+     * 创建空索引
+     */
+    public SearchIndex(SearchTokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    /**
+     * 以磁盘上的只读段创建索引
+     * @param buffer 只读段的内容（通常是内存映射），格式不正确时抛出IOException
+     */
+    public static SearchIndex open(ByteBuffer buffer, SearchTokenizer tokenizer) throws IOException {
+        SearchIndex index = new SearchIndex(tokenizer);
+        index.base = new Segment(buffer);
+        return index;
+    }
+
+    /**
+     * 加入或更新文档
+     * @return 索引内容是否有变化
+     */
+    public synchronized boolean put(Document document) {
+        if (document.id == null || document.id.isEmpty() || document.title.isEmpty()) {
+            return false;
+        }
+        String key = document.key();
+        DeltaDoc existing = deltaDocs.get(key);
+        Document previous = existing != null ? existing.document : null;
+        int baseNo = -1;
+        if (previous == null && base != null) {
+            baseNo = base.findDoc(document.type, document.id.getBytes(StandardCharsets.UTF_8));
+            if (baseNo >= 0 && !tombstones.get(baseNo)) {
+                previous = base.document(baseNo);
+            } else {
+                baseNo = -1;
+            }
+        }
+        Document merged = previous != null ? document.mergedWith(previous) : document;
+        if (previous != null && merged.sameAs(previous)) {
+            return false;
+        }
+        if (existing != null) {
+            existing.dead = true;
+            // 重新放到最后，合并时按加入顺序编号，最近见过的文档最后才被丢弃
+            deltaDocs.remove(key);
+        }
+        if (baseNo >= 0) {
+            tombstones.set(baseNo);
+        }
+        addDelta(new DeltaDoc(merged, tokensOf(merged), ++seq));
+        return true;
+    }
+
+    /**
+     * 清除文档的标志位（例如取消收藏），文档本身保留
+     * @return 索引内容是否有变化
+     */
+    public synchronized boolean clearFlags(int type, String id, int flags) {
+        if (id == null || id.isEmpty()) {
+            return false;
+        }
+        Document document = new Document(type, id, "", "", "", "", 0);
+        DeltaDoc existing = deltaDocs.get(document.key());
+        if (existing != null) {
+            return replaceFlags(existing.document, existing, -1, flags);
+        }
+        if (base != null) {
+            int baseNo = base.findDoc(type, id.getBytes(StandardCharsets.UTF_8));
+            if (baseNo >= 0 && !tombstones.get(baseNo)) {
+                return replaceFlags(base.document(baseNo), null, baseNo, flags);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 清除某一类型所有文档的标志位（例如清空收藏）
+     * @return 有变化的文档数
+     */
+    public synchronized int clearFlagsAll(int type, int flags) {
+        int changed = 0;
+        for (DeltaDoc doc : new ArrayList<>(deltaDocs.values())) {
+            if (doc.document.type == type && replaceFlags(doc.document, doc, -1, flags)) {
+                changed++;
+            }
+        }
+        int baseCount = base != null ? base.docCount : 0;
+        for (int docNo = 0; docNo < baseCount; docNo++) {
+            if (!tombstones.get(docNo) && (base.flags(docNo) & flags) != 0 && base.type(docNo) == type
+                    && replaceFlags(base.document(docNo), null, docNo, flags)) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 与put相同的替换方式：旧的增量标记为失效、只读段中的旧文档加墓碑，再加入去掉标志位的新版本
+     */
+    private boolean replaceFlags(Document previous, DeltaDoc existing, int baseNo, int flags) {
+        if ((previous.flags & flags) == 0) {
+            return false;
+        }
+        Document cleared = new Document(previous.type, previous.id, previous.title, previous.artist,
+                previous.album, previous.cover, previous.flags & ~flags);
+        if (existing != null) {
+            existing.dead = true;
+            deltaDocs.remove(previous.key());
+        }
+        if (baseNo >= 0) {
+            tombstones.set(baseNo);
+        }
+        addDelta(new DeltaDoc(cleared, tokensOf(cleared), ++seq));
+        return true;
+    }
+
+    private void addDelta(DeltaDoc doc) {
+        deltaDocs.put(doc.document.key(), doc);
+        for (String token : doc.tokens.keySet()) {
+            List<DeltaDoc> postings = deltaPostings.get(token);
+            if (postings == null) {
+                postings = new ArrayList<>();
+                deltaPostings.put(token, postings);
+            }
+            postings.add(doc);
+        }
+    }
+
+    private Map<String, Boolean> tokensOf(Document document) {
+        Set<String> titleTokens = new LinkedHashSet<>();
+        tokenizer.tokenize(document.title, titleTokens);
+        Set<String> fieldTokens = new LinkedHashSet<>();
+        tokenizer.tokenize(document.artist, fieldTokens);
+        tokenizer.tokenize(document.album, fieldTokens);
+        Map<String, Boolean> tokens = new HashMap<>();
+        for (String token : fieldTokens) {
+            tokens.put(token, Boolean.FALSE);
+        }
+        for (String token : titleTokens) {
+            tokens.put(token, Boolean.TRUE);
+        }
+        return tokens;
+    }
+
+    /**
+     * 查询：所有查询词项都要命中（与），按得分从高到低返回
+     */
+    public synchronized List<Result> query(String query, int limit) {
+        List<String> tokens = tokenizer.queryTokens(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        PriorityQueue<Candidate> top = new PriorityQueue<>(limit + 1, Candidate.ORDER);
+        if (base != null) {
+            queryBase(tokens, limit, top);
+        }
+        queryDelta(tokens, limit, top);
+
+        List<Result> results = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            Candidate candidate = top.poll();
+            Document document = candidate.delta != null ? candidate.delta.document : base.document(candidate.docNo);
+            results.add(new Result(document, candidate.score));
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    private void queryBase(List<String> tokens, int limit, PriorityQueue<Candidate> top) {
+        int[] tokenIndexes = new int[tokens.size()];
+        for (int i = 0; i < tokens.size(); i++) {
+            tokenIndexes[i] = base.findToken(tokens.get(i).getBytes(StandardCharsets.UTF_8));
+            if (tokenIndexes[i] < 0) {
+                return;
+            }
+        }
+        // 从最短的倒排表开始，其余的用二分查找确认
+        Integer[] order = new Integer[tokenIndexes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = tokenIndexes[i];
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(base.postingCount(a), base.postingCount(b)));
+
+        int first = order[0];
+        int count = base.postingCount(first);
+        for (int p = 0; p < count; p++) {
+            int entry = base.posting(first, p);
+            int docNo = entry >>> 1;
+            if (tombstones.get(docNo)) {
+                continue;
+            }
+            double score = weightOf((entry & 1) != 0);
+            boolean matched = true;
+            for (int t = 1; t < order.length && matched; t++) {
+                int found = base.findPosting(order[t], docNo);
+                if (found < 0) {
+                    matched = false;
+                } else {
+                    score += weightOf((found & 1) != 0);
+                }
+            }
+            if (matched) {
+                score += boostOf(base.flags(docNo), base.titleLength(docNo));
+                offer(top, limit, new Candidate(score, docNo, null));
+            }
+        }
+    }
+
+    private void queryDelta(List<String> tokens, int limit, PriorityQueue<Candidate> top) {
+        List<DeltaDoc> shortest = null;
+        for (String token : tokens) {
+            List<DeltaDoc> postings = deltaPostings.get(token);
+            if (postings == null) {
+                return;
+            }
+            if (shortest == null || postings.size() < shortest.size()) {
+                shortest = postings;
+            }
+        }
+        for (DeltaDoc doc : shortest) {
+            if (doc.dead) {
+                continue;
+            }
+            double score = 0;
+            boolean matched = true;
+            for (String token : tokens) {
+                Boolean title = doc.tokens.get(token);
+                if (title == null) {
+                    matched = false;
+                    break;
+                }
+                score += weightOf(title);
+            }
+            if (matched) {
+                score += boostOf(doc.document.flags, doc.document.title.length());
+                offer(top, limit, new Candidate(score, -1, doc));
+            }
+        }
+    }
+
+    private static double weightOf(boolean title) {
+        return title ? TITLE_WEIGHT : FIELD_WEIGHT;
+    }
+
+    private static double boostOf(int flags, int titleLength) {
+        double boost = 0;
+        if ((flags & FLAG_FAVORITE) != 0) {
+            boost += FAVORITE_BOOST;
+        }
+        if ((flags & FLAG_RECENT) != 0) {
+            boost += RECENT_BOOST;
+        }
+        return boost - Math.min(titleLength, MAX_PENALIZED_LENGTH) * LENGTH_PENALTY;
+    }
+
+    private static void offer(PriorityQueue<Candidate> top, int limit, Candidate candidate) {
+        if (top.size() < limit) {
+            top.add(candidate);
+        } else if (Candidate.ORDER.compare(candidate, top.peek()) > 0) {
+            top.poll();
+            top.add(candidate);
+        }
+    }
+
+    /**
+     * 查询候选，只有进入前limit名的才读取文档内容
+     */
+    private static final class Candidate {
+        // 得分低的在堆顶；同分时增量中的（较新的）优先
+        static final Comparator<Candidate> ORDER = (a, b) -> {
+            int byScore = Double.compare(a.score, b.score);
+            if (byScore != 0) {
+                return byScore;
+            }
+            return Boolean.compare(a.delta != null, b.delta != null);
+        };
+
+        final double score;
+        final int docNo;
+        final DeltaDoc delta;
+
+        Candidate(double score, int docNo, DeltaDoc delta) {
+            this.score = score;
+            this.docNo = docNo;
+            this.delta = delta;
+        }
+    }
+
+    /**
+     * 有效文档数
+     */
+    public synchronized int size() {
+        int baseCount = base != null ? base.docCount : 0;
+        return baseCount - tombstones.cardinality() + deltaDocs.size();
+    }
+
+    /**
+     * 尚未合并的增量文档数
+     */
+    public synchronized int deltaSize() {
+        return deltaDocs.size();
+    }
+
+    public synchronized int segmentTokenCount() {
+        return base != null ? base.tokenCount : 0;
+    }
+
+    public synchronized long segmentBytes() {
+        return base != null ? base.buffer.capacity() : 0;
+    }
+
+    /**
+     * 开始合并：取当前只读段和增量的快照，之后的更新不受影响
+     */
+    public synchronized Merge beginMerge() {
+        return new Merge(base, (BitSet) tombstones.clone(), new ArrayList<>(deltaDocs.values()), seq);
+    }
+
+    /**
+     * 换上合并写出的新只读段，保留快照之后加入的增量
+     * @param buffer 新只读段的内容，格式不正确时抛出IOException且不修改当前索引
+     */
+    public synchronized void finishMerge(Merge merge, ByteBuffer buffer) throws IOException {
+        Segment segment = new Segment(buffer);
+        List<DeltaDoc> remaining = new ArrayList<>();
+        for (DeltaDoc doc : deltaDocs.values()) {
+            if (doc.seq > merge.seq) {
+                remaining.add(doc);
+            }
+        }
+        base = segment;
+        tombstones = new BitSet();
+        deltaDocs.clear();
+        deltaPostings.clear();
+        for (DeltaDoc doc : remaining) {
+            int baseNo = segment.findDoc(doc.document.type, doc.document.id.getBytes(StandardCharsets.UTF_8));
+            if (baseNo >= 0) {
+                tombstones.set(baseNo);
+            }
+            addDelta(doc);
+        }
+    }
+
+    /**
+     * 一次合并的快照，writeTo可以在任意线程执行
+     */
+    public static final class Merge {
+        private final Segment base;
+        private final BitSet tombstones;
+        private final List<DeltaDoc> docs;
+        private final long seq;
+
+        Merge(Segment base, BitSet tombstones, List<DeltaDoc> docs, long seq) {
+            this.base = base;
+            this.tombstones = tombstones;
+            this.docs = docs;
+            this.seq = seq;
+        }
+
+        /**
+         * 是否有需要合并的内容
+         */
+        public boolean isEmpty() {
+            return docs.isEmpty() && tombstones.isEmpty();
+        }
+
+        /**
+         * 写出合并后的只读段
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            int baseCount = base != null ? base.docCount : 0;
+            int live = baseCount - tombstones.cardinality() + docs.size();
+            int drop = Math.max(0, live - MAX_DOCS);
+
+            // 只读段中的文档在前（保持原来的顺序），增量在后，倒排表按新文档号依然有序
+            List<Document> documents = new ArrayList<>(Math.min(live, MAX_DOCS));
+            int[] remap = new int[baseCount];
+            for (int docNo = 0; docNo < baseCount; docNo++) {
+                remap[docNo] = -1;
+                if (tombstones.get(docNo)) {
+                    continue;
+                }
+                if (drop > 0 && (base.flags(docNo) & FLAG_FAVORITE) == 0) {
+                    drop--;
+                    continue;
+                }
+                remap[docNo] = documents.size();
+                documents.add(base.document(docNo));
+            }
+            List<DeltaDoc> kept = new ArrayList<>(docs.size());
+            for (DeltaDoc doc : docs) {
+                if (drop > 0 && (doc.document.flags & FLAG_FAVORITE) == 0) {
+                    drop--;
+                    continue;
+                }
+                kept.add(doc);
+            }
+
+            Map<String, IntList> postings = new HashMap<>();
+            for (int t = 0; t < (base != null ? base.tokenCount : 0); t++) {
+                IntList list = null;
+                int count = base.postingCount(t);
+                for (int p = 0; p < count; p++) {
+                    int entry = base.posting(t, p);
+                    int docNo = remap[entry >>> 1];
+                    if (docNo < 0) {
+                        continue;
+                    }
+                    if (list == null) {
+                        list = new IntList();
+                        postings.put(base.token(t), list);
+                    }
+                    list.add(docNo << 1 | (entry & 1));
+                }
+            }
+            for (DeltaDoc doc : kept) {
+                int docNo = documents.size();
+                documents.add(doc.document);
+                for (Map.Entry<String, Boolean> token : doc.tokens.entrySet()) {
+                    IntList list = postings.get(token.getKey());
+                    if (list == null) {
+                        list = new IntList();
+                        postings.put(token.getKey(), list);
+                    }
+                    list.add(docNo << 1 | (token.getValue() ? 1 : 0));
+                }
+            }
+            write(out, documents, postings);
+        }
+    }
+
+    private static void write(OutputStream out, List<Document> documents, Map<String, IntList> postings)
+            throws IOException {
+        int docCount = documents.size();
+        byte[][] tokens = new byte[postings.size()][];
+        IntList[] tokenPostings = new IntList[tokens.length];
+        int index = 0;
+        for (String token : postings.keySet()) {
+            tokens[index++] = token.getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(tokens, SearchIndex::compareBytes);
+        for (int t = 0; t < tokens.length; t++) {
+            tokenPostings[t] = postings.get(new String(tokens[t], StandardCharsets.UTF_8));
+        }
+
+        byte[][][] fields = new byte[docCount][][];
+        for (int d = 0; d < docCount; d++) {
+            Document document = documents.get(d);
+            fields[d] = new byte[][]{
+                    document.id.getBytes(StandardCharsets.UTF_8),
+                    document.title.getBytes(StandardCharsets.UTF_8),
+                    document.artist.getBytes(StandardCharsets.UTF_8),
+                    document.album.getBytes(StandardCharsets.UTF_8),
+                    document.cover.getBytes(StandardCharsets.UTF_8)};
+        }
+        Integer[] keyOrder = new Integer[docCount];
+        for (int d = 0; d < docCount; d++) {
+            keyOrder[d] = d;
+        }
+        Arrays.sort(keyOrder, (a, b) -> {
+            int byType = Integer.compare(documents.get(a).type, documents.get(b).type);
+            return byType != 0 ? byType : compareBytes(fields[a][0], fields[b][0]);
+        });
+
+        // 计算各区域的偏移（都是相对文件开头的绝对偏移）
+        long stringsOffset = HEADER_BYTES + (long) docCount * (DOC_ENTRY_BYTES + 4) + (long) tokens.length * TOKEN_ENTRY_BYTES;
+        long postingsOffset = stringsOffset;
+        for (byte[] token : tokens) {
+            postingsOffset += 2 + token.length;
+        }
+        long docsOffset = postingsOffset;
+        for (IntList list : tokenPostings) {
+            docsOffset += 4L * list.size;
+        }
+        long end = docsOffset;
+        for (byte[][] docFields : fields) {
+            for (byte[] field : docFields) {
+                end += 2 + field.length;
+            }
+        }
+        if (end > Integer.MAX_VALUE) {
+            throw new IOException("搜索索引过大");
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        data.writeInt(FILE_MAGIC);
+        data.writeInt(FILE_VERSION);
+        data.writeInt(docCount);
+        data.writeInt(tokens.length);
+        long offset = docsOffset;
+        for (int d = 0; d < docCount; d++) {
+            Document document = documents.get(d);
+            data.writeInt((int) offset);
+            data.writeByte(document.type);
+            data.writeByte(document.flags);
+            data.writeShort(document.title.length());
+            for (byte[] field : fields[d]) {
+                offset += 2 + field.length;
+            }
+        }
+        for (Integer docNo : keyOrder) {
+            data.writeInt(docNo);
+        }
+        long stringOffset = stringsOffset;
+        long postingOffset = postingsOffset;
+        for (int t = 0; t < tokens.length; t++) {
+            data.writeInt((int) stringOffset);
+            data.writeInt((int) postingOffset);
+            data.writeInt(tokenPostings[t].size);
+            stringOffset += 2 + tokens[t].length;
+            postingOffset += 4L * tokenPostings[t].size;
+        }
+        for (byte[] token : tokens) {
+            data.writeShort(token.length);
+            data.write(token);
+        }
+        for (IntList list : tokenPostings) {
+            for (int i = 0; i < list.size; i++) {
+                data.writeInt(list.values[i]);
+            }
+        }
+        for (byte[][] docFields : fields) {
+            for (byte[] field : docFields) {
+                data.writeShort(field.length);
+                data.write(field);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * 按无符号字节比较，与只读段中词项的排序一致
+     */
+    static int compareBytes(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * 只读段
+     * 格式：头部（魔数、版本、文档数、词项数）、文档表（数据偏移、类型、标志、标题长度）、
+     * 按键排序的文档号、词项表（词项偏移、倒排表偏移、倒排表长度）、词项、倒排表（文档号*2+是否标题）、文档数据
+     */
+    static final class Segment {
+        final ByteBuffer buffer;
+        final int docCount;
+        final int tokenCount;
+        private final int docTable;
+        private final int keyTable;
+        private final int tokenTable;
+
+        Segment(ByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            int limit = buffer.limit();
+            if (limit < HEADER_BYTES || buffer.getInt(0) != FILE_MAGIC) {
+                throw new IOException("搜索索引格式不正确");
+            }
+            if (buffer.getInt(4) != FILE_VERSION) {
+                throw new IOException("不支持的搜索索引版本");
+            }
+            docCount = buffer.getInt(8);
+            tokenCount = buffer.getInt(12);
+            long tokenTableEnd = HEADER_BYTES + (long) docCount * (DOC_ENTRY_BYTES + 4)
+                    + (long) tokenCount * TOKEN_ENTRY_BYTES;
+            if (docCount < 0 || tokenCount < 0 || tokenTableEnd > limit) {
+                throw new IOException("搜索索引已损坏");
+            }
+            docTable = HEADER_BYTES;
+            keyTable = docTable + docCount * DOC_ENTRY_BYTES;
+            tokenTable = keyTable + docCount * 4;
+            validate(limit);
+        }
+
+        /**
+         * 检查所有偏移都在范围内，之后的读取不再检查
+         */
+        private void validate(int limit) throws IOException {
+            for (int d = 0; d < docCount; d++) {
+                long offset = buffer.getInt(docTable + d * DOC_ENTRY_BYTES);
+                for (int f = 0; f < DOC_FIELDS; f++) {
+                    if (offset < 0 || offset + 2 > limit) {
+                        throw new IOException("搜索索引已损坏");
+                    }
+                    offset += 2 + (buffer.getShort((int) offset) & 0xFFFF);
+                }
+                int key = buffer.getInt(keyTable + d * 4);
+                if (offset > limit || key < 0 || key >= docCount) {
+                    throw new IOException("搜索索引已损坏");
+                }
+            }
+            for (int t = 0; t < tokenCount; t++) {
+                int entry = tokenTable + t * TOKEN_ENTRY_BYTES;
+                long stringOffset = buffer.getInt(entry);
+                long postingOffset = buffer.getInt(entry + 4);
+                long count = buffer.getInt(entry + 8);
+                if (stringOffset < 0 || stringOffset + 2 > limit
+                        || stringOffset + 2 + (buffer.getShort((int) stringOffset) & 0xFFFF) > limit
+                        || postingOffset < 0 || count < 0 || postingOffset + count * 4 > limit) {
+                    throw new IOException("搜索索引已损坏");
+                }
+            }
+        }
+
+        int type(int docNo) {
+            return buffer.get(docTable + docNo * DOC_ENTRY_BYTES + 4);
+        }
+
+        int flags(int docNo) {
+            return buffer.get(docTable + docNo * DOC_ENTRY_BYTES + 5) & 0xFF;
+        }
+
+        int titleLength(int docNo) {
+            return buffer.getShort(docTable + docNo * DOC_ENTRY_BYTES + 6) & 0xFFFF;
+        }
+
+        Document document(int docNo) {
+            int entry = docTable + docNo * DOC_ENTRY_BYTES;
+            int offset = buffer.getInt(entry);
+            String[] values = new String[DOC_FIELDS];
+            for (int f = 0; f < DOC_FIELDS; f++) {
+                int length = buffer.getShort(offset) & 0xFFFF;
+                values[f] = readString(offset + 2, length);
+                offset += 2 + length;
+            }
+            return new Document(buffer.get(entry + 4), values[0], values[1], values[2], values[3], values[4],
+                    buffer.get(entry + 5) & 0xFF);
+        }
+
+        String token(int tokenIndex) {
+            int offset = buffer.getInt(tokenTable + tokenIndex * TOKEN_ENTRY_BYTES);
+            return readString(offset + 2, buffer.getShort(offset) & 0xFFFF);
+        }
+
+        int postingCount(int tokenIndex) {
+            return buffer.getInt(tokenTable + tokenIndex * TOKEN_ENTRY_BYTES + 8);
+        }
+
+        int posting(int tokenIndex, int position) {
+            return buffer.getInt(buffer.getInt(tokenTable + tokenIndex * TOKEN_ENTRY_BYTES + 4) + position * 4);
+        }
+
+        /**
+         * 在词项的倒排表中二分查找文档
+         * @return 倒排项（文档号*2+是否标题），没有时返回-1
+         */
+        int findPosting(int tokenIndex, int docNo) {
+            int low = 0;
+            int high = postingCount(tokenIndex) - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int entry = posting(tokenIndex, mid);
+                int midDoc = entry >>> 1;
+                if (midDoc < docNo) {
+                    low = mid + 1;
+                } else if (midDoc > docNo) {
+                    high = mid - 1;
+                } else {
+                    return entry;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 二分查找词项
+         * @return 词项序号，没有时返回-1
+         */
+        int findToken(byte[] token) {
+            int low = 0;
+            int high = tokenCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int offset = buffer.getInt(tokenTable + mid * TOKEN_ENTRY_BYTES);
+                int cmp = compareStored(offset, token);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 按类型和ID二分查找文档
+         * @return 文档号，没有时返回-1
+         */
+        int findDoc(int type, byte[] id) {
+            int low = 0;
+            int high = docCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int docNo = buffer.getInt(keyTable + mid * 4);
+                int entry = docTable + docNo * DOC_ENTRY_BYTES;
+                int cmp = Integer.compare(buffer.get(entry + 4), type);
+                if (cmp == 0) {
+                    cmp = compareStored(buffer.getInt(entry), id);
+                }
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return docNo;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * 比较offset处带长度前缀的字符串与给定字节，不分配内存
+         */
+        private int compareStored(int offset, byte[] other) {
+            int length = buffer.getShort(offset) & 0xFFFF;
+            int common = Math.min(length, other.length);
+            for (int i = 0; i < common; i++) {
+                int diff = (buffer.get(offset + 2 + i) & 0xFF) - (other[i] & 0xFF);
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+            return length - other.length;
+        }
+
+        private String readString(int offset, int length) {
+            byte[] bytes = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            view.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.ymmusic.app;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 离线搜索的分词
+ * 汉字按单字和相邻两字切分，字母数字按词切分并索引前缀；
+ * 汉字另外索引拼音首字母和全拼（从每个字开始的前缀），输入"zjl"、"jielun"也能匹配"周杰伦"
+ */
+public final class SearchTokenizer {
+    // 拼音和字母词项索引的最大前缀长度，更长的查询词截断到这个长度
+    static final int MAX_PREFIX = 12;
+    // 单个字段最多产生的词项数，防止超长文本撑大索引
+    static final int MAX_TOKENS = 512;
+
+    /**
+     * 汉字转拼音
+     */
+    public interface Romanizer {
+        /**
+         * @param han 连续的汉字
+         * @return 每个字的小写全拼（无声调），与输入等长；无法转换时返回null
+         */
+        String[] romanize(String han);
+    }
+
+    // GB2312一级汉字按拼音排序，各首字母第一个字的区位码（没有i、u、v开头的字）
+    private static final int[] GB_BOUNDARIES = {
+            0xB0A1, 0xB0C5, 0xB2C1, 0xB4EE, 0xB6EA, 0xB7A2, 0xB8C1, 0xB9FE, 0xBBF7, 0xBFA6, 0xC0AC, 0xC2E8,
+            0xC4C3, 0xC5B6, 0xC5BE, 0xC6DA, 0xC8BB, 0xC8F6, 0xCBFA, 0xCDDA, 0xCEF4, 0xD1B9, 0xD4D1, 0xD7FA};
+    private static final char[] GB_INITIALS = "abcdefghjklmnopqrstwxyz".toCharArray();
+    private static final Charset GBK = Charset.forName("GBK");
+
+    private final Romanizer romanizer;
+
+    /**
+     * @param romanizer 全拼来源，为null时只索引首字母
+     */
+    public SearchTokenizer(Romanizer romanizer) {
+        this.romanizer = romanizer;
+    }
+
+    /**
+     * 规范化：全角转半角、转小写，标点和空白都变为空格
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0xFF01 && c <= 0xFF5E) {
+                c = (char) (c - 0xFEE0);
+            }
+            c = Character.toLowerCase(c);
+            builder.append(isHan(c) || Character.isLetterOrDigit(c) ? c : ' ');
+        }
+        return builder.toString();
+    }
+
+    static boolean isHan(char c) {
+        return (c >= 0x4E00 && c <= 0x9FFF) || (c >= 0x3400 && c <= 0x4DBF) || (c >= 0xF900 && c <= 0xFAFF);
+    }
+
+    /**
+     * 常用汉字（GB2312一级字库）的拼音首字母
+     * @return 小写首字母，不在字库中时返回0
+     */
+    static char initialOf(char c) {
+        if (!isHan(c)) {
+            return 0;
+        }
+        int code;
+        try {
+            // 编码器不是线程安全的，每次新建
+            CharsetEncoder encoder = GBK.newEncoder();
+            ByteBuffer bytes = encoder.encode(CharBuffer.wrap(new char[]{c}));
+            if (bytes.remaining() != 2) {
+                return 0;
+            }
+            code = ((bytes.get(0) & 0xFF) << 8) | (bytes.get(1) & 0xFF);
+        } catch (Exception e) {
+            return 0;
+        }
+        if (code < GB_BOUNDARIES[0] || code >= GB_BOUNDARIES[GB_BOUNDARIES.length - 1]) {
+            return 0;
+        }
+        for (int i = GB_INITIALS.length - 1; i >= 0; i--) {
+            if (code >= GB_BOUNDARIES[i]) {
+                return GB_INITIALS[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 生成一个字段的索引词项，加入out
+     */
+    public void tokenize(String text, Set<String> out) {
+        String normalized = normalize(text);
+        int length = normalized.length();
+        int i = 0;
+        while (i < length && out.size() < MAX_TOKENS) {
+            char c = normalized.charAt(i);
+            int end = i + 1;
+            if (c == ' ') {
+                i = end;
+                continue;
+            }
+            boolean han = isHan(c);
+            while (end < length && normalized.charAt(end) != ' ' && isHan(normalized.charAt(end)) == han) {
+                end++;
+            }
+            if (han) {
+                addHanTokens(normalized.substring(i, end), out);
+            } else {
+                addPrefixes(normalized.substring(i, end), 1, out);
+            }
+            i = end;
+        }
+    }
+
+    /**
+     * 生成查询词项：汉字取相邻两字（只有一个字时取单字），字母数字整词（截断到MAX_PREFIX）
+     */
+    public List<String> queryTokens(String query) {
+        Set<String> tokens = new LinkedHashSet<>();
+        String normalized = normalize(query);
+        int length = normalized.length();
+        int i = 0;
+        while (i < length && tokens.size() < MAX_TOKENS) {
+            char c = normalized.charAt(i);
+            int end = i + 1;
+            if (c == ' ') {
+                i = end;
+                continue;
+            }
+            boolean han = isHan(c);
+            while (end < length && normalized.charAt(end) != ' ' && isHan(normalized.charAt(end)) == han) {
+                end++;
+            }
+            if (!han) {
+                tokens.add(normalized.substring(i, Math.min(end, i + MAX_PREFIX)));
+            } else if (end - i == 1) {
+                tokens.add(normalized.substring(i, end));
+            } else {
+                for (int j = i; j + 1 < end; j++) {
+                    tokens.add(normalized.substring(j, j + 2));
+                }
+            }
+            i = end;
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private void addHanTokens(String run, Set<String> out) {
+        int length = run.length();
+        for (int i = 0; i < length; i++) {
+            out.add(run.substring(i, i + 1));
+            if (i + 1 < length) {
+                out.add(run.substring(i, i + 2));
+            }
+        }
+
+        String[] syllables = romanizer != null ? romanizer.romanize(run) : null;
+        if (syllables != null && syllables.length != length) {
+            syllables = null;
+        }
+        char[] initials = new char[length];
+        for (int i = 0; i < length; i++) {
+            String syllable = syllables != null ? syllables[i] : null;
+            initials[i] = syllable != null && !syllable.isEmpty() ? syllable.charAt(0) : initialOf(run.charAt(i));
+        }
+
+        // 从每个字开始的首字母串和全拼串，只索引前缀（遇到无法转换的字截止）
+        StringBuilder builder = new StringBuilder(MAX_PREFIX);
+        for (int start = 0; start < length && out.size() < MAX_TOKENS; start++) {
+            builder.setLength(0);
+            for (int i = start; i < length && initials[i] != 0 && builder.length() < MAX_PREFIX; i++) {
+                builder.append(initials[i]);
+                out.add(builder.toString());
+            }
+            if (syllables == null) {
+                continue;
+            }
+            builder.setLength(0);
+            for (int i = start; i < length && builder.length() < MAX_PREFIX; i++) {
+                String syllable = syllables[i];
+                if (syllable == null || syllable.isEmpty()) {
+                    break;
+                }
+                addPrefixes(syllable, builder, out);
+            }
+        }
+    }
+
+    /**
+     * 在已有的前缀后逐个字符追加，每追加一个字符加入一个词项
+     */
+    private static void addPrefixes(String text, StringBuilder prefix, Set<String> out) {
+        for (int i = 0; i < text.length() && prefix.length() < MAX_PREFIX; i++) {
+            char c = text.charAt(i);
+            if (c < 'a' || c > 'z') {
+                continue;
+            }
+            prefix.append(c);
+            out.add(prefix.toString());
+        }
+    }
+
+    private static void addPrefixes(String word, int minLength, Set<String> out) {
+        int max = Math.min(word.length(), MAX_PREFIX);
+        for (int i = minLength; i <= max; i++) {
+            out.add(word.substring(0, i));
+        }
+    }
+}
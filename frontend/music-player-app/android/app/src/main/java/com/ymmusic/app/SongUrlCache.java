@@ -0,0 +1,108 @@
+package com.ymmusic.app;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 歌曲ID到播放地址的有限缓存
+ * CDN地址带有过期时间，查询时剩余有效期不足的地址视为不存在；
+ * 条目数超出上限时淘汰最久未使用的，最近用到的地址在快过期时由解析器刷新
+ */
+public class SongUrlCache {
+
+    /**
+     * 一个已解析的播放地址
+     */
+    public static final class Entry {
+        public final String songId;
+        public final String url;
+        public final long durationMs;
+        // 过期时间（System.currentTimeMillis()）
+        public final long expiresAt;
+        // 最近一次被查询或预取的时间，只刷新最近用到的地址
+        long lastWanted;
+
+        public Entry(String songId, String url, long durationMs, long expiresAt) {
+            this.songId = songId;
+            this.url = url;
+            this.durationMs = durationMs;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public SongUrlCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * 保存解析结果，保留之前记录的使用时间
+     */
+    public synchronized void put(Entry entry, long now) {
+        Entry previous = entries.put(entry.songId, entry);
+        entry.lastWanted = previous != null ? Math.max(previous.lastWanted, now) : now;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 查询剩余有效期不少于minRemainingMs的地址，已过期的条目会被移除
+     */
+    public synchronized Entry get(String songId, long now, long minRemainingMs) {
+        Entry entry = entries.get(songId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= now) {
+            entries.remove(songId);
+            return null;
+        }
+        entry.lastWanted = now;
+        return entry.expiresAt - now >= minRemainingMs ? entry : null;
+    }
+
+    /**
+     * 地址是否还能用到指定时间之后，用于跳过不必要的预取
+     */
+    public synchronized boolean isFresh(String songId, long now, long minRemainingMs) {
+        Entry entry = entries.get(songId);
+        if (entry == null) {
+            return false;
+        }
+        entry.lastWanted = now;
+        return entry.expiresAt - now >= minRemainingMs;
+    }
+
+    /**
+     * 将在marginMs内过期、且在activeSince之后用到过的歌曲
+     */
+    public synchronized List<String> expiringSoon(long now, long marginMs, long activeSince) {
+        List<String> ids = new ArrayList<>();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.expiresAt <= now && entry.lastWanted < activeSince) {
+                iterator.remove();
+            } else if (entry.expiresAt - now <= marginMs && entry.lastWanted >= activeSince) {
+                ids.add(entry.songId);
+            }
+        }
+        return ids;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+}
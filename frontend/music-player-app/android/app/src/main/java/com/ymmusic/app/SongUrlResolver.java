@@ -0,0 +1,341 @@
+package com.ymmusic.app;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 播放地址解析器
+ * 通过/song/url的多ID形式批量解析队列中接下来的歌曲，结果带过期时间缓存在内存中，
+ * 最近用到的地址在过期前自动刷新，Web层切歌时可以同步取到现成的地址，不用再等一次接口请求。
+ * 只处理主API的数字ID，酷我歌曲仍由Web层按原来的方式获取
+ */
+public class SongUrlResolver {
+    private static final String TAG = "SongUrlResolver";
+
+    private static final int MAX_ENTRIES = 128;
+    // 一次请求最多解析的歌曲数
+    private static final int BATCH_SIZE = 20;
+    // 等待这么久再发请求，把连续的预取合并成一批
+    private static final long BATCH_DELAY_MS = 50;
+    // 接口没有返回有效期（expi）时按20分钟计算
+    private static final long DEFAULT_EXPIRY_MS = 20 * 60 * 1000;
+    // 剩余有效期不足时提前刷新
+    private static final long REFRESH_MARGIN_MS = 2 * 60 * 1000;
+    // 交给播放器的地址至少还要能用这么久
+    private static final long MIN_REMAINING_MS = 30 * 1000;
+    private static final long REFRESH_CHECK_INTERVAL_MS = 30 * 1000;
+    // 只刷新这段时间内用到过的地址
+    private static final long ACTIVE_WINDOW_MS = 30 * 60 * 1000;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 15000;
+
+    private static SongUrlResolver instance;
+
+    private final SongUrlCache cache = new SongUrlCache(MAX_ENTRIES);
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "SongUrlResolver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // /song/url的完整地址，由Web层设置
+    private volatile String endpoint;
+    private boolean refreshStarted = false;
+
+    // 以下字段由this保护
+    private final Set<String> pending = new LinkedHashSet<>();
+    private final Set<String> inFlight = new HashSet<>();
+    private boolean flushScheduled = false;
+
+    // 统计
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong resolvedCount = new AtomicLong();
+    private final AtomicLong refreshCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    public static synchronized SongUrlResolver getInstance() {
+        if (instance == null) {
+            instance = new SongUrlResolver();
+        }
+        return instance;
+    }
+
+    private SongUrlResolver() {
+    }
+
+    /**
+     * 设置/song/url接口地址，并开始定期刷新快过期的地址
+     */
+    public synchronized void setEndpoint(String url) {
+        if (url == null || url.isEmpty()) {
+            return;
+        }
+        endpoint = url;
+        if (!refreshStarted) {
+            refreshStarted = true;
+            executor.scheduleWithFixedDelay(this::refreshExpiring,
+                    REFRESH_CHECK_INTERVAL_MS, REFRESH_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        // 设置接口地址之前排队的预取
+        if (!pending.isEmpty()) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * 是否是解析器可以处理的歌曲ID（主API的数字ID）
+     */
+    static boolean accepts(String songId) {
+        if (songId == null || songId.isEmpty() || songId.length() > 19) {
+            return false;
+        }
+        for (int i = 0; i < songId.length(); i++) {
+            char c = songId.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 预取歌曲地址，缓存中还足够新的会被跳过
+     */
+    public void prefetch(String... songIds) {
+        long now = System.currentTimeMillis();
+        boolean added = false;
+        synchronized (this) {
+            for (String songId : songIds) {
+                if (!accepts(songId) || inFlight.contains(songId)
+                        || cache.isFresh(songId, now, REFRESH_MARGIN_MS)) {
+                    continue;
+                }
+                added |= pending.add(songId);
+            }
+            if (added) {
+                scheduleFlush();
+            }
+        }
+    }
+
+    /**
+     * 同步查询已解析的地址，未命中时在后台解析，下次查询即可命中
+     * @return 剩余有效期足够的地址，没有时返回null
+     */
+    public SongUrlCache.Entry lookup(String songId) {
+        if (!accepts(songId)) {
+            return null;
+        }
+        SongUrlCache.Entry entry = cache.get(songId, System.currentTimeMillis(), MIN_REMAINING_MS);
+        if (entry != null) {
+            hitCount.incrementAndGet();
+            return entry;
+        }
+        missCount.incrementAndGet();
+        prefetch(songId);
+        return null;
+    }
+
+    /**
+     * 在调用线程上立即解析（只能在后台线程调用），用于不经过Web层直接开始播放，
+     * 缓存中已有足够新的地址的歌曲会被跳过；之后用lookup取结果
+     */
+    public void resolveNow(String... songIds) {
+        long now = System.currentTimeMillis();
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        for (String songId : songIds) {
+            if (accepts(songId) && !batch.contains(songId) && !cache.isFresh(songId, now, REFRESH_MARGIN_MS)) {
+                batch.add(songId);
+            }
+            if (batch.size() == BATCH_SIZE) {
+                resolveBatch(batch, NetworkScheduler.PRIORITY_PLAYBACK);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            resolveBatch(batch, NetworkScheduler.PRIORITY_PLAYBACK);
+        }
+    }
+
+    /**
+     * 已设置的/song/url接口地址，Web层还没有设置时返回null
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled && endpoint != null) {
+            flushScheduled = true;
+            executor.schedule(this::flush, BATCH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 把排队的歌曲按批解析（解析线程）
+     */
+    private void flush() {
+        while (true) {
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            synchronized (this) {
+                flushScheduled = false;
+                Iterator<String> iterator = pending.iterator();
+                while (iterator.hasNext() && batch.size() < BATCH_SIZE) {
+                    String songId = iterator.next();
+                    iterator.remove();
+                    batch.add(songId);
+                    inFlight.add(songId);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                resolveBatch(batch, NetworkScheduler.PRIORITY_PREFETCH);
+            } finally {
+                synchronized (this) {
+                    inFlight.removeAll(batch);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param priority 等待播放时用PRIORITY_PLAYBACK，预取和刷新用PRIORITY_PREFETCH
+     */
+    private void resolveBatch(List<String> songIds, int priority) {
+        String base = endpoint;
+        if (base == null) {
+            return;
+        }
+        StringBuilder url = new StringBuilder(base).append(base.contains("?") ? '&' : '?').append("id=");
+        for (int i = 0; i < songIds.size(); i++) {
+            if (i > 0) {
+                url.append(',');
+            }
+            url.append(songIds.get(i));
+        }
+        NetworkScheduler.Call call = null;
+        try {
+            batchCount.incrementAndGet();
+            long requestedAt = System.currentTimeMillis();
+            call = NetworkScheduler.getInstance().open(url.toString(), priority);
+            HttpURLConnection connection = call.connection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            int code = call.code();
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new Exception("HTTP " + code);
+            }
+            JSONArray data = new JSONObject(readBody(call.body())).optJSONArray("data");
+            int resolved = 0;
+            for (int i = 0; data != null && i < data.length(); i++) {
+                JSONObject item = data.optJSONObject(i);
+                if (item == null) {
+                    continue;
+                }
+                String songId = String.valueOf(item.optLong("id"));
+                String songUrl = item.optString("url", "");
+                if (songUrl.isEmpty() || "null".equals(songUrl)) {
+                    continue;
+                }
+                long expiresIn = item.optLong("expi", 0) * 1000;
+                long expiresAt = requestedAt + (expiresIn > 0 ? expiresIn : DEFAULT_EXPIRY_MS);
+                cache.put(new SongUrlCache.Entry(songId, songUrl, item.optLong("time", 0), expiresAt),
+                        System.currentTimeMillis());
+                resolved++;
+            }
+            resolvedCount.addAndGet(resolved);
+            Log.d(TAG, "批量解析播放地址: " + resolved + "/" + songIds.size());
+        } catch (Exception e) {
+            failureCount.incrementAndGet();
+            Log.w(TAG, "批量解析播放地址失败: " + e.getMessage());
+            if (call != null) {
+                call.abort();
+            }
+        } finally {
+            if (call != null) {
+                call.close();
+            }
+        }
+    }
+
+    private static String readBody(InputStream body) throws Exception {
+        try (InputStream in = body) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 重新解析最近用到且即将过期的地址（解析线程）
+     */
+    private void refreshExpiring() {
+        long now = System.currentTimeMillis();
+        List<String> expiring = cache.expiringSoon(now, REFRESH_MARGIN_MS, now - ACTIVE_WINDOW_MS);
+        if (expiring.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (String songId : expiring) {
+                if (!inFlight.contains(songId)) {
+                    pending.add(songId);
+                }
+            }
+        }
+        refreshCount.addAndGet(expiring.size());
+        flush();
+    }
+
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public long getResolvedCount() {
+        return resolvedCount.get();
+    }
+
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+}
@@ -0,0 +1,203 @@
+package com.ymmusic.app;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.os.Build;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 冷启动预加载
+ * Activity创建时（Capacitor创建WebView之前）开始，与WebView的创建和页面加载同时进行：
+ * 一个线程初始化各原生磁盘缓存（目录扫描、索引读取），另一个线程预先请求上次启动时Web层请求过的接口，
+ * 结果写入API缓存，并作为初始数据交给Web层（getInitialData），Web层的首批请求不再等待网络
+ */
+public class StartupPreloader {
+    private static final String TAG = "StartupPreloader";
+
+    private static StartupPreloader instance;
+
+    private final Context context;
+    private final AtomicFile requestsFile;
+    private final ExecutorService executor;
+    // 已预取的响应，按地址保存，保持请求顺序
+    private final Map<String, String> responses = new LinkedHashMap<>();
+    // Web层取走后预取到的响应只写入API缓存，不再保留在内存
+    private boolean responsesTaken = false;
+    private boolean started = false;
+    private volatile boolean finished = false;
+
+    public static synchronized StartupPreloader getInstance(Context context) {
+        if (instance == null) {
+            instance = new StartupPreloader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private StartupPreloader(Context context) {
+        this.context = context;
+        requestsFile = new AtomicFile(new File(context.getFilesDir(), "startup_requests.bin"));
+        executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "StartupPreloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 开始预加载，进程内只执行一次（Activity重建时不再重复）
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        executor.execute(this::warmCaches);
+        executor.execute(this::preloadResponses);
+        watchNetwork();
+    }
+
+    /**
+     * 默认网络变化（例如Wi-Fi切到移动网络）时清空域名解析缓存，Android 7.0以下不监听
+     */
+    private void watchNetwork() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return;
+        }
+        ConnectivityManager manager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (manager == null) {
+            return;
+        }
+        try {
+            manager.registerDefaultNetworkCallback(new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    NetworkScheduler.getInstance().onNetworkChanged();
+                }
+
+                @Override
+                public void onLost(Network network) {
+                    NetworkScheduler.getInstance().onNetworkChanged();
+                }
+            });
+        } catch (Exception e) {
+            Log.w(TAG, "监听网络变化失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 创建各原生缓存的单例，Activity随后在主线程上获取时直接返回
+     */
+    private void warmCaches() {
+        StartupTrace.Section section = StartupTrace.begin("preload.caches");
+        try {
+            // 连接池的系统属性需要在第一个请求之前设置
+            NetworkScheduler.getInstance();
+            ApiResponseCache.getInstance(context);
+            AudioCache.getInstance(context);
+            OfflineDownloadManager.getInstance(context);
+            ImageProxy.getInstance(context);
+            CoverArtLoader.getInstance(context);
+            // 离线搜索在自己的线程上映射索引文件，并开始接收API缓存的新响应
+            OfflineSearch.getInstance(context);
+        } catch (Exception e) {
+            Log.e(TAG, "初始化原生缓存出错", e);
+        } finally {
+            section.close();
+        }
+    }
+
+    /**
+     * 依次预取上次启动时的接口，同一个接口WebView稍后请求时由API缓存合并为一次网络请求
+     */
+    private void preloadResponses() {
+        StartupTrace.Section section = StartupTrace.begin("preload.responses");
+        try {
+            ApiResponseCache apiCache = ApiResponseCache.getInstance(context);
+            int loaded = 0;
+            for (String url : readRequests().getUrls()) {
+                String body = apiCache.preload(url);
+                if (body != null) {
+                    synchronized (responses) {
+                        if (!responsesTaken) {
+                            responses.put(url, body);
+                        }
+                    }
+                    loaded++;
+                }
+            }
+            Log.d(TAG, "启动数据预取完成: " + loaded + " 个接口");
+        } catch (Exception e) {
+            Log.e(TAG, "预取启动数据出错", e);
+        } finally {
+            section.close();
+            finished = true;
+        }
+    }
+
+    private StartupRequests readRequests() {
+        try (FileInputStream in = requestsFile.openRead()) {
+            return StartupRequests.readFrom(new DataInputStream(new BufferedInputStream(in)));
+        } catch (FileNotFoundException e) {
+            // 首次启动没有记录
+        } catch (Exception e) {
+            Log.e(TAG, "读取启动请求记录出错", e);
+        }
+        return StartupRequests.EMPTY;
+    }
+
+    /**
+     * 取出已经预取到的响应（地址到响应体）并释放，只交给Web层一次；
+     * 不等待尚未完成的请求，这些请求WebView直接发起时会合并到进行中的预取
+     */
+    public Map<String, String> takeResponses() {
+        synchronized (responses) {
+            Map<String, String> taken = new LinkedHashMap<>(responses);
+            responses.clear();
+            responsesTaken = true;
+            return taken;
+        }
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * 保存本次启动时Web层请求的接口，下次冷启动时预取（后台线程写入）
+     */
+    public void saveRequests(List<String> urls) {
+        final StartupRequests requests = new StartupRequests(urls);
+        executor.execute(() -> {
+            FileOutputStream out = null;
+            try {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                requests.writeTo(new DataOutputStream(buffer));
+                out = requestsFile.startWrite();
+                out.write(buffer.toByteArray());
+                requestsFile.finishWrite(out);
+                Log.d(TAG, "已保存启动请求: " + requests.getUrls().size() + " 个");
+            } catch (Exception e) {
+                Log.e(TAG, "保存启动请求出错", e);
+                if (out != null) {
+                    requestsFile.failWrite(out);
+                }
+            }
+        });
+    }
+}
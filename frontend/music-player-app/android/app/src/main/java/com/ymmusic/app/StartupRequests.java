@@ -0,0 +1,84 @@
+package com.ymmusic.app;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Web层启动时请求的接口地址
+ * 每次启动由Web层记录并保存，下次冷启动时原生层在WebView加载的同时预先请求这些地址
+ */
+public final class StartupRequests {
+    private static final int FILE_VERSION = 1;
+    // 最多预取的地址数
+    static final int MAX_URLS = 8;
+    // 地址的最大长度，防止损坏的文件导致分配过大的字符串
+    private static final int MAX_URL_LENGTH = 2048;
+
+    public static final StartupRequests EMPTY = new StartupRequests(Collections.<String>emptyList());
+
+    private final List<String> urls;
+
+    /**
+     * 去掉重复、空白和过长的地址，只保留前MAX_URLS个
+     */
+    public StartupRequests(List<String> urls) {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String url : urls) {
+            if (unique.size() >= MAX_URLS) {
+                break;
+            }
+            if (url != null && !url.isEmpty() && url.length() <= MAX_URL_LENGTH
+                    && (url.startsWith("https://") || url.startsWith("http://"))) {
+                unique.add(url);
+            }
+        }
+        this.urls = Collections.unmodifiableList(new ArrayList<>(unique));
+    }
+
+    public List<String> getUrls() {
+        return urls;
+    }
+
+    public boolean isEmpty() {
+        return urls.isEmpty();
+    }
+
+    /**
+     * 写入二进制文件
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FILE_VERSION);
+        out.writeInt(urls.size());
+        for (String url : urls) {
+            out.writeUTF(url);
+        }
+    }
+
+    /**
+     * 从二进制文件读取，格式不正确时抛出IOException
+     */
+    public static StartupRequests readFrom(DataInputStream in) throws IOException {
+        if (in.readInt() != FILE_VERSION) {
+            throw new IOException("不支持的启动请求文件版本");
+        }
+        int count = in.readInt();
+        if (count < 0 || count > MAX_URLS) {
+            throw new IOException("启动请求文件已损坏");
+        }
+        List<String> urls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String url = in.readUTF();
+            if (url.length() > MAX_URL_LENGTH) {
+                throw new IOException("启动请求文件已损坏");
+            }
+            urls.add(url);
+        }
+        return new StartupRequests(urls);
+    }
+}
@@ -0,0 +1,108 @@
+package com.ymmusic.app;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 冷启动阶段计时
+ * 每个阶段同时写入android.os.Trace（systrace/Perfetto中可见）和进程内的时间线，
+ * 时间线通过getStartupReport()桥接方法查看，各阶段耗时也记录到MetricsRegistry的startup.*
+ */
+public final class StartupTrace {
+    // 时间线最多保留的阶段数，Activity重建时不再无限增长
+    private static final int MAX_PHASES = 64;
+
+    // 计时起点：进程启动时间（API 24+），更早的系统上是本类加载的时间
+    private static final long ORIGIN_MS = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+            ? Process.getStartElapsedRealtime() : SystemClock.elapsedRealtime();
+
+    private static final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * 已完成的阶段
+     */
+    public static final class Phase {
+        public final String name;
+        public final String thread;
+        // 相对进程启动的开始时间（毫秒）
+        public final long startMs;
+        public final long durationMs;
+
+        Phase(String name, String thread, long startMs, long durationMs) {
+            this.name = name;
+            this.thread = thread;
+            this.startMs = startMs;
+            this.durationMs = durationMs;
+        }
+    }
+
+    /**
+     * 进行中的阶段，必须在开始它的线程上关闭
+     */
+    public static final class Section implements AutoCloseable {
+        private final String name;
+        private final long startMs;
+        private final long startNanos;
+
+        private Section(String name) {
+            this.name = name;
+            this.startMs = SystemClock.elapsedRealtime();
+            this.startNanos = MetricsRegistry.start();
+            Trace.beginSection(name);
+        }
+
+        @Override
+        public void close() {
+            Trace.endSection();
+            MetricsRegistry.getInstance().recordSince("startup." + name, startNanos);
+            record(name, startMs, SystemClock.elapsedRealtime() - startMs);
+        }
+    }
+
+    private StartupTrace() {
+    }
+
+    /**
+     * 开始一个阶段，在finally中调用close结束
+     */
+    public static Section begin(String name) {
+        return new Section(name);
+    }
+
+    /**
+     * 记录一个时间点（如首帧、Web层挂载完成）
+     */
+    public static void mark(String name) {
+        record(name, SystemClock.elapsedRealtime(), 0);
+    }
+
+    private static void record(String name, long startMs, long durationMs) {
+        Phase phase = new Phase(name, Thread.currentThread().getName(), startMs - ORIGIN_MS, durationMs);
+        synchronized (phases) {
+            if (phases.size() < MAX_PHASES) {
+                phases.add(phase);
+            }
+        }
+    }
+
+    /**
+     * 按记录顺序返回已完成的阶段
+     */
+    public static List<Phase> getPhases() {
+        synchronized (phases) {
+            return new ArrayList<>(phases);
+        }
+    }
+
+    /**
+     * 进程启动至今的毫秒数
+     */
+    public static long getUptimeMs() {
+        return SystemClock.elapsedRealtime() - ORIGIN_MS;
+    }
+}
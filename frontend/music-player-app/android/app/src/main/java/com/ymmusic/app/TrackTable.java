@@ -0,0 +1,105 @@
+package com.ymmusic.app;
+
+import java.util.Arrays;
+
+/**
+ * 列式存储的歌曲列表
+ * 每个字段一个数组，比逐首保存JSON对象占用少得多，
+ * 解析线程追加、JavaBridge线程按页读取
+ */
+public class TrackTable {
+    public static final byte FLAG_SQ = 1;
+    public static final byte FLAG_HR = 2;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private String[] artists = new String[INITIAL_CAPACITY];
+    private String[] albums = new String[INITIAL_CAPACITY];
+    private String[] covers = new String[INITIAL_CAPACITY];
+    private int[] durations = new int[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    private int size = 0;
+    private boolean complete = false;
+
+    public synchronized void append(long id, String name, String artist, String album,
+                                    String cover, int durationMs, byte flag) {
+        if (size == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            artists = Arrays.copyOf(artists, capacity);
+            albums = Arrays.copyOf(albums, capacity);
+            covers = Arrays.copyOf(covers, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        ids[size] = id;
+        names[size] = name;
+        artists[size] = artist;
+        albums[size] = album;
+        covers[size] = cover;
+        durations[size] = durationMs;
+        flags[size] = flag;
+        size++;
+    }
+
+    /**
+     * 解析结束，释放多余容量
+     */
+    public synchronized void markComplete() {
+        ids = Arrays.copyOf(ids, size);
+        names = Arrays.copyOf(names, size);
+        artists = Arrays.copyOf(artists, size);
+        albums = Arrays.copyOf(albums, size);
+        covers = Arrays.copyOf(covers, size);
+        durations = Arrays.copyOf(durations, size);
+        flags = Arrays.copyOf(flags, size);
+        complete = true;
+    }
+
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 按页读取，回调在持有锁时执行，不能在其中做耗时操作
+     * @return 实际读取的条数
+     */
+    public synchronized int readPage(int offset, int limit, RowVisitor visitor) {
+        int start = Math.max(0, offset);
+        int end = (int) Math.min((long) start + Math.max(0, limit), size);
+        for (int i = start; i < end; i++) {
+            visitor.visit(i, ids[i], names[i], artists[i], albums[i], covers[i], durations[i], flags[i]);
+        }
+        return Math.max(0, end - start);
+    }
+
+    /**
+     * 数组占用的内存估算（字符串在解析时已去重共享，不计入）
+     */
+    public synchronized long estimatedBytes() {
+        // long + int + byte，加上4个引用（按4字节计算）
+        return (long) ids.length * (8 + 4 + 1 + 4 * 4);
+    }
+
+    public synchronized long getId(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return ids[index];
+    }
+
+    /**
+     * 逐行访问接口
+     */
+    public interface RowVisitor {
+        void visit(int index, long id, String name, String artist, String album,
+                   String cover, int durationMs, byte flags);
+    }
+}
@@ -0,0 +1,160 @@
+package com.ymmusic.app;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * 跟随播放状态的WakeLock管理
+ * 只在播放或缓冲时持有，暂停后经过宽限期再释放；
+ * 每次都使用带超时的acquire，并在超时前续期，避免泄漏时CPU一直无法休眠
+ */
+public class WakeLockManager {
+    private static final String TAG = "WakeLockManager";
+
+    // 单次acquire的超时时间，播放期间会在到期前续期
+    static final long ACQUIRE_TIMEOUT_MS = 10 * 60 * 1000L;
+    // 提前续期的时间
+    private static final long RENEW_MARGIN_MS = 60 * 1000L;
+    // 默认暂停后的宽限期
+    public static final long DEFAULT_RELEASE_DELAY_MS = 30 * 1000L;
+
+    private final PowerManager.WakeLock wakeLock;
+    private final Handler handler;
+    private long releaseDelayMs;
+    private boolean active = false;
+
+    // 统计信息
+    private long heldSince = -1;
+    private long totalHeldMs = 0;
+    private int acquireCount = 0;
+    private int renewCount = 0;
+
+    private final Runnable releaseRunnable = () -> {
+        Log.d(TAG, "宽限期结束，释放WakeLock");
+        releaseLock();
+    };
+
+    private final Runnable renewRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (active) {
+                renewCount++;
+                acquireLock();
+            }
+        }
+    };
+
+    /**
+     * @param looper 续期和延迟释放所在线程的Looper，setActive也应在该线程上调用
+     */
+    public WakeLockManager(Context context, String tag, long releaseDelayMs, Looper looper) {
+        handler = new Handler(looper);
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, tag);
+        // 非引用计数，续期时重复acquire只会刷新超时
+        wakeLock.setReferenceCounted(false);
+        this.releaseDelayMs = releaseDelayMs;
+    }
+
+    /**
+     * 设置暂停后的宽限期
+     */
+    public void setReleaseDelay(long releaseDelayMs) {
+        this.releaseDelayMs = Math.max(0, releaseDelayMs);
+    }
+
+    /**
+     * 播放状态变化：播放或缓冲时持有，否则在宽限期后释放
+     */
+    public void setActive(boolean newActive) {
+        if (newActive == active) {
+            return;
+        }
+        active = newActive;
+        if (active) {
+            handler.removeCallbacks(releaseRunnable);
+            acquireLock();
+        } else {
+            handler.removeCallbacks(renewRunnable);
+            handler.removeCallbacks(releaseRunnable);
+            if (wakeLock.isHeld()) {
+                handler.postDelayed(releaseRunnable, releaseDelayMs);
+            }
+        }
+    }
+
+    /**
+     * 立即释放（服务销毁时调用）
+     */
+    public void release() {
+        active = false;
+        handler.removeCallbacks(releaseRunnable);
+        handler.removeCallbacks(renewRunnable);
+        releaseLock();
+    }
+
+    private void acquireLock() {
+        try {
+            accumulateHeldTime();
+            if (!wakeLock.isHeld()) {
+                acquireCount++;
+            }
+            heldSince = SystemClock.elapsedRealtime();
+            wakeLock.acquire(ACQUIRE_TIMEOUT_MS);
+            handler.removeCallbacks(renewRunnable);
+            handler.postDelayed(renewRunnable, ACQUIRE_TIMEOUT_MS - RENEW_MARGIN_MS);
+        } catch (Exception e) {
+            Log.e(TAG, "获取WakeLock出错", e);
+        }
+    }
+
+    private void releaseLock() {
+        try {
+            accumulateHeldTime();
+            heldSince = -1;
+            if (wakeLock.isHeld()) {
+                wakeLock.release();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "释放WakeLock出错", e);
+        }
+    }
+
+    /**
+     * 把当前这段持有时间计入总时长（超时自动释放的部分按超时时间截断）
+     */
+    private void accumulateHeldTime() {
+        if (heldSince >= 0) {
+            long now = SystemClock.elapsedRealtime();
+            totalHeldMs += Math.min(now - heldSince, ACQUIRE_TIMEOUT_MS);
+            heldSince = now;
+        }
+    }
+
+    public boolean isHeld() {
+        return wakeLock.isHeld();
+    }
+
+    /**
+     * 累计持有时长（毫秒），包含当前正在持有的部分
+     */
+    public long getTotalHeldMs() {
+        long total = totalHeldMs;
+        if (heldSince >= 0 && wakeLock.isHeld()) {
+            total += SystemClock.elapsedRealtime() - heldSince;
+        }
+        return total;
+    }
+
+    public int getAcquireCount() {
+        return acquireCount;
+    }
+
+    public int getRenewCount() {
+        return renewCount;
+    }
+}
@@ -0,0 +1,66 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * ApiResponseCache的有效期规则与缓存文件格式测试
+ */
+public class ApiResponseCacheTest {
+
+    @Test
+    public void ttlFor_matchesFsCacheRules() {
+        assertEquals(ApiResponseCache.TTL_PLAYLIST, ApiResponseCache.ttlFor("/playlist/track/all"));
+        assertEquals(ApiResponseCache.TTL_SONG, ApiResponseCache.ttlFor("/song/detail"));
+        assertEquals(ApiResponseCache.TTL_SEARCH, ApiResponseCache.ttlFor("/cloudsearch/"));
+        assertEquals(ApiResponseCache.TTL_MV, ApiResponseCache.ttlFor("/mv/all"));
+    }
+
+    @Test
+    public void ttlFor_expiringOrUnknownPaths_areNotCached() {
+        assertEquals(0, ApiResponseCache.ttlFor("/song/url"));
+        assertEquals(0, ApiResponseCache.ttlFor("/mv/url"));
+        assertEquals(0, ApiResponseCache.ttlFor("/user/playlist"));
+        assertEquals(0, ApiResponseCache.ttlFor(null));
+    }
+
+    @Test
+    public void writeEntry_roundTripsMetaAndGzippedBody() throws Exception {
+        String json = "{\"code\":200,\"songs\":[]}";
+        File file = File.createTempFile("api", ".cache");
+        try {
+            ApiResponseCache.Meta meta = new ApiResponseCache.Meta(
+                    1000L, "application/json; charset=utf-8", "\"abc\"", "");
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                ApiResponseCache.writeEntry(out, meta,
+                        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+            }
+
+            ApiResponseCache.updateStoredAt(file, 2000L);
+            ApiResponseCache.Meta read = ApiResponseCache.readMeta(file);
+            assertEquals(2000L, read.storedAt);
+            assertEquals("\"abc\"", read.etag);
+            assertEquals("application/json; charset=utf-8", read.contentType);
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream in = ApiResponseCache.openBody(file)) {
+                byte[] buffer = new byte[64];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, n);
+                }
+            }
+            assertEquals(json, body.toString("UTF-8"));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * AudioCache的Range解析，以及边下边播、缓存命中、预取丢弃、切歌降级续传测试（使用本地HTTP服务器）
+ */
+public class AudioCacheTest {
+    private static final long[] WHOLE = {0, -1, 0};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockServer server;
+    private NetworkScheduler scheduler;
+    private AudioCache cache;
+    private final BlockingQueue<String> finished = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockServer();
+        scheduler = new NetworkScheduler(NetworkScheduler.DEFAULT_LIMITS, 12, 3,
+                new HostFailureCache(System::currentTimeMillis));
+        cache = new AudioCache(folder.getRoot(), scheduler,
+                (key, contentLength, error) -> finished.add(error == null ? key : key + " 失败"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    private static byte[] content(int size, int seed) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] data = new byte[length];
+        int done = 0;
+        while (done < length) {
+            int read = in.read(data, done, length - done);
+            assertTrue("数据提前结束", read > 0);
+            done += read;
+        }
+        return data;
+    }
+
+    /**
+     * 等待这些任务都下载完成（完成顺序不限）
+     */
+    private void awaitFinished(String... keys) throws InterruptedException {
+        Set<String> done = new HashSet<>();
+        for (int i = 0; i < keys.length; i++) {
+            done.add(finished.poll(10, TimeUnit.SECONDS));
+        }
+        assertEquals(new HashSet<>(Arrays.asList(keys)), done);
+    }
+
+    private File partialFile(String key) {
+        return new File(new File(folder.getRoot(), "audio_partial"), DiskLruCache.hashKey(key));
+    }
+
+    @Test
+    public void parseRange_withoutHeader_returnsWholeFile() {
+        assertArrayEquals(new long[]{0, -1, 0}, AudioCache.parseRange(Collections.emptyMap()));
+    }
+
+    @Test
+    public void parseRange_openEnded_isCaseInsensitive() {
+        assertArrayEquals(new long[]{1024, -1, 1},
+                AudioCache.parseRange(Collections.singletonMap("range", "bytes=1024-")));
+    }
+
+    @Test
+    public void parseRange_closedRange() {
+        assertArrayEquals(new long[]{0, 1, 1},
+                AudioCache.parseRange(Collections.singletonMap("Range", "bytes=0-1")));
+    }
+
+    @Test
+    public void parseRange_suffixOrMultiRange_isUnsupported() {
+        assertNull(AudioCache.parseRange(Collections.singletonMap("Range", "bytes=-500")));
+        assertNull(AudioCache.parseRange(Collections.singletonMap("Range", "bytes=0-1,5-9")));
+    }
+
+    @Test
+    public void openRange_fillsWhileServingThenHitsDiskCache() throws Exception {
+        byte[] data = content(300 * 1024, 1);
+        server.put("/a.mp3", data);
+
+        AudioCache.RangeStream stream = cache.openRange("/a.mp3", server.url("/a.mp3"), WHOLE);
+        assertEquals(data.length, stream.total);
+        try (InputStream in = stream.in) {
+            assertArrayEquals(data, readAll(in));
+        }
+        awaitFinished("/a.mp3");
+        assertEquals(1, cache.getFillCount());
+
+        AudioCache.RangeStream cached = cache.openRange("/a.mp3", server.url("/a.mp3"), new long[]{100, 199, 1});
+        assertEquals(100, cached.start);
+        assertEquals(199, cached.end);
+        try (InputStream in = cached.in) {
+            assertArrayEquals(Arrays.copyOfRange(data, 100, 200), readAll(in));
+        }
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, server.requests("/a.mp3").size());
+        assertFalse(partialFile("/a.mp3").exists());
+    }
+
+    @Test
+    public void prefetch_resumesFromPrefetchedOffset() throws Exception {
+        byte[] data = content((int) AudioCache.PREFETCH_BYTES + 200 * 1024, 2);
+        server.put("/next.mp3", data);
+
+        assertTrue(cache.prefetch("/next.mp3", server.url("/next.mp3")));
+        assertFalse(cache.prefetch("/next.mp3", server.url("/next.mp3")));
+        awaitPaused(partialFile("/next.mp3"));
+
+        AudioCache.RangeStream stream = cache.openRange("/next.mp3", server.url("/next.mp3"), WHOLE);
+        try (InputStream in = stream.in) {
+            assertArrayEquals(data, readAll(in));
+        }
+        awaitFinished("/next.mp3");
+        List<String> requests = server.requests("/next.mp3");
+        assertEquals(2, requests.size());
+        assertNull(requests.get(0));
+        assertTrue(requests.get(1).startsWith("bytes="));
+        assertNotEquals("bytes=0-", requests.get(1));
+    }
+
+    @Test
+    public void prefetch_newPrefetchDiscardsPrevious() throws Exception {
+        server.put("/one.mp3", content((int) AudioCache.PREFETCH_BYTES + 100 * 1024, 3));
+        server.put("/two.mp3", content((int) AudioCache.PREFETCH_BYTES + 100 * 1024, 4));
+
+        cache.prefetch("/one.mp3", server.url("/one.mp3"));
+        awaitPaused(partialFile("/one.mp3"));
+        cache.prefetch("/two.mp3", server.url("/two.mp3"));
+
+        assertFalse(partialFile("/one.mp3").exists());
+        assertEquals(2, cache.getPrefetchCount());
+        // 被丢弃的预取不再续传，重新播放时从头请求
+        AudioCache.RangeStream stream = cache.openRange("/one.mp3", server.url("/one.mp3"), WHOLE);
+        stream.in.close();
+        assertNull(server.requests("/one.mp3").get(1));
+    }
+
+    @Test
+    public void switchingTrack_demotesPreviousFillAndResumesAtPrefetchPriority() throws Exception {
+        byte[] data = content(512 * 1024, 5);
+        server.put("/old.mp3", data);
+        server.put("/new.mp3", content(64 * 1024, 6));
+        CountDownLatch gate = server.gate("/old.mp3", 64 * 1024);
+
+        AudioCache.RangeStream stream = cache.openRange("/old.mp3", server.url("/old.mp3"), WHOLE);
+        byte[] head = readFully(stream.in, 1000);
+        assertEquals(0, scheduler.getRequestCount(NetworkScheduler.PRIORITY_PREFETCH));
+
+        // 切歌：新曲目成为当前播放，旧曲目读到下一块后归还播放名额并以预取级别续传
+        cache.openRange("/new.mp3", server.url("/new.mp3"), WHOLE).in.close();
+        gate.countDown();
+        byte[] rest = readAll(stream.in);
+        stream.in.close();
+        awaitFinished("/new.mp3", "/old.mp3");
+
+        ByteArrayOutputStream whole = new ByteArrayOutputStream();
+        whole.write(head);
+        whole.write(rest);
+        assertArrayEquals(data, whole.toByteArray());
+        List<String> requests = server.requests("/old.mp3");
+        assertEquals(2, requests.size());
+        assertTrue(requests.get(1).startsWith("bytes="));
+        assertEquals(1, scheduler.getRequestCount(NetworkScheduler.PRIORITY_PREFETCH));
+    }
+
+    @Test
+    public void resumeWithoutRangeSupport_rewritesInPlaceForOpenReaders() throws Exception {
+        byte[] data = content(512 * 1024, 7);
+        server.put("/old.mp3", data);
+        server.put("/new.mp3", content(64 * 1024, 8));
+        server.rangeSupported = false;
+        CountDownLatch gate = server.gate("/old.mp3", 64 * 1024);
+
+        AudioCache.RangeStream stream = cache.openRange("/old.mp3", server.url("/old.mp3"), WHOLE);
+        byte[] head = readFully(stream.in, 1000);
+
+        // 续传请求拿到200，任务从0开始重写同一个文件，已经在读的流继续读到结尾
+        cache.openRange("/new.mp3", server.url("/new.mp3"), WHOLE).in.close();
+        gate.countDown();
+        byte[] rest = readAll(stream.in);
+        stream.in.close();
+        awaitFinished("/new.mp3", "/old.mp3");
+
+        assertEquals(data.length - head.length, rest.length);
+        ByteArrayOutputStream whole = new ByteArrayOutputStream();
+        whole.write(head);
+        whole.write(rest);
+        assertArrayEquals(data, whole.toByteArray());
+        assertEquals(2, server.requests("/old.mp3").size());
+    }
+
+    /**
+     * 等待预取写到上限并暂停
+     */
+    private void awaitPaused(File partial) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (partial.length() < AudioCache.PREFETCH_BYTES
+                || scheduler.getActive(NetworkScheduler.PRIORITY_PREFETCH) > 0) {
+            assertTrue("等待预取超时", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * 按路径返回固定内容的HTTP服务器，记录每个请求的Range头，可以让某个路径写到一半时暂停
+     */
+    private static final class MockServer implements Closeable {
+        private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-");
+
+        final ServerSocket socket;
+        final Map<String, byte[]> contents = new ConcurrentHashMap<>();
+        final List<String[]> log = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean rangeSupported = true;
+        volatile String gatePath;
+        volatile long gateBytes;
+        volatile CountDownLatch gate;
+
+        MockServer() throws IOException {
+            socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread thread = new Thread(this::acceptLoop, "MockServer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        String url(String path) {
+            return "http://127.0.0.1:" + socket.getLocalPort() + path + "?sign=1";
+        }
+
+        void put(String path, byte[] data) {
+            contents.put(path, data);
+        }
+
+        /**
+         * 该路径的第一个请求写出bytes字节后暂停，直到返回的闸门打开
+         */
+        CountDownLatch gate(String path, long bytes) {
+            gateBytes = bytes;
+            gate = new CountDownLatch(1);
+            gatePath = path;
+            return gate;
+        }
+
+        /**
+         * 该路径每个请求的Range头，没有Range时为null
+         */
+        List<String> requests(String path) {
+            List<String> result = new ArrayList<>();
+            synchronized (log) {
+                for (String[] entry : log) {
+                    if (entry[0].equals(path)) {
+                        result.add(entry[1]);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private void acceptLoop() {
+            while (!socket.isClosed()) {
+                try {
+                    final Socket client = socket.accept();
+                    Thread thread = new Thread(() -> serve(client), "MockServer-client");
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket client) {
+            try (Socket connection = client) {
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(connection.getInputStream(), StandardCharsets.ISO_8859_1));
+                OutputStream out = connection.getOutputStream();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    String path = line.split(" ")[1];
+                    int query = path.indexOf('?');
+                    if (query >= 0) {
+                        path = path.substring(0, query);
+                    }
+                    String range = null;
+                    while ((line = in.readLine()) != null && !line.isEmpty()) {
+                        if (line.toLowerCase().startsWith("range:")) {
+                            range = line.substring(6).trim();
+                        }
+                    }
+                    boolean first = requests(path).isEmpty();
+                    log.add(new String[]{path, range});
+                    byte[] data = contents.get(path);
+                    if (data == null) {
+                        out.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n"
+                                .getBytes(StandardCharsets.ISO_8859_1));
+                        out.flush();
+                        continue;
+                    }
+                    int start = 0;
+                    Matcher matcher = range == null ? null : RANGE.matcher(range);
+                    if (rangeSupported && matcher != null && matcher.matches()) {
+                        start = Integer.parseInt(matcher.group(1));
+                        out.write(("HTTP/1.1 206 Partial Content\r\nContent-Length: " + (data.length - start)
+                                + "\r\nContent-Range: bytes " + start + "-" + (data.length - 1) + "/" + data.length
+                                + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                    } else {
+                        out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + data.length + "\r\n\r\n")
+                                .getBytes(StandardCharsets.ISO_8859_1));
+                    }
+                    CountDownLatch current = gate;
+                    if (first && current != null && path.equals(gatePath)) {
+                        int paused = (int) Math.min(gateBytes, data.length);
+                        out.write(data, start, paused - start);
+                        out.flush();
+                        current.await(5, TimeUnit.SECONDS);
+                        start = paused;
+                    }
+                    out.write(data, start, data.length - start);
+                    out.flush();
+                }
+            } catch (Exception e) {
+                // 客户端断开
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * BrowseTree的节点ID与分页测试
+ */
+public class BrowseTreeTest {
+
+    @Test
+    public void trackId_roundTripsParentAndSong() {
+        String mediaId = BrowseTree.trackId(BrowseTree.playlistId("3778678"), "186016");
+
+        assertEquals("playlist:3778678", BrowseTree.parentOf(mediaId));
+        assertEquals("186016", BrowseTree.songOf(mediaId));
+        assertEquals("3778678", BrowseTree.playlistOf(BrowseTree.parentOf(mediaId)));
+    }
+
+    @Test
+    public void playlistOf_rejectsOtherNodes() {
+        assertNull(BrowseTree.playlistOf(BrowseTree.FAVORITES));
+        assertNull(BrowseTree.playlistOf("playlist:"));
+        assertNull(BrowseTree.playlistOf("playlist:1|2"));
+        assertNull(BrowseTree.playlistOf(null));
+        assertNull(BrowseTree.parentOf(BrowseTree.ROOT));
+        assertNull(BrowseTree.songOf("recent|"));
+    }
+
+    @Test
+    public void pageWindow_defaultsToFirstPageWhenNotPaged() {
+        assertArrayEquals(new int[]{0, BrowseTree.DEFAULT_PAGE_SIZE}, BrowseTree.pageWindow(-1, 0));
+        assertArrayEquals(new int[]{0, BrowseTree.DEFAULT_PAGE_SIZE}, BrowseTree.pageWindow(2, 0));
+    }
+
+    @Test
+    public void pageWindow_usesClientPageSizeForOffsetAndCapsLimit() {
+        assertArrayEquals(new int[]{40, 20}, BrowseTree.pageWindow(2, 20));
+        assertArrayEquals(new int[]{1000, BrowseTree.MAX_PAGE_SIZE}, BrowseTree.pageWindow(1, 1000));
+        assertEquals(Integer.MAX_VALUE, BrowseTree.pageWindow(Integer.MAX_VALUE, 100)[0]);
+    }
+}
@@ -0,0 +1,26 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * CoverArtProvider的封面地址校验测试
+ */
+public class CoverArtProviderTest {
+
+    @Test
+    public void isAllowedCover_acceptsMusicImageHosts() {
+        assertTrue(CoverArtProvider.isAllowedCover("https://p1.music.126.net/abc/109951.jpg"));
+        assertTrue(CoverArtProvider.isAllowedCover("http://img4.kuwo.cn/star/albumcover/500/1.jpg"));
+    }
+
+    @Test
+    public void isAllowedCover_rejectsOtherUrls() {
+        assertFalse(CoverArtProvider.isAllowedCover(null));
+        assertFalse(CoverArtProvider.isAllowedCover("file:///data/data/com.ymmusic.app/files/a.jpg"));
+        assertFalse(CoverArtProvider.isAllowedCover("https://evilmusic.126.net.example.com/a.jpg"));
+        assertFalse(CoverArtProvider.isAllowedCover("https://notkuwo.cn/a.jpg"));
+        assertFalse(CoverArtProvider.isAllowedCover("http://192.168.1.1/a.jpg"));
+    }
+}
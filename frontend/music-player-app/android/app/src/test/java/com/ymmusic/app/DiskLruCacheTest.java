@@ -0,0 +1,131 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * DiskLruCache的按字节淘汰、访问顺序与临时文件清理测试
+ */
+public class DiskLruCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static int tempFiles(File directory) {
+        int count = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".tmp")) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void put_evictsOldestEntriesOverByteLimit() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), 100);
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+        cache.put("c", new byte[40]);
+
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(80, cache.size());
+        assertEquals(2, cache.count());
+        assertFalse(new File(folder.getRoot(), DiskLruCache.hashKey("a")).exists());
+    }
+
+    @Test
+    public void get_movesEntryToMostRecentlyUsed() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), 100);
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+        assertNotNull(cache.get("a"));
+        cache.put("c", new byte[40]);
+
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+    }
+
+    @Test
+    public void put_replacingKey_countsOnlyNewSize() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), 100);
+        cache.put("a", new byte[40]);
+        cache.put("a", new byte[10]);
+
+        assertEquals(10, cache.size());
+        assertEquals(10, cache.get("a").length());
+    }
+
+    @Test
+    public void put_failedStream_deletesTempFile() {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), 100);
+        InputStream broken = new InputStream() {
+            private int remaining = 20;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining-- > 0) {
+                    return 1;
+                }
+                throw new IOException("连接断开");
+            }
+        };
+
+        try {
+            cache.put("a", broken);
+            fail("应当抛出IOException");
+        } catch (IOException expected) {
+            // 预期
+        }
+        assertEquals(0, tempFiles(folder.getRoot()));
+        assertFalse(cache.contains("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void put_failedCommit_deletesTempFile() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), 100);
+        // 目标位置被非空目录占用，重命名失败
+        File blocker = new File(folder.getRoot(), DiskLruCache.hashKey("a"));
+        assertTrue(blocker.mkdir());
+        assertTrue(new File(blocker, "child").createNewFile());
+
+        try {
+            cache.put("a", new byte[10]);
+            fail("应当抛出IOException");
+        } catch (IOException expected) {
+            // 预期
+        }
+        assertEquals(0, tempFiles(folder.getRoot()));
+        assertFalse(cache.contains("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void reopen_restoresEntriesAndDropsLeftoverTempFiles() throws IOException {
+        DiskLruCache cache = new DiskLruCache(folder.getRoot(), 100);
+        cache.put("a", new byte[30]);
+        try (FileOutputStream out = new FileOutputStream(cache.newTempFile())) {
+            out.write(new byte[50]);
+        }
+
+        DiskLruCache reopened = new DiskLruCache(folder.getRoot(), 100);
+        assertEquals(0, tempFiles(folder.getRoot()));
+        assertEquals(30, reopened.size());
+        assertNotNull(reopened.get("a"));
+    }
+}
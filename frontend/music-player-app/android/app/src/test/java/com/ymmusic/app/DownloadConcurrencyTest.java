@@ -0,0 +1,65 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * DownloadConcurrency按吞吐量调整并发数的测试
+ */
+public class DownloadConcurrencyTest {
+
+    /**
+     * 以指定吞吐量（字节/秒）跑完一个统计窗口
+     */
+    private static long runWindow(DownloadConcurrency concurrency, long now, long bytesPerSecond) {
+        long end = now + DownloadConcurrency.WINDOW_MS;
+        concurrency.record(bytesPerSecond * DownloadConcurrency.WINDOW_MS / 1000, end);
+        return end;
+    }
+
+    @Test
+    public void record_increasesWhileThroughputImproves() {
+        DownloadConcurrency concurrency = new DownloadConcurrency(1, 6, 2);
+        long now = 0;
+        concurrency.record(0, now);
+
+        now = runWindow(concurrency, now, 100_000);
+        assertEquals(3, concurrency.getLimit());
+        now = runWindow(concurrency, now, 150_000);
+        assertEquals(4, concurrency.getLimit());
+        // 变化不大时保持
+        now = runWindow(concurrency, now, 155_000);
+        assertEquals(4, concurrency.getLimit());
+        // 明显下降时反向
+        runWindow(concurrency, now, 100_000);
+        assertEquals(3, concurrency.getLimit());
+        assertEquals(100_000, concurrency.getThroughput(), 1);
+    }
+
+    @Test
+    public void record_staysWithinBounds() {
+        DownloadConcurrency concurrency = new DownloadConcurrency(1, 3, 3);
+        long now = 0;
+        concurrency.record(0, now);
+        long throughput = 100_000;
+        for (int i = 0; i < 5; i++) {
+            throughput *= 2;
+            now = runWindow(concurrency, now, throughput);
+        }
+        assertEquals(3, concurrency.getLimit());
+    }
+
+    @Test
+    public void onError_halvesLimit() {
+        DownloadConcurrency concurrency = new DownloadConcurrency(1, 6, 5);
+
+        concurrency.onError();
+        assertEquals(2, concurrency.getLimit());
+        concurrency.onError();
+        assertEquals(1, concurrency.getLimit());
+        concurrency.onError();
+        assertEquals(1, concurrency.getLimit());
+        assertEquals(0, concurrency.getThroughput(), 0);
+    }
+}
@@ -0,0 +1,86 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * DownloadIndex的配额淘汰与持久化测试
+ */
+public class DownloadIndexTest {
+
+    private static DownloadIndex.Entry entry(String songId, long size) {
+        return new DownloadIndex.Entry(songId, songId + ".mp3", size, "md5", "/audio/" + songId + ".mp3",
+                "歌曲" + songId, "歌手", null, 1);
+    }
+
+    @Test
+    public void trimToQuota_evictsLeastRecentlyPlayed() {
+        DownloadIndex index = new DownloadIndex(300);
+        index.put(entry("a", 100));
+        index.put(entry("b", 100));
+        index.put(entry("c", 100));
+        index.touch("a");
+        index.put(entry("d", 100));
+
+        List<DownloadIndex.Entry> evicted = index.trimToQuota("d");
+
+        assertEquals(1, evicted.size());
+        assertEquals("b", evicted.get(0).songId);
+        assertEquals(300, index.getTotalBytes());
+        assertNull(index.peek("b"));
+        assertEquals("d", index.getEntries().get(0).songId);
+    }
+
+    @Test
+    public void trimToQuota_keepsNewDownloadEvenIfLarger() {
+        DownloadIndex index = new DownloadIndex(100);
+        index.put(entry("a", 50));
+        index.put(entry("big", 500));
+
+        List<DownloadIndex.Entry> evicted = index.trimToQuota("big");
+
+        assertEquals(1, evicted.size());
+        assertNotNull(index.peek("big"));
+        assertEquals(500, index.getTotalBytes());
+    }
+
+    @Test
+    public void put_replacesEntryAndFindsByUrlKey() {
+        DownloadIndex index = new DownloadIndex(1000);
+        index.put(entry("a", 100));
+        DownloadIndex.Entry previous = index.put(entry("a", 120));
+
+        assertEquals(100, previous.size);
+        assertEquals(120, index.getTotalBytes());
+        assertEquals("a", index.findByUrlKey("/audio/a.mp3").songId);
+        assertNull(index.findByUrlKey("/audio/x.mp3"));
+        assertNull(index.findByUrlKey(""));
+    }
+
+    @Test
+    public void writeTo_preservesOrderAndQuota() throws IOException {
+        DownloadIndex index = new DownloadIndex(500);
+        index.put(entry("a", 100));
+        index.put(entry("b", 200));
+        index.touch("a");
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(buffer));
+
+        DownloadIndex restored = new DownloadIndex(0);
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+
+        assertEquals(500, restored.getQuotaBytes());
+        assertEquals(300, restored.getTotalBytes());
+        assertEquals("a", restored.getEntries().get(0).songId);
+        assertEquals("歌曲b", restored.peek("b").title);
+        assertEquals("", restored.peek("b").cover);
+    }
+}
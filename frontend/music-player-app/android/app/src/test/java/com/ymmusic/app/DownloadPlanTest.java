@@ -0,0 +1,64 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * DownloadPlan的分块计算与续传状态测试
+ */
+public class DownloadPlanTest {
+
+    @Test
+    public void chunks_coverWholeFile() {
+        DownloadPlan plan = new DownloadPlan(2500, 1000, "\"etag\"");
+
+        assertEquals(3, plan.getChunkCount());
+        assertEquals(0, plan.chunkStart(0));
+        assertEquals(999, plan.chunkEnd(0));
+        assertEquals(2000, plan.chunkStart(2));
+        assertEquals(2499, plan.chunkEnd(2));
+        assertEquals(500, plan.chunkLength(2));
+    }
+
+    @Test
+    public void markDone_tracksPendingChunksAndBytes() {
+        DownloadPlan plan = new DownloadPlan(2500, 1000, null);
+        plan.markDone(2);
+        plan.markDone(0);
+
+        assertArrayEquals(new int[]{1}, plan.pendingChunks());
+        assertEquals(1500, plan.completedBytes());
+        assertFalse(plan.isComplete());
+
+        plan.markDone(1);
+        assertTrue(plan.isComplete());
+        assertEquals(0, plan.pendingChunks().length);
+    }
+
+    @Test
+    public void writeTo_roundTripsForResume() throws IOException {
+        DownloadPlan plan = new DownloadPlan(200 * 1000 + 1, 1000, "\"abc\"");
+        plan.markDone(0);
+        plan.markDone(130);
+        plan.markDone(200);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        plan.writeTo(new DataOutputStream(buffer));
+
+        DownloadPlan restored = DownloadPlan.readFrom(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+
+        assertTrue(restored.matches(200 * 1000 + 1, "\"abc\""));
+        assertFalse(restored.matches(200 * 1000 + 1, "\"other\""));
+        assertFalse(restored.matches(200 * 1000, "\"abc\""));
+        assertTrue(restored.isDone(130));
+        assertTrue(restored.isDone(200));
+        assertFalse(restored.isDone(1));
+        assertEquals(1000 + 1000 + 1, restored.completedBytes());
+    }
+}
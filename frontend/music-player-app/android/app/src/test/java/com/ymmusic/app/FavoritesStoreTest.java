@@ -0,0 +1,122 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * FavoritesStore的索引、日志重放与压缩测试
+ */
+public class FavoritesStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void putRemove_keepsOrderAndIndex() {
+        FavoritesStore store = new FavoritesStore(folder.getRoot());
+
+        assertTrue(store.put("SONGS", "1", "", "{\"id\":1}"));
+        assertTrue(store.put("SONGS", "kw_2", "2", "{\"id\":\"kw_2\"}"));
+        assertFalse(store.put("SONGS", "1", "", "{\"id\":1,\"url\":\"x\"}"));
+
+        assertEquals(2, store.count("SONGS"));
+        assertEquals("[{\"id\":1,\"url\":\"x\"},{\"id\":\"kw_2\"}]", store.page("SONGS", 0, 10));
+        assertEquals("[{\"id\":\"kw_2\"}]", store.page("SONGS", 1, 10));
+        assertEquals(0, store.count("PLAYLISTS"));
+
+        assertTrue(store.remove("SONGS", "1"));
+        assertFalse(store.remove("SONGS", "1"));
+        assertFalse(store.contains("SONGS", "1"));
+        assertEquals(1, store.count("SONGS"));
+    }
+
+    @Test
+    public void isFavorited_matchesKuwoIdVariants() {
+        FavoritesStore store = new FavoritesStore(folder.getRoot());
+        store.put("SONGS", "kw_100", "", "{}");
+        store.put("SONGS", "555", "200", "{}");
+        store.put("PLAYLISTS", "kw_300", "", "{}");
+
+        assertTrue(store.isFavorited("SONGS", "100"));
+        assertTrue(store.isFavorited("SONGS", "kw-555"));
+        assertTrue(store.isFavorited("SONGS", "kw_200"));
+        assertFalse(store.isFavorited("SONGS", "200"));
+        assertFalse(store.isFavorited("PLAYLISTS", "300"));
+    }
+
+    @Test
+    public void syncWrites_persistsQueuedPuts() {
+        FavoritesStore store = new FavoritesStore(folder.getRoot());
+        for (int i = 0; i < 10; i++) {
+            store.put("SONGS", String.valueOf(i), "", "{\"id\":" + i + "}");
+        }
+
+        assertTrue(store.syncWrites(5000));
+        FavoritesStore reloaded = new FavoritesStore(folder.getRoot());
+        assertEquals(10, reloaded.count("SONGS"));
+    }
+
+    @Test
+    public void failedWrite_isReportedAndRewrittenOnNextChange() {
+        File log = new File(folder.getRoot(), "favorites_songs.log");
+        FavoritesStore store = new FavoritesStore(folder.getRoot());
+        final List<String> errors = new ArrayList<>();
+        store.setErrorListener((message, e) -> errors.add(message));
+        store.count("SONGS");
+        // 日志路径被目录占用，追加写入失败
+        assertTrue(log.mkdir());
+        store.put("SONGS", "1", "", "{\"id\":1}");
+
+        assertFalse(store.syncWrites(5000));
+        assertFalse(errors.isEmpty());
+
+        assertTrue(log.delete());
+        store.put("SONGS", "2", "", "{\"id\":2}");
+        assertTrue(store.syncWrites(5000));
+        assertEquals(2, new FavoritesStore(folder.getRoot()).count("SONGS"));
+    }
+
+    @Test
+    public void reload_replaysLogAndDropsTornTail() throws Exception {
+        FavoritesStore store = new FavoritesStore(folder.getRoot());
+        store.put("MVS", "a", "", "{\"id\":\"a\"}");
+        store.put("MVS", "b", "", "{\"id\":\"b\"}");
+        store.remove("MVS", "a");
+        store.awaitWrites(5000);
+
+        // 模拟写入中断留下的半条记录
+        try (FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), "favorites_mvs.log"), true)) {
+            out.write(new byte[] { 1, 0 });
+        }
+
+        FavoritesStore reloaded = new FavoritesStore(folder.getRoot());
+        assertEquals("[{\"id\":\"b\"}]", reloaded.page("MVS", 0, 10));
+        assertEquals(1, reloaded.getCompactionCount());
+        reloaded.put("MVS", "c", "", "{\"id\":\"c\"}");
+        reloaded.awaitWrites(5000);
+
+        assertEquals(2, new FavoritesStore(folder.getRoot()).count("MVS"));
+    }
+
+    @Test
+    public void append_compactsWhenLogMostlyStale() throws Exception {
+        FavoritesStore store = new FavoritesStore(folder.getRoot());
+        for (int i = 0; i < FavoritesStore.MIN_COMPACT_RECORDS; i++) {
+            store.put("ALBUMS", "x", "", "{\"n\":" + i + "}");
+        }
+        store.awaitWrites(5000);
+
+        assertEquals(1, store.getCompactionCount());
+        File log = new File(folder.getRoot(), "favorites_albums.log");
+        assertTrue(log.length() < 64);
+        assertEquals("[{\"n\":63}]", new FavoritesStore(folder.getRoot()).page("ALBUMS", 0, 10));
+    }
+}
@@ -0,0 +1,51 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.net.UnknownHostException;
+
+/**
+ * HostFailureCache的失败快速返回与过期测试
+ */
+public class HostFailureCacheTest {
+    private long now = 0;
+
+    private HostFailureCache newCache() {
+        return new HostFailureCache(() -> now);
+    }
+
+    @Test
+    public void check_passesUnknownHosts() throws Exception {
+        HostFailureCache cache = newCache();
+        cache.check("api.example.com");
+        assertEquals(0, cache.getFailFastCount());
+    }
+
+    @Test
+    public void check_failsFastUntilExpiry() throws Exception {
+        HostFailureCache cache = newCache();
+        cache.recordFailure("api.example.com");
+        try {
+            cache.check("API.example.com");
+            fail();
+        } catch (UnknownHostException expected) {
+        }
+        assertEquals(1, cache.getFailureCount());
+        assertEquals(1, cache.getFailFastCount());
+
+        now += HostFailureCache.FAILURE_TTL_MS;
+        cache.check("api.example.com");
+        assertEquals(1, cache.getFailFastCount());
+    }
+
+    @Test
+    public void clear_dropsFailures() throws Exception {
+        HostFailureCache cache = newCache();
+        cache.recordFailure("api.example.com");
+        cache.clear();
+        cache.check("api.example.com");
+        assertEquals(0, cache.getFailFastCount());
+    }
+}
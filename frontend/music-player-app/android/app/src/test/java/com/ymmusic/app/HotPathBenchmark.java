@@ -0,0 +1,142 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.AfterClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 播放服务与桥接热点路径的基准测试
+ * 默认不随单元测试运行，需要时执行：./gradlew :app:testDebugUnitTest -Pbenchmark --tests '*HotPathBenchmark'
+ * 结果写入app/build/reports/benchmarks/hot-paths.md，与app/benchmark-baseline.md对比
+ */
+public class HotPathBenchmark {
+
+    private static final MicroBenchmark benchmark = new MicroBenchmark();
+
+    @ClassRule
+    public static final TemporaryFolder folder = new TemporaryFolder();
+
+    @AfterClass
+    public static void writeReport() throws Exception {
+        benchmark.writeReport(new File("build/reports/benchmarks/hot-paths.md"), "热点路径基准测试");
+    }
+
+    /**
+     * 通知状态比较：每次状态同步都会构建新状态并与上次渲染的比较，相同则不重建通知。
+     * 封面位图需要原生库，这里为null，封面本身按引用比较
+     */
+    @Test
+    public void notificationStateDiff() {
+        final NotificationRenderer.NotificationState rendered =
+                new NotificationRenderer.NotificationState("晴天", "周杰伦", null, true, "故事的小黄花");
+        final String[] lyrics = new String[64];
+        for (int i = 0; i < lyrics.length; i++) {
+            lyrics[i] = "歌词第" + i + "行";
+        }
+        benchmark.run("notification.stateDiff.unchanged", 2_000_000, i ->
+                new NotificationRenderer.NotificationState("晴天", "周杰伦", null, true, "故事的小黄花")
+                        .equals(rendered));
+        benchmark.run("notification.stateDiff.lyricChanged", 2_000_000, i ->
+                new NotificationRenderer.NotificationState("晴天", "周杰伦", null, true, lyrics[i & 63])
+                        .equals(rendered));
+    }
+
+    /**
+     * syncState桥接方法的JSON解析与合并，两个会话交替出现使每次都被应用而不是当作过期版本丢弃
+     */
+    @Test
+    public void bridgeStateParsing() {
+        final PlayerStateSync sync = new PlayerStateSync();
+        final String[] full = {
+                fullState("a"), fullState("b")
+        };
+        final String[] position = {
+                "{\"version\":2,\"session\":\"a\",\"position\":61500,\"timestamp\":1700000000000,\"speed\":1}",
+                "{\"version\":2,\"session\":\"b\",\"position\":61500,\"timestamp\":1700000000000,\"speed\":1}"
+        };
+        benchmark.run("bridge.syncState.full", 200_000, i -> merge(sync, full[i & 1]));
+        benchmark.run("bridge.syncState.position", 200_000, i -> merge(sync, position[i & 1]));
+        assertTrue(sync.getAppliedCount() > 0);
+        assertEquals(0, sync.getStaleCount());
+    }
+
+    private static String fullState(String session) {
+        return "{\"version\":1,\"session\":\"" + session + "\",\"songId\":\"1974443814\",\"title\":\"晴天\","
+                + "\"artist\":\"周杰伦\",\"cover\":\"https://p1.music.126.net/cover.jpg\",\"playing\":true,"
+                + "\"position\":61500,\"speed\":1,\"timestamp\":1700000000000,\"duration\":269000,\"index\":3,"
+                + "\"mode\":\"sequence\"}";
+    }
+
+    private static PlayerStateSync.PlayerState merge(PlayerStateSync sync, String json) {
+        try {
+            return sync.merge(json);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * 媒体会话回调发出的命令：Activity已连接时直接派发，未连接时进入队列并合并播放/暂停
+     */
+    @Test
+    public void commandDispatch() {
+        final PlayerCommandChannel connected = new PlayerCommandChannel();
+        final int[] received = new int[1];
+        connected.setListener(command -> received[0]++);
+        final PlayerCommand.Type[] types = {
+                PlayerCommand.Type.PLAY, PlayerCommand.Type.PAUSE, PlayerCommand.Type.NEXT, PlayerCommand.Type.PREVIOUS
+        };
+        benchmark.run("command.dispatch.connected", 2_000_000, i -> {
+            connected.dispatch(PlayerCommand.of(types[i & 3]));
+            return received[0];
+        });
+
+        final PlayerCommandChannel disconnected = new PlayerCommandChannel();
+        benchmark.run("command.dispatch.queued", 1_000_000, i -> {
+            disconnected.dispatch(PlayerCommand.of(types[i & 1]));
+            return disconnected.getQueuedCount();
+        });
+        assertTrue(received[0] > 0);
+        assertEquals(1, disconnected.getQueuedCount());
+    }
+
+    /**
+     * 封面缓存查询：内存缓存未命中时按URL查磁盘缓存，键是URL的哈希
+     */
+    @Test
+    public void coverArtLookup() throws Exception {
+        final DiskLruCache cache = new DiskLruCache(folder.newFolder("cover_art"), 64L * 1024 * 1024);
+        final String[] urls = new String[256];
+        byte[] image = "cover".getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = "https://p1.music.126.net/" + i + "/109951163.jpg";
+            cache.put(urls[i], image);
+        }
+        final String[] missing = new String[256];
+        for (int i = 0; i < missing.length; i++) {
+            missing[i] = "https://p2.music.126.net/" + i + "/missing.jpg";
+        }
+        benchmark.run("coverArt.hashKey", 500_000, i -> DiskLruCache.hashKey(urls[i & 255]));
+        benchmark.run("coverArt.diskLookup.hit", 50_000, i -> cache.get(urls[i & 255]));
+        benchmark.run("coverArt.diskLookup.miss", 500_000, i -> cache.get(missing[i & 255]));
+    }
+
+    /**
+     * 性能指标记录本身的开销，桥接方法每次调用都会记录一次
+     */
+    @Test
+    public void metricsRecording() {
+        final MetricsRegistry metrics = new MetricsRegistry();
+        benchmark.run("metrics.recordSince", 2_000_000, i -> {
+            metrics.recordSince("bridge.syncState", MetricsRegistry.start());
+            return null;
+        });
+        assertTrue(metrics.histogram("bridge.syncState").getCount() > 0);
+    }
+}
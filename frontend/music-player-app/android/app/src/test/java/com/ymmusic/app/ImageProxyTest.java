@@ -0,0 +1,28 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * ImageProxy的尺寸取整与缓存键测试
+ */
+public class ImageProxyTest {
+
+    @Test
+    public void quantizeSize_roundsUpAndClamps() {
+        assertEquals(64, ImageProxy.quantizeSize(1));
+        assertEquals(64, ImageProxy.quantizeSize(64));
+        assertEquals(320, ImageProxy.quantizeSize(300));
+        assertEquals(1024, ImageProxy.quantizeSize(4000));
+    }
+
+    @Test
+    public void cacheKey_separatesSizes() {
+        String url = "https://p1.music.126.net/a/1.jpg";
+        assertNotEquals(ImageProxy.cacheKey(url, 128), ImageProxy.cacheKey(url, 256));
+        assertTrue(ImageProxy.isRemoteImage(url));
+        assertFalse(ImageProxy.isRemoteImage("data:image/png;base64,AAAA"));
+        assertFalse(ImageProxy.isRemoteImage(null));
+    }
+}
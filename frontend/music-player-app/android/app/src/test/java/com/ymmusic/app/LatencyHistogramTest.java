@@ -0,0 +1,45 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * LatencyHistogram的分桶与分位数测试
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentiles_useBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 98; i++) {
+            histogram.recordNanos(80_000);
+        }
+        histogram.recordNanos(3_000_000);
+        histogram.recordNanos(7_000_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getPercentileUs(0.5));
+        assertEquals(5000, histogram.getPercentileUs(0.99));
+        assertEquals(7000, histogram.getMaxUs());
+        assertEquals((98 * 80 + 3000 + 7000) / 100, histogram.getMeanUs());
+    }
+
+    @Test
+    public void overflowBucket_reportsMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(3_000_000_000L);
+
+        assertEquals(LatencyHistogram.BOUNDS_US.length, LatencyHistogram.bucketOf(3_000_000));
+        assertEquals(3_000_000, histogram.getPercentileUs(0.5));
+    }
+
+    @Test
+    public void empty_reportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileUs(0.99));
+        assertEquals(0, histogram.getMeanUs());
+    }
+}
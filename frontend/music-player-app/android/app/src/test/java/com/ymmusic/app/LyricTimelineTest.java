@@ -0,0 +1,58 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * LyricTimeline的LRC/YRC解析与二分查找测试
+ */
+public class LyricTimelineTest {
+
+    @Test
+    public void parse_lrcSortsLinesAndExpandsRepeatedTags() {
+        LyricTimeline timeline = LyricTimeline.parse(
+                "[ti:歌名]\n"
+                        + "[00:20.5]第二句\n"
+                        + "[00:05.12][01:00.000]副歌<0,300>\n"
+                        + "[00:10.00]   \n"
+                        + "[00:15.30]{\"t\":15300,\"c\":[{\"tx\":\"第\"},{\"tx\":\"一\\\"句\"}]}\n");
+
+        assertEquals(4, timeline.size());
+        assertEquals(5120, timeline.getTime(0));
+        assertEquals("副歌", timeline.getText(0));
+        assertEquals("第一\"句", timeline.getText(1));
+        assertEquals(20500, timeline.getTime(2));
+        assertEquals(60000, timeline.getTime(3));
+        assertEquals("副歌", timeline.getText(3));
+    }
+
+    @Test
+    public void parse_yrcKeepsWordTimes() {
+        LyricTimeline timeline = LyricTimeline.parse(
+                "{\"t\":0,\"c\":[{\"tx\":\"作词: \"},{\"tx\":\"某人\"}]}\n"
+                        + "[16210,3460](16210,670,0)还(16880,410,0)没(17290,500,0)好\n");
+
+        assertEquals(2, timeline.size());
+        assertEquals("作词: 某人", timeline.getText(0));
+        assertEquals("还没好", timeline.getText(1));
+        assertEquals(-1, timeline.wordAt(1, 16000));
+        assertEquals(0, timeline.wordAt(1, 16210));
+        assertEquals(1, timeline.wordAt(1, 17000));
+        assertEquals(2, timeline.wordAt(1, 30000));
+        assertEquals(-1, timeline.wordAt(0, 1000));
+    }
+
+    @Test
+    public void lineAt_findsLastStartedLine() {
+        LyricTimeline timeline = LyricTimeline.parse("[00:01.00]a\n[00:02.00]b\n[00:03.00]c\n");
+
+        assertEquals(-1, timeline.lineAt(999));
+        assertEquals(0, timeline.lineAt(1000));
+        assertEquals(1, timeline.lineAt(2999));
+        assertEquals(2, timeline.lineAt(100000));
+        assertEquals(2000, timeline.nextLineTime(1500));
+        assertEquals(-1, timeline.nextLineTime(3000));
+        assertEquals(0, LyricTimeline.parse(null).size());
+    }
+}
@@ -0,0 +1,37 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * MetricsRegistry的计数与日志摘要测试
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void countersAndHistograms_areCreatedOnFirstUse() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.increment("service.create");
+        metrics.add("service.create", 2);
+        metrics.recordNanos("bridge.syncState", 200_000);
+
+        assertEquals(3, metrics.getCounter("service.create"));
+        assertEquals(0, metrics.getCounter("missing"));
+        assertSame(metrics.histogram("bridge.syncState"), metrics.getHistograms().get("bridge.syncState"));
+        assertEquals(1, metrics.histogram("bridge.syncState").getCount());
+    }
+
+    @Test
+    public void dumpIfChanged_skipsWhenNothingRecorded() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.increment("service.create");
+        metrics.recordNanos("notification.build", 1_000_000);
+
+        assertEquals("service.create=1; notification.build n=1 p50=1000 p99=1000 max=1000us",
+                metrics.dumpIfChanged());
+        assertNull(metrics.dumpIfChanged());
+        metrics.recordNanos("notification.build", 1_000_000);
+        assertNotNull(metrics.dumpIfChanged());
+    }
+}
@@ -0,0 +1,129 @@
+package com.ymmusic.app;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 普通JVM上运行的微基准测试工具
+ * 先预热让JIT编译完成，再分多轮计时，报告每次操作耗时的中位数/最小值和每次操作分配的字节数，
+ * 结果以Markdown表格输出，格式与benchmark-baseline.md一致，方便逐次对比
+ */
+final class MicroBenchmark {
+
+    /**
+     * 被测操作，返回值会被消费，防止JIT把操作优化掉
+     */
+    interface Operation {
+        Object run(int iteration);
+    }
+
+    /**
+     * 一项测试的结果
+     */
+    static final class Result {
+        final String name;
+        final double medianNsPerOp;
+        final double minNsPerOp;
+        // 不支持统计线程分配量的JVM上为-1
+        final double bytesPerOp;
+
+        Result(String name, double medianNsPerOp, double minNsPerOp, double bytesPerOp) {
+            this.name = name;
+            this.medianNsPerOp = medianNsPerOp;
+            this.minNsPerOp = minNsPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        String toRow() {
+            return String.format(Locale.ROOT, "| %s | %.1f | %.1f | %s |", name, medianNsPerOp, minNsPerOp,
+                    bytesPerOp < 0 ? "n/a" : String.format(Locale.ROOT, "%.0f", bytesPerOp));
+        }
+    }
+
+    static final String TABLE_HEADER = "| 测试项 | 中位数 ns/op | 最小值 ns/op | 分配 B/op |\n|---|---:|---:|---:|";
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURE_ROUNDS = 10;
+
+    // 消费操作结果
+    private static volatile int sink;
+
+    private final List<Result> results = new ArrayList<>();
+
+    /**
+     * 运行一项测试
+     * @param opsPerRound 每轮执行的次数，每轮应在几十毫秒左右
+     */
+    Result run(String name, int opsPerRound, Operation operation) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            runRound(opsPerRound, operation);
+        }
+        double[] nsPerOp = new double[MEASURE_ROUNDS];
+        long allocatedBefore = allocatedBytes();
+        for (int round = 0; round < MEASURE_ROUNDS; round++) {
+            long start = System.nanoTime();
+            runRound(opsPerRound, operation);
+            nsPerOp[round] = (System.nanoTime() - start) / (double) opsPerRound;
+        }
+        long allocatedAfter = allocatedBytes();
+        Arrays.sort(nsPerOp);
+        double bytesPerOp = allocatedBefore < 0 ? -1
+                : (allocatedAfter - allocatedBefore) / (double) ((long) opsPerRound * MEASURE_ROUNDS);
+        Result result = new Result(name, nsPerOp[MEASURE_ROUNDS / 2], nsPerOp[0], bytesPerOp);
+        results.add(result);
+        System.out.println(result.toRow());
+        return result;
+    }
+
+    private static void runRound(int ops, Operation operation) {
+        int hash = 0;
+        for (int i = 0; i < ops; i++) {
+            Object value = operation.run(i);
+            hash += value != null ? value.hashCode() : 0;
+        }
+        sink += hash;
+    }
+
+    /**
+     * 当前线程累计分配的字节数（HotSpot的com.sun.management扩展），不支持时返回-1
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 把所有结果写成Markdown表格
+     */
+    void writeReport(File file, String title) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("无法创建目录: " + parent);
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write("# " + title + "\n\n");
+            writer.write("JVM: " + System.getProperty("java.vm.name") + " " + System.getProperty("java.version")
+                    + ", " + Runtime.getRuntime().availableProcessors() + " CPU\n\n");
+            writer.write(TABLE_HEADER + "\n");
+            for (Result result : results) {
+                writer.write(result.toRow() + "\n");
+            }
+        }
+    }
+}
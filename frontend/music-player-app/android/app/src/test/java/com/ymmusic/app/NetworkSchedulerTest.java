@@ -0,0 +1,258 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NetworkScheduler的优先级、并发上限、请求合并与连接复用测试（使用本地HTTP服务器）
+ */
+public class NetworkSchedulerTest {
+    private MockServer server;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockServer();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        server.close();
+    }
+
+    private static NetworkScheduler newScheduler(int[] limits, int maxActive, int reserved) {
+        return new NetworkScheduler(limits, maxActive, reserved,
+                new HostFailureCache(System::currentTimeMillis));
+    }
+
+    private static String fetch(NetworkScheduler scheduler, String url, int priority) throws IOException {
+        try (NetworkScheduler.Call call = scheduler.open(url, priority)) {
+            assertEquals(200, call.code());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream in = call.body();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void awaitWaiting(NetworkScheduler scheduler, int priority, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getWaiting(priority) < count) {
+            assertTrue("等待超时", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void open_reusesKeepAliveConnection() throws Exception {
+        NetworkScheduler scheduler = newScheduler(NetworkScheduler.DEFAULT_LIMITS, 12, 3);
+        assertEquals("body:/a", fetch(scheduler, server.url("/a"), NetworkScheduler.PRIORITY_API));
+        assertEquals("body:/b", fetch(scheduler, server.url("/b"), NetworkScheduler.PRIORITY_COVER));
+
+        assertEquals(2, server.requests.get());
+        assertEquals(1, server.connections.get());
+        assertEquals(0, scheduler.getActive(NetworkScheduler.PRIORITY_API));
+        assertEquals(0, scheduler.getActive(NetworkScheduler.PRIORITY_COVER));
+    }
+
+    @Test
+    public void coalesce_sharesInFlightRequest() throws Exception {
+        final NetworkScheduler scheduler = newScheduler(NetworkScheduler.DEFAULT_LIMITS, 12, 3);
+        final String url = server.url("/cover.jpg");
+        server.gate = new CountDownLatch(1);
+        Future<String> first = executor.submit(() -> scheduler.coalesce("cover:" + url,
+                () -> fetch(scheduler, url, NetworkScheduler.PRIORITY_COVER), 5000));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.requests.get() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+        assertTrue(scheduler.isInFlight("cover:" + url));
+        Future<String> second = executor.submit(() -> scheduler.coalesce("cover:" + url,
+                () -> fetch(scheduler, url, NetworkScheduler.PRIORITY_COVER), 5000));
+        while (scheduler.getCoalescedCount() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+        server.gate.countDown();
+
+        assertEquals("body:/cover.jpg", first.get(5, TimeUnit.SECONDS));
+        assertEquals("body:/cover.jpg", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, server.requests.get());
+        assertFalse(scheduler.isInFlight("cover:" + url));
+    }
+
+    @Test
+    public void acquire_servesHigherPriorityFirst() throws Exception {
+        // 总共2个名额，其中1个保留给音频：非音频请求同时只能有1个
+        final NetworkScheduler scheduler = newScheduler(new int[]{2, 2, 2, 2, 2}, 2, 1);
+        NetworkScheduler.Permit api = scheduler.acquire(NetworkScheduler.PRIORITY_API, 1000);
+        final CountDownLatch releaseCover = new CountDownLatch(1);
+        Future<?> download = executor.submit(() -> {
+            scheduler.acquire(NetworkScheduler.PRIORITY_DOWNLOAD, 5000).close();
+            return null;
+        });
+        awaitWaiting(scheduler, NetworkScheduler.PRIORITY_DOWNLOAD, 1);
+        Future<?> cover = executor.submit(() -> {
+            try (NetworkScheduler.Permit permit = scheduler.acquire(NetworkScheduler.PRIORITY_COVER, 5000)) {
+                releaseCover.await(5, TimeUnit.SECONDS);
+            }
+            return null;
+        });
+        awaitWaiting(scheduler, NetworkScheduler.PRIORITY_COVER, 1);
+
+        // 保留的名额让播放不用等待
+        scheduler.acquire(NetworkScheduler.PRIORITY_PLAYBACK, 100).close();
+
+        api.close();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getActive(NetworkScheduler.PRIORITY_COVER) == 0) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+        assertEquals(1, scheduler.getWaiting(NetworkScheduler.PRIORITY_DOWNLOAD));
+        assertFalse(download.isDone());
+
+        releaseCover.countDown();
+        cover.get(5, TimeUnit.SECONDS);
+        download.get(5, TimeUnit.SECONDS);
+        assertEquals(0, scheduler.getActive(NetworkScheduler.PRIORITY_DOWNLOAD));
+    }
+
+    @Test
+    public void acquire_enforcesPerClassLimit() throws Exception {
+        NetworkScheduler scheduler = newScheduler(new int[]{1, 1, 1, 1, 1}, 12, 3);
+        NetworkScheduler.Permit playback = scheduler.acquire(NetworkScheduler.PRIORITY_PLAYBACK, 100);
+        try {
+            scheduler.acquire(NetworkScheduler.PRIORITY_PLAYBACK, 50);
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(0, scheduler.getWaiting(NetworkScheduler.PRIORITY_PLAYBACK));
+        scheduler.acquire(NetworkScheduler.PRIORITY_PREFETCH, 100).close();
+
+        playback.close();
+        playback.close();
+        assertEquals(0, scheduler.getActive(NetworkScheduler.PRIORITY_PLAYBACK));
+        scheduler.acquire(NetworkScheduler.PRIORITY_PLAYBACK, 100).close();
+    }
+
+    @Test
+    public void open_failsFastForUnresolvableHost() throws Exception {
+        NetworkScheduler scheduler = newScheduler(NetworkScheduler.DEFAULT_LIMITS, 12, 3);
+        // .invalid是保留的顶级域名，连接时解析一定失败
+        try (NetworkScheduler.Call call = scheduler.open("http://offline.invalid/a", NetworkScheduler.PRIORITY_API)) {
+            call.code();
+            fail();
+        } catch (UnknownHostException expected) {
+        }
+        assertEquals(1, scheduler.getHostFailures().getFailureCount());
+
+        try {
+            scheduler.open("http://offline.invalid/b", NetworkScheduler.PRIORITY_API);
+            fail();
+        } catch (UnknownHostException expected) {
+        }
+        assertEquals(1, scheduler.getHostFailures().getFailFastCount());
+        assertEquals(0, scheduler.getActive(NetworkScheduler.PRIORITY_API));
+        assertEquals(1, scheduler.getRequestCount(NetworkScheduler.PRIORITY_API));
+    }
+
+    /**
+     * 支持keep-alive的最小HTTP/1.1服务器，响应体是"body:"加请求路径
+     */
+    private static final class MockServer implements Closeable {
+        final ServerSocket socket;
+        final AtomicInteger connections = new AtomicInteger();
+        final AtomicInteger requests = new AtomicInteger();
+        volatile CountDownLatch gate;
+
+        MockServer() throws IOException {
+            socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread thread = new Thread(this::acceptLoop, "MockServer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        String url(String path) {
+            return "http://127.0.0.1:" + socket.getLocalPort() + path;
+        }
+
+        private void acceptLoop() {
+            while (!socket.isClosed()) {
+                try {
+                    final Socket client = socket.accept();
+                    connections.incrementAndGet();
+                    Thread thread = new Thread(() -> serve(client), "MockServer-client");
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket client) {
+            try (Socket connection = client) {
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(connection.getInputStream(), StandardCharsets.ISO_8859_1));
+                OutputStream out = connection.getOutputStream();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    String path = line.split(" ")[1];
+                    while ((line = in.readLine()) != null && !line.isEmpty()) {
+                        // 忽略请求头
+                    }
+                    requests.incrementAndGet();
+                    CountDownLatch current = gate;
+                    if (current != null) {
+                        current.await(5, TimeUnit.SECONDS);
+                    }
+                    byte[] body = ("body:" + path).getBytes(StandardCharsets.UTF_8);
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: " + body.length
+                            + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                    out.write(body);
+                    out.flush();
+                }
+            } catch (Exception e) {
+                // 客户端断开
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * PlayQueue的切歌规则、随机顺序与持久化测试
+ */
+public class PlayQueueTest {
+
+    private static PlayQueue queueOf(int size, int index) {
+        PlayQueue queue = new PlayQueue(new Random(42));
+        long[] ids = new long[size];
+        byte[] sources = new byte[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = 1000 + i;
+        }
+        queue.setQueue(ids, sources, index);
+        return queue;
+    }
+
+    @Test
+    public void sequential_wrapsAround() {
+        PlayQueue queue = queueOf(3, 2);
+
+        assertEquals(0, queue.skipToNext(false));
+        assertEquals(2, queue.skipToPrevious());
+    }
+
+    @Test
+    public void single_repeatsOnlyOnAutoAdvance() {
+        PlayQueue queue = queueOf(3, 1);
+        queue.setMode(PlayQueue.MODE_SINGLE);
+
+        assertEquals(1, queue.peekNext(true));
+        assertEquals(2, queue.peekNext(false));
+    }
+
+    @Test
+    public void shuffle_visitsEverySongOnceAndPreviousReturns() {
+        PlayQueue queue = queueOf(20, 5);
+        queue.setMode(PlayQueue.MODE_SHUFFLE);
+
+        Set<Integer> visited = new HashSet<>();
+        visited.add(5);
+        int last = 5;
+        for (int i = 0; i < 19; i++) {
+            last = queue.skipToNext(false);
+            assertTrue(visited.add(last));
+        }
+        assertEquals(5, queue.peekNext(false));
+
+        int previous = queue.skipToPrevious();
+        assertNotEquals(last, previous);
+        assertEquals(last, queue.skipToNext(false));
+    }
+
+    @Test
+    public void upcoming_followsPlayOrderWithoutCurrent() {
+        PlayQueue queue = queueOf(4, 2);
+
+        assertArrayEquals(new String[]{"1003", "1000"}, queue.upcoming(2));
+        assertEquals(3, queue.upcoming(10).length);
+
+        queue.setMode(PlayQueue.MODE_SHUFFLE);
+        String[] shuffled = queue.upcoming(3);
+        assertEquals(queue.getSongId(queue.peekNext(false)), shuffled[0]);
+        Set<String> seen = new HashSet<>();
+        for (String id : shuffled) {
+            assertNotEquals("1002", id);
+            seen.add(id);
+        }
+        assertEquals(3, seen.size());
+        assertEquals(0, new PlayQueue().upcoming(3).length);
+    }
+
+    @Test
+    public void parseId_keepsKuwoPrefix() {
+        byte[] source = new byte[1];
+
+        assertEquals(123L, PlayQueue.parseId("kw_123", source));
+        assertEquals(PlayQueue.SOURCE_KW, source[0]);
+        assertEquals("kw_123", PlayQueue.formatId(123L, source[0]));
+        assertEquals(-1L, PlayQueue.parseId("local-abc", source));
+    }
+
+    @Test
+    public void writeTo_readFrom_roundTrips() throws Exception {
+        PlayQueue queue = queueOf(10, 3);
+        queue.setMode(PlayQueue.MODE_SHUFFLE);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        queue.writeTo(new DataOutputStream(buffer));
+
+        PlayQueue restored = new PlayQueue();
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+
+        assertEquals(10, restored.size());
+        assertEquals(3, restored.getCurrentIndex());
+        assertEquals(PlayQueue.MODE_SHUFFLE, restored.getMode());
+        assertEquals(queue.peekNext(false), restored.peekNext(false));
+        assertEquals("1003", restored.getSongId(3));
+    }
+}
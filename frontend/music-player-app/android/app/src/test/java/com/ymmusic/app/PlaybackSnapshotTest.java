@@ -0,0 +1,73 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * PlaybackSnapshot的序列化测试
+ */
+public class PlaybackSnapshotTest {
+
+    private static byte[] write(PlaybackSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        snapshot.writeTo(new DataOutputStream(buffer));
+        return buffer.toByteArray();
+    }
+
+    private static PlaybackSnapshot read(byte[] data) throws IOException {
+        return PlaybackSnapshot.readFrom(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+
+    @Test
+    public void writeTo_roundTripsAllFields() throws IOException {
+        PlaybackSnapshot snapshot = new PlaybackSnapshot("kw_123", "晴天", "周杰伦",
+                "https://example.com/cover.jpg", 65000, 269000, 1700000000000L);
+
+        PlaybackSnapshot restored = read(write(snapshot));
+
+        assertEquals("kw_123", restored.songId);
+        assertEquals("晴天", restored.title);
+        assertEquals("周杰伦", restored.artist);
+        assertEquals("https://example.com/cover.jpg", restored.coverUrl);
+        assertEquals(65000, restored.positionMs);
+        assertEquals(269000, restored.durationMs);
+        assertEquals(1700000000000L, restored.savedAt);
+        assertTrue(restored.sameTrack(snapshot));
+    }
+
+    @Test
+    public void writeTo_keepsNullFields() throws IOException {
+        PlaybackSnapshot restored = read(write(new PlaybackSnapshot(null, "标题", null, null, -5, 0, 0)));
+
+        assertNull(restored.songId);
+        assertNull(restored.artist);
+        assertNull(restored.coverUrl);
+        assertEquals(0, restored.positionMs);
+    }
+
+    @Test
+    public void sameTrack_ignoresPosition() {
+        PlaybackSnapshot a = new PlaybackSnapshot("1", "a", "b", null, 1000, 5000, 1);
+        PlaybackSnapshot b = new PlaybackSnapshot("1", "a", "b", null, 4000, 5000, 2);
+        PlaybackSnapshot c = new PlaybackSnapshot("2", "a", "b", null, 1000, 5000, 1);
+
+        assertTrue(a.sameTrack(b));
+        assertFalse(a.sameTrack(c));
+        assertFalse(a.sameTrack(null));
+    }
+
+    @Test(expected = IOException.class)
+    public void readFrom_rejectsTruncatedData() throws IOException {
+        byte[] data = write(new PlaybackSnapshot("1", "a", "b", "c", 1000, 5000, 1));
+        byte[] truncated = new byte[data.length - 4];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        read(truncated);
+    }
+}
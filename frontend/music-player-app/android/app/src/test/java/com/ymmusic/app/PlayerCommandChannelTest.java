@@ -0,0 +1,123 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * PlayerCommandChannel的排队与补发逻辑测试
+ */
+public class PlayerCommandChannelTest {
+
+    @Test
+    public void dispatch_withListener_deliversImmediately() {
+        PlayerCommandChannel channel = new PlayerCommandChannel();
+        List<PlayerCommand.Type> received = new ArrayList<>();
+        channel.setListener(command -> received.add(command.type));
+
+        channel.dispatch(PlayerCommand.of(PlayerCommand.Type.NEXT));
+
+        assertEquals(1, received.size());
+        assertEquals(PlayerCommand.Type.NEXT, received.get(0));
+        assertEquals(0, channel.getQueuedCount());
+    }
+
+    @Test
+    public void dispatch_withoutListener_queuesAndFlushesInOrder() {
+        PlayerCommandChannel channel = new PlayerCommandChannel();
+        channel.dispatch(PlayerCommand.of(PlayerCommand.Type.NEXT));
+        channel.dispatch(PlayerCommand.of(PlayerCommand.Type.PREVIOUS));
+        assertEquals(2, channel.getQueuedCount());
+
+        List<PlayerCommand.Type> received = new ArrayList<>();
+        channel.setListener(command -> received.add(command.type));
+
+        assertEquals(2, received.size());
+        assertEquals(PlayerCommand.Type.NEXT, received.get(0));
+        assertEquals(PlayerCommand.Type.PREVIOUS, received.get(1));
+        assertEquals(0, channel.getQueuedCount());
+    }
+
+    @Test
+    public void dispatchDuringFlush_runsAfterQueuedCommands() {
+        final PlayerCommandChannel channel = new PlayerCommandChannel();
+        channel.dispatch(PlayerCommand.seekTo(1000));
+        channel.dispatch(PlayerCommand.of(PlayerCommand.Type.NEXT));
+
+        final List<PlayerCommand.Type> received = new ArrayList<>();
+        channel.setListener(command -> {
+            // 补发第一条命令时另一线程派发了新命令
+            if (received.isEmpty()) {
+                channel.dispatch(PlayerCommand.of(PlayerCommand.Type.PLAY));
+            }
+            received.add(command.type);
+        });
+
+        assertEquals(3, received.size());
+        assertEquals(PlayerCommand.Type.SEEK, received.get(0));
+        assertEquals(PlayerCommand.Type.NEXT, received.get(1));
+        assertEquals(PlayerCommand.Type.PLAY, received.get(2));
+        assertEquals(0, channel.getQueuedCount());
+
+        channel.dispatch(PlayerCommand.of(PlayerCommand.Type.PAUSE));
+        assertEquals(PlayerCommand.Type.PAUSE, received.get(3));
+    }
+
+    @Test
+    public void queuedPlayPause_keepsOnlyLast() {
+        PlayerCommandChannel channel = new PlayerCommandChannel();
+        channel.dispatch(PlayerCommand.of(PlayerCommand.Type.PLAY));
+        channel.dispatch(PlayerCommand.of(PlayerCommand.Type.NEXT));
+        channel.dispatch(PlayerCommand.of(PlayerCommand.Type.PAUSE));
+
+        List<PlayerCommand.Type> received = new ArrayList<>();
+        channel.setListener(command -> received.add(command.type));
+
+        assertEquals(2, received.size());
+        assertEquals(PlayerCommand.Type.NEXT, received.get(0));
+        assertEquals(PlayerCommand.Type.PAUSE, received.get(1));
+        assertEquals(1, channel.getDroppedCount());
+    }
+
+    @Test
+    public void queue_isBounded() {
+        PlayerCommandChannel channel = new PlayerCommandChannel();
+        for (int i = 0; i < PlayerCommandChannel.MAX_QUEUED + 5; i++) {
+            channel.dispatch(PlayerCommand.of(PlayerCommand.Type.NEXT));
+        }
+        assertEquals(PlayerCommandChannel.MAX_QUEUED, channel.getQueuedCount());
+    }
+
+    @Test
+    public void clearListener_ignoresStaleListener() {
+        PlayerCommandChannel channel = new PlayerCommandChannel();
+        List<PlayerCommand.Type> received = new ArrayList<>();
+        PlayerCommandChannel.Listener oldListener = command -> { };
+        PlayerCommandChannel.Listener newListener = command -> received.add(command.type);
+        channel.setListener(oldListener);
+        channel.setListener(newListener);
+
+        channel.clearListener(oldListener);
+        channel.dispatch(PlayerCommand.of(PlayerCommand.Type.PLAY));
+
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void queuedResolvedSkip_replacesEarlierSkipsAndSeeks() {
+        PlayerCommandChannel channel = new PlayerCommandChannel();
+        channel.dispatch(PlayerCommand.skipTo(PlayerCommand.Type.NEXT, 1, "101"));
+        channel.dispatch(PlayerCommand.seekTo(30000));
+        channel.dispatch(PlayerCommand.skipTo(PlayerCommand.Type.NEXT, 2, "102"));
+        List<PlayerCommand> received = new ArrayList<>();
+
+        channel.setListener(received::add);
+
+        assertEquals(1, received.size());
+        assertEquals(2, received.get(0).queueIndex);
+        assertEquals("102", received.get(0).songId);
+    }
+}
@@ -0,0 +1,83 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * PlayerStateSync的版本过滤、会话重置与部分状态合并测试
+ */
+public class PlayerStateSyncTest {
+
+    @Test
+    public void merge_dropsStaleAndDuplicateVersions() throws Exception {
+        PlayerStateSync sync = new PlayerStateSync();
+        assertNotNull(sync.merge("{\"session\":\"s1\",\"version\":5,\"title\":\"新\"}"));
+
+        assertNull(sync.merge("{\"session\":\"s1\",\"version\":4,\"title\":\"旧\"}"));
+        assertNull(sync.merge("{\"session\":\"s1\",\"version\":5,\"title\":\"重复\"}"));
+        assertEquals("新", sync.getCurrent().title);
+        assertEquals(5, sync.getCurrent().version);
+        assertEquals(1, sync.getAppliedCount());
+        assertEquals(2, sync.getStaleCount());
+    }
+
+    @Test
+    public void merge_newSession_restartsVersionsAndKeepsState() throws Exception {
+        PlayerStateSync sync = new PlayerStateSync();
+        sync.merge("{\"session\":\"s1\",\"version\":10,\"songId\":\"1\",\"title\":\"歌曲\"}");
+
+        // 页面重新加载后版本号从头开始
+        PlayerStateSync.PlayerState state = sync.merge("{\"session\":\"s2\",\"version\":1,\"playing\":true}");
+        assertNotNull(state);
+        assertEquals(1, state.version);
+        assertTrue(state.playing);
+        assertEquals("1", state.songId);
+        assertEquals("歌曲", state.title);
+        assertNull(sync.merge("{\"session\":\"s2\",\"version\":1,\"playing\":false}"));
+    }
+
+    @Test
+    public void merge_partialUpdate_keepsMissingFields() throws Exception {
+        PlayerStateSync sync = new PlayerStateSync();
+        sync.merge("{\"session\":\"s\",\"version\":1,\"songId\":\"7\",\"title\":\"标题\",\"artist\":\"歌手\","
+                + "\"cover\":\"https://p1.music.126.net/a.jpg\",\"playing\":true,\"position\":1000,"
+                + "\"timestamp\":5000,\"speed\":1.5,\"duration\":200000,\"index\":3,\"mode\":\"shuffle\"}");
+
+        PlayerStateSync.PlayerState state = sync.merge("{\"session\":\"s\",\"version\":2,\"playing\":false}");
+        assertFalse(state.playing);
+        assertEquals("7", state.songId);
+        assertEquals("标题", state.title);
+        assertEquals("歌手", state.artist);
+        assertEquals("https://p1.music.126.net/a.jpg", state.coverUrl);
+        assertEquals(1000, state.positionMs);
+        assertEquals(5000, state.positionTimestamp);
+        assertEquals(1.5f, state.speed, 0.0001f);
+        assertEquals(200000, state.durationMs);
+        assertEquals(3, state.queueIndex);
+        assertEquals("shuffle", state.playbackMode);
+    }
+
+    @Test
+    public void merge_firstPartialUpdate_fallsBackToDefaults() throws Exception {
+        PlayerStateSync sync = new PlayerStateSync();
+        PlayerStateSync.PlayerState state = sync.merge("{\"version\":1,\"songId\":\"9\"}");
+
+        assertEquals("9", state.songId);
+        assertEquals(PlayerStateSync.PlayerState.EMPTY.title, state.title);
+        assertEquals(PlayerStateSync.PlayerState.EMPTY.artist, state.artist);
+        assertEquals(-1, state.queueIndex);
+        assertEquals("sequential", state.playbackMode);
+    }
+
+    @Test
+    public void merge_nullOrEmptyCover_clearsCover() throws Exception {
+        PlayerStateSync sync = new PlayerStateSync();
+        sync.merge("{\"version\":1,\"cover\":\"https://p1.music.126.net/a.jpg\"}");
+
+        assertNull(sync.merge("{\"version\":2,\"cover\":null}").coverUrl);
+        sync.merge("{\"version\":3,\"cover\":\"https://p1.music.126.net/b.jpg\"}");
+        assertNull(sync.merge("{\"version\":4,\"cover\":\"\"}").coverUrl);
+        assertNull(sync.merge("{\"version\":5,\"songId\":null}").songId);
+    }
+}
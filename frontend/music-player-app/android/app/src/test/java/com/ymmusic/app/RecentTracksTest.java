@@ -0,0 +1,84 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * RecentTracks的排序、容量与序列化测试
+ */
+public class RecentTracksTest {
+
+    private static RecentTracks.Track track(String id) {
+        return new RecentTracks.Track(id, "歌曲" + id, "歌手", null);
+    }
+
+    @Test
+    public void add_movesExistingTrackToFront() {
+        RecentTracks recent = new RecentTracks();
+        recent.add(track("1"));
+        recent.add(track("2"));
+        recent.add(track("1"));
+
+        List<RecentTracks.Track> page = recent.page(0, 10);
+        assertEquals(2, page.size());
+        assertEquals("1", page.get(0).songId);
+        assertEquals("2", page.get(1).songId);
+    }
+
+    @Test
+    public void add_dropsOldestBeyondCapacityAndIgnoresEmptyIds() {
+        RecentTracks recent = new RecentTracks();
+        for (int i = 0; i < RecentTracks.MAX_TRACKS + 3; i++) {
+            recent.add(track(String.valueOf(i)));
+        }
+        recent.add(track(""));
+
+        assertEquals(RecentTracks.MAX_TRACKS, recent.size());
+        assertEquals(String.valueOf(RecentTracks.MAX_TRACKS + 2), recent.page(0, 1).get(0).songId);
+        assertEquals("3", recent.page(RecentTracks.MAX_TRACKS - 1, 5).get(0).songId);
+        assertTrue(recent.page(RecentTracks.MAX_TRACKS, 5).isEmpty());
+    }
+
+    @Test
+    public void writeTo_roundTrips() throws IOException {
+        RecentTracks recent = new RecentTracks();
+        recent.add(new RecentTracks.Track("186016", "晴天", "周杰伦", "https://p1.music.126.net/a.jpg"));
+        recent.add(new RecentTracks.Track("5257138", null, null, null));
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        recent.writeTo(new DataOutputStream(buffer));
+
+        RecentTracks restored = new RecentTracks();
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+
+        List<RecentTracks.Track> page = restored.page(0, 10);
+        assertEquals(2, page.size());
+        assertEquals("5257138", page.get(0).songId);
+        assertNull(page.get(0).title);
+        assertEquals("晴天", page.get(1).title);
+        assertEquals("https://p1.music.126.net/a.jpg", page.get(1).coverUrl);
+    }
+
+    @Test
+    public void readFrom_keepsContentOnCorruptFile() {
+        RecentTracks recent = new RecentTracks();
+        recent.add(track("1"));
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(buffer);
+            out.writeInt(1);
+            out.writeInt(-1);
+            recent.readFrom(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+            fail("应当拒绝损坏的文件");
+        } catch (IOException expected) {
+            assertEquals(1, recent.size());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * SearchDocuments的API响应与收藏提取测试
+ */
+public class SearchDocumentsTest {
+
+    @Test
+    public void fromResponse_readsSearchSongs() throws Exception {
+        String body = "{\"code\":200,\"result\":{\"songs\":[{\"id\":186016,\"name\":\"晴天\","
+                + "\"artists\":[{\"name\":\"周杰伦\"}],\"album\":{\"name\":\"叶惠美\",\"picUrl\":\"https://p1.music.126.net/a.jpg\"}},"
+                + "{\"name\":\"没有ID\"}]}}";
+
+        List<SearchIndex.Document> documents = SearchDocuments.fromResponse("/search", body);
+
+        assertEquals(1, documents.size());
+        SearchIndex.Document song = documents.get(0);
+        assertEquals(SearchIndex.TYPE_SONG, song.type);
+        assertEquals("186016", song.id);
+        assertEquals("晴天", song.title);
+        assertEquals("周杰伦", song.artist);
+        assertEquals("叶惠美", song.album);
+        assertEquals("https://p1.music.126.net/a.jpg", song.cover);
+    }
+
+    @Test
+    public void fromResponse_readsPlaylistDetailWithTracks() throws Exception {
+        String body = "{\"code\":200,\"playlist\":{\"id\":3778678,\"name\":\"热歌榜\",\"coverImgUrl\":\"https://p1.music.126.net/c.jpg\","
+                + "\"creator\":{\"nickname\":\"网易云音乐\"},"
+                + "\"tracks\":[{\"id\":1,\"name\":\"A\",\"ar\":[{\"name\":\"X\"},{\"name\":\"Y\"}],\"al\":{\"name\":\"B\"}}]}}";
+
+        List<SearchIndex.Document> documents = SearchDocuments.fromResponse("/playlist/detail", body);
+
+        assertEquals(2, documents.size());
+        assertEquals(SearchIndex.TYPE_PLAYLIST, documents.get(0).type);
+        assertEquals("网易云音乐", documents.get(0).artist);
+        assertEquals("X, Y", documents.get(1).artist);
+        assertEquals("B", documents.get(1).album);
+    }
+
+    @Test
+    public void fromResponse_ignoresErrorsAndOtherPaths() throws Exception {
+        assertTrue(SearchDocuments.fromResponse("/search", "{\"code\":400}").isEmpty());
+        assertTrue(SearchDocuments.fromResponse("/lyric", "{\"code\":200,\"songs\":[{\"id\":1,\"name\":\"A\"}]}").isEmpty());
+        assertFalse(SearchDocuments.isIndexable("/song/url"));
+    }
+
+    @Test
+    public void fromFavorite_marksFavoriteAndStripsMainPrefix() throws Exception {
+        SearchIndex.Document song = SearchDocuments.fromFavorite("SONGS",
+                new JSONObject("{\"id\":\"main_186016\",\"name\":\"晴天\",\"artist\":\"周杰伦\",\"albumArt\":\"c\"}"));
+        SearchIndex.Document kuwo = SearchDocuments.fromFavorite("SONGS",
+                new JSONObject("{\"id\":\"kw_42\",\"name\":\"晴天\",\"isFromKw\":true}"));
+        SearchIndex.Document playlist = SearchDocuments.fromFavorite("PLAYLISTS",
+                new JSONObject("{\"id\":\"kw-7\",\"name\":\"华语\",\"creator\":\"某人\",\"coverImgUrl\":\"c\"}"));
+
+        assertEquals("186016", song.id);
+        assertEquals(SearchIndex.FLAG_FAVORITE, song.flags);
+        assertEquals("kw_42", kuwo.id);
+        assertEquals(SearchIndex.FLAG_FAVORITE | SearchIndex.FLAG_KUWO, kuwo.flags);
+        assertEquals(SearchIndex.TYPE_PLAYLIST, playlist.type);
+        assertEquals("某人", playlist.artist);
+        assertNull(SearchDocuments.fromFavorite("MVS", new JSONObject("{\"id\":\"1\"}")));
+    }
+}
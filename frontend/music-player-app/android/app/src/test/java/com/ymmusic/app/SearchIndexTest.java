@@ -0,0 +1,162 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * SearchIndex的查询、排序、合并与文件格式测试
+ */
+public class SearchIndexTest {
+
+    private static SearchIndex.Document song(String id, String title, String artist, int flags) {
+        return new SearchIndex.Document(SearchIndex.TYPE_SONG, id, title, artist, "", "", flags);
+    }
+
+    private static ByteBuffer merge(SearchIndex index, SearchIndex.Merge merge) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        merge.writeTo(out);
+        ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+        index.finishMerge(merge, buffer);
+        return buffer;
+    }
+
+    private static SearchIndex sample() {
+        SearchIndex index = new SearchIndex(new SearchTokenizer(null));
+        index.put(song("1", "晴天", "周杰伦", 0));
+        index.put(song("2", "七里香", "周杰伦", 0));
+        index.put(song("3", "晴天娃娃", "某人", 0));
+        index.put(new SearchIndex.Document(SearchIndex.TYPE_PLAYLIST, "9", "周杰伦精选", "网易云音乐", "", "", 0));
+        return index;
+    }
+
+    @Test
+    public void query_requiresAllTokensAndRanksTitleHitsFirst() {
+        SearchIndex index = sample();
+
+        List<SearchIndex.Result> results = index.query("周杰伦", 10);
+
+        assertEquals(3, results.size());
+        assertEquals("9", results.get(0).document.id);
+        assertEquals(0, index.query("周杰伦 娃娃", 10).size());
+        assertEquals("1", index.query("晴天 周杰伦", 10).get(0).document.id);
+    }
+
+    @Test
+    public void query_matchesInitialsAndPrefersShorterTitles() {
+        SearchIndex index = sample();
+
+        List<SearchIndex.Result> results = index.query("qt", 10);
+
+        assertEquals(2, results.size());
+        assertEquals("1", results.get(0).document.id);
+        assertEquals("3", results.get(1).document.id);
+    }
+
+    @Test
+    public void query_boostsFavorites() {
+        SearchIndex index = sample();
+        index.put(song("3", "晴天娃娃", "某人", SearchIndex.FLAG_FAVORITE));
+
+        List<SearchIndex.Result> results = index.query("晴天", 10);
+
+        assertEquals("3", results.get(0).document.id);
+        assertEquals(1, index.query("晴天", 1).size());
+    }
+
+    @Test
+    public void put_keepsExistingFieldsAndFlags() {
+        SearchIndex index = sample();
+        index.put(song("1", "晴天", "周杰伦", SearchIndex.FLAG_FAVORITE));
+
+        assertFalse(index.put(song("1", "晴天", "", 0)));
+        SearchIndex.Document document = index.query("晴天", 10).get(0).document;
+        assertEquals("周杰伦", document.artist);
+        assertEquals(SearchIndex.FLAG_FAVORITE, document.flags);
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void merge_roundTripsAndKeepsLaterUpdates() throws IOException {
+        SearchIndex index = sample();
+        SearchIndex.Merge merge = index.beginMerge();
+        // 合并期间的更新保留在增量中，并覆盖新只读段中的旧版本
+        index.put(song("2", "七里香", "周杰伦", SearchIndex.FLAG_RECENT));
+        index.put(song("4", "稻香", "周杰伦", 0));
+
+        merge(index, merge);
+
+        assertEquals(5, index.size());
+        assertEquals(2, index.deltaSize());
+        assertTrue(index.segmentTokenCount() > 0);
+        List<SearchIndex.Result> results = index.query("周杰伦", 10);
+        assertEquals(4, results.size());
+        assertEquals(1, index.query("七里香", 10).size());
+        assertEquals(SearchIndex.FLAG_RECENT, index.query("七里香", 10).get(0).document.flags);
+
+        ByteBuffer buffer = merge(index, index.beginMerge());
+        SearchIndex reopened = SearchIndex.open(buffer, new SearchTokenizer(null));
+        assertEquals(5, reopened.size());
+        assertEquals(0, reopened.deltaSize());
+        assertEquals("4", reopened.query("dx", 10).get(0).document.id);
+        assertEquals("9", reopened.query("精选", 10).get(0).document.id);
+    }
+
+    @Test
+    public void updateAfterMerge_replacesSegmentDocument() throws IOException {
+        SearchIndex index = sample();
+        merge(index, index.beginMerge());
+
+        assertTrue(index.put(song("1", "晴天（Live）", "周杰伦", 0)));
+
+        assertEquals(4, index.size());
+        List<SearchIndex.Result> results = index.query("晴天", 10);
+        assertEquals(2, results.size());
+        assertEquals("晴天（Live）", index.query("live", 10).get(0).document.title);
+    }
+
+    @Test
+    public void clearFlags_removesFavoriteFromDeltaAndSegment() throws IOException {
+        SearchIndex index = sample();
+        index.put(song("1", "晴天", "周杰伦", SearchIndex.FLAG_FAVORITE | SearchIndex.FLAG_RECENT));
+        index.put(song("2", "七里香", "周杰伦", SearchIndex.FLAG_FAVORITE));
+        merge(index, index.beginMerge());
+        index.put(song("3", "晴天娃娃", "某人", SearchIndex.FLAG_FAVORITE));
+
+        assertTrue(index.clearFlags(SearchIndex.TYPE_SONG, "1", SearchIndex.FLAG_FAVORITE));
+        assertFalse(index.clearFlags(SearchIndex.TYPE_SONG, "1", SearchIndex.FLAG_FAVORITE));
+        // 仍收藏的3排在前面，1的旧版本不能再作为结果出现
+        List<SearchIndex.Result> results = index.query("晴天", 10);
+        assertEquals(2, results.size());
+        assertEquals("1", results.get(1).document.id);
+        assertEquals(SearchIndex.FLAG_RECENT, results.get(1).document.flags);
+
+        assertEquals(2, index.clearFlagsAll(SearchIndex.TYPE_SONG, SearchIndex.FLAG_FAVORITE));
+        assertEquals(0, index.query("七里香", 10).get(0).document.flags);
+        assertEquals(0, index.query("晴天娃娃", 10).get(0).document.flags);
+        assertEquals(4, index.size());
+
+        ByteBuffer buffer = merge(index, index.beginMerge());
+        SearchIndex reopened = SearchIndex.open(buffer, new SearchTokenizer(null));
+        for (SearchIndex.Result result : reopened.query("周杰伦", 10)) {
+            assertEquals(0, result.document.flags & SearchIndex.FLAG_FAVORITE);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void open_rejectsCorruptData() throws IOException {
+        SearchIndex index = sample();
+        ByteBuffer buffer = merge(index, index.beginMerge());
+        byte[] bytes = new byte[buffer.capacity()];
+        buffer.get(bytes);
+        // 把第一个文档的数据偏移改到文件末尾之外
+        bytes[16] = 0x7F;
+
+        SearchIndex.open(ByteBuffer.wrap(bytes), new SearchTokenizer(null));
+    }
+}
@@ -0,0 +1,76 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * SearchTokenizer的切分、规范化与拼音词项测试
+ */
+public class SearchTokenizerTest {
+
+    private static Set<String> tokens(SearchTokenizer tokenizer, String text) {
+        Set<String> out = new HashSet<>();
+        tokenizer.tokenize(text, out);
+        return out;
+    }
+
+    @Test
+    public void normalize_foldsFullWidthCaseAndPunctuation() {
+        assertEquals("abc 12  周杰伦", SearchTokenizer.normalize("ＡＢＣ（12）·周杰伦"));
+    }
+
+    @Test
+    public void initialOf_usesCommonCharacterTable() {
+        assertEquals('z', SearchTokenizer.initialOf('周'));
+        assertEquals('j', SearchTokenizer.initialOf('杰'));
+        assertEquals('l', SearchTokenizer.initialOf('伦'));
+        assertEquals('c', SearchTokenizer.initialOf('陈'));
+        assertEquals('x', SearchTokenizer.initialOf('迅'));
+        assertEquals(0, SearchTokenizer.initialOf('a'));
+    }
+
+    @Test
+    public void tokenize_indexesHanGramsAndInitials() {
+        Set<String> out = tokens(new SearchTokenizer(null), "周杰伦");
+
+        assertTrue(out.containsAll(Arrays.asList("周", "杰", "伦", "周杰", "杰伦")));
+        assertTrue(out.containsAll(Arrays.asList("z", "zj", "zjl", "j", "jl", "l")));
+        assertFalse(out.contains("周杰伦"));
+    }
+
+    @Test
+    public void tokenize_indexesFullPinyinPrefixesFromEachCharacter() {
+        SearchTokenizer tokenizer = new SearchTokenizer(han ->
+                "周杰伦".equals(han) ? new String[]{"zhou", "jie", "lun"} : null);
+
+        Set<String> out = tokens(tokenizer, "周杰伦");
+
+        assertTrue(out.containsAll(Arrays.asList("zhou", "zhouj", "zhoujielun", "jie", "jielun", "lun")));
+    }
+
+    @Test
+    public void tokenize_indexesWordPrefixesUpToLimit() {
+        Set<String> out = tokens(new SearchTokenizer(null), "Yesterday Once More");
+
+        assertTrue(out.containsAll(Arrays.asList("y", "yes", "yesterday", "once", "m", "more")));
+        Set<String> longWord = tokens(new SearchTokenizer(null), "supercalifragilistic");
+        assertTrue(longWord.contains("supercalifra"));
+        assertFalse(longWord.contains("supercalifrag"));
+    }
+
+    @Test
+    public void queryTokens_usesBigramsAndTruncatedWords() {
+        SearchTokenizer tokenizer = new SearchTokenizer(null);
+
+        assertEquals(Arrays.asList("晴天"), tokenizer.queryTokens("晴天"));
+        assertEquals(Arrays.asList("周杰", "杰伦", "jay"), tokenizer.queryTokens("周杰伦 Jay"));
+        assertEquals(Arrays.asList("雨"), tokenizer.queryTokens(" 雨！"));
+        assertEquals(Arrays.asList("supercalifra"), tokenizer.queryTokens("supercalifragilistic"));
+        assertTrue(tokenizer.queryTokens("  ，。").isEmpty());
+    }
+}
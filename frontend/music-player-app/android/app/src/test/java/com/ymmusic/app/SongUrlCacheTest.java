@@ -0,0 +1,53 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+/**
+ * SongUrlCache的过期与淘汰测试
+ */
+public class SongUrlCacheTest {
+
+    @Test
+    public void get_requiresRemainingLifetime() {
+        SongUrlCache cache = new SongUrlCache(10);
+        cache.put(new SongUrlCache.Entry("1", "https://cdn/1.mp3", 200000, 10_000), 0);
+
+        assertEquals("https://cdn/1.mp3", cache.get("1", 5_000, 1_000).url);
+        assertNull(cache.get("1", 9_500, 1_000));
+        assertEquals(1, cache.size());
+        assertNull(cache.get("1", 10_000, 0));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        SongUrlCache cache = new SongUrlCache(2);
+        cache.put(new SongUrlCache.Entry("1", "a", 0, 100_000), 0);
+        cache.put(new SongUrlCache.Entry("2", "b", 0, 100_000), 0);
+        cache.get("1", 10, 0);
+        cache.put(new SongUrlCache.Entry("3", "c", 0, 100_000), 20);
+
+        assertNotNull(cache.get("1", 30, 0));
+        assertNull(cache.get("2", 30, 0));
+        assertNotNull(cache.get("3", 30, 0));
+    }
+
+    @Test
+    public void expiringSoon_onlyReturnsRecentlyWanted() {
+        SongUrlCache cache = new SongUrlCache(10);
+        cache.put(new SongUrlCache.Entry("old", "a", 0, 60_000), 0);
+        cache.put(new SongUrlCache.Entry("recent", "b", 0, 60_000), 0);
+        cache.put(new SongUrlCache.Entry("later", "c", 0, 500_000), 0);
+        assertTrue(cache.isFresh("recent", 40_000, 0));
+
+        assertEquals(Collections.singletonList("recent"), cache.expiringSoon(50_000, 20_000, 30_000));
+        // 过期且很久没用到的直接移除
+        cache.expiringSoon(70_000, 20_000, 45_000);
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get("later", 70_000, 0));
+    }
+}
@@ -0,0 +1,75 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * StartupRequests的过滤与序列化测试
+ */
+public class StartupRequestsTest {
+
+    private static byte[] write(StartupRequests requests) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        requests.writeTo(new DataOutputStream(buffer));
+        return buffer.toByteArray();
+    }
+
+    @Test
+    public void constructor_dropsDuplicatesAndInvalidUrls() {
+        StartupRequests requests = new StartupRequests(Arrays.asList(
+                "https://api.931125.xyz/toplist",
+                null,
+                "",
+                "javascript:alert(1)",
+                "https://api.931125.xyz/toplist",
+                "https://api.931125.xyz/personalized?limit=10"));
+
+        assertEquals(Arrays.asList("https://api.931125.xyz/toplist",
+                "https://api.931125.xyz/personalized?limit=10"), requests.getUrls());
+    }
+
+    @Test
+    public void constructor_keepsFirstMaxUrls() {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < StartupRequests.MAX_URLS + 5; i++) {
+            urls.add("https://api.931125.xyz/playlist/detail?id=" + i);
+        }
+
+        StartupRequests requests = new StartupRequests(urls);
+
+        assertEquals(StartupRequests.MAX_URLS, requests.getUrls().size());
+        assertEquals("https://api.931125.xyz/playlist/detail?id=0", requests.getUrls().get(0));
+    }
+
+    @Test
+    public void writeTo_roundTrips() throws IOException {
+        StartupRequests requests = new StartupRequests(Arrays.asList(
+                "https://api.931125.xyz/toplist", "https://apiback.931125.xyz/search?keywords=%E6%99%B4%E5%A4%A9"));
+
+        StartupRequests restored = StartupRequests.readFrom(
+                new DataInputStream(new ByteArrayInputStream(write(requests))));
+
+        assertEquals(requests.getUrls(), restored.getUrls());
+        assertTrue(StartupRequests.readFrom(
+                new DataInputStream(new ByteArrayInputStream(write(StartupRequests.EMPTY)))).isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void readFrom_rejectsCorruptCount() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(1);
+        out.writeInt(1000);
+        StartupRequests.readFrom(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+    }
+}
@@ -0,0 +1,43 @@
+package com.ymmusic.app;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * TrackTable的追加与分页读取测试
+ */
+public class TrackTableTest {
+
+    @Test
+    public void append_growsBeyondInitialCapacity() {
+        TrackTable table = new TrackTable();
+        for (int i = 0; i < 1000; i++) {
+            table.append(i, "song" + i, "artist", "album", null, i * 1000, (byte) 0);
+        }
+        table.markComplete();
+
+        assertEquals(1000, table.size());
+        assertTrue(table.isComplete());
+        assertEquals(999L, table.getId(999));
+    }
+
+    @Test
+    public void readPage_clampsToAvailableRows() {
+        TrackTable table = new TrackTable();
+        for (int i = 0; i < 10; i++) {
+            table.append(100 + i, "song" + i, null, null, null, 0, TrackTable.FLAG_SQ);
+        }
+        List<Long> ids = new ArrayList<>();
+
+        int read = table.readPage(8, 60, (index, id, name, artist, album, cover, durationMs, flags) -> ids.add(id));
+
+        assertEquals(2, read);
+        assertEquals(2, ids.size());
+        assertEquals(Long.valueOf(108), ids.get(0));
+        assertEquals(0, table.readPage(20, 60, (index, id, name, artist, album, cover, durationMs, flags) -> fail()));
+    }
+}
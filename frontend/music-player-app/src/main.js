@@ -11,6 +11,16 @@ import router from './router'
 import { usePlayerStore } from './stores/player'
 import { registerUserInteractionHandler } from './utils/navigationGuard'
 import { initMediaSessionHandler, watchPlayerChanges } from './utils/mediaSessionHandler'
+import { syncNativePlayerState, buildNativePlayerState } from './utils/nativePlayerSync'
+import { installMemoryPressureHandler } from './utils/memoryPressure'
+import { installDownloadProgressHandler } from './services/downloadService'
+import { installStartupData, markStartup } from './utils/startupData'
+import axios from 'axios'
+
+markStartup('scriptStart')
+
+// 首批接口请求优先使用原生层启动时预取的数据
+installStartupData(axios)
 
 const app = createApp(App)
 
@@ -34,7 +44,15 @@ watchPlayerChanges(playerStore, mediaControls)
 // 注册导航守卫的全局用户交互处理程序
 registerUserInteractionHandler()
 
+// 原生层内存紧张时释放Web层缓存
+installMemoryPressureHandler()
+
+// 原生离线下载进度转发为offline-download-progress事件
+installDownloadProgressHandler()
+
 app.mount('#app')
+markStartup('mounted')
+router.isReady().then(() => markStartup('routeReady'))
 
 // 添加全局的音频恢复机制
 document.addEventListener('visibilitychange', () => {
@@ -116,7 +134,9 @@ function checkAndUpdateAndroidService() {
 
       // 如果服务正在运行，更新当前播放信息
       if (isRunning && playerStore.currentSong) {
-        if (typeof window.AndroidPlayer.updateNowPlaying === 'function') {
+        if (syncNativePlayerState(buildNativePlayerState(playerStore))) {
+          console.log('[main.js] 已同步Android播放状态');
+        } else if (typeof window.AndroidPlayer.updateNowPlaying === 'function') {
           window.AndroidPlayer.updateNowPlaying(
             playerStore.currentSong.name || '未知歌曲',
             playerStore.currentSong.artist || '未知艺术家'
@@ -80,6 +80,18 @@ export const getPlaylistTracks = async (id, limit = 9999, offset = 0) => {
   }
 };
 
+/**
+ * 构建歌单全部歌曲的请求地址（供原生层流式加载使用）
+ * @param {number|string} id - 歌单ID
+ * @param {number} limit - 每页数量
+ * @param {number} offset - 分页偏移量
+ * @returns {string} 完整的请求地址
+ */
+export const buildPlaylistTracksUrl = (id, limit = 9999, offset = 0) => {
+  const params = new URLSearchParams({ id: String(id), limit: String(limit), offset: String(offset) });
+  return `${BASE_URL}/playlist/track/all?${params.toString()}`;
+};
+
 /**
  * 获取歌曲URL
  * @param {number|string} id - 歌曲ID
@@ -276,6 +288,7 @@ export default {
   getPlaylists,
   getPlaylistDetail,
   getPlaylistTracks,
+  buildPlaylistTracksUrl,
   getSongUrl,
   getLyrics,
   searchSongs,
@@ -0,0 +1,142 @@
+/**
+ * 离线下载服务
+ * 通过window.AndroidPlayer调用原生下载管理器：分块并行下载、断点续传、校验和存储配额都在原生层完成，
+ * 下载进度由原生层按批推送到window.onOfflineDownloadProgress，再以offline-download-progress事件分发
+ */
+
+let progressHandlerInstalled = false;
+
+/**
+ * 获取原生播放器接口，不支持离线下载时返回null
+ */
+const getNativePlayer = () => {
+  const player = window.AndroidPlayer;
+  if (!player || typeof player.downloadTrack !== 'function') return null;
+  return player;
+};
+
+/**
+ * 是否支持离线下载（仅Android客户端）
+ * @returns {boolean}
+ */
+export const isOfflineSupported = () => getNativePlayer() !== null;
+
+/**
+ * 已下载歌曲的本地播放地址
+ * @param {string|number} songId - 歌曲ID
+ * @returns {string|null} - 没有下载时返回null
+ */
+export const getOfflineUrl = (songId) => {
+  const player = getNativePlayer();
+  if (!player || songId === undefined || songId === null) return null;
+  try {
+    return player.getOfflineUrl(String(songId)) || null;
+  } catch (error) {
+    console.error('[DownloadService] 获取离线地址失败:', error);
+    return null;
+  }
+};
+
+/**
+ * 下载歌曲供离线播放；之前中断的下载会用新获取的地址继续
+ * @param {Object} song - 歌曲对象
+ * @returns {Promise<boolean>} - 开始下载时返回true
+ */
+export const downloadSong = async (song) => {
+  const player = getNativePlayer();
+  if (!player || !song || !song.id) return false;
+  if (getOfflineUrl(song.id)) return false;
+
+  try {
+    // 歌曲地址会过期，每次下载前重新获取
+    const { usePlayerStore } = await import('../stores/player');
+    const details = await usePlayerStore()._fetchSongUrl({ ...song, forceRefreshUrl: true });
+    const url = details && (details.url || details.directPlayUrl);
+    if (!url) {
+      console.error(`[DownloadService] 无法获取歌曲地址: ${song.name}`);
+      return false;
+    }
+    return player.downloadTrack(String(song.id), url, song.name || '', song.artist || '', song.albumArt || '');
+  } catch (error) {
+    console.error(`[DownloadService] 下载歌曲失败: ${song.name}`, error);
+    return false;
+  }
+};
+
+/**
+ * 取消下载
+ * @param {string|number} songId - 歌曲ID
+ */
+export const cancelDownload = (songId) => {
+  const player = getNativePlayer();
+  if (player) player.cancelDownload(String(songId));
+};
+
+/**
+ * 删除已下载的歌曲
+ * @param {string|number} songId - 歌曲ID
+ */
+export const removeDownload = (songId) => {
+  const player = getNativePlayer();
+  if (player) player.removeDownload(String(songId));
+};
+
+/**
+ * 获取离线歌曲列表
+ * @returns {Object} - { completed: [{ songId, title, artist, cover, size, downloadedAt }], active: [{ songId, state, downloaded, total }] }
+ */
+export const getDownloads = () => {
+  const player = getNativePlayer();
+  if (!player) return { completed: [], active: [] };
+  try {
+    return JSON.parse(player.getDownloads());
+  } catch (error) {
+    console.error('[DownloadService] 获取离线歌曲列表失败:', error);
+    return { completed: [], active: [] };
+  }
+};
+
+/**
+ * 设置离线存储配额
+ * @param {number} megabytes - 配额（MB）
+ */
+export const setDownloadQuota = (megabytes) => {
+  const player = getNativePlayer();
+  if (player) player.setDownloadQuota(Math.max(0, Math.round(megabytes)));
+};
+
+/**
+ * 获取离线下载统计：并发数、吞吐量和存储占用
+ * @returns {Object}
+ */
+export const getDownloadStats = () => {
+  const player = getNativePlayer();
+  if (!player) return {};
+  try {
+    return JSON.parse(player.getDownloadStats());
+  } catch (error) {
+    console.error('[DownloadService] 获取离线下载统计失败:', error);
+    return {};
+  }
+};
+
+/**
+ * 安装下载进度处理程序，把原生层的批量进度转发为offline-download-progress事件
+ */
+export const installDownloadProgressHandler = () => {
+  if (progressHandlerInstalled) return;
+  progressHandlerInstalled = true;
+  const previousHandler = window.onOfflineDownloadProgress;
+  window.onOfflineDownloadProgress = (batch) => {
+    try {
+      document.dispatchEvent(new CustomEvent('offline-download-progress', {
+        detail: { items: Array.isArray(batch) ? batch : [] }
+      }));
+    } catch (error) {
+      console.error('[DownloadService] 分发下载进度失败:', error);
+    }
+    if (typeof previousHandler === 'function') {
+      previousHandler(batch);
+    }
+  };
+};
@@ -12,6 +12,71 @@ const STORAGE_KEYS = {
   ALBUMS: 'favorite_albums'
 };
 
+// localStorage中的收藏已导入原生存储的标记
+const NATIVE_MIGRATED_KEY = 'favorites_native_migrated';
+let nativeMigrationChecked = false;
+
+/**
+ * 获取Android原生收藏存储（window.AndroidFavorites）
+ * 原生层按ID建立索引并以追加日志写入，避免每次增删都重写整个数组
+ * 首次使用时把localStorage中的旧收藏导入原生存储
+ * @returns {Object|null} - 不支持时返回null，使用localStorage
+ */
+const getNativeStore = () => {
+  const store = window.AndroidFavorites;
+  if (!store || typeof store.put !== 'function') return null;
+
+  if (!nativeMigrationChecked) {
+    nativeMigrationChecked = true;
+    try {
+      if (!localStorage.getItem(NATIVE_MIGRATED_KEY)) {
+        let migrated = true;
+        Object.keys(STORAGE_KEYS).forEach(type => {
+          const data = localStorage.getItem(STORAGE_KEYS[type]);
+          if (!data) return;
+          const imported = store.importAll(type, data);
+          if (imported >= 0) {
+            localStorage.removeItem(STORAGE_KEYS[type]);
+            console.log(`[FavoritesService] 已将${type}收藏导入原生存储: ${imported}条`);
+          } else {
+            migrated = false;
+          }
+        });
+        if (migrated) {
+          localStorage.setItem(NATIVE_MIGRATED_KEY, '1');
+        }
+      }
+    } catch (err) {
+      console.error('[FavoritesService] 导入原生收藏存储失败:', err);
+    }
+  }
+  return store;
+};
+
+/**
+ * 把单条收藏写入原生存储
+ * @param {Object} store - 原生收藏存储
+ * @param {string} type - 收藏类型（大写）
+ * @param {Object} item - 收藏内容
+ */
+const putNative = (store, type, item) => {
+  const rid = item.rid !== undefined && item.rid !== null ? String(item.rid) : '';
+  return store.put(type, String(item.id), rid, JSON.stringify(item));
+};
+
+/**
+ * 触发收藏列表更新事件
+ */
+const dispatchFavoritesUpdated = (type) => {
+  try {
+    document.dispatchEvent(new CustomEvent('favorites-updated', {
+      detail: { type }
+    }));
+  } catch (e) {
+    console.error('[FavoritesService] 触发收藏更新事件失败:', e);
+  }
+};
+
 /**
  * 获取收藏的内容
  * @param {string} type - 收藏类型：'songs'、'playlists' 或 'mvs'
@@ -22,6 +87,11 @@ export const getFavorites = (type) => {
   if (!key) return [];
 
   try {
+    const store = getNativeStore();
+    if (store) {
+      const upperType = type.toUpperCase();
+      return JSON.parse(store.getPage(upperType, 0, store.count(upperType)));
+    }
     const data = localStorage.getItem(key);
     return data ? JSON.parse(data) : [];
   } catch (err) {
@@ -30,6 +100,29 @@ export const getFavorites = (type) => {
   }
 };
 
+/**
+ * 分页获取收藏的内容（按收藏顺序）
+ * @param {string} type - 收藏类型：'songs'、'playlists' 或 'mvs'
+ * @param {number} offset - 起始位置
+ * @param {number} limit - 数量
+ * @returns {Array} - 该页的收藏内容
+ */
+export const getFavoritesPage = (type, offset = 0, limit = 50) => {
+  const key = STORAGE_KEYS[type.toUpperCase()];
+  if (!key) return [];
+
+  try {
+    const store = getNativeStore();
+    if (store) {
+      return JSON.parse(store.getPage(type.toUpperCase(), offset, limit));
+    }
+    return getFavorites(type).slice(offset, offset + limit);
+  } catch (err) {
+    console.error(`分页获取${type}收藏失败:`, err);
+    return [];
+  }
+};
+
 /**
  * 添加内容到收藏
  * @param {string} type - 收藏类型：'songs'、'playlists' 或 'mvs'
@@ -43,10 +136,11 @@ export const addToFavorites = (type, item) => {
   if (!key) return false;
 
   try {
-    const favorites = getFavorites(type);
+    const store = getNativeStore();
+    const favorites = store ? null : getFavorites(type);
 
     // 检查是否已经收藏
-    if (favorites.some(fav => fav.id === item.id)) {
+    if (store ? store.contains(type.toUpperCase(), String(item.id)) : favorites.some(fav => fav.id === item.id)) {
       return true; // 已经收藏过了
     }
 
@@ -108,8 +202,12 @@ export const addToFavorites = (type, item) => {
     }
 
     // 添加到收藏
-    favorites.push(itemToSave);
-    localStorage.setItem(key, JSON.stringify(favorites));
+    if (store) {
+      putNative(store, type.toUpperCase(), itemToSave);
+    } else {
+      favorites.push(itemToSave);
+      localStorage.setItem(key, JSON.stringify(favorites));
+    }
 
     // 触发收藏状态变更事件，通知其他组件
     try {
@@ -145,6 +243,11 @@ export const removeFromFavorites = (type, id) => {
   if (!key) return false;
 
   try {
+    const store = getNativeStore();
+    if (store) {
+      return store.remove(type.toUpperCase(), String(id));
+    }
+
     const favorites = getFavorites(type);
     const newFavorites = favorites.filter(item => item.id !== id);
 
@@ -173,6 +276,11 @@ export const isFavorited = (type, id) => {
   if (!key) return false;
 
   try {
+    const store = getNativeStore();
+    if (store) {
+      return store.isFavorited(type.toUpperCase(), String(id));
+    }
+
     const favorites = getFavorites(type);
     const idStr = String(id);
 
@@ -239,6 +347,11 @@ export const clearFavorites = (type) => {
   if (!key) return false;
 
   try {
+    const store = getNativeStore();
+    if (store) {
+      store.clear(type.toUpperCase());
+      return true;
+    }
     localStorage.removeItem(key);
     return true;
   } catch (err) {
@@ -254,6 +367,10 @@ export const clearFavorites = (type) => {
  */
 export const getFavoritesCount = (type) => {
   try {
+    const store = getNativeStore();
+    if (store) {
+      return STORAGE_KEYS[type.toUpperCase()] ? store.count(type.toUpperCase()) : 0;
+    }
     const favorites = getFavorites(type);
     return favorites.length;
   } catch (err) {
@@ -276,6 +393,7 @@ export const updateFavoriteSongUrl = (songId, newUrl, timestamp, additionalData
   try {
     console.log(`[FavoritesService] 更新歌曲URL: ${songId}`);
     const songs = getFavorites('SONGS');
+    const changedSongs = [];
     let updated = false;
 
     // 将songId转换为字符串，确保比较一致性
@@ -336,6 +454,7 @@ export const updateFavoriteSongUrl = (songId, newUrl, timestamp, additionalData
         }
 
         updated = true;
+        changedSongs.push(updatedSong);
         console.log(`[FavoritesService] 成功更新歌曲 ${song.name} (ID: ${song.id}) 的URL`);
         return updatedSong;
       }
@@ -343,16 +462,16 @@ export const updateFavoriteSongUrl = (songId, newUrl, timestamp, additionalData
     });
 
     if (updated) {
-      localStorage.setItem(STORAGE_KEYS.SONGS, JSON.stringify(updatedSongs));
+      const store = getNativeStore();
+      if (store) {
+        // 原生存储只写入变化的歌曲
+        changedSongs.forEach(song => putNative(store, 'SONGS', song));
+      } else {
+        localStorage.setItem(STORAGE_KEYS.SONGS, JSON.stringify(updatedSongs));
+      }
 
       // 触发收藏状态变更事件，确保UI更新
-      try {
-        document.dispatchEvent(new CustomEvent('favorites-updated', {
-          detail: { type: 'SONGS' }
-        }));
-      } catch (e) {
-        console.error('[FavoritesService] 触发收藏更新事件失败:', e);
-      }
+      dispatchFavoritesUpdated('SONGS');
 
       return true;
     }
@@ -377,7 +496,14 @@ export const batchUpdateFavoriteSongs = (updatedSongs) => {
   }
 
   try {
-    localStorage.setItem(STORAGE_KEYS.SONGS, JSON.stringify(updatedSongs));
+    const store = getNativeStore();
+    if (store) {
+      if (!store.replaceAll('SONGS', JSON.stringify(updatedSongs))) {
+        return false;
+      }
+    } else {
+      localStorage.setItem(STORAGE_KEYS.SONGS, JSON.stringify(updatedSongs));
+    }
     console.log(`[FavoritesService] 批量更新收藏歌曲成功，共更新${updatedSongs.length}首歌曲`);
     return true;
   } catch (err) {
@@ -386,6 +512,24 @@ export const batchUpdateFavoriteSongs = (updatedSongs) => {
   }
 };
 
+/**
+ * 保存修复后的收藏歌曲，原生存储只写入变化的歌曲
+ * @param {Array} songs - 修复前的歌曲数组
+ * @param {Array} fixedSongs - 修复后的歌曲数组（未变化的项与修复前是同一对象）
+ */
+const saveFixedSongs = (songs, fixedSongs) => {
+  const store = getNativeStore();
+  if (store) {
+    fixedSongs.forEach((song, index) => {
+      if (song !== songs[index]) {
+        putNative(store, 'SONGS', song);
+      }
+    });
+  } else {
+    localStorage.setItem(STORAGE_KEYS.SONGS, JSON.stringify(fixedSongs));
+  }
+};
+
 /**
  * 修复收藏歌曲中的isFromKw标记
  * @returns {boolean} - 是否成功修复
@@ -421,7 +565,7 @@ export const fixFavoriteSongsKwFlag = () => {
 
     // 如果有更新，保存回本地存储
     if (updated) {
-      localStorage.setItem(STORAGE_KEYS.SONGS, JSON.stringify(fixedSongs));
+      saveFixedSongs(songs, fixedSongs);
       console.log(`[FavoritesService] 成功修复收藏歌曲的酷我标记`);
     } else {
       console.log(`[FavoritesService] 收藏歌曲的酷我标记无需修复`);
@@ -472,7 +616,7 @@ export const fixNeteaseFavoriteSongs = () => {
 
     // 如果有更新，保存回本地存储
     if (updated) {
-      localStorage.setItem(STORAGE_KEYS.SONGS, JSON.stringify(fixedSongs));
+      saveFixedSongs(songs, fixedSongs);
       console.log(`[FavoritesService] 成功修复网易云收藏歌曲的URL`);
     } else {
       console.log(`[FavoritesService] 网易云收藏歌曲的URL无需修复`);
@@ -487,6 +631,7 @@ export const fixNeteaseFavoriteSongs = () => {
 
 export default {
   getFavorites,
+  getFavoritesPage,
   addToFavorites,
   removeFromFavorites,
   isFavorited,
@@ -503,6 +503,18 @@ export const getCachedPlayState = () => {
   }
 };
 
+/**
+ * 只清除内存缓存，IndexedDB中的离线数据保留，之后按需重新读取
+ */
+export const clearMemoryCache = () => {
+  cachedData.playlists = {};
+  cachedData.songs = {};
+  cachedData.searchResults = {};
+  cachedData.mvs = {};
+  cachedData.initialSongs = null;
+  console.log(`[DataCache] 内存缓存已清除`);
+};
+
 /**
  * 清除所有缓存数据
  */
@@ -66,4 +66,49 @@ export const clearPlayerState = () => {
   } catch (error) {
     console.error('[持久化] 清除播放状态失败:', error);
   }
-}; 
\ No newline at end of file
+};
+
+/**
+ * 读取Android播放服务保存的播放状态快照
+ * 服务被系统重建或WebView重新加载时，快照比localStorage中的状态更新
+ * @returns {Object|null} { songId, title, artist, cover, position, duration, savedAt, index, mode, queue }
+ */
+export const getNativePlaybackSnapshot = () => {
+  try {
+    if (!window.AndroidPlayer || typeof window.AndroidPlayer.getPlaybackSnapshot !== 'function') {
+      return null;
+    }
+    const snapshot = JSON.parse(window.AndroidPlayer.getPlaybackSnapshot());
+    return snapshot && snapshot.songId ? snapshot : null;
+  } catch (error) {
+    console.error('[持久化] 读取原生播放快照失败:', error);
+    return null;
+  }
+};
+
+/**
+ * 用原生快照补全保存的播放状态：快照较新时以快照的歌曲、进度和播放模式为准
+ * @param {Object|null} savedState - getPlayerState()的结果
+ * @param {Object|null} snapshot - getNativePlaybackSnapshot()的结果
+ * @param {Array<string>} playbackModes - 播放模式名称，下标与原生队列的模式常量对应
+ * @returns {Object|null} 合并后的播放状态
+ */
+export const mergeNativeSnapshot = (savedState, snapshot, playbackModes) => {
+  if (!snapshot) return savedState;
+  if (savedState && savedState.timestamp > snapshot.savedAt && String(savedState.currentSongId) !== String(snapshot.songId)) {
+    // Web层在快照之后已经切到了别的歌曲
+    return savedState;
+  }
+  const merged = { ...(savedState || {}) };
+  merged.currentSongId = savedState && String(savedState.currentSongId) === String(snapshot.songId)
+    ? savedState.currentSongId
+    : snapshot.songId;
+  if (typeof snapshot.position === 'number') {
+    merged.currentTime = snapshot.position;
+  }
+  if (typeof snapshot.mode === 'number' && playbackModes[snapshot.mode]) {
+    merged.playbackMode = playbackModes[snapshot.mode];
+  }
+  merged.nativeSnapshot = snapshot;
+  return merged;
+};
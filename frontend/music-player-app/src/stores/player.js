@@ -1,7 +1,12 @@
 import { defineStore } from 'pinia';
 import axios from 'axios';
-import { getPlayerState } from './persistedState';
+import { getPlayerState, getNativePlaybackSnapshot, mergeNativeSnapshot } from './persistedState';
 import * as dataCache from './dataCache';
+import { syncNativePlayerState, buildNativePlayerState } from '../utils/nativePlayerSync';
+import { getOfflineUrl } from '../services/downloadService';
+import { configureNativeSongUrlResolver, getNativeSongUrl, prefetchNativeSongUrls } from '../utils/nativeSongUrl';
+import { searchOffline, isNetworkOffline } from '../utils/offlineSearch';
+import { setNativeNextTrack, clearNativeNextTrack } from '../utils/nativeAudio';
 
 // 从环境变量中获取 API 地址
 const API_URL = import.meta.env.VITE_BACKEND_API_URL || 'https://api.931125.xyz';
@@ -20,6 +25,12 @@ const DEFAULT_ALBUM_ART = 'https://p2.music.126.net/6y-UleORITEDbvrOLV0Q8A==/563
 // 从localStorage加载保存的播放状态
 const savedState = getPlayerState();
 
+// Android端由原生层提前批量解析播放地址
+configureNativeSongUrlResolver(`${MAIN_API_BASE}/song/url`);
+
+// 提前解析播放地址的歌曲数
+const RESOLVE_AHEAD = 3;
+
 export const usePlayerStore = defineStore('player', {
   state: () => ({
     playlist: [], // 当前播放列表，歌曲对象会包含 preloadedUrl
@@ -283,6 +294,19 @@ export const usePlayerStore = defineStore('player', {
         // 创建歌曲对象的副本，避免修改原始对象
         const song = { ...songObject };
 
+        // 已下载的歌曲直接播放本地文件，不再请求会过期的CDN地址
+        const offlineUrl = getOfflineUrl(song.id);
+        if (offlineUrl) {
+          console.log(`[PlayerStore] _fetchSongUrl: 使用离线文件 - ${song.name}`);
+          return {
+            url: offlineUrl,
+            timestamp: Date.now(),
+            directPlayUrl: offlineUrl,
+            isFallbackDirect: false,
+            isOffline: true
+          };
+        }
+
         // 检查是否是收藏的歌曲
         const isFavorited = song.favoritedAt !== undefined;
 
@@ -297,6 +321,14 @@ export const usePlayerStore = defineStore('player', {
           (song.source === 'kw') ||
           (song.originalData && song.originalData.source === 'kw');
 
+        // 原生层提前解析、并在过期前刷新的地址可以直接使用
+        if (!isKwSong) {
+          const nativeDetails = getNativeSongUrl(song.id);
+          if (nativeDetails) {
+            return nativeDetails;
+          }
+        }
+
         // 对于收藏的歌曲，跳过缓存逻辑，直接获取新URL
         if (isFavorited || forceRefresh) {
           if (isKwSong) {
@@ -1056,8 +1088,17 @@ export const usePlayerStore = defineStore('player', {
         }
       }
 
+      // 让原生层把接下来几首歌的地址合并成一次请求提前解析
+      const upcomingIds = [];
+      for (let i = 0; i < RESOLVE_AHEAD && i < this.playlist.length; i++) {
+        const song = this.playlist[(nextIndex + i) % this.playlist.length];
+        if (song && !song.isFromKw && !song.rid) upcomingIds.push(song.id);
+      }
+      prefetchNativeSongUrls(upcomingIds);
+
       // 检查是否已经预加载过
       if (this.playlist[nextIndex].preloadedUrl) {
+        setNativeNextTrack(this.playlist[nextIndex], this.playlist[nextIndex].preloadedUrl);
         return;
       }
 
@@ -1088,6 +1129,18 @@ export const usePlayerStore = defineStore('player', {
               this.playlist[nextIndex].directPlayUrl = songDetails.directPlayUrl;
             }
 
+            // Android端原生引擎播完当前歌曲后直接切到这首，不需要等待WebView
+            setNativeNextTrack(nextSong, preloadUrl);
+
+            // Android端由原生音频缓存预取歌曲开头，切歌时直接从磁盘播放
+            if (window.AndroidPlayer && typeof window.AndroidPlayer.prefetchAudio === 'function') {
+              try {
+                window.AndroidPlayer.prefetchAudio(preloadUrl);
+              } catch (e) {
+                console.warn('[PlayerStore] 原生预取音频失败:', e);
+              }
+            }
+
             // 可选：创建一个隐藏的audio元素来预加载
             // const preloadAudio = new Audio();
             // preloadAudio.src = preloadUrl;
@@ -1103,10 +1156,23 @@ export const usePlayerStore = defineStore('player', {
     /**
      * 解析LRC歌词字符串，支持处理网易云的逐字歌词格式。
      * @param {string} lrcString - LRC或YRC格式的歌词字符串。
+     * @param {string|number} [songId] - 当前歌曲ID，传入时Android原生层会在锁屏和通知栏显示当前歌词行。
      * @returns {Array<object>} 解析后的歌词对象数组。
      */
-    parseLrc(lrcString) {
+    parseLrc(lrcString, songId = null) {
       if (!lrcString) return [];
+
+      // Android原生层一次性解析为有序时间轴，并自行跟踪锁屏歌词行
+      if (window.AndroidPlayer && typeof window.AndroidPlayer.parseLyrics === 'function') {
+        try {
+          const nativeLyrics = JSON.parse(window.AndroidPlayer.parseLyrics(lrcString, songId != null ? String(songId) : ''));
+          if (Array.isArray(nativeLyrics)) {
+            return nativeLyrics;
+          }
+        } catch (e) {
+          console.warn('[PlayerStore] 原生歌词解析失败，使用JS解析:', e);
+        }
+      }
       const lines = lrcString.split('\n');
       const lyrics = [];
       // 标准LRC时间标签: [mm:ss.xx] 或 [mm:ss.xxx]
@@ -1283,7 +1349,7 @@ export const usePlayerStore = defineStore('player', {
 
         if (cachedLyrics) {
           // 从缓存读取歌词数据后，同样需要经过parseLrc处理
-          const newLyrics = this.parseLrc(cachedLyrics.lrc); // 确保解析
+          const newLyrics = this.parseLrc(cachedLyrics.lrc, songId); // 确保解析
           let newTranslatedLyrics = [];
 
           if (cachedLyrics.tlyric) {
@@ -1392,7 +1458,7 @@ export const usePlayerStore = defineStore('player', {
 
               if (lrcContent) {
                 // 解析歌词
-                const newLyrics = this.parseLrc(lrcContent);
+                const newLyrics = this.parseLrc(lrcContent, songId);
 
                 // 只有在解析成功且有歌词内容时才更新
                 if (newLyrics && newLyrics.length > 0) {
@@ -1566,7 +1632,7 @@ export const usePlayerStore = defineStore('player', {
               }
 
               // 解析歌词
-              const newLyrics = this.parseLrc(lrcContent);
+              const newLyrics = this.parseLrc(lrcContent, songId);
               let newTranslatedLyrics = [];
 
               if (translatedLrcContent) {
@@ -1662,18 +1728,9 @@ export const usePlayerStore = defineStore('player', {
         return;
       }
 
-      // 寻找第一个时间大于当前时间的歌词行，则其前一行是当前行
+      // 歌词按时间排序，当前行是开始时间不晚于当前时间的最后一行
       let currentIdx = -1;
 
-      // 优化：直接从当前索引开始查找，避免每次都从头开始
-      let startIdx = Math.max(0, this.currentLyricIndex);
-
-      // 如果当前索引已经是最后一个，或者当前时间小于当前索引对应的时间，则从头开始查找
-      if (startIdx >= this.currentLyrics.length - 1 ||
-        (startIdx > 0 && currentTime < this.currentLyrics[startIdx].time)) {
-        startIdx = 0;
-      }
-
       // 特殊处理：如果当前时间是0或接近0，显示第一句歌词
       if (currentTime < 0.5 && this.currentLyrics.length > 0) {
         // 如果第一句歌词时间也接近0，则显示它
@@ -1684,19 +1741,19 @@ export const usePlayerStore = defineStore('player', {
           currentIdx = 0;
         }
       } else {
-        // 正常查找当前歌词
-        for (let i = startIdx; i < this.currentLyrics.length; i++) {
-          if (this.currentLyrics[i].time > currentTime) {
-            currentIdx = i - 1;
-            break;
+        // 二分查找当前歌词
+        let low = 0;
+        let high = this.currentLyrics.length - 1;
+        while (low <= high) {
+          const mid = (low + high) >> 1;
+          if (this.currentLyrics[mid].time <= currentTime) {
+            currentIdx = mid;
+            low = mid + 1;
+          } else {
+            high = mid - 1;
           }
         }
 
-        // 如果循环结束都没找到（即currentTime超过了所有歌词时间），则最后一句是当前行
-        if (currentIdx === -1 && currentTime >= this.currentLyrics[this.currentLyrics.length - 1].time) {
-          currentIdx = this.currentLyrics.length - 1;
-        }
-
         // 处理currentTime在第一句歌词之前的情况
         if (currentIdx < 0 && this.currentLyrics.length > 0 && currentTime < this.currentLyrics[0].time) {
           // 如果第一句歌词时间与当前时间相差不大（小于5秒），则显示第一句
@@ -1991,7 +2048,7 @@ export const usePlayerStore = defineStore('player', {
 
                           if (lrcContent) {
                             // 解析歌词
-                            const kwLyrics = this.parseLrc(lrcContent);
+                            const kwLyrics = this.parseLrc(lrcContent, this.currentSong?.id);
 
                             // 只有在解析成功且有歌词内容时才更新
                             if (kwLyrics && kwLyrics.length > 2) {
@@ -2808,8 +2865,11 @@ export const usePlayerStore = defineStore('player', {
         let fallbackAddedThisCall = 0;
         let mainAddedThisCall = 0;
 
+        // 断网时不再请求两个搜索接口，只使用离线索引
+        const offline = isNetworkOffline();
+
         // 3. 获取并处理备用API (酷我) 歌曲
-        if (this.fallbackApiHasMore || resetPagination) { // 只有在还有更多或者需要重置时才请求
+        if (!offline && (this.fallbackApiHasMore || resetPagination)) { // 只有在还有更多或者需要重置时才请求
           const fallbackSongs = await this._searchSongsFromFallbackApi(keywords, 30, this.fallbackApiOffset);
           for (const song of fallbackSongs) {
             song.isFromKw = true;
@@ -2835,7 +2895,14 @@ export const usePlayerStore = defineStore('player', {
 
         // 4. 获取并处理主API歌曲
         if (this.mainApiHasMore || resetPagination) { // 只有在还有更多或者需要重置时才请求
-          const mainSongs = await this._searchSongsFromMainApi(keywords, 30, this.mainApiOffset);
+          // 第一页先查原生离线索引：命中满一页或断网时不再请求/search，主API搜索失败时也用离线结果
+          const offlineSongs = resetPagination ? this._searchSongsOffline(keywords, 30) : [];
+          let servedOffline = offlineSongs.length > 0 && (offline || offlineSongs.length >= 30);
+          let mainSongs = servedOffline ? offlineSongs : await this._searchSongsFromMainApi(keywords, 30, this.mainApiOffset);
+          if (!servedOffline && mainSongs.length === 0 && offlineSongs.length > 0) {
+            mainSongs = offlineSongs;
+            servedOffline = true;
+          }
           for (const song of mainSongs) {
             song.isFromKw = false; // 确保标记
             // 确保每首歌曲都强制刷新URL
@@ -2856,6 +2923,11 @@ export const usePlayerStore = defineStore('player', {
             this.mainApiOffset = mainSongs.length;
           }
           this.mainApiHasMore = mainSongs.length >= 30;
+          if (servedOffline) {
+            // 离线结果不占主API的分页，加载更多时从主API第一页开始（按ID去重）
+            this.mainApiOffset = 0;
+            this.mainApiHasMore = !offline;
+          }
         }
 
         // 5. 合并本次调用获取的新歌曲 (酷我API在前，网易云在后)
@@ -3209,7 +3281,13 @@ export const usePlayerStore = defineStore('player', {
         // 对于单曲循环，可能需要重新触发audio.play()，这通常在组件层面处理
       } else if (this.playbackMode === 'shuffle') {
         if (this.playlist.length > 0) {
-          let randomIndex = Math.floor(Math.random() * this.playlist.length);
+          // Android端使用原生播放队列预先生成的随机顺序，与通知栏切歌保持一致
+          const nativeIndex = window.AndroidPlayer && typeof window.AndroidPlayer.peekNextQueueIndex === 'function'
+            ? window.AndroidPlayer.peekNextQueueIndex()
+            : -1;
+          let randomIndex = nativeIndex >= 0 && nativeIndex < this.playlist.length
+            ? nativeIndex
+            : Math.floor(Math.random() * this.playlist.length);
           // 确保不是同一首歌（除非列表只有一首歌）
           if (this.playlist.length > 1 && randomIndex === this.currentSongIndex) {
             randomIndex = (randomIndex + 1) % this.playlist.length;
@@ -3234,15 +3312,17 @@ export const usePlayerStore = defineStore('player', {
       const currentIndex = PLAYBACK_MODES.indexOf(this.playbackMode);
       const nextIndex = (currentIndex + 1) % PLAYBACK_MODES.length;
       this.playbackMode = PLAYBACK_MODES[nextIndex];
+      // 原生播放队列据此决定通知栏/耳机切歌的目标
+      syncNativePlayerState({ mode: this.playbackMode });
       this.toastMessage = this.currentPlaybackModeText; // 使用getter获取文本
       this.showPlaybackModeToast = true;
       // 短暂显示后自动隐藏提示
       setTimeout(() => {
         this.showPlaybackModeToast = false;
       }, 1500); // 显示1.5秒
-      // 如果切换到单曲循环且当前有歌曲，预加载逻辑可能需要调整，暂时不动
-      // 如果从单曲循环切换走，且当前有歌曲，可能需要触发一次预加载
-      if (PLAYBACK_MODES[currentIndex] === 'single' && this.playbackMode !== 'single' && this.currentSong) {
+      // 原生引擎中预先设置的下一首按旧模式选出，切换模式后清除，非单曲循环时重新预加载
+      clearNativeNextTrack();
+      if (this.playbackMode !== 'single' && this.currentSong) {
         this.preloadNextSong();
       }
     },
@@ -3254,8 +3334,8 @@ export const usePlayerStore = defineStore('player', {
       try {
         // console.log('[PlayerStore] 尝试恢复保存的状态');
 
-        // 从持久化存储恢复播放状态
-        const savedState = getPlayerState();
+        // 从持久化存储恢复播放状态，原生播放服务的快照较新时以快照为准
+        const savedState = mergeNativeSnapshot(getPlayerState(), getNativePlaybackSnapshot(), PLAYBACK_MODES);
         if (savedState) {
           // console.log('[PlayerStore] 从本地存储找到保存的状态');
 
@@ -3297,8 +3377,21 @@ export const usePlayerStore = defineStore('player', {
                 preloadedUrl: null
               }));
 
-              // 查找当前歌曲
-              const currentSongIndex = this.playlist.findIndex(song => song.id === savedState.currentSongId);
+              // 查找当前歌曲，缓存列表中没有时用原生快照中的歌曲信息，不必重新请求
+              let currentSongIndex = this.playlist.findIndex(song => String(song.id) === String(savedState.currentSongId));
+              const snapshot = savedState.nativeSnapshot;
+              if (currentSongIndex === -1 && snapshot && String(snapshot.songId) === String(savedState.currentSongId)) {
+                this.playlist.unshift({
+                  id: snapshot.songId,
+                  name: snapshot.title,
+                  artist: snapshot.artist,
+                  albumArt: snapshot.cover || DEFAULT_ALBUM_ART,
+                  duration: snapshot.duration || 0,
+                  url: null,
+                  preloadedUrl: null
+                });
+                currentSongIndex = 0;
+              }
 
               if (currentSongIndex !== -1) {
                 this.currentSongIndex = currentSongIndex;
@@ -3485,6 +3578,35 @@ export const usePlayerStore = defineStore('player', {
       }
     },
 
+    /**
+     * 从原生离线索引搜索看过的主API歌曲，格式与_searchSongsFromMainApi相同
+     * @param {string} keywords - 搜索关键词
+     * @param {number} limit - 最多返回的数量
+     * @returns {Array} 歌曲列表，离线索引不可用时为空数组
+     */
+    _searchSongsOffline(keywords, limit = 30) {
+      // 酷我歌曲需要收藏时保存的完整信息才能播放，离线结果只取主API歌曲
+      const songs = searchOffline(keywords, limit * 2)
+        .filter(item => item.type === 'song' && !item.isFromKw)
+        .slice(0, limit)
+        .map(item => ({
+          id: USE_ID_PREFIX ? `${MAIN_ID_PREFIX}${item.id}` : item.id,
+          name: item.name || '未知歌曲',
+          artist: item.artist || '未知歌手',
+          album: item.album || '未知专辑',
+          albumArt: item.cover || 'https://p2.music.126.net/6y-UleORITEDbvrOLV0Q8A==/5639395138885805.jpg',
+          duration: 0,
+          isFromKw: false,
+          forceRefreshUrl: true,
+          url: null,
+          timestamp: null
+        }));
+      if (songs.length > 0) {
+        console.log(`[PlayerStore] 离线索引命中: ${keywords}, ${songs.length} 首歌曲`);
+      }
+      return songs;
+    },
+
     /**
      * 从主API搜索歌曲
      * @param {string} keywords - 搜索关键词
@@ -4021,6 +4143,12 @@ export const usePlayerStore = defineStore('player', {
         cleanId = songId.substring(MAIN_ID_PREFIX.length);
       }
 
+      // 原生层已经解析好的地址不再请求接口
+      const nativeDetails = getNativeSongUrl(cleanId);
+      if (nativeDetails) {
+        return { ...nativeDetails, id: songId };
+      }
+
       console.log(`[PlayerStore] _fetchSongUrlFromMainApi: 获取歌曲URL, ID: ${cleanId}`);
 
       try {
@@ -4226,7 +4354,7 @@ export const usePlayerStore = defineStore('player', {
 
               if (lrcContent) {
                 // 解析歌词
-                const newLyrics = this.parseLrc(lrcContent);
+                const newLyrics = this.parseLrc(lrcContent, this.currentSong?.id);
 
                 // 只有在解析成功且有歌词内容时才更新
                 if (newLyrics && newLyrics.length > 0) {
@@ -4295,7 +4423,10 @@ export const usePlayerStore = defineStore('player', {
         window.playerControls.updateNowPlaying();
       }
 
-      // 如果在Android环境中，直接更新通知
+      // 如果在Android环境中，直接更新通知（支持批量同步时合并为一次调用）
+      if (syncNativePlayerState(buildNativePlayerState(this))) {
+        return;
+      }
       if (window.AndroidPlayer && typeof window.AndroidPlayer.updateNowPlaying === 'function') {
         window.AndroidPlayer.updateNowPlaying(
           this.currentSong.name || '未知歌曲',
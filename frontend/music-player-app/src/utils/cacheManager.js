@@ -38,6 +38,19 @@ export const clearViewInstanceCache = (viewName) => {
   }
 };
 
+/**
+ * 清除所有视图组件实例缓存
+ */
+export const clearAllViewInstanceCache = () => {
+  const names = Object.keys(viewInstances);
+  names.forEach(viewName => {
+    delete viewInstances[viewName];
+  });
+  if (names.length > 0) {
+    console.log(`[CacheManager] 清除全部视图组件缓存: ${names.length}个`);
+  }
+};
+
 /**
  * 保存组件数据状态到sessionStorage
  * @param {string} viewName - 视图名称
@@ -0,0 +1,54 @@
+/**
+ * 封面缩略图代理
+ * Android客户端中把封面地址换成原生代理地址（https://localhost/_image），由原生层按显示尺寸降采样并转码为WebP，
+ * WebView只解码小图；其他环境原样返回地址
+ */
+
+const PROXY_URL = 'https://localhost/_image';
+// 高分屏最多按3倍像素请求
+const MAX_PIXEL_RATIO = 3;
+
+/**
+ * 获取支持封面代理的原生接口，不支持时返回null
+ */
+const getNativePlayer = () => {
+  const player = window.AndroidPlayer;
+  if (!player || typeof player.prefetchImages !== 'function') return null;
+  return player;
+};
+
+/**
+ * 显示尺寸对应的像素尺寸
+ * @param {number} size - CSS像素
+ */
+const toPixels = (size) => Math.round(size * Math.min(window.devicePixelRatio || 1, MAX_PIXEL_RATIO));
+
+const isRemote = (url) => typeof url === 'string' && /^https?:\/\//.test(url);
+
+/**
+ * 按显示尺寸获取封面地址
+ * @param {string} url - 原始封面地址
+ * @param {number} size - 显示尺寸（CSS像素，按较短的一边）
+ * @returns {string} - 代理地址；不支持代理或不是网络图片时返回原地址
+ */
+export const thumbnailUrl = (url, size) => {
+  if (!isRemote(url) || !getNativePlayer()) return url;
+  return `${PROXY_URL}?w=${toPixels(size)}&url=${encodeURIComponent(url)}`;
+};
+
+/**
+ * 预先处理一批封面（例如列表刚加载的下一页），滚动到时直接从磁盘读取
+ * @param {string[]} urls - 原始封面地址
+ * @param {number} size - 显示尺寸（CSS像素）
+ */
+export const prefetchThumbnails = (urls, size) => {
+  const player = getNativePlayer();
+  if (!player || !Array.isArray(urls)) return;
+  const remote = urls.filter(isRemote);
+  if (remote.length === 0) return;
+  try {
+    player.prefetchImages(JSON.stringify(remote), toPixels(size));
+  } catch (error) {
+    console.error('[ImageProxy] 预取封面失败:', error);
+  }
+};
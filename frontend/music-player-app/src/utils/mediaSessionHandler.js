@@ -3,7 +3,30 @@
  * 用于与Android和iOS原生媒体控制进行交互
  */
 
+import { watch } from 'vue';
 import { usePlayerStore } from '../stores/player';
+import { syncNativePlayerState, buildNativePlayerState, syncNativeQueue } from './nativePlayerSync';
+
+/**
+ * 播放原生队列指定的位置
+ * 两边队列不一致（歌曲ID不匹配）时返回false，由调用方按原逻辑切歌
+ * @param {number} index - 队列位置
+ * @param {string} songId - 歌曲ID
+ * @returns {boolean} 是否已处理
+ */
+function playQueueIndex(index, songId) {
+  if (typeof index !== 'number' || index < 0) return false;
+  const playerStore = usePlayerStore();
+  const song = playerStore.playlist[index];
+  if (!song || (songId && String(song.id) !== String(songId))) {
+    console.warn(`[MediaSession] 原生队列与播放列表不一致, 位置: ${index}, ID: ${songId}`);
+    return false;
+  }
+  playerStore.playSong(song, index)
+    .then(() => playerStore._updateMediaSession())
+    .catch(error => console.error('[MediaSession] 播放队列指定的歌曲失败:', error));
+  return true;
+}
 
 /**
  * 初始化媒体会话控制
@@ -32,16 +55,36 @@ export function initMediaSessionHandler() {
 
     /**
      * 播放上一首
+     * @param {number} [index] - 原生播放队列已决定的位置
+     * @param {string} [songId] - 该位置上的歌曲ID
      */
-    previous: () => {
-      playerStore.playPrevious();
+    previous: (index, songId) => {
+      if (!playQueueIndex(index, songId)) {
+        playerStore.playPrevious();
+      }
     },
 
     /**
      * 播放下一首
+     * @param {number} [index] - 原生播放队列已决定的位置
+     * @param {string} [songId] - 该位置上的歌曲ID
      */
-    next: () => {
-      playerStore.playNext();
+    next: (index, songId) => {
+      if (!playQueueIndex(index, songId)) {
+        playerStore.playNext();
+      }
+    },
+
+    /**
+     * 跳转到指定位置（锁屏/蓝牙设备拖动进度条）
+     * @param {number} positionMs - 目标位置（毫秒）
+     */
+    seek: (positionMs) => {
+      const audio = document.getElementById('audio-player');
+      if (!audio || !playerStore.currentSong) return;
+      const time = Math.max(0, positionMs / 1000);
+      audio.currentTime = time;
+      playerStore.updateCurrentTime(time);
     },
 
     /**
@@ -50,8 +93,22 @@ export function initMediaSessionHandler() {
     updateNowPlaying: () => {
       if (!playerStore.currentSong) return;
 
-      // 检查是否在Android环境中
-      if (window.AndroidPlayer && typeof window.AndroidPlayer.updateNowPlaying === 'function') {
+      // 检查是否在Android环境中，优先使用批量状态同步
+      if (syncNativePlayerState(buildNativePlayerState(playerStore))) {
+        // 已合并到下一次syncState调用
+      } else if (window.AndroidPlayer && typeof window.AndroidPlayer.updateNowPlayingWithCover === 'function') {
+        // 封面由原生层在后台加载并缓存
+        window.AndroidPlayer.updateNowPlayingWithCover(
+          playerStore.currentSong.name || '未知歌曲',
+          playerStore.currentSong.artist || '未知艺术家',
+          playerStore.currentSong.albumArt || ''
+        );
+
+        // 更新播放状态
+        if (typeof window.AndroidPlayer.setPlayingState === 'function') {
+          window.AndroidPlayer.setPlayingState(playerStore.isPlaying);
+        }
+      } else if (window.AndroidPlayer && typeof window.AndroidPlayer.updateNowPlaying === 'function') {
         window.AndroidPlayer.updateNowPlaying(
           playerStore.currentSong.name || '未知歌曲',
           playerStore.currentSong.artist || '未知艺术家'
@@ -83,6 +140,7 @@ export function initMediaSessionHandler() {
           navigator.mediaSession.setActionHandler('pause', () => mediaControls.pause());
           navigator.mediaSession.setActionHandler('previoustrack', () => mediaControls.previous());
           navigator.mediaSession.setActionHandler('nexttrack', () => mediaControls.next());
+          navigator.mediaSession.setActionHandler('seekto', (details) => mediaControls.seek(details.seekTime * 1000));
 
           // 更新播放状态
           navigator.mediaSession.playbackState = playerStore.isPlaying ? 'playing' : 'paused';
@@ -107,6 +165,13 @@ export function initMediaSessionHandler() {
   // 将媒体控制对象暴露给全局，以便原生代码可以调用
   window.playerControls = mediaControls;
 
+  // 播放列表变化时同步给原生播放队列
+  watch(
+    () => [playerStore.playlist, playerStore.playlist.length],
+    () => syncNativeQueue(playerStore.playlist, playerStore.currentSongIndex, playerStore.playbackMode),
+    { immediate: true }
+  );
+
   return mediaControls;
 }
 
@@ -134,7 +199,9 @@ export function watchPlayerChanges(playerStore, mediaControls) {
 
   // 监听播放状态变化
   playerStore.$subscribe((mutation, state) => {
-    if (window.AndroidPlayer && typeof window.AndroidPlayer.setPlayingState === 'function') {
+    if (syncNativePlayerState({ playing: !!state.isPlaying })) {
+      // 已合并到下一次syncState调用
+    } else if (window.AndroidPlayer && typeof window.AndroidPlayer.setPlayingState === 'function') {
       window.AndroidPlayer.setPlayingState(state.isPlaying);
     }
 
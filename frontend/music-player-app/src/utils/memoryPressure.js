@@ -0,0 +1,50 @@
+/**
+ * 内存压力处理
+ * Android原生层收到onTrimMemory后先释放自己的缓存，再通过window.onNativeMemoryTrim通知Web层
+ */
+import { clearMemoryCache } from '../stores/dataCache';
+import { clearAllViewInstanceCache } from './cacheManager';
+
+// 与MemoryTrimRegistry的优先级对应
+const PRIORITY_LOW = 0;
+const PRIORITY_NORMAL = 1;
+
+let installed = false;
+
+/**
+ * 按原生层给出的优先级释放Web层缓存
+ * @param {Object} event - { level, priority, reclaimed }
+ */
+function handleMemoryTrim(event) {
+  if (!event) return;
+  const priority = typeof event.priority === 'number' ? event.priority : PRIORITY_LOW;
+
+  // 数据的内存缓存可以从IndexedDB重新读取，最先释放
+  clearMemoryCache();
+
+  // 内存较紧张时再释放缓存的视图组件实例
+  if (priority >= PRIORITY_NORMAL) {
+    clearAllViewInstanceCache();
+  }
+
+  console.log(`[MemoryPressure] 内存回收: 级别=${event.level}, 优先级=${priority}, 原生释放=${Math.round((event.reclaimed || 0) / 1024)}KB`);
+}
+
+/**
+ * 安装内存回收事件处理程序
+ */
+export function installMemoryPressureHandler() {
+  if (installed) return;
+  installed = true;
+  const previousHandler = window.onNativeMemoryTrim;
+  window.onNativeMemoryTrim = (event) => {
+    try {
+      handleMemoryTrim(event);
+    } catch (error) {
+      console.error('[MemoryPressure] 处理内存回收事件失败:', error);
+    }
+    if (typeof previousHandler === 'function') {
+      previousHandler(event);
+    }
+  };
+}
@@ -0,0 +1,427 @@
+/**
+ * Android原生播放引擎适配
+ * 把<audio id="audio-player">元素的播放相关属性和方法转接到AndroidPlayer.native*接口：
+ * 设置src时由服务中的原生引擎加载，play/pause/currentTime等直接控制原生引擎；
+ * 引擎状态通过window.onNativePlayerEvent回调，再以timeupdate、play、pause、ended等事件派发到元素上。
+ * 其他组件仍按原来的方式使用该元素，元素本身不再设置src，不解码音频，
+ * 熄屏后WebView被挂起也不影响播放
+ */
+
+// 播放时派发timeupdate的间隔，只在页面内推算进度，不经过桥接
+const TIME_UPDATE_INTERVAL_MS = 250;
+// 刚发出播放/暂停命令后，与之矛盾的引擎状态视为命令之前的旧事件
+const COMMAND_SETTLE_MS = 500;
+
+const NETWORK_IDLE = 1;
+const NETWORK_LOADING = 2;
+const NETWORK_NO_SOURCE = 3;
+const HAVE_NOTHING = 0;
+const HAVE_ENOUGH_DATA = 4;
+const MEDIA_ERR_DECODE = 3;
+
+let binding = null;
+
+/**
+ * 是否可以使用原生播放引擎
+ * @returns {boolean}
+ */
+export function isNativeAudioSupported() {
+  return !!(window.AndroidPlayer && typeof window.AndroidPlayer.nativeLoad === 'function');
+}
+
+/**
+ * 调用原生接口，出错时只记录日志
+ */
+function callNative(method, ...args) {
+  try {
+    window.AndroidPlayer[method](...args);
+  } catch (error) {
+    console.warn(`[nativeAudio] 调用${method}失败:`, error);
+  }
+}
+
+function songIdOf(song, fallback) {
+  return song && song.id != null ? String(song.id) : fallback;
+}
+
+/**
+ * 把音频元素接到原生播放引擎
+ * @param {HTMLAudioElement} element - 播放器使用的音频元素
+ * @param {Object} hooks
+ * @param {Function} hooks.getSong - 返回当前歌曲，加载时用来取得歌曲ID、标题和歌手
+ * @param {Function} hooks.onPlayingChange - 引擎被通知栏、耳机或音频焦点暂停/恢复时调用
+ * @param {Function} hooks.onTrackChange - 引擎自行切到队列中的另一首时调用，参数为歌曲ID；
+ *   返回false表示找不到这首歌，按当前歌曲播放结束处理
+ * @returns {boolean} 不支持原生引擎时返回false，元素保持原样
+ */
+export function bindNativeAudio(element, hooks) {
+  if (!element || !isNativeAudioSupported()) return false;
+  if (binding) return true;
+
+  const prototypeLoad = HTMLMediaElement.prototype.load;
+  // 模板绑定的src在挂载时已经写到元素上，取下来交给原生引擎
+  const initialSrc = element.getAttribute('src') || '';
+  element.removeAttribute('src');
+  element.setAttribute('preload', 'none');
+  prototypeLoad.call(element);
+
+  let src = '';
+  // 原生引擎当前加载（或自行切换到）的歌曲，以及等待引擎确认的加载
+  let loadedId = null;
+  let awaitingId = null;
+  let paused = true;
+  let pausedSent = true;
+  let lastCommandAt = 0;
+  let ended = false;
+  let ready = false;
+  let error = null;
+  let durationSec = NaN;
+  let anchorSec = 0;
+  let anchorAt = 0;
+  let rate = 1;
+  let volume = 1;
+  let muted = false;
+  let bufferedPercent = 0;
+  let buffering = false;
+  let timer = null;
+  // 同一任务内的操作合并后在微任务中发给原生层
+  let pendingLoad = false;
+  let pendingSeekMs = null;
+  let pendingStop = false;
+  let flushScheduled = false;
+
+  const emit = (type) => element.dispatchEvent(new Event(type));
+
+  const position = () => {
+    let sec = anchorSec;
+    if (!paused && ready && !buffering) {
+      sec += (performance.now() - anchorAt) / 1000 * rate;
+    }
+    return durationSec > 0 ? Math.min(sec, durationSec) : sec;
+  };
+
+  const setAnchor = (sec) => {
+    anchorSec = sec;
+    anchorAt = performance.now();
+  };
+
+  const updateTimer = () => {
+    const running = !paused && ready;
+    if (running && !timer) {
+      timer = setInterval(() => emit('timeupdate'), TIME_UPDATE_INTERVAL_MS);
+    } else if (!running && timer) {
+      clearInterval(timer);
+      timer = null;
+    }
+  };
+
+  const flush = () => {
+    flushScheduled = false;
+    if (pendingLoad) {
+      pendingLoad = false;
+      pendingStop = false;
+      const song = hooks.getSong();
+      awaitingId = loadedId;
+      callNative('nativeLoad', loadedId, src, (song && song.name) || '', (song && song.artist) || '', !paused);
+      pausedSent = paused;
+      lastCommandAt = performance.now();
+    } else if (pendingStop) {
+      pendingStop = false;
+      loadedId = null;
+      awaitingId = null;
+      callNative('nativeStop');
+      pausedSent = true;
+    }
+    if (pendingSeekMs !== null) {
+      callNative('nativeSeek', pendingSeekMs);
+      pendingSeekMs = null;
+    }
+    if (src && paused !== pausedSent) {
+      callNative(paused ? 'nativePause' : 'nativePlay');
+      pausedSent = paused;
+      lastCommandAt = performance.now();
+    }
+  };
+
+  const schedule = () => {
+    if (!flushScheduled) {
+      flushScheduled = true;
+      queueMicrotask(flush);
+    }
+  };
+
+  const resetMedia = () => {
+    ready = false;
+    ended = false;
+    error = null;
+    buffering = false;
+    durationSec = NaN;
+    bufferedPercent = 0;
+    setAnchor(0);
+    updateTimer();
+  };
+
+  const setSource = (value) => {
+    const url = value ? String(value) : '';
+    if (url === src) return;
+    src = url;
+    if (!url) {
+      // 切歌时会先暂停、归零、清空再设置新地址，留到微任务里确认确实没有新地址再停止
+      pendingStop = true;
+      pendingSeekMs = null;
+      schedule();
+      return;
+    }
+    const reset = pendingStop;
+    pendingStop = false;
+    const id = songIdOf(hooks.getSong(), url);
+    if (id === loadedId && !error) {
+      // 引擎已经加载了这首歌（例如引擎自行切到了下一首，或同一首歌的地址被重新设置）：
+      // 不重新加载，重新设置前的暂停也不发给引擎
+      if (reset && paused !== pausedSent) {
+        paused = pausedSent;
+        updateTimer();
+        if (!paused) emit('play');
+      }
+      return;
+    }
+    loadedId = id;
+    resetMedia();
+    pendingSeekMs = null;
+    pendingLoad = true;
+    emit('loadstart');
+    schedule();
+  };
+
+  const markReady = () => {
+    if (ready) return;
+    ready = true;
+    emit('loadedmetadata');
+    emit('durationchange');
+    emit('canplay');
+    emit('canplaythrough');
+  };
+
+  /**
+   * 引擎状态与本地状态矛盾时，刚发出的命令可能还没有生效
+   */
+  const settled = () => performance.now() - lastCommandAt > COMMAND_SETTLE_MS;
+
+  const onState = (event) => {
+    const id = event.id != null ? String(event.id) : null;
+    if (awaitingId !== null) {
+      // 加载新歌之前发出的旧事件
+      if (id !== awaitingId) return;
+      awaitingId = null;
+    } else if (id && loadedId && id !== loadedId && !pendingLoad) {
+      // 通知栏或播放结束时引擎自行切到了队列中的另一首，Web层随后设置这首歌时不再重新加载
+      loadedId = id;
+      resetMedia();
+      if (!hooks.onTrackChange(id)) {
+        emit('ended');
+      }
+    }
+    if (event.duration > 0) {
+      const sec = event.duration / 1000;
+      if (sec !== durationSec) {
+        durationSec = sec;
+        if (ready) emit('durationchange');
+      }
+    }
+    const sec = (event.position || 0) / 1000;
+    switch (event.state) {
+      case 'buffering':
+        buffering = true;
+        setAnchor(sec);
+        emit('waiting');
+        break;
+      case 'playing':
+        buffering = false;
+        setAnchor(sec);
+        markReady();
+        if (paused && settled()) {
+          paused = false;
+          pausedSent = false;
+          hooks.onPlayingChange(true);
+          emit('play');
+        }
+        if (!paused) emit('playing');
+        break;
+      case 'paused':
+        buffering = false;
+        setAnchor(sec);
+        markReady();
+        if (!paused && settled()) {
+          paused = true;
+          pausedSent = true;
+          hooks.onPlayingChange(false);
+          emit('pause');
+        }
+        break;
+      case 'ended':
+        buffering = false;
+        ended = true;
+        paused = true;
+        pausedSent = true;
+        setAnchor(durationSec > 0 ? durationSec : sec);
+        emit('timeupdate');
+        emit('ended');
+        break;
+      case 'error':
+        buffering = false;
+        error = { code: MEDIA_ERR_DECODE, message: '原生播放引擎出错' };
+        paused = true;
+        pausedSent = true;
+        emit('error');
+        break;
+      case 'idle':
+        ready = false;
+        paused = true;
+        pausedSent = true;
+        break;
+      default:
+        break;
+    }
+    updateTimer();
+  };
+
+  const define = (name, descriptor) => {
+    Object.defineProperty(element, name, { configurable: true, ...descriptor });
+  };
+
+  define('src', { get: () => src, set: setSource });
+  define('currentSrc', { get: () => src });
+  define('paused', { get: () => paused });
+  define('ended', { get: () => ended });
+  define('error', { get: () => error });
+  define('duration', { get: () => durationSec });
+  define('readyState', { get: () => (ready ? HAVE_ENOUGH_DATA : HAVE_NOTHING) });
+  define('networkState', {
+    get: () => (!src ? NETWORK_NO_SOURCE : (ready && !buffering ? NETWORK_IDLE : NETWORK_LOADING))
+  });
+  define('buffered', {
+    get: () => {
+      const end = durationSec > 0 ? durationSec * bufferedPercent / 100 : 0;
+      const length = end > 0 ? 1 : 0;
+      return { length, start: () => 0, end: () => end };
+    }
+  });
+  define('currentTime', {
+    get: position,
+    set: (value) => {
+      const sec = Math.max(0, Number(value) || 0);
+      setAnchor(sec);
+      ended = false;
+      pendingSeekMs = Math.round(sec * 1000);
+      schedule();
+      emit('seeking');
+      emit('timeupdate');
+      emit('seeked');
+    }
+  });
+  define('volume', {
+    get: () => volume,
+    set: (value) => {
+      volume = Math.min(1, Math.max(0, Number(value) || 0));
+      callNative('nativeSetVolume', muted ? 0 : volume);
+      emit('volumechange');
+    }
+  });
+  define('muted', {
+    get: () => muted,
+    set: (value) => {
+      muted = !!value;
+      callNative('nativeSetVolume', muted ? 0 : volume);
+      emit('volumechange');
+    }
+  });
+  define('playbackRate', {
+    get: () => rate,
+    set: (value) => {
+      const next = Number(value) || 1;
+      if (next === rate) return;
+      setAnchor(position());
+      rate = next;
+      callNative('nativeSetSpeed', rate);
+      emit('ratechange');
+    }
+  });
+  define('play', {
+    value: () => {
+      if (!src) {
+        return Promise.reject(new DOMException('没有可播放的音频', 'NotSupportedError'));
+      }
+      if (paused) {
+        if (ended) {
+          ended = false;
+          setAnchor(0);
+        }
+        paused = false;
+        updateTimer();
+        emit('play');
+        schedule();
+      }
+      return Promise.resolve();
+    }
+  });
+  define('pause', {
+    value: () => {
+      if (paused) return;
+      setAnchor(position());
+      paused = true;
+      updateTimer();
+      emit('pause');
+      schedule();
+    }
+  });
+  define('load', {
+    value: () => {
+      if (!src || pendingLoad) return;
+      resetMedia();
+      pendingLoad = true;
+      emit('loadstart');
+      schedule();
+    }
+  });
+
+  window.onNativePlayerEvent = (event) => {
+    if (!event) return;
+    if (event.type === 'buffering') {
+      bufferedPercent = event.percent || 0;
+      emit('progress');
+    } else if (event.type === 'state') {
+      onState(event);
+    }
+  };
+
+  binding = { loadedId: () => loadedId };
+  if (initialSrc) {
+    setSource(initialSrc);
+  }
+  console.log('[nativeAudio] 播放交给原生引擎');
+  return true;
+}
+
+/**
+ * 预先告诉原生引擎下一首，当前歌曲播完后引擎直接切换，不需要等待WebView
+ * @param {Object} song - 下一首歌曲
+ * @param {string} url - 下一首的播放地址
+ */
+export function setNativeNextTrack(song, url) {
+  if (!binding) return;
+  const id = songIdOf(song, url);
+  if (!url || id === binding.loadedId()) {
+    // 单曲循环时下一首就是当前歌曲，由播放结束后的重播处理
+    clearNativeNextTrack();
+    return;
+  }
+  callNative('nativeEnqueue', id, url, song.name || '', song.artist || '');
+}
+
+/**
+ * 清除预先设置的下一首（例如切换了播放模式）
+ */
+export function clearNativeNextTrack() {
+  if (!binding) return;
+  callNative('nativeEnqueue', '', '', '', '');
+}
@@ -0,0 +1,117 @@
+/**
+ * Android原生播放状态同步工具
+ * 将同一轮事件循环内的多次状态更新合并为一次AndroidPlayer.syncState调用
+ */
+
+// 每次页面加载生成新的会话标识，原生层据此重置版本号
+const SESSION_ID = `${Date.now()}_${Math.random().toString(36).slice(2, 8)}`;
+
+let stateVersion = 0;
+let pendingState = null;
+let flushScheduled = false;
+const lastSentState = {};
+
+/**
+ * 是否支持批量状态同步接口
+ * @returns {boolean}
+ */
+export function isNativeSyncSupported() {
+  return !!(window.AndroidPlayer && typeof window.AndroidPlayer.syncState === 'function');
+}
+
+/**
+ * 从播放器状态构建需要同步给原生层的字段
+ * 不包含播放进度，进度只在需要时单独同步
+ * @param {Object} playerStore - 播放器状态存储
+ * @returns {Object|null}
+ */
+export function buildNativePlayerState(playerStore) {
+  const song = playerStore.currentSong;
+  if (!song) return null;
+
+  return {
+    songId: song.id != null ? String(song.id) : null,
+    title: song.name || '未知歌曲',
+    artist: song.artist || '未知艺术家',
+    cover: song.albumArt || null,
+    playing: !!playerStore.isPlaying,
+    duration: song.duration || 0,
+    index: playerStore.currentSongIndex,
+    mode: playerStore.playbackMode
+  };
+}
+
+let lastQueueSignature = null;
+
+/**
+ * 同步播放队列，服务端据此在后台直接决定上一首/下一首
+ * 歌曲ID列表没有变化时不重复发送
+ * @param {Array} playlist - 播放列表
+ * @param {number} currentIndex - 当前播放位置
+ * @param {string} playbackMode - 播放模式
+ * @returns {boolean} 不支持时返回false
+ */
+export function syncNativeQueue(playlist, currentIndex, playbackMode) {
+  if (!window.AndroidPlayer || typeof window.AndroidPlayer.setQueue !== 'function') return false;
+
+  const ids = (playlist || []).map(song => (song && song.id != null ? String(song.id) : ''));
+  const signature = ids.join(',');
+  if (signature === lastQueueSignature) return true;
+  lastQueueSignature = signature;
+
+  try {
+    window.AndroidPlayer.setQueue(JSON.stringify({ ids, index: currentIndex, mode: playbackMode }));
+  } catch (error) {
+    console.warn('[nativePlayerSync] 同步播放队列失败:', error);
+  }
+  return true;
+}
+
+/**
+ * 提交部分状态，在当前任务结束后合并发送
+ * @param {Object} partialState - 部分播放状态
+ * @returns {boolean} 不支持批量同步时返回false，调用方应回退到旧接口
+ */
+export function syncNativePlayerState(partialState) {
+  if (!isNativeSyncSupported()) return false;
+  if (!partialState) return true;
+
+  pendingState = Object.assign(pendingState || {}, partialState);
+  if (!flushScheduled) {
+    flushScheduled = true;
+    queueMicrotask(flushNativePlayerState);
+  }
+  return true;
+}
+
+/**
+ * 只发送与上次相比发生变化的字段
+ */
+function flushNativePlayerState() {
+  flushScheduled = false;
+  const state = pendingState;
+  pendingState = null;
+  if (!state) return;
+
+  const changed = {};
+  let hasChange = false;
+  Object.keys(state).forEach((key) => {
+    if (lastSentState[key] !== state[key]) {
+      changed[key] = state[key];
+      lastSentState[key] = state[key];
+      hasChange = true;
+    }
+  });
+  if (!hasChange) return;
+
+  stateVersion += 1;
+  try {
+    window.AndroidPlayer.syncState(JSON.stringify({
+      version: stateVersion,
+      session: SESSION_ID,
+      ...changed
+    }));
+  } catch (error) {
+    console.warn('[nativePlayerSync] 同步播放状态失败:', error);
+  }
+}
@@ -0,0 +1,100 @@
+/**
+ * Android原生歌单分页工具
+ * 大歌单由原生层流式解析并以列式数据保存，Web层只按需读取当前可见的一页
+ */
+
+// 等待中的加载请求：playlistId -> { resolve, reject, resolved }
+const pendingLoads = new Map();
+let eventHandlerInstalled = false;
+
+/**
+ * 是否支持原生歌单分页接口
+ * @returns {boolean}
+ */
+export function isNativePlaylistSupported() {
+  return !!(window.AndroidPlayer &&
+    typeof window.AndroidPlayer.openPlaylistTracks === 'function' &&
+    typeof window.AndroidPlayer.getPlaylistTracksPage === 'function');
+}
+
+/**
+ * 处理原生层的歌单加载事件
+ * 解析出第一页（progress）或全部完成（loaded）时都视为可以开始显示
+ * @param {Object} event - { type, playlistId, count, message }
+ */
+function handleNativePlaylistEvent(event) {
+  if (!event || !event.playlistId) return;
+  const pending = pendingLoads.get(event.playlistId);
+  if (!pending) return;
+
+  if (event.type === 'error') {
+    pendingLoads.delete(event.playlistId);
+    pending.reject(new Error(event.message || '原生歌单加载失败'));
+    return;
+  }
+
+  if (typeof pending.onCount === 'function') {
+    pending.onCount(event.count, event.type === 'loaded');
+  }
+  if (!pending.resolved) {
+    pending.resolved = true;
+    pending.resolve({ count: event.count, complete: event.type === 'loaded' });
+  }
+  if (event.type === 'loaded') {
+    pendingLoads.delete(event.playlistId);
+  }
+}
+
+function installEventHandler() {
+  if (eventHandlerInstalled) return;
+  eventHandlerInstalled = true;
+  const previousHandler = window.onNativePlaylistEvent;
+  window.onNativePlaylistEvent = (event) => {
+    handleNativePlaylistEvent(event);
+    if (typeof previousHandler === 'function') {
+      previousHandler(event);
+    }
+  };
+}
+
+/**
+ * 在原生层打开歌单
+ * @param {string} playlistId - 歌单ID
+ * @param {string} url - /playlist/track/all的完整地址
+ * @param {Function} [onCount] - 歌曲数量变化回调 (count, complete)
+ * @returns {Promise<{count: number, complete: boolean}>} 第一页可读时resolve
+ */
+export function openNativePlaylist(playlistId, url, onCount) {
+  installEventHandler();
+  const key = String(playlistId);
+  const previous = pendingLoads.get(key);
+  if (previous && !previous.resolved) {
+    previous.reject(new Error('歌单加载已被新的请求替代'));
+  }
+  return new Promise((resolve, reject) => {
+    pendingLoads.set(key, { resolve, reject, onCount, resolved: false });
+    try {
+      window.AndroidPlayer.openPlaylistTracks(key, url);
+    } catch (error) {
+      pendingLoads.delete(key);
+      reject(error);
+    }
+  });
+}
+
+/**
+ * 读取一页歌曲
+ * @param {string} playlistId - 歌单ID
+ * @param {number} offset - 起始位置
+ * @param {number} limit - 数量
+ * @returns {{offset: number, total: number, complete: boolean, tracks: Array}|null} 歌单未加载时返回null
+ */
+export function getNativePlaylistPage(playlistId, offset, limit) {
+  try {
+    const page = JSON.parse(window.AndroidPlayer.getPlaylistTracksPage(String(playlistId), offset, limit));
+    return Array.isArray(page.tracks) ? page : null;
+  } catch (error) {
+    console.warn('[nativePlaylist] 读取歌单分页失败:', error);
+    return null;
+  }
+}
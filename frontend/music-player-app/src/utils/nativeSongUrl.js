@@ -0,0 +1,86 @@
+/**
+ * 原生播放地址解析器
+ * Android原生层通过/song/url的多ID形式批量解析接下来的歌曲，并在地址过期前刷新；
+ * 切歌时可以同步取到现成的地址，省去一次接口请求。只适用于主API的数字ID
+ */
+
+// 同一个地址只设置一次
+let configuredEndpoint = null;
+
+/**
+ * 获取支持地址解析的原生接口，不支持时返回null
+ */
+const getNativePlayer = () => {
+  const player = window.AndroidPlayer;
+  if (!player || typeof player.getResolvedSongUrl !== 'function') return null;
+  return player;
+};
+
+/**
+ * 去掉主API的ID前缀，非数字ID返回null
+ * @param {string|number} songId - 歌曲ID
+ */
+const toMainId = (songId) => {
+  if (songId === undefined || songId === null) return null;
+  const id = String(songId).replace(/^main_/, '');
+  return /^\d+$/.test(id) ? id : null;
+};
+
+/**
+ * 设置原生解析器使用的/song/url地址
+ * @param {string} endpoint - /song/url的完整地址
+ */
+export const configureNativeSongUrlResolver = (endpoint) => {
+  const player = getNativePlayer();
+  if (!player || !endpoint || configuredEndpoint === endpoint) return;
+  try {
+    player.setSongUrlEndpoint(endpoint);
+    configuredEndpoint = endpoint;
+  } catch (error) {
+    console.error('[NativeSongUrl] 设置解析接口失败:', error);
+  }
+};
+
+/**
+ * 同步获取原生层已解析的播放地址
+ * @param {string|number} songId - 歌曲ID
+ * @returns {Object|null} - 与_fetchSongUrlFromMainApi相同结构的歌曲详情，没有可用地址时返回null
+ */
+export const getNativeSongUrl = (songId) => {
+  const player = getNativePlayer();
+  const id = toMainId(songId);
+  if (!player || !id) return null;
+  try {
+    const json = player.getResolvedSongUrl(id);
+    if (!json) return null;
+    const resolved = JSON.parse(json);
+    return {
+      url: resolved.url,
+      duration: resolved.duration || 0,
+      isFallbackDirect: false,
+      directPlayUrl: null,
+      id: songId,
+      timestamp: Date.now(),
+      expiresAt: resolved.expiresAt
+    };
+  } catch (error) {
+    console.error('[NativeSongUrl] 获取已解析的播放地址失败:', error);
+    return null;
+  }
+};
+
+/**
+ * 让原生层批量预取歌曲的播放地址
+ * @param {Array<string|number>} songIds - 歌曲ID列表，非主API的ID会被忽略
+ */
+export const prefetchNativeSongUrls = (songIds) => {
+  const player = getNativePlayer();
+  if (!player || typeof player.prefetchSongUrls !== 'function') return;
+  const ids = (songIds || []).map(toMainId).filter(Boolean);
+  if (ids.length === 0) return;
+  try {
+    player.prefetchSongUrls(ids.join(','));
+  } catch (error) {
+    console.error('[NativeSongUrl] 预取播放地址失败:', error);
+  }
+};
@@ -0,0 +1,59 @@
+/**
+ * 离线搜索
+ * Android原生层为看过的歌曲和歌单（收藏、歌单、排行榜、搜索结果、最近播放）维护本地索引，
+ * 支持汉字、拼音全拼和首字母匹配，查询在几毫秒内完成且不需要网络。其他环境下不可用
+ */
+
+/**
+ * 获取支持离线搜索的原生接口，不支持时返回null
+ */
+const getNativePlayer = () => {
+  const player = window.AndroidPlayer;
+  if (!player || typeof player.searchOffline !== 'function') return null;
+  return player;
+};
+
+/**
+ * 是否支持离线搜索
+ */
+export const isOfflineSearchAvailable = () => getNativePlayer() !== null;
+
+/**
+ * 当前是否处于断网状态
+ */
+export const isNetworkOffline = () => typeof navigator !== 'undefined' && navigator.onLine === false;
+
+/**
+ * 在离线索引中查询
+ * @param {string} keywords - 关键词
+ * @param {number} limit - 最多返回的条数
+ * @returns {Array<{type: 'song'|'playlist', id: string, name: string, artist: string, album: string,
+ *   cover: string, isFromKw: boolean, favorite: boolean, score: number}>} - 按匹配程度从高到低排列，不可用时为空数组
+ */
+export const searchOffline = (keywords, limit = 30) => {
+  const player = getNativePlayer();
+  const query = keywords?.trim();
+  if (!player || !query) return [];
+  try {
+    const data = JSON.parse(player.searchOffline(query, limit) || '{}');
+    return Array.isArray(data.results) ? data.results : [];
+  } catch (error) {
+    console.error('[OfflineSearch] 离线搜索失败:', error);
+    return [];
+  }
+};
+
+/**
+ * 获取离线索引统计
+ * @returns {{ready: boolean, documents: number, pending: number, tokens: number, sizeBytes: number, merges: number}|null}
+ */
+export const getSearchIndexStats = () => {
+  const player = window.AndroidPlayer;
+  if (!player || typeof player.getSearchIndexStats !== 'function') return null;
+  try {
+    return JSON.parse(player.getSearchIndexStats());
+  } catch (error) {
+    console.error('[OfflineSearch] 获取索引统计失败:', error);
+    return null;
+  }
+};
@@ -0,0 +1,121 @@
+/**
+ * 冷启动初始数据
+ * Android客户端启动时，原生层在WebView加载的同时预取了上次启动请求过的接口（StartupPreloader），
+ * 这里把预取结果接到axios上：首批相同的GET请求直接用预取的响应完成，不再等待网络；
+ * 同时记录本次启动期间请求的接口，交给原生层供下次启动预取。其他环境下不做任何处理
+ */
+
+// 启动后这段时间内成功的GET请求视为启动请求
+const STARTUP_WINDOW_MS = 8000;
+// 最多记录的启动请求数，与原生层StartupRequests.MAX_URLS一致
+const MAX_STARTUP_REQUESTS = 8;
+
+/**
+ * 获取支持启动预取的原生接口，不支持时返回null
+ */
+const getNativePlayer = () => {
+  const player = window.AndroidPlayer;
+  if (!player || typeof player.getInitialData !== 'function') return null;
+  return player;
+};
+
+/**
+ * 读取原生层预取的响应
+ * @returns {Map<string, string>} - 地址到响应体文本
+ */
+const readInitialResponses = (player) => {
+  try {
+    const data = JSON.parse(player.getInitialData() || '{}');
+    return new Map(Object.entries(data.responses || {}));
+  } catch (error) {
+    console.error('[StartupData] 读取启动数据失败:', error);
+    return new Map();
+  }
+};
+
+const isCacheable = (config) =>
+  (config.method || 'get').toLowerCase() === 'get' && !(config.params && config.params.timestamp);
+
+/**
+ * 在axios上安装启动数据拦截器，应在应用挂载、发起请求之前调用
+ * @param {import('axios').AxiosInstance} axios
+ */
+export const installStartupData = (axios) => {
+  const player = getNativePlayer();
+  if (!player) return;
+
+  const responses = readInitialResponses(player);
+  const recorded = [];
+  let recording = true;
+
+  axios.interceptors.request.use((config) => {
+    if (responses.size === 0 || !isCacheable(config)) return config;
+    const url = axios.getUri(config);
+    const body = responses.get(url);
+    if (body === undefined) return config;
+    // 每个预取的响应只使用一次，之后的请求照常走网络（和原生API缓存）
+    responses.delete(url);
+    // 响应体交给axios按原样解析，和网络返回的数据走同样的transformResponse
+    config.adapter = () => Promise.resolve({
+      data: body,
+      status: 200,
+      statusText: 'OK',
+      headers: { 'content-type': 'application/json', 'x-native-preload': 'HIT' },
+      config,
+      request: null
+    });
+    return config;
+  });
+
+  axios.interceptors.response.use((response) => {
+    if (recording && recorded.length < MAX_STARTUP_REQUESTS && response.status === 200
+      && isCacheable(response.config)) {
+      const url = axios.getUri(response.config);
+      if (/^https?:\/\//.test(url) && !recorded.includes(url)) {
+        recorded.push(url);
+      }
+    }
+    return response;
+  });
+
+  setTimeout(() => {
+    recording = false;
+    // 没用上的预取结果不再保留
+    responses.clear();
+    if (recorded.length === 0 || typeof player.setStartupRequests !== 'function') return;
+    try {
+      player.setStartupRequests(JSON.stringify(recorded));
+    } catch (error) {
+      console.error('[StartupData] 保存启动请求失败:', error);
+    }
+  }, STARTUP_WINDOW_MS);
+};
+
+/**
+ * 记录Web层的启动时间点，与原生启动阶段显示在同一条时间线上（getStartupReport）
+ * @param {string} name - 时间点名称
+ */
+export const markStartup = (name) => {
+  const player = window.AndroidPlayer;
+  if (!player || typeof player.markStartupPhase !== 'function') return;
+  try {
+    player.markStartupPhase(name);
+  } catch (error) {
+    console.error('[StartupData] 记录启动时间点失败:', error);
+  }
+};
+
+/**
+ * 获取启动时间线
+ * @returns {{uptimeMs: number, phases: Array<{name: string, thread: string, startMs: number, durationMs: number}>}|null}
+ */
+export const getStartupReport = () => {
+  const player = window.AndroidPlayer;
+  if (!player || typeof player.getStartupReport !== 'function') return null;
+  try {
+    return JSON.parse(player.getStartupReport());
+  } catch (error) {
+    console.error('[StartupData] 获取启动时间线失败:', error);
+    return null;
+  }
+};